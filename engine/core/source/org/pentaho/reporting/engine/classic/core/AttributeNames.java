@@ -223,6 +223,8 @@ public class AttributeNames
 
     public static final String IMAGE_MAP = "image-map";
     public static final String DATA_CACHE = "data-cache";
+    public static final String SORT_DATA = "sort-data";
+    public static final String SORT_FIELDS = "sort-fields";
 
     public static final String STYLE_SHEET_REFERENCE = "style-sheet-reference";
     public static final String STYLE_SHEET = "style-sheet";
@@ -0,0 +1,185 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2009 Pentaho Corporation.  All rights reserved.
+ */
+
+package org.pentaho.reporting.engine.classic.core.devtools;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+
+import org.pentaho.reporting.engine.classic.core.ClassicEngineBoot;
+import org.pentaho.reporting.engine.classic.core.metadata.ExpressionMetaData;
+import org.pentaho.reporting.engine.classic.core.metadata.ExpressionRegistry;
+import org.pentaho.reporting.engine.classic.core.metadata.MetaDataIndex;
+import org.pentaho.reporting.engine.classic.core.metadata.ReportPreProcessorMetaData;
+import org.pentaho.reporting.engine.classic.core.metadata.ReportPreProcessorRegistry;
+import org.pentaho.reporting.engine.classic.core.metadata.parser.DataFactoryMetaDataCollection;
+import org.pentaho.reporting.engine.classic.core.metadata.parser.ElementTypeCollection;
+import org.pentaho.reporting.engine.classic.core.metadata.parser.ExpressionMetaDataCollection;
+import org.pentaho.reporting.engine.classic.core.metadata.parser.ReportPreProcessorMetaDataCollection;
+import org.pentaho.reporting.engine.classic.core.util.beans.BeanPropertyIndex;
+import org.pentaho.reporting.libraries.resourceloader.Resource;
+import org.pentaho.reporting.libraries.resourceloader.ResourceManager;
+
+/**
+ * Writes the meta-data indexes and the bean-property index for all meta-data files found below the given directory.
+ * The indexes are written next to the XML files, so that they are packaged into the same jar. The build runs this
+ * generator on the compiled classes against the engine jar, as the indexes record the engine version that is read
+ * from the jar's manifest. The indexes of element meta-data files also record the global includes configured at
+ * generation time; run the generator with the engine's own classpath, so that these indexes remain valid wherever no
+ * additional module contributes global includes.
+ * <p/>
+ * Usage: MetaDataIndexGenerator &lt;classes-directory&gt;
+ *
+ * @author Thomas Morgner
+ */
+public class MetaDataIndexGenerator
+{
+  private static final String BEAN_INDEX_LOCATION =
+      "org/pentaho/reporting/engine/classic/core/util/beans/bean-properties.index";
+
+  private MetaDataIndexGenerator()
+  {
+  }
+
+  public static void main(final String[] args) throws Exception
+  {
+    if (args.length != 1)
+    {
+      System.err.println("Usage: MetaDataIndexGenerator <classes-directory>");
+      System.exit(1);
+    }
+
+    ClassicEngineBoot.getInstance().start();
+
+    final File sourceDirectory = new File(args[0]);
+    final ArrayList<File> files = new ArrayList<File>();
+    collectMetaDataFiles(sourceDirectory, files);
+
+    final ResourceManager resourceManager = new ResourceManager();
+    resourceManager.registerDefaults();
+    for (int i = 0; i < files.size(); i++)
+    {
+      final File file = files.get(i);
+      final Class collectionType = getCollectionType(file.getName());
+      if (collectionType == null)
+      {
+        continue;
+      }
+
+      final URL source = file.toURI().toURL();
+      final Resource resource = resourceManager.createDirectly(source, collectionType);
+      writeIndex(new File(file.getPath() + MetaDataIndex.INDEX_SUFFIX), source, (Serializable) resource.getResource());
+      System.out.println("Indexed " + file);
+    }
+
+    final File beanIndex = new File(sourceDirectory, BEAN_INDEX_LOCATION);
+    if (beanIndex.getParentFile().isDirectory())
+    {
+      writeBeanIndex(beanIndex);
+      System.out.println("Indexed bean-properties into " + beanIndex);
+    }
+  }
+
+  private static Class getCollectionType(final String name)
+  {
+    if (name.startsWith("meta-elements"))
+    {
+      return ElementTypeCollection.class;
+    }
+    if (name.startsWith("meta-expressions"))
+    {
+      return ExpressionMetaDataCollection.class;
+    }
+    if (name.startsWith("meta-datafactory"))
+    {
+      return DataFactoryMetaDataCollection.class;
+    }
+    if (name.startsWith("meta-report-preprocessors"))
+    {
+      return ReportPreProcessorMetaDataCollection.class;
+    }
+    return null;
+  }
+
+  private static void collectMetaDataFiles(final File directory, final ArrayList<File> files)
+  {
+    final File[] children = directory.listFiles();
+    if (children == null)
+    {
+      return;
+    }
+    for (int i = 0; i < children.length; i++)
+    {
+      final File child = children[i];
+      if (child.isDirectory())
+      {
+        collectMetaDataFiles(child, files);
+      }
+      else if (child.getName().startsWith("meta-") && child.getName().endsWith(".xml"))
+      {
+        files.add(child);
+      }
+    }
+  }
+
+  private static void writeIndex(final File target,
+                                 final URL source,
+                                 final Serializable collection) throws IOException
+  {
+    final OutputStream out = new FileOutputStream(target);
+    try
+    {
+      MetaDataIndex.writeIndex(source, collection, out);
+    }
+    finally
+    {
+      out.close();
+    }
+  }
+
+  private static void writeBeanIndex(final File target) throws Exception
+  {
+    final LinkedHashSet<Class> classes = new LinkedHashSet<Class>();
+    final ExpressionMetaData[] expressions = ExpressionRegistry.getInstance().getAllExpressionMetaDatas();
+    for (int i = 0; i < expressions.length; i++)
+    {
+      classes.add(expressions[i].getExpressionType());
+    }
+    final ReportPreProcessorMetaData[] preProcessors =
+        ReportPreProcessorRegistry.getInstance().getAllReportPreProcessorMetaDatas();
+    for (int i = 0; i < preProcessors.length; i++)
+    {
+      classes.add(preProcessors[i].getPreProcessorType());
+    }
+
+    final OutputStream out = new FileOutputStream(target);
+    try
+    {
+      BeanPropertyIndex.writeIndex(classes.toArray(new Class[classes.size()]), out);
+    }
+    finally
+    {
+      out.close();
+    }
+  }
+}
@@ -17,23 +17,189 @@
 
 package org.pentaho.reporting.engine.classic.core.function;
 
+import java.io.Serializable;
 import java.util.HashSet;
 
 import org.pentaho.reporting.engine.classic.core.event.ReportEvent;
+import org.pentaho.reporting.engine.classic.core.util.HyperLogLog;
+import org.pentaho.reporting.engine.classic.core.util.LongHashSet;
 import org.pentaho.reporting.engine.classic.core.util.Sequence;
 
 /**
  * Counts the distinct occurrences of an certain value of an column. This functionality is similar to the SQL distinct()
  * function.
+ * <p/>
+ * If the data-schema declares the field as integral column, the distinct values are collected in a primitive long
+ * hash-set instead of a <code>HashSet&lt;Object&gt;</code>. When the <code>approximate</code> flag is set, the
+ * function estimates the number of distinct values with a HyperLogLog sketch, which needs a fixed amount of memory of
+ * <code>2^approximationPrecision</code> bytes per group, regardless of the number of distinct values.
  *
  * @author Thomas Morgner
  */
 public class CountDistinctFunction extends AbstractFunction implements FieldAggregationFunction
 {
+  /**
+   * Collects the distinct values of one group.
+   */
+  private static interface DistinctValueCollector extends Serializable
+  {
+    public void add(Object value);
+
+    public long getCount();
+  }
+
+  /**
+   * Collects arbitrary values in a hash-set.
+   */
+  private static class ObjectValueCollector implements DistinctValueCollector
+  {
+    private HashSet<Object> values;
+
+    private ObjectValueCollector()
+    {
+      values = new HashSet<Object>();
+    }
+
+    public void add(final Object value)
+    {
+      values.add(value);
+    }
+
+    public long getCount()
+    {
+      return values.size();
+    }
+  }
+
+  /**
+   * Collects integral numbers in a primitive hash-set. As long as all values have the same type, the result is the same
+   * as the result of a hash-set of boxed numbers. If values of a different type show up, the collector falls back to
+   * a hash-set of objects.
+   */
+  private static class NumericValueCollector implements DistinctValueCollector
+  {
+    private Class valueType;
+    private LongHashSet values;
+    private boolean containsNull;
+    private HashSet<Object> fallback;
+
+    private NumericValueCollector()
+    {
+      values = new LongHashSet();
+    }
+
+    public void add(final Object value)
+    {
+      if (fallback != null)
+      {
+        fallback.add(value);
+        return;
+      }
+
+      if (value == null)
+      {
+        containsNull = true;
+        return;
+      }
+
+      final Class type = value.getClass();
+      if (valueType == null && isIntegral(type))
+      {
+        valueType = type;
+      }
+      if (type == valueType)
+      {
+        values.add(((Number) value).longValue());
+        return;
+      }
+
+      fallback = new HashSet<Object>();
+      final long[] longValues = values.toArray();
+      for (int i = 0; i < longValues.length; i++)
+      {
+        fallback.add(box(valueType, longValues[i]));
+      }
+      if (containsNull)
+      {
+        fallback.add(null);
+      }
+      fallback.add(value);
+      values = null;
+    }
+
+    private static boolean isIntegral(final Class type)
+    {
+      return type == Long.class || type == Integer.class || type == Short.class || type == Byte.class;
+    }
+
+    private static Object box(final Class type, final long value)
+    {
+      if (type == Integer.class)
+      {
+        return Integer.valueOf((int) value);
+      }
+      if (type == Short.class)
+      {
+        return Short.valueOf((short) value);
+      }
+      if (type == Byte.class)
+      {
+        return Byte.valueOf((byte) value);
+      }
+      return Long.valueOf(value);
+    }
+
+    public long getCount()
+    {
+      if (fallback != null)
+      {
+        return fallback.size();
+      }
+      if (containsNull)
+      {
+        return values.size() + 1;
+      }
+      return values.size();
+    }
+  }
+
+  /**
+   * Estimates the number of distinct values with a HyperLogLog sketch.
+   */
+  private static class ApproximateValueCollector implements DistinctValueCollector
+  {
+    private HyperLogLog sketch;
+    private boolean containsNull;
+
+    private ApproximateValueCollector(final int precision)
+    {
+      sketch = new HyperLogLog(precision);
+    }
+
+    public void add(final Object value)
+    {
+      if (value == null)
+      {
+        containsNull = true;
+        return;
+      }
+      sketch.add(value);
+    }
+
+    public long getCount()
+    {
+      if (containsNull)
+      {
+        return sketch.getCardinality() + 1;
+      }
+      return sketch.getCardinality();
+    }
+  }
+
   /**
    * The collected values for the current group.
    */
-  private Sequence<HashSet<Object>> values;
+  private Sequence<DistinctValueCollector> values;
   private transient int lastGroupSequenceNumber;
 
   /**
@@ -49,12 +215,26 @@ public class CountDistinctFunction extends AbstractFunction implements FieldAggr
 
   private boolean ignoreNullValues;
 
+  /**
+   * A flag defining whether the number of distinct values is estimated instead of counted exactly.
+   */
+  private boolean approximate;
+  /**
+   * The precision of the estimate. The estimator uses 2^precision bytes of memory per group.
+   */
+  private int approximationPrecision;
+  /**
+   * A flag indicating that the data-schema declares the field as integral column.
+   */
+  private boolean numericKeys;
+
   /**
    * DefaultConstructor.
    */
   public CountDistinctFunction()
   {
-    values = new Sequence<HashSet<Object>>();
+    values = new Sequence<DistinctValueCollector>();
+    approximationPrecision = HyperLogLog.DEFAULT_PRECISION;
   }
 
   public boolean isIgnoreNullValues()
@@ -67,6 +247,53 @@ public class CountDistinctFunction extends AbstractFunction implements FieldAggr
     this.ignoreNullValues = ignoreNullValues;
   }
 
+  /**
+   * Checks whether the number of distinct values is estimated. Estimating runs in a fixed amount of memory, but the
+   * result may deviate from the exact count by about <code>1.04 / sqrt(2^approximationPrecision)</code>.
+   *
+   * @return true, if the count is estimated, false if the values are counted exactly.
+   */
+  public boolean isApproximate()
+  {
+    return approximate;
+  }
+
+  /**
+   * Defines whether the number of distinct values is estimated instead of counted exactly.
+   *
+   * @param approximate true, if the count should be estimated, false otherwise.
+   */
+  public void setApproximate(final boolean approximate)
+  {
+    this.approximate = approximate;
+  }
+
+  /**
+   * Returns the precision of the estimate. This property is only used if the <code>approximate</code> flag is set.
+   *
+   * @return the precision, a value between 4 and 18.
+   */
+  public int getApproximationPrecision()
+  {
+    return approximationPrecision;
+  }
+
+  /**
+   * Defines the precision of the estimate. Higher values give more accurate results, but each group uses
+   * <code>2^precision</code> bytes of memory.
+   *
+   * @param approximationPrecision the precision, a value between 4 and 18.
+   */
+  public void setApproximationPrecision(final int approximationPrecision)
+  {
+    if (approximationPrecision < HyperLogLog.MIN_PRECISION || approximationPrecision > HyperLogLog.MAX_PRECISION)
+    {
+      throw new IllegalArgumentException("Precision must be between " +
+          HyperLogLog.MIN_PRECISION + " and " + HyperLogLog.MAX_PRECISION);
+    }
+    this.approximationPrecision = approximationPrecision;
+  }
+
   /**
    * Returns the group name.
    *
@@ -117,6 +344,8 @@ public class CountDistinctFunction extends AbstractFunction implements FieldAggr
   public void reportInitialized(final ReportEvent event)
   {
     clear();
+    numericKeys = (FunctionUtilities.computeAggregationMode
+        (getRuntime(), getField(), false) == NumericSequence.MODE_LONG);
   }
 
   private void clear()
@@ -157,10 +386,10 @@ public class CountDistinctFunction extends AbstractFunction implements FieldAggr
     }
 
     final Object o = event.getDataRow().get(getField());
-    HashSet<Object> valueSet = this.values.get(lastGroupSequenceNumber);
+    DistinctValueCollector valueSet = this.values.get(lastGroupSequenceNumber);
     if (valueSet == null)
     {
-      valueSet = new HashSet<Object>();
+      valueSet = createCollector();
       this.values.set(lastGroupSequenceNumber, valueSet);
     }
     if (ignoreNullValues && o == null)
@@ -171,6 +400,19 @@ public class CountDistinctFunction extends AbstractFunction implements FieldAggr
     valueSet.add(o);
   }
 
+  private DistinctValueCollector createCollector()
+  {
+    if (approximate)
+    {
+      return new ApproximateValueCollector(approximationPrecision);
+    }
+    if (numericKeys)
+    {
+      return new NumericValueCollector();
+    }
+    return new ObjectValueCollector();
+  }
+
   /**
    * Return the number of distint values for the given column.
    *
@@ -178,10 +420,10 @@ public class CountDistinctFunction extends AbstractFunction implements FieldAggr
    */
   public Object getValue()
   {
-    final HashSet vals = values.get(lastGroupSequenceNumber);
+    final DistinctValueCollector vals = values.get(lastGroupSequenceNumber);
     if (vals != null)
     {
-      return vals.size();
+      return (int) Math.min(Integer.MAX_VALUE, vals.getCount());
     }
     return 0;
   }
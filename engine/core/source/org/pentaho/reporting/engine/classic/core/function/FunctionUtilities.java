@@ -26,6 +26,7 @@ import org.pentaho.reporting.engine.classic.core.CrosstabCellBody;
 import org.pentaho.reporting.engine.classic.core.CrosstabColumnGroup;
 import org.pentaho.reporting.engine.classic.core.Element;
 import org.pentaho.reporting.engine.classic.core.Group;
+import org.pentaho.reporting.engine.classic.core.MetaAttributeNames;
 import org.pentaho.reporting.engine.classic.core.ReportDefinition;
 import org.pentaho.reporting.engine.classic.core.ReportElement;
 import org.pentaho.reporting.engine.classic.core.RootLevelBand;
@@ -33,8 +34,13 @@ import org.pentaho.reporting.engine.classic.core.Section;
 import org.pentaho.reporting.engine.classic.core.SubReport;
 import org.pentaho.reporting.engine.classic.core.event.ReportEvent;
 import org.pentaho.reporting.engine.classic.core.states.LayoutProcess;
+import org.pentaho.reporting.engine.classic.core.states.PrecomputedAggregation;
+import org.pentaho.reporting.engine.classic.core.states.PrecomputedGroupTotals;
 import org.pentaho.reporting.engine.classic.core.states.ReportState;
 import org.pentaho.reporting.engine.classic.core.util.InstanceID;
+import org.pentaho.reporting.engine.classic.core.wizard.DataAttributes;
+import org.pentaho.reporting.engine.classic.core.wizard.DataSchema;
+import org.pentaho.reporting.engine.classic.core.wizard.DefaultDataAttributeContext;
 import org.pentaho.reporting.libraries.base.util.ObjectUtilities;
 
 /**
@@ -485,4 +491,91 @@ public final class FunctionUtilities
   {
     return event.getReport().getCrosstabCellBody() != null;
   }
+
+  /**
+   * Returns the precomputed group totals of the current report, if they contain the values for the given
+   * aggregation.
+   *
+   * @param event       the report event.
+   * @param aggregation the aggregation requested by the function, can be null.
+   * @return the precomputed totals or null, if the function has to compute the totals itself.
+   */
+  public static PrecomputedGroupTotals getPrecomputedGroupTotals(final ReportEvent event,
+                                                                 final PrecomputedAggregation aggregation)
+  {
+    if (aggregation == null)
+    {
+      return null;
+    }
+    final PrecomputedGroupTotals totals = event.getState().getPrecomputedGroupTotals();
+    if (totals == null || totals.isComputed(aggregation) == false)
+    {
+      return null;
+    }
+    return totals;
+  }
+
+  /**
+   * Computes the aggregation mode for a numeric sum over the given field. The mode is derived from the declared column
+   * type of the data-schema. Integral columns are summed up in a primitive long, floating point columns are summed up
+   * in a primitive double if the caller allows it. All other columns use exact BigDecimal arithmetic.
+   * <p/>
+   * This is what the <code>floatingPointAggregation</code> property of the sum and average functions controls: Double
+   * arithmetic is faster, but may produce rounding errors that exact BigDecimal arithmetic would avoid. It is therefore
+   * disabled by default. In either mode the sum falls back to BigDecimal arithmetic as soon as the primitive value
+   * cannot represent the result, see {@link NumericSequence}.
+   *
+   * @param runtime       the expression runtime, can be null.
+   * @param field         the name of the aggregated field, can be null.
+   * @param floatingPoint true, if floating point columns can be summed up as primitive double values.
+   * @return the aggregation mode as defined in {@link NumericSequence}.
+   */
+  public static int computeAggregationMode(final ExpressionRuntime runtime,
+                                           final String field,
+                                           final boolean floatingPoint)
+  {
+    if (runtime == null || field == null)
+    {
+      return NumericSequence.MODE_EXACT;
+    }
+
+    return computeAggregationMode(runtime.getDataSchema(), field, floatingPoint);
+  }
+
+  /**
+   * Computes the aggregation mode for the given field from the column type declared in the data-schema.
+   *
+   * @param dataSchema    the data-schema, can be null.
+   * @param field         the field that is aggregated.
+   * @param floatingPoint whether floating point columns can be summed up as primitive double values.
+   * @return the aggregation mode as defined in {@link NumericSequence}.
+   */
+  public static int computeAggregationMode(final DataSchema dataSchema,
+                                           final String field,
+                                           final boolean floatingPoint)
+  {
+    if (dataSchema == null || field == null)
+    {
+      return NumericSequence.MODE_EXACT;
+    }
+
+    final DataAttributes attributes = dataSchema.getAttributes(field);
+    if (attributes == null)
+    {
+      return NumericSequence.MODE_EXACT;
+    }
+
+    final Object type = attributes.getMetaAttribute
+        (MetaAttributeNames.Core.NAMESPACE, MetaAttributeNames.Core.TYPE, Class.class, new DefaultDataAttributeContext());
+    if (Integer.class.equals(type) || Long.class.equals(type) ||
+        Short.class.equals(type) || Byte.class.equals(type))
+    {
+      return NumericSequence.MODE_LONG;
+    }
+    if (floatingPoint && (Double.class.equals(type) || Float.class.equals(type)))
+    {
+      return NumericSequence.MODE_DOUBLE;
+    }
+    return NumericSequence.MODE_EXACT;
+  }
 }
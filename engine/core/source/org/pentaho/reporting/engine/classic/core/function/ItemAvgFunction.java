@@ -22,7 +22,6 @@ import java.math.BigDecimal;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.pentaho.reporting.engine.classic.core.event.ReportEvent;
-import org.pentaho.reporting.engine.classic.core.util.Sequence;
 
 /**
  * A report function that calculates the average of one field (column) from the TableModel. This function produces a
@@ -43,20 +42,15 @@ public class ItemAvgFunction extends AbstractFunction implements FieldAggregatio
 {
   private static final Log logger = LogFactory.getLog(ItemAvgFunction.class);
   
-  /**
-   * Useful constant for one.
-   */
-  private static final BigDecimal ONE = new BigDecimal(1.0);
-
   /**
    * The item sum.
    */
-  private Sequence<BigDecimal> sum;
+  private NumericSequence sum;
 
   /**
    * The item count.
    */
-  private Sequence<BigDecimal> itemCount;
+  private NumericSequence itemCount;
   private transient int lastGroupSequenceNumber;
 
   /**
@@ -77,14 +71,18 @@ public class ItemAvgFunction extends AbstractFunction implements FieldAggregatio
    */
   private int roundingMode;
   private String crosstabFilterGroup;
+  /**
+   * A flag defining whether floating point columns can be summed up as primitive double values.
+   */
+  private boolean floatingPointAggregation;
 
   /**
    * Constructs an unnamed function. Make sure to set a Name or function initialisation will fail.
    */
   public ItemAvgFunction()
   {
-    sum = new Sequence<BigDecimal>();
-    itemCount = new Sequence<BigDecimal>();
+    sum = new NumericSequence();
+    itemCount = new NumericSequence(NumericSequence.MODE_LONG);
     scale = 14;
     roundingMode = BigDecimal.ROUND_HALF_UP;
   }
@@ -108,6 +106,7 @@ public class ItemAvgFunction extends AbstractFunction implements FieldAggregatio
   public void reportInitialized(final ReportEvent event)
   {
     clear();
+    sum.setMode(FunctionUtilities.computeAggregationMode(getRuntime(), getField(), floatingPointAggregation));
   }
 
   private void clear()
@@ -235,27 +234,8 @@ public class ItemAvgFunction extends AbstractFunction implements FieldAggregatio
     }
     try
     {
-      final Number n = (Number) fieldValue;
-      final BigDecimal number = ExpressionUtilities.convertToBigDecimal(n);
-      final BigDecimal oldSum = sum.get(lastGroupSequenceNumber);
-      if (oldSum == null)
-      {
-        sum.set(lastGroupSequenceNumber, number);
-      }
-      else
-      {
-        sum.set(lastGroupSequenceNumber, oldSum.add(number));
-      }
-
-      final BigDecimal oldValue = itemCount.get(lastGroupSequenceNumber);
-      if (oldValue == null)
-      {
-        itemCount.set(lastGroupSequenceNumber, ONE);
-      }
-      else
-      {
-        itemCount.set(lastGroupSequenceNumber, oldValue.add(ONE));
-      }
+      sum.add(lastGroupSequenceNumber, (Number) fieldValue);
+      itemCount.add(lastGroupSequenceNumber, 1);
     }
     catch (final Exception e)
     {
@@ -280,8 +260,8 @@ public class ItemAvgFunction extends AbstractFunction implements FieldAggregatio
    */
   public Object getValue()
   {
-    final BigDecimal count = itemCount.get(lastGroupSequenceNumber);
-    if (count == null)
+    final long count = itemCount.getLong(lastGroupSequenceNumber);
+    if (count == 0)
     {
       return null;
     }
@@ -290,12 +270,8 @@ public class ItemAvgFunction extends AbstractFunction implements FieldAggregatio
     {
       return null;
     }
-    if (count.longValue() == 0)
-    {
-      return null;
-    }
 
-    return sum.divide(count, scale, roundingMode);
+    return sum.divide(BigDecimal.valueOf(count), scale, roundingMode);
   }
 
   /**
@@ -307,8 +283,8 @@ public class ItemAvgFunction extends AbstractFunction implements FieldAggregatio
   public Expression getInstance()
   {
     final ItemAvgFunction function = (ItemAvgFunction) super.getInstance();
-    function.sum.clone();
-    function.itemCount.clone();
+    function.sum = sum.clone();
+    function.itemCount = itemCount.clone();
     function.lastGroupSequenceNumber = 0;
     return function;
   }
@@ -318,8 +294,8 @@ public class ItemAvgFunction extends AbstractFunction implements FieldAggregatio
     try
     {
       final ItemAvgFunction clone = (ItemAvgFunction) super.clone();
-      clone.sum.clone();
-      clone.itemCount.clone();
+      clone.sum = sum.clone();
+      clone.itemCount = itemCount.clone();
       return clone;
     }
     catch (CloneNotSupportedException e)
@@ -337,4 +313,26 @@ public class ItemAvgFunction extends AbstractFunction implements FieldAggregatio
   {
     this.crosstabFilterGroup = crosstabFilterGroup;
   }
+
+  /**
+   * Checks whether floating point columns are summed up as primitive double values.
+   *
+   * @return true, if floating point columns are summed up as double values, false otherwise.
+   * @see FunctionUtilities#computeAggregationMode(ExpressionRuntime, String, boolean)
+   */
+  public boolean isFloatingPointAggregation()
+  {
+    return floatingPointAggregation;
+  }
+
+  /**
+   * Defines whether floating point columns are summed up as primitive double values.
+   *
+   * @param floatingPointAggregation true, if floating point columns are summed up as double values, false otherwise.
+   * @see FunctionUtilities#computeAggregationMode(ExpressionRuntime, String, boolean)
+   */
+  public void setFloatingPointAggregation(final boolean floatingPointAggregation)
+  {
+    this.floatingPointAggregation = floatingPointAggregation;
+  }
 }
@@ -20,7 +20,6 @@ package org.pentaho.reporting.engine.classic.core.function;
 import java.math.BigDecimal;
 
 import org.pentaho.reporting.engine.classic.core.event.ReportEvent;
-import org.pentaho.reporting.engine.classic.core.util.Sequence;
 
 /**
  * A report function that calculates the sum of one field (column) from the data-row. This function produces a running
@@ -34,6 +33,9 @@ import org.pentaho.reporting.engine.classic.core.util.Sequence;
  * <p/>
  * The parameter <code>group</code> denotes the name of a group. When this group is started, the counter gets reseted to
  * null.
+ * <p/>
+ * The arithmetic used for the sum depends on the declared column type, see
+ * {@link FunctionUtilities#computeAggregationMode(ExpressionRuntime, String, boolean)}.
  *
  * @author Thomas Morgner
  */
@@ -47,7 +49,7 @@ public class ItemSumFunction extends AbstractFunction implements FieldAggregatio
   /**
    * The item sum.
    */
-  private Sequence<BigDecimal> sum;
+  private NumericSequence sum;
   private transient int lastGroupSequenceNumber;
 
   /**
@@ -62,12 +64,17 @@ public class ItemSumFunction extends AbstractFunction implements FieldAggregatio
 
   private String crosstabFilterGroup;
 
+  /**
+   * A flag defining whether floating point columns can be summed up as primitive double values.
+   */
+  private boolean floatingPointAggregation;
+
   /**
    * Constructs an unnamed function. Make sure to set a Name or function initialisation will fail.
    */
   public ItemSumFunction()
   {
-    sum = new Sequence<BigDecimal>();
+    sum = new NumericSequence();
   }
 
   /**
@@ -89,6 +96,7 @@ public class ItemSumFunction extends AbstractFunction implements FieldAggregatio
   public void reportInitialized(final ReportEvent event)
   {
     clear();
+    sum.setMode(FunctionUtilities.computeAggregationMode(getRuntime(), getField(), floatingPointAggregation));
   }
 
   protected void clear()
@@ -177,17 +185,7 @@ public class ItemSumFunction extends AbstractFunction implements FieldAggregatio
       return;
     }
 
-    final Number numerValue = (Number) fieldValue;
-    final BigDecimal number = ExpressionUtilities.convertToBigDecimal(numerValue);
-    final BigDecimal oldValue = sum.get(lastGroupSequenceNumber);
-    if (oldValue == null)
-    {
-      sum.set(lastGroupSequenceNumber, number);
-    }
-    else
-    {
-      sum.set(lastGroupSequenceNumber, oldValue.add(number));
-    }
+    sum.add(lastGroupSequenceNumber, (Number) fieldValue);
   }
 
   /**
@@ -251,4 +249,26 @@ public class ItemSumFunction extends AbstractFunction implements FieldAggregatio
   {
     this.crosstabFilterGroup = crosstabFilterGroup;
   }
+
+  /**
+   * Checks whether floating point columns are summed up as primitive double values.
+   *
+   * @return true, if floating point columns are summed up as double values, false otherwise.
+   * @see FunctionUtilities#computeAggregationMode(ExpressionRuntime, String, boolean)
+   */
+  public boolean isFloatingPointAggregation()
+  {
+    return floatingPointAggregation;
+  }
+
+  /**
+   * Defines whether floating point columns are summed up as primitive double values.
+   *
+   * @param floatingPointAggregation true, if floating point columns are summed up as double values, false otherwise.
+   * @see FunctionUtilities#computeAggregationMode(ExpressionRuntime, String, boolean)
+   */
+  public void setFloatingPointAggregation(final boolean floatingPointAggregation)
+  {
+    this.floatingPointAggregation = floatingPointAggregation;
+  }
 }
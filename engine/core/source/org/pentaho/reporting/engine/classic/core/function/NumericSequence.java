@@ -0,0 +1,357 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+
+package org.pentaho.reporting.engine.classic.core.function;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * A sequence of numeric accumulators used by the aggregation functions. Each slot of the sequence holds a running
+ * sum. Depending on the aggregation mode, the sum is kept in a primitive <code>long</code> or <code>double</code>
+ * field, so that summing up a column does not allocate a new <code>BigDecimal</code> for each row.
+ * <p/>
+ * A slot falls back to exact <code>BigDecimal</code> arithmetic as soon as the primitive accumulator cannot represent
+ * the result: In long mode this happens when the sum overflows or when a non-integral value is added, in double mode
+ * this happens when a <code>BigDecimal</code> or <code>BigInteger</code> value is added or when the sum overflows. NaN
+ * and infinite values are rejected when they are added, just as the exact arithmetic rejects them.
+ * <p/>
+ * Unlike {@link org.pentaho.reporting.engine.classic.core.util.Sequence}, this class is mutable in place. Cloning
+ * creates a deep copy of all slots.
+ *
+ * @author Thomas Morgner
+ */
+public class NumericSequence implements Serializable, Cloneable
+{
+  /**
+   * All values are summed up as BigDecimal. This is the behaviour of the classic aggregation functions.
+   */
+  public static final int MODE_EXACT = 0;
+  /**
+   * Integral values are summed up in a long field. Overflows and non-integral values fall back to exact mode.
+   */
+  public static final int MODE_LONG = 1;
+  /**
+   * Values are summed up in a double field. BigDecimal and BigInteger values and overflows fall back to exact mode.
+   */
+  public static final int MODE_DOUBLE = 2;
+
+  private static final byte SLOT_EMPTY = 0;
+  private static final byte SLOT_LONG = 1;
+  private static final byte SLOT_DOUBLE = 2;
+  private static final byte SLOT_EXACT = 3;
+
+  private static final byte[] EMPTY_STATES = new byte[0];
+  private static final long[] EMPTY_LONGS = new long[0];
+  private static final double[] EMPTY_DOUBLES = new double[0];
+  private static final BigDecimal[] EMPTY_DECIMALS = new BigDecimal[0];
+
+  private int mode;
+  private int size;
+  private byte[] states;
+  private long[] longValues;
+  private double[] doubleValues;
+  private BigDecimal[] exactValues;
+
+  public NumericSequence()
+  {
+    this(MODE_EXACT);
+  }
+
+  public NumericSequence(final int mode)
+  {
+    this.mode = mode;
+    this.states = EMPTY_STATES;
+    this.longValues = EMPTY_LONGS;
+    this.doubleValues = EMPTY_DOUBLES;
+    this.exactValues = EMPTY_DECIMALS;
+  }
+
+  public int getMode()
+  {
+    return mode;
+  }
+
+  /**
+   * Redefines the aggregation mode. The mode only affects slots that have not received a value yet.
+   *
+   * @param mode the new mode.
+   */
+  public void setMode(final int mode)
+  {
+    this.mode = mode;
+  }
+
+  public int size()
+  {
+    return size;
+  }
+
+  public void clear()
+  {
+    for (int i = 0; i < size; i++)
+    {
+      states[i] = SLOT_EMPTY;
+      exactValues[i] = null;
+    }
+    size = 0;
+  }
+
+  private void ensureCapacity(final int slot)
+  {
+    if (slot < 0)
+    {
+      throw new IndexOutOfBoundsException();
+    }
+
+    if (slot >= states.length)
+    {
+      final int newCapacity = Math.max(slot + 1, states.length * 2);
+      final byte[] newStates = new byte[newCapacity];
+      final long[] newLongValues = new long[newCapacity];
+      final double[] newDoubleValues = new double[newCapacity];
+      final BigDecimal[] newExactValues = new BigDecimal[newCapacity];
+      System.arraycopy(states, 0, newStates, 0, size);
+      System.arraycopy(longValues, 0, newLongValues, 0, size);
+      System.arraycopy(doubleValues, 0, newDoubleValues, 0, size);
+      System.arraycopy(exactValues, 0, newExactValues, 0, size);
+      states = newStates;
+      longValues = newLongValues;
+      doubleValues = newDoubleValues;
+      exactValues = newExactValues;
+    }
+
+    if (slot >= size)
+    {
+      size = slot + 1;
+    }
+  }
+
+  private static boolean isIntegral(final Number value)
+  {
+    return value instanceof Integer || value instanceof Long ||
+        value instanceof Short || value instanceof Byte;
+  }
+
+  private static boolean isBigNumber(final Number value)
+  {
+    return value instanceof BigDecimal || value instanceof BigInteger;
+  }
+
+  private static boolean isFinite(final double value)
+  {
+    return Double.isNaN(value) == false && Double.isInfinite(value) == false;
+  }
+
+  /**
+   * Adds a primitive long value to the given slot. This is used for counters, which never need a floating point
+   * representation.
+   *
+   * @param slot  the slot.
+   * @param value the value to add.
+   */
+  public void add(final int slot, final long value)
+  {
+    ensureCapacity(slot);
+    switch (states[slot])
+    {
+      case SLOT_EMPTY:
+        states[slot] = SLOT_LONG;
+        longValues[slot] = value;
+        return;
+      case SLOT_LONG:
+      {
+        final long oldValue = longValues[slot];
+        final long result = oldValue + value;
+        if (((oldValue ^ result) & (value ^ result)) < 0)
+        {
+          // overflow, continue with exact arithmetic.
+          states[slot] = SLOT_EXACT;
+          exactValues[slot] = BigDecimal.valueOf(oldValue).add(BigDecimal.valueOf(value));
+          return;
+        }
+        longValues[slot] = result;
+        return;
+      }
+      case SLOT_DOUBLE:
+        doubleValues[slot] += value;
+        return;
+      default:
+        exactValues[slot] = exactValues[slot].add(BigDecimal.valueOf(value));
+    }
+  }
+
+  /**
+   * Adds the given number to the given slot.
+   *
+   * @param slot  the slot.
+   * @param value the value to add, never null.
+   */
+  public void add(final int slot, final Number value)
+  {
+    if (value == null)
+    {
+      throw new NullPointerException();
+    }
+
+    ensureCapacity(slot);
+    final byte state = states[slot];
+    if (state == SLOT_EXACT)
+    {
+      exactValues[slot] = exactValues[slot].add(ExpressionUtilities.convertToBigDecimal(value));
+      return;
+    }
+
+    if (state == SLOT_LONG || (state == SLOT_EMPTY && mode == MODE_LONG))
+    {
+      if (isIntegral(value))
+      {
+        add(slot, value.longValue());
+        return;
+      }
+    }
+    else if (state == SLOT_DOUBLE || (state == SLOT_EMPTY && mode == MODE_DOUBLE))
+    {
+      // NaN and infinite values take the exact path, which rejects them with a NumberFormatException.
+      final double number = value.doubleValue();
+      if (isBigNumber(value) == false && isFinite(number))
+      {
+        if (state == SLOT_EMPTY)
+        {
+          states[slot] = SLOT_DOUBLE;
+          doubleValues[slot] = number;
+          return;
+        }
+        final double result = doubleValues[slot] + number;
+        if (isFinite(result))
+        {
+          doubleValues[slot] = result;
+          return;
+        }
+        // overflow, continue with exact arithmetic.
+      }
+    }
+
+    final BigDecimal number = ExpressionUtilities.convertToBigDecimal(value);
+    final BigDecimal oldValue = get(slot);
+    states[slot] = SLOT_EXACT;
+    if (oldValue == null)
+    {
+      exactValues[slot] = number;
+    }
+    else
+    {
+      exactValues[slot] = oldValue.add(number);
+    }
+  }
+
+  /**
+   * Checks whether the given slot has received at least one value.
+   *
+   * @param slot the slot.
+   * @return true, if the slot holds a value, false otherwise.
+   */
+  public boolean isDefined(final int slot)
+  {
+    if (slot < 0)
+    {
+      throw new IndexOutOfBoundsException();
+    }
+    if (slot >= size)
+    {
+      return false;
+    }
+    return states[slot] != SLOT_EMPTY;
+  }
+
+  /**
+   * Returns the value of the given slot as primitive long. Slots that have not received any value return zero.
+   *
+   * @param slot the slot.
+   * @return the value as long.
+   */
+  public long getLong(final int slot)
+  {
+    if (isDefined(slot) == false)
+    {
+      return 0;
+    }
+    switch (states[slot])
+    {
+      case SLOT_LONG:
+        return longValues[slot];
+      case SLOT_DOUBLE:
+        return (long) doubleValues[slot];
+      default:
+        return exactValues[slot].longValue();
+    }
+  }
+
+  /**
+   * Returns the value of the given slot as BigDecimal or null, if the slot has not received any value yet.
+   *
+   * @param slot the slot.
+   * @return the value or null.
+   */
+  public BigDecimal get(final int slot)
+  {
+    if (isDefined(slot) == false)
+    {
+      return null;
+    }
+    switch (states[slot])
+    {
+      case SLOT_LONG:
+        return BigDecimal.valueOf(longValues[slot]);
+      case SLOT_DOUBLE:
+        return BigDecimal.valueOf(doubleValues[slot]);
+      default:
+        return exactValues[slot];
+    }
+  }
+
+  public NumericSequence clone()
+  {
+    try
+    {
+      final NumericSequence clone = (NumericSequence) super.clone();
+      if (size == 0)
+      {
+        clone.states = EMPTY_STATES;
+        clone.longValues = EMPTY_LONGS;
+        clone.doubleValues = EMPTY_DOUBLES;
+        clone.exactValues = EMPTY_DECIMALS;
+        return clone;
+      }
+
+      clone.states = new byte[size];
+      clone.longValues = new long[size];
+      clone.doubleValues = new double[size];
+      clone.exactValues = new BigDecimal[size];
+      System.arraycopy(states, 0, clone.states, 0, size);
+      System.arraycopy(longValues, 0, clone.longValues, 0, size);
+      System.arraycopy(doubleValues, 0, clone.doubleValues, 0, size);
+      System.arraycopy(exactValues, 0, clone.exactValues, 0, size);
+      return clone;
+    }
+    catch (CloneNotSupportedException e)
+    {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,39 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+
+package org.pentaho.reporting.engine.classic.core.function;
+
+import org.pentaho.reporting.engine.classic.core.states.PrecomputedAggregation;
+
+/**
+ * A function that computes a group total which can also be computed directly from the report's table-model. When the
+ * engine was able to precompute the total before the report processing started, the function reads its result from
+ * the {@link org.pentaho.reporting.engine.classic.core.states.PrecomputedGroupTotals} of the report-state and does
+ * not need a prepare-run to collect its values.
+ *
+ * @author Thomas Morgner
+ */
+public interface PrecomputableFunction extends Function
+{
+  /**
+   * Returns the aggregation that computes the result of this function, or null if the function cannot be computed
+   * from the raw data in its current configuration.
+   *
+   * @return the aggregation or null.
+   */
+  public PrecomputedAggregation getPrecomputedAggregation();
+}
@@ -22,6 +22,8 @@ import java.io.ObjectInputStream;
 import java.util.HashMap;
 
 import org.pentaho.reporting.engine.classic.core.event.ReportEvent;
+import org.pentaho.reporting.engine.classic.core.states.PrecomputedAggregation;
+import org.pentaho.reporting.engine.classic.core.states.PrecomputedGroupTotals;
 import org.pentaho.reporting.engine.classic.core.states.ReportStateKey;
 import org.pentaho.reporting.engine.classic.core.util.IntegerCache;
 
@@ -32,7 +34,7 @@ import org.pentaho.reporting.engine.classic.core.util.IntegerCache;
  *
  * @author Thomas Morgner
  */
-public class TotalGroupCountFunction extends GroupCountFunction
+public class TotalGroupCountFunction extends GroupCountFunction implements PrecomputableFunction
 {
   /**
    * A map of results, keyed by the process-key.
@@ -50,6 +52,15 @@ public class TotalGroupCountFunction extends GroupCountFunction
    * The current group key is used to store the result for the current group.
    */
   private transient ReportStateKey groupStateKey;
+  /**
+   * The totals computed before the report processing started, or null if this function collects its own totals.
+   */
+  private transient PrecomputedGroupTotals precomputedTotals;
+  private transient PrecomputedAggregation precomputedAggregation;
+  /**
+   * The row on which the current parent group started, or -1 if the parent group has not started yet.
+   */
+  private transient int precomputedGroupRow;
 
   /**
    * Default constructor.
@@ -67,6 +78,14 @@ public class TotalGroupCountFunction extends GroupCountFunction
   public void reportInitialized(final ReportEvent event)
   {
     super.reportInitialized(event);
+    precomputedAggregation = getPrecomputedAggregation();
+    precomputedTotals = FunctionUtilities.getPrecomputedGroupTotals(event, precomputedAggregation);
+    precomputedGroupRow = -1;
+    if (precomputedTotals != null)
+    {
+      return;
+    }
+
     globalStateKey = event.getState().getProcessKey();
     if (FunctionUtilities.isDefinedPrepareRunLevel(this, event))
     {
@@ -88,6 +107,15 @@ public class TotalGroupCountFunction extends GroupCountFunction
   public void groupStarted(final ReportEvent event)
   {
     super.groupStarted(event);
+    if (precomputedTotals != null)
+    {
+      if (FunctionUtilities.isDefinedGroup(getParentGroup(), event))
+      {
+        precomputedGroupRow = event.getState().getCurrentRow();
+      }
+      return;
+    }
+
 
     if (FunctionUtilities.isDefinedGroup(getParentGroup(), event))
     {
@@ -127,9 +155,29 @@ public class TotalGroupCountFunction extends GroupCountFunction
    */
   public Object getValue()
   {
+    if (precomputedTotals != null)
+    {
+      final Object value = precomputedTotals.getValue(precomputedAggregation, precomputedGroupRow);
+      if (value == null)
+      {
+        return IntegerCache.getInteger(0);
+      }
+      return value;
+    }
+
     return result;
   }
 
+  /**
+   * Returns the aggregation that computes the result of this function in a single scan over the report's data.
+   *
+   * @return the aggregation.
+   */
+  public PrecomputedAggregation getPrecomputedAggregation()
+  {
+    return new PrecomputedAggregation(PrecomputedAggregation.GROUP_COUNT, null, getParentGroup(), getGroup(), false);
+  }
+
   /**
    * Return a completly separated copy of this function. The copy does no longer share any changeable objects with the
    * original function.
@@ -140,6 +188,8 @@ public class TotalGroupCountFunction extends GroupCountFunction
   {
     final TotalGroupCountFunction fn =
         (TotalGroupCountFunction) super.getInstance();
+    fn.precomputedTotals = null;
+    fn.precomputedAggregation = null;
     fn.results = new HashMap<ReportStateKey, Integer>();
     return fn;
   }
@@ -24,8 +24,9 @@ import java.util.HashMap;
 import java.util.Map;
 
 import org.pentaho.reporting.engine.classic.core.event.ReportEvent;
+import org.pentaho.reporting.engine.classic.core.states.PrecomputedAggregation;
+import org.pentaho.reporting.engine.classic.core.states.PrecomputedGroupTotals;
 import org.pentaho.reporting.engine.classic.core.states.ReportStateKey;
-import org.pentaho.reporting.engine.classic.core.util.Sequence;
 
 /**
  * A report function that calculates the sum of one field (column) from the Data-Row. This function produces a global
@@ -44,7 +45,7 @@ import org.pentaho.reporting.engine.classic.core.util.Sequence;
  *
  * @author Thomas Morgner
  */
-public class TotalGroupSumFunction extends AbstractFunction implements FieldAggregationFunction
+public class TotalGroupSumFunction extends AbstractFunction implements FieldAggregationFunction, PrecomputableFunction
 {
   /**
    * A useful constant representing zero.
@@ -53,7 +54,7 @@ public class TotalGroupSumFunction extends AbstractFunction implements FieldAggr
   /**
    * A map of results, keyed by the process-key.
    */
-  private transient HashMap<ReportStateKey, Sequence<BigDecimal>> results;
+  private transient HashMap<ReportStateKey, NumericSequence> results;
   private transient int lastGroupSequenceNumber;
 
   /**
@@ -68,7 +69,7 @@ public class TotalGroupSumFunction extends AbstractFunction implements FieldAggr
   /**
    * The currently computed result.
    */
-  private transient Sequence<BigDecimal> result;
+  private transient NumericSequence result;
   /**
    * The global state key is used to store the result for the whole report.
    */
@@ -82,13 +83,33 @@ public class TotalGroupSumFunction extends AbstractFunction implements FieldAggr
 
   private String crosstabFilterGroup;
 
+  /**
+   * A flag defining whether floating point columns can be summed up as primitive double values.
+   */
+  private boolean floatingPointAggregation;
+
+  /**
+   * The totals computed before the report processing started, or null if this function collects its own totals.
+   */
+  private transient PrecomputedGroupTotals precomputedTotals;
+  private transient PrecomputedAggregation precomputedAggregation;
+  /**
+   * The row on which the current group started, or -1 if the group has not started yet.
+   */
+  private transient int precomputedGroupRow;
+
+  /**
+   * The aggregation mode computed from the data-schema when the report starts.
+   */
+  private transient int aggregationMode;
+
   /**
    * Constructs a new function. <P> Initially the function has no name...be sure to assign one before using the
    * function.
    */
   public TotalGroupSumFunction()
   {
-    results = new HashMap<ReportStateKey, Sequence<BigDecimal>>();
+    results = new HashMap<ReportStateKey, NumericSequence>();
   }
 
   /**
@@ -98,10 +119,19 @@ public class TotalGroupSumFunction extends AbstractFunction implements FieldAggr
    */
   public void reportInitialized(final ReportEvent event)
   {
+    precomputedAggregation = getPrecomputedAggregation();
+    precomputedTotals = FunctionUtilities.getPrecomputedGroupTotals(event, precomputedAggregation);
+    precomputedGroupRow = -1;
+    if (precomputedTotals != null)
+    {
+      return;
+    }
+
     globalStateKey = event.getState().getProcessKey();
     if (isPrepareRunLevel(event))
     {
-      result = new Sequence<BigDecimal>();
+      aggregationMode = FunctionUtilities.computeAggregationMode(getRuntime(), getField(), floatingPointAggregation);
+      result = new NumericSequence(aggregationMode);
       results.clear();
       results.put(globalStateKey, result);
       lastGroupSequenceNumber = 0;
@@ -124,6 +154,15 @@ public class TotalGroupSumFunction extends AbstractFunction implements FieldAggr
    */
   public void groupStarted(final ReportEvent event)
   {
+    if (precomputedTotals != null)
+    {
+      if (FunctionUtilities.isDefinedGroup(getGroup(), event))
+      {
+        precomputedGroupRow = event.getState().getCurrentRow();
+      }
+      return;
+    }
+
     if (FunctionUtilities.isDefinedGroup(getGroup(), event))
     {
       currentGroupKey = event.getState().getProcessKey();
@@ -150,7 +189,7 @@ public class TotalGroupSumFunction extends AbstractFunction implements FieldAggr
 
   protected void clear()
   {
-    result = new Sequence<BigDecimal>();
+    result = new NumericSequence(aggregationMode);
     lastGroupSequenceNumber = 0;
   }
 
@@ -161,6 +200,11 @@ public class TotalGroupSumFunction extends AbstractFunction implements FieldAggr
    */
   public void itemsAdvanced(final ReportEvent event)
   {
+    if (precomputedTotals != null)
+    {
+      return;
+    }
+
    if (field == null)
     {
       return;
@@ -171,33 +215,25 @@ public class TotalGroupSumFunction extends AbstractFunction implements FieldAggr
       return;
     }
 
-    final BigDecimal value = ExpressionUtilities.convertToBigDecimal(event.getDataRow().get(getField()));
-    if (value == null)
+    final Object value = event.getDataRow().get(getField());
+    if (value instanceof Number == false)
     {
       return;
     }
 
-    final BigDecimal oldValue = result.get(lastGroupSequenceNumber);
-    if (oldValue == null)
-    {
-      result.set(lastGroupSequenceNumber, value);
-    }
-    else
-    {
-      result.set(lastGroupSequenceNumber, oldValue.add(value));
-    }
+    result.add(lastGroupSequenceNumber, (Number) value);
   }
 
   public Object clone() throws CloneNotSupportedException
     {
       final TotalGroupSumFunction o = (TotalGroupSumFunction) super.clone();
-      o.results = (HashMap<ReportStateKey, Sequence<BigDecimal>>) results.clone();
+      o.results = (HashMap<ReportStateKey, NumericSequence>) results.clone();
 
       // Clone saved group results.
       // The currently active result needs to be handled
       // separately from this loop, since the globalStateKey
       // and currentGroupKey both need to be mapped to it.
-      for (final Map.Entry<ReportStateKey, Sequence<BigDecimal>> entry : results.entrySet())
+      for (final Map.Entry<ReportStateKey, NumericSequence> entry : results.entrySet())
       {
         if (entry.getKey() != globalStateKey && entry.getKey() != currentGroupKey)
         {
@@ -251,6 +287,16 @@ public class TotalGroupSumFunction extends AbstractFunction implements FieldAggr
    */
   public Object getValue()
   {
+    if (precomputedTotals != null)
+    {
+      final Object value = precomputedTotals.getValue(precomputedAggregation, precomputedGroupRow);
+      if (value == null)
+      {
+        return ZERO;
+      }
+      return value;
+    }
+
     if (result == null)
     {
       return ZERO;
@@ -284,6 +330,21 @@ public class TotalGroupSumFunction extends AbstractFunction implements FieldAggr
     this.field = field;
   }
 
+  /**
+   * Returns the aggregation that computes the result of this function in a single scan over the report's data.
+   * Crosstab totals are never precomputed.
+   *
+   * @return the aggregation or null, if the function has to compute its result in a prepare-run.
+   */
+  public PrecomputedAggregation getPrecomputedAggregation()
+  {
+    if (getField() == null || getCrosstabFilterGroup() != null)
+    {
+      return null;
+    }
+    return new PrecomputedAggregation(PrecomputedAggregation.SUM, getField(), getGroup(), null, floatingPointAggregation);
+  }
+
   /**
    * Return a completly separated copy of this function. The copy does no longer share any changeable objects with the
    * original function.
@@ -293,8 +354,10 @@ public class TotalGroupSumFunction extends AbstractFunction implements FieldAggr
   public Expression getInstance()
   {
     final TotalGroupSumFunction function = (TotalGroupSumFunction) super.getInstance();
+    function.precomputedTotals = null;
+    function.precomputedAggregation = null;
     function.result = null;
-    function.results = new HashMap<ReportStateKey, Sequence<BigDecimal>>();
+    function.results = new HashMap<ReportStateKey, NumericSequence>();
     return function;
   }
 
@@ -309,7 +372,7 @@ public class TotalGroupSumFunction extends AbstractFunction implements FieldAggr
       throws IOException, ClassNotFoundException
   {
     in.defaultReadObject();
-    this.results = new HashMap<ReportStateKey, Sequence<BigDecimal>>();
+    this.results = new HashMap<ReportStateKey, NumericSequence>();
     this.result = null;
   }
 
@@ -322,4 +385,26 @@ public class TotalGroupSumFunction extends AbstractFunction implements FieldAggr
   {
     this.crosstabFilterGroup = crosstabFilterGroup;
   }
+
+  /**
+   * Checks whether floating point columns are summed up as primitive double values.
+   *
+   * @return true, if floating point columns are summed up as double values, false otherwise.
+   * @see FunctionUtilities#computeAggregationMode(ExpressionRuntime, String, boolean)
+   */
+  public boolean isFloatingPointAggregation()
+  {
+    return floatingPointAggregation;
+  }
+
+  /**
+   * Defines whether floating point columns are summed up as primitive double values.
+   *
+   * @param floatingPointAggregation true, if floating point columns are summed up as double values, false otherwise.
+   * @see FunctionUtilities#computeAggregationMode(ExpressionRuntime, String, boolean)
+   */
+  public void setFloatingPointAggregation(final boolean floatingPointAggregation)
+  {
+    this.floatingPointAggregation = floatingPointAggregation;
+  }
 }
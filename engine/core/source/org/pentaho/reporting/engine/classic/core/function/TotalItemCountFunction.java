@@ -23,6 +23,8 @@ import java.util.HashMap;
 import java.util.Map;
 
 import org.pentaho.reporting.engine.classic.core.event.ReportEvent;
+import org.pentaho.reporting.engine.classic.core.states.PrecomputedAggregation;
+import org.pentaho.reporting.engine.classic.core.states.PrecomputedGroupTotals;
 import org.pentaho.reporting.engine.classic.core.states.ReportStateKey;
 import org.pentaho.reporting.engine.classic.core.util.Sequence;
 
@@ -40,7 +42,7 @@ import org.pentaho.reporting.engine.classic.core.util.Sequence;
  *
  * @author Thomas Morgner
  */
-public class TotalItemCountFunction extends AbstractFunction implements AggregationFunction
+public class TotalItemCountFunction extends AbstractFunction implements AggregationFunction, PrecomputableFunction
 {
   /**
    * A map of results, keyed by the process-key.
@@ -70,6 +72,16 @@ public class TotalItemCountFunction extends AbstractFunction implements Aggregat
 
   private String crosstabFilterGroup;
 
+  /**
+   * The totals computed before the report processing started, or null if this function collects its own totals.
+   */
+  private transient PrecomputedGroupTotals precomputedTotals;
+  private transient PrecomputedAggregation precomputedAggregation;
+  /**
+   * The row on which the current group started, or -1 if the group has not started yet.
+   */
+  private transient int precomputedGroupRow;
+
   /**
    * Default constructor.
    */
@@ -85,6 +97,14 @@ public class TotalItemCountFunction extends AbstractFunction implements Aggregat
    */
   public void reportInitialized(final ReportEvent event)
   {
+    precomputedAggregation = getPrecomputedAggregation();
+    precomputedTotals = FunctionUtilities.getPrecomputedGroupTotals(event, precomputedAggregation);
+    precomputedGroupRow = -1;
+    if (precomputedTotals != null)
+    {
+      return;
+    }
+
     globalStateKey = event.getState().getProcessKey();
     if (isPrepareRunLevel(event))
     {
@@ -112,6 +132,15 @@ public class TotalItemCountFunction extends AbstractFunction implements Aggregat
    */
   public void groupStarted(final ReportEvent event)
   {
+    if (precomputedTotals != null)
+    {
+      if (FunctionUtilities.isDefinedGroup(getGroup(), event))
+      {
+        precomputedGroupRow = event.getState().getCurrentRow();
+      }
+      return;
+    }
+
     if (FunctionUtilities.isDefinedGroup(getGroup(), event))
     {
       currentGroupKey = event.getState().getProcessKey();
@@ -150,6 +179,11 @@ public class TotalItemCountFunction extends AbstractFunction implements Aggregat
    */
   public void itemsAdvanced(final ReportEvent event)
   {
+    if (precomputedTotals != null)
+    {
+      return;
+    }
+
     if (isPrepareRunLevel(event) == false)
     {
       return;
@@ -229,6 +263,16 @@ public class TotalItemCountFunction extends AbstractFunction implements Aggregat
    */
   public Object getValue()
   {
+    if (precomputedTotals != null)
+    {
+      final Object value = precomputedTotals.getValue(precomputedAggregation, precomputedGroupRow);
+      if (value == null)
+      {
+        return 0;
+      }
+      return value;
+    }
+
     if (result == null)
     {
       return 0 ;
@@ -242,6 +286,21 @@ public class TotalItemCountFunction extends AbstractFunction implements Aggregat
     return value;
   }
 
+  /**
+   * Returns the aggregation that computes the result of this function in a single scan over the report's data.
+   * Crosstab totals are never precomputed.
+   *
+   * @return the aggregation or null, if the function has to compute its result in a prepare-run.
+   */
+  public PrecomputedAggregation getPrecomputedAggregation()
+  {
+    if (getCrosstabFilterGroup() != null)
+    {
+      return null;
+    }
+    return new PrecomputedAggregation(PrecomputedAggregation.ITEM_COUNT, null, getGroup(), null, false);
+  }
+
   /**
    * Return a completly separated copy of this function. The copy does no longer share any changeable objects with the
    * original function.
@@ -251,6 +310,8 @@ public class TotalItemCountFunction extends AbstractFunction implements Aggregat
   public Expression getInstance()
   {
     final TotalItemCountFunction function = (TotalItemCountFunction) super.getInstance();
+    function.precomputedTotals = null;
+    function.precomputedAggregation = null;
     function.results = new HashMap<ReportStateKey, Sequence<Integer>>();
     return function;
   }
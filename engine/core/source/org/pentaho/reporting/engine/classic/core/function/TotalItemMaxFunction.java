@@ -24,6 +24,8 @@ import java.util.HashMap;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.pentaho.reporting.engine.classic.core.event.ReportEvent;
+import org.pentaho.reporting.engine.classic.core.states.PrecomputedAggregation;
+import org.pentaho.reporting.engine.classic.core.states.PrecomputedGroupTotals;
 import org.pentaho.reporting.engine.classic.core.states.ReportStateKey;
 import org.pentaho.reporting.engine.classic.core.util.Sequence;
 
@@ -40,7 +42,7 @@ import org.pentaho.reporting.engine.classic.core.util.Sequence;
  *
  * @author Thomas Morgner
  */
-public class TotalItemMaxFunction extends AbstractFunction implements FieldAggregationFunction
+public class TotalItemMaxFunction extends AbstractFunction implements FieldAggregationFunction, PrecomputableFunction
 {
   private static final Log logger = LogFactory.getLog(TotalItemMaxFunction.class);
   /**
@@ -70,6 +72,16 @@ public class TotalItemMaxFunction extends AbstractFunction implements FieldAggre
    */
   private String crosstabFilterGroup;
 
+  /**
+   * The totals computed before the report processing started, or null if this function collects its own totals.
+   */
+  private transient PrecomputedGroupTotals precomputedTotals;
+  private transient PrecomputedAggregation precomputedAggregation;
+  /**
+   * The row on which the current group started, or -1 if the group has not started yet.
+   */
+  private transient int precomputedGroupRow;
+
   /**
    * Default constructor.
    */
@@ -106,6 +118,14 @@ public class TotalItemMaxFunction extends AbstractFunction implements FieldAggre
    */
   public void reportInitialized(final ReportEvent event)
   {
+    precomputedAggregation = getPrecomputedAggregation();
+    precomputedTotals = FunctionUtilities.getPrecomputedGroupTotals(event, precomputedAggregation);
+    precomputedGroupRow = -1;
+    if (precomputedTotals != null)
+    {
+      return;
+    }
+
     globalStateKey = event.getState().getProcessKey();
     if (FunctionUtilities.isDefinedPrepareRunLevel(this, event))
     {
@@ -128,6 +148,15 @@ public class TotalItemMaxFunction extends AbstractFunction implements FieldAggre
    */
   public void groupStarted(final ReportEvent event)
   {
+    if (precomputedTotals != null)
+    {
+      if (FunctionUtilities.isDefinedGroup(getGroup(), event))
+      {
+        precomputedGroupRow = event.getState().getCurrentRow();
+      }
+      return;
+    }
+
     if (FunctionUtilities.isDefinedGroup(getGroup(), event))
     {
       final ReportStateKey groupStateKey = event.getState().getProcessKey();
@@ -161,6 +190,11 @@ public class TotalItemMaxFunction extends AbstractFunction implements FieldAggre
    */
   public void itemsAdvanced(final ReportEvent event)
   {
+    if (precomputedTotals != null)
+    {
+      return;
+    }
+
     if (field == null)
     {
       return;
@@ -229,6 +263,11 @@ public class TotalItemMaxFunction extends AbstractFunction implements FieldAggre
    */
   public Object getValue()
   {
+    if (precomputedTotals != null)
+    {
+      return precomputedTotals.getValue(precomputedAggregation, precomputedGroupRow);
+    }
+
     if (result == null)
     {
       return null;
@@ -237,6 +276,21 @@ public class TotalItemMaxFunction extends AbstractFunction implements FieldAggre
     return result.get(lastGroupSequenceNumber);
   }
 
+  /**
+   * Returns the aggregation that computes the result of this function in a single scan over the report's data.
+   * Crosstab totals are never precomputed.
+   *
+   * @return the aggregation or null, if the function has to compute its result in a prepare-run.
+   */
+  public PrecomputedAggregation getPrecomputedAggregation()
+  {
+    if (getField() == null || getCrosstabFilterGroup() != null)
+    {
+      return null;
+    }
+    return new PrecomputedAggregation(PrecomputedAggregation.MAX, getField(), getGroup(), null, false);
+  }
+
   /**
    * Return a completly separated copy of this function. The copy does no longer share any changeable objects with the
    * original function.
@@ -246,6 +300,8 @@ public class TotalItemMaxFunction extends AbstractFunction implements FieldAggre
   public Expression getInstance()
   {
     final TotalItemMaxFunction function = (TotalItemMaxFunction) super.getInstance();
+    function.precomputedTotals = null;
+    function.precomputedAggregation = null;
     function.results = new HashMap<ReportStateKey, Sequence<Comparable>>();
     return function;
   }
@@ -24,6 +24,8 @@ import java.util.HashMap;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.pentaho.reporting.engine.classic.core.event.ReportEvent;
+import org.pentaho.reporting.engine.classic.core.states.PrecomputedAggregation;
+import org.pentaho.reporting.engine.classic.core.states.PrecomputedGroupTotals;
 import org.pentaho.reporting.engine.classic.core.states.ReportStateKey;
 import org.pentaho.reporting.engine.classic.core.util.Sequence;
 
@@ -42,7 +44,7 @@ import org.pentaho.reporting.engine.classic.core.util.Sequence;
  *
  * @author Thomas Morgner
  */
-public class TotalItemMinFunction extends AbstractFunction implements FieldAggregationFunction
+public class TotalItemMinFunction extends AbstractFunction implements FieldAggregationFunction, PrecomputableFunction
 {
   private static final Log logger = LogFactory.getLog(TotalItemMinFunction.class);
   /**
@@ -69,6 +71,16 @@ public class TotalItemMinFunction extends AbstractFunction implements FieldAggre
   private transient ReportStateKey globalStateKey;
   private String crosstabFilterGroup;
 
+  /**
+   * The totals computed before the report processing started, or null if this function collects its own totals.
+   */
+  private transient PrecomputedGroupTotals precomputedTotals;
+  private transient PrecomputedAggregation precomputedAggregation;
+  /**
+   * The row on which the current group started, or -1 if the group has not started yet.
+   */
+  private transient int precomputedGroupRow;
+
   /**
    * Default constructor.
    */
@@ -104,6 +116,14 @@ public class TotalItemMinFunction extends AbstractFunction implements FieldAggre
    */
   public void reportInitialized(final ReportEvent event)
   {
+    precomputedAggregation = getPrecomputedAggregation();
+    precomputedTotals = FunctionUtilities.getPrecomputedGroupTotals(event, precomputedAggregation);
+    precomputedGroupRow = -1;
+    if (precomputedTotals != null)
+    {
+      return;
+    }
+
     globalStateKey = event.getState().getProcessKey();
     if (FunctionUtilities.isDefinedPrepareRunLevel(this, event))
     {
@@ -126,6 +146,15 @@ public class TotalItemMinFunction extends AbstractFunction implements FieldAggre
    */
   public void groupStarted(final ReportEvent event)
   {
+    if (precomputedTotals != null)
+    {
+      if (FunctionUtilities.isDefinedGroup(getGroup(), event))
+      {
+        precomputedGroupRow = event.getState().getCurrentRow();
+      }
+      return;
+    }
+
     if (FunctionUtilities.isDefinedGroup(getGroup(), event))
     {
       final ReportStateKey groupStateKey = event.getState().getProcessKey();
@@ -159,6 +188,11 @@ public class TotalItemMinFunction extends AbstractFunction implements FieldAggre
    */
   public void itemsAdvanced(final ReportEvent event)
   {
+    if (precomputedTotals != null)
+    {
+      return;
+    }
+
     if (field == null)
     {
       return;
@@ -227,6 +261,11 @@ public class TotalItemMinFunction extends AbstractFunction implements FieldAggre
    */
   public Object getValue()
   {
+    if (precomputedTotals != null)
+    {
+      return precomputedTotals.getValue(precomputedAggregation, precomputedGroupRow);
+    }
+
     if (result == null)
     {
       return null;
@@ -235,6 +274,21 @@ public class TotalItemMinFunction extends AbstractFunction implements FieldAggre
     return result.get(lastGroupSequenceNumber);
   }
 
+  /**
+   * Returns the aggregation that computes the result of this function in a single scan over the report's data.
+   * Crosstab totals are never precomputed.
+   *
+   * @return the aggregation or null, if the function has to compute its result in a prepare-run.
+   */
+  public PrecomputedAggregation getPrecomputedAggregation()
+  {
+    if (getField() == null || getCrosstabFilterGroup() != null)
+    {
+      return null;
+    }
+    return new PrecomputedAggregation(PrecomputedAggregation.MIN, getField(), getGroup(), null, false);
+  }
+
   /**
    * Return a completly separated copy of this function. The copy does no longer share any changeable objects with the
    * original function.
@@ -244,6 +298,8 @@ public class TotalItemMinFunction extends AbstractFunction implements FieldAggre
   public Expression getInstance()
   {
     final TotalItemMinFunction function = (TotalItemMinFunction) super.getInstance();
+    function.precomputedTotals = null;
+    function.precomputedAggregation = null;
     function.results = new HashMap<ReportStateKey, Sequence<Comparable>>();
     return function;
   }
@@ -23,6 +23,7 @@ import java.io.ObjectInputStream;
 import org.pentaho.reporting.engine.classic.core.event.PageEventListener;
 import org.pentaho.reporting.engine.classic.core.event.ReportEvent;
 import org.pentaho.reporting.engine.classic.core.states.LayoutProcess;
+import org.pentaho.reporting.engine.classic.core.states.PrecomputedAggregation;
 
 /**
  * A report function that counts the total number of items contained in groups in a report. Resets the
@@ -63,6 +64,16 @@ public class TotalPageItemCountFunction extends TotalItemCountFunction implement
     return false;
   }
 
+  /**
+   * Page totals depend on the pagination and therefore cannot be computed from the report's data.
+   *
+   * @return always null.
+   */
+  public PrecomputedAggregation getPrecomputedAggregation()
+  {
+    return null;
+  }
+
   /**
    * If this is the group associated with the function, store away
    * the final value
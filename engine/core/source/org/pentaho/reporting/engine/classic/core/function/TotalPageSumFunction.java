@@ -25,6 +25,7 @@ import java.io.ObjectInputStream;
 import org.pentaho.reporting.engine.classic.core.event.PageEventListener;
 import org.pentaho.reporting.engine.classic.core.event.ReportEvent;
 import org.pentaho.reporting.engine.classic.core.states.LayoutProcess;
+import org.pentaho.reporting.engine.classic.core.states.PrecomputedAggregation;
 
 /**
  * Calculates the sum of a field for an entire page.  The function will also reset by group if the
@@ -60,6 +61,16 @@ public class TotalPageSumFunction extends TotalGroupSumFunction
     return false;
   }
 
+  /**
+   * Page totals depend on the pagination and therefore cannot be computed from the report's data.
+   *
+   * @return always null.
+   */
+  public PrecomputedAggregation getPrecomputedAggregation()
+  {
+    return null;
+  }
+
   /**
    * If this is the group associated with the function, store away
    * the final value
@@ -25,6 +25,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.pentaho.reporting.engine.classic.core.metadata.parser.DataFactoryMetaDataCollection;
 import org.pentaho.reporting.libraries.resourceloader.Resource;
+import org.pentaho.reporting.libraries.resourceloader.ResourceException;
 import org.pentaho.reporting.libraries.resourceloader.ResourceManager;
 
 public class DataFactoryRegistry
@@ -34,6 +35,7 @@ public class DataFactoryRegistry
 
   private HashMap backend;
   private ResourceManager resourceManager;
+  private DeferredMetaDataSources deferredSources;
 
   public static synchronized DataFactoryRegistry getInstance()
   {
@@ -46,6 +48,13 @@ public class DataFactoryRegistry
 
   private DataFactoryRegistry()
   {
+    this.deferredSources = new DeferredMetaDataSources(new DeferredMetaDataSources.MetaDataSourceParser()
+    {
+      public void registerFromXml(final URL source) throws IOException
+      {
+        DataFactoryRegistry.this.registerFromXml(source);
+      }
+    });
     this.resourceManager = new ResourceManager();
     this.resourceManager.registerDefaults();
     this.backend = new HashMap();
@@ -60,9 +69,7 @@ public class DataFactoryRegistry
 
     try
     {
-      final Resource resource = resourceManager.createDirectly(dataFactoryMetaSource,
-          DataFactoryMetaDataCollection.class);
-      final DataFactoryMetaDataCollection typeCollection = (DataFactoryMetaDataCollection) resource.getResource();
+      final DataFactoryMetaDataCollection typeCollection = loadCollection(dataFactoryMetaSource);
       final DataFactoryMetaData[] types = typeCollection.getFactoryMetaData();
       for (int i = 0; i < types.length; i++)
       {
@@ -80,6 +87,36 @@ public class DataFactoryRegistry
     }
   }
 
+  private DataFactoryMetaDataCollection loadCollection(final URL source) throws ResourceException
+  {
+    final DataFactoryMetaDataCollection index = MetaDataIndex.readIndex(source, DataFactoryMetaDataCollection.class);
+    if (index != null)
+    {
+      return index;
+    }
+    final Resource resource = resourceManager.createDirectly(source, DataFactoryMetaDataCollection.class);
+    return (DataFactoryMetaDataCollection) resource.getResource();
+  }
+
+  /**
+   * Registers a data-factory meta-data file that is parsed when this registry is queried for the first time.
+   *
+   * @param metaDataSource the meta-data file.
+   */
+  public void registerFromXmlDeferred(final URL metaDataSource)
+  {
+    if (metaDataSource == null)
+    {
+      throw new NullPointerException();
+    }
+    deferredSources.add(metaDataSource);
+  }
+
+  private void ensureLoaded()
+  {
+    deferredSources.ensureLoaded();
+  }
+
   public void register(final DataFactoryMetaData metaData)
   {
     if (metaData == null)
@@ -91,6 +128,7 @@ public class DataFactoryRegistry
 
   public DataFactoryMetaData[] getAll()
   {
+    ensureLoaded();
     return (DataFactoryMetaData[]) backend.values().toArray(new DataFactoryMetaData[backend.size()]);
   }
 
@@ -100,6 +138,7 @@ public class DataFactoryRegistry
     {
       throw new NullPointerException();
     }
+    ensureLoaded();
     return backend.containsKey(identifier);
   }
 
@@ -109,6 +148,7 @@ public class DataFactoryRegistry
     {
       throw new NullPointerException();
     }
+    ensureLoaded();
     final DataFactoryMetaData retval = (DataFactoryMetaData) backend.get(identifier);
     if (retval == null)
     {
@@ -0,0 +1,112 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+
+package org.pentaho.reporting.engine.classic.core.metadata;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Holds the meta-data files that have been registered during the boot but have not been parsed yet. The files are
+ * parsed when the owning registry is queried for the first time. Queries from other threads wait until all pending
+ * files have been parsed.
+ *
+ * @author Thomas Morgner
+ */
+final class DeferredMetaDataSources
+{
+  public static interface MetaDataSourceParser
+  {
+    public void registerFromXml(final URL source) throws IOException;
+  }
+
+  private static final Log logger = LogFactory.getLog(DeferredMetaDataSources.class);
+
+  private final MetaDataSourceParser parser;
+  private final ArrayList<URL> sources;
+  private volatile boolean pending;
+  private int depth;
+
+  /**
+   * Creates a new, empty list of deferred sources.
+   *
+   * @param parser the registry that receives the parsed meta-data.
+   */
+  DeferredMetaDataSources(final MetaDataSourceParser parser)
+  {
+    if (parser == null)
+    {
+      throw new NullPointerException();
+    }
+    this.parser = parser;
+    this.sources = new ArrayList<URL>();
+  }
+
+  public synchronized void add(final URL source)
+  {
+    if (source == null)
+    {
+      throw new NullPointerException();
+    }
+    sources.add(source);
+    pending = true;
+  }
+
+  /**
+   * Parses all pending meta-data files. Parse errors are logged; the meta-data of a broken file will not be available.
+   */
+  public void ensureLoaded()
+  {
+    if (pending == false)
+    {
+      return;
+    }
+
+    synchronized (this)
+    {
+      // parsing may query the registry again, so we have to guard against re-entrant calls.
+      depth += 1;
+      try
+      {
+        while (sources.isEmpty() == false)
+        {
+          final URL source = sources.remove(0);
+          try
+          {
+            parser.registerFromXml(source);
+          }
+          catch (IOException e)
+          {
+            logger.error("Failed to parse deferred meta-data file " + source, e);
+          }
+        }
+      }
+      finally
+      {
+        depth -= 1;
+        if (depth == 0)
+        {
+          pending = false;
+        }
+      }
+    }
+  }
+}
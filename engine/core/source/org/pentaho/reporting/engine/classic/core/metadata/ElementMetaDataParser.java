@@ -31,6 +31,12 @@ public class ElementMetaDataParser
 {
   public static final String GLOBAL_INCLUDES_PREFIX =
       "org.pentaho.reporting.engine.classic.core.metadata.global-includes.";
+  /**
+   * If set to true, the meta-data files are only located during the boot and are parsed when the registry is
+   * queried for the first time.
+   */
+  public static final String LAZY_INITIALIZATION_KEY =
+      "org.pentaho.reporting.engine.classic.core.metadata.LazyInitialization";
 
   private static final Log logger = LogFactory.getLog(ElementMetaDataParser.class);
 
@@ -38,6 +44,11 @@ public class ElementMetaDataParser
   {
   }
 
+  private static boolean isLazyInitialization()
+  {
+    return ClassicEngineBoot.getInstance().getExtendedConfig().getBoolProperty(LAZY_INITIALIZATION_KEY, false);
+  }
+
   public static void registerNamespaces()
   {
     final String namespaceRegistryPrefix = "org.pentaho.reporting.engine.classic.core.metadata.namespaces.";
@@ -63,6 +74,11 @@ public class ElementMetaDataParser
     {
       throw new ModuleInitializeException("Error: Could not find the core report-preprocessor meta-data description file: " + source);
     }
+    if (isLazyInitialization())
+    {
+      ReportPreProcessorRegistry.getInstance().registerFromXmlDeferred(reportPreProcessorMetaSource);
+      return;
+    }
     try
     {
       ReportPreProcessorRegistry.getInstance().registerFromXml(reportPreProcessorMetaSource);
@@ -100,6 +116,11 @@ public class ElementMetaDataParser
     {
       throw new ModuleInitializeException("Error: Could not find the expression meta-data description file: " + source);
     }
+    if (isLazyInitialization())
+    {
+      ExpressionRegistry.getInstance().registerFromXmlDeferred(expressionMetaSource);
+      return;
+    }
     try
     {
       ExpressionRegistry.getInstance().registerFromXml(expressionMetaSource);
@@ -118,6 +139,11 @@ public class ElementMetaDataParser
     {
       throw new ModuleInitializeException("Error: Could not find the optional element meta-data description file: " + source);
     }
+    if (isLazyInitialization())
+    {
+      ElementTypeRegistry.getInstance().registerFromXmlDeferred(metaDataSource);
+      return;
+    }
     try
     {
       ElementTypeRegistry.getInstance().registerFromXml(metaDataSource);
@@ -137,6 +163,11 @@ public class ElementMetaDataParser
     {
       throw new ModuleInitializeException("Error: Could not find the datafactory meta-data description file");
     }
+    if (isLazyInitialization())
+    {
+      DataFactoryRegistry.getInstance().registerFromXmlDeferred(expressionMetaSource);
+      return;
+    }
     try
     {
       DataFactoryRegistry.getInstance().registerFromXml(expressionMetaSource);
@@ -25,6 +25,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.pentaho.reporting.engine.classic.core.metadata.parser.ElementTypeCollection;
 import org.pentaho.reporting.libraries.resourceloader.Resource;
+import org.pentaho.reporting.libraries.resourceloader.ResourceException;
 import org.pentaho.reporting.libraries.resourceloader.ResourceManager;
 
 public final class ElementTypeRegistry
@@ -34,6 +35,7 @@ public final class ElementTypeRegistry
   private HashMap<String, DefaultElementMetaData> backend;
   private static ElementTypeRegistry instance;
   private ResourceManager resourceManager;
+  private DeferredMetaDataSources deferredSources;
 
   public static synchronized ElementTypeRegistry getInstance()
   {
@@ -46,6 +48,13 @@ public final class ElementTypeRegistry
 
   private ElementTypeRegistry()
   {
+    this.deferredSources = new DeferredMetaDataSources(new DeferredMetaDataSources.MetaDataSourceParser()
+    {
+      public void registerFromXml(final URL source) throws IOException
+      {
+        ElementTypeRegistry.this.registerFromXml(source);
+      }
+    });
     this.resourceManager = new ResourceManager();
     this.resourceManager.registerDefaults();
     this.backend = new HashMap<String, DefaultElementMetaData>();
@@ -61,8 +70,7 @@ public final class ElementTypeRegistry
 
     try
     {
-      final Resource resource = resourceManager.createDirectly(metaDataSource, ElementTypeCollection.class);
-      final ElementTypeCollection typeCollection = (ElementTypeCollection) resource.getResource();
+      final ElementTypeCollection typeCollection = loadCollection(metaDataSource);
       final ElementMetaData[] types = typeCollection.getElementTypes();
       for (int i = 0; i < types.length; i++)
       {
@@ -77,6 +85,36 @@ public final class ElementTypeRegistry
     }
   }
 
+  private ElementTypeCollection loadCollection(final URL source) throws ResourceException
+  {
+    final ElementTypeCollection index = MetaDataIndex.readIndex(source, ElementTypeCollection.class);
+    if (index != null)
+    {
+      return index;
+    }
+    final Resource resource = resourceManager.createDirectly(source, ElementTypeCollection.class);
+    return (ElementTypeCollection) resource.getResource();
+  }
+
+  /**
+   * Registers an element meta-data file that is parsed when this registry is queried for the first time.
+   *
+   * @param metaDataSource the meta-data file.
+   */
+  public void registerFromXmlDeferred(final URL metaDataSource)
+  {
+    if (metaDataSource == null)
+    {
+      throw new NullPointerException();
+    }
+    deferredSources.add(metaDataSource);
+  }
+
+  private void ensureLoaded()
+  {
+    deferredSources.ensureLoaded();
+  }
+
   public void registerElement(final ElementMetaData metaData)
   {
     if (metaData == null)
@@ -97,6 +135,7 @@ public final class ElementTypeRegistry
     {
       throw new NullPointerException();
     }
+    ensureLoaded();
     final DefaultElementMetaData retval = backend.get(identifier);
     if (retval == null)
     {
@@ -108,6 +147,7 @@ public final class ElementTypeRegistry
 
   public ElementMetaData[] getAllElementTypes()
   {
+    ensureLoaded();
     return backend.values().toArray(new ElementMetaData[backend.size()]);
   }
 
@@ -117,6 +157,7 @@ public final class ElementTypeRegistry
     {
       throw new NullPointerException();
     }
+    ensureLoaded();
     return backend.containsKey(identifier);
   }
 
@@ -126,6 +167,7 @@ public final class ElementTypeRegistry
     {
       throw new NullPointerException();
     }
+    ensureLoaded();
     final ElementMetaData retval = backend.get(identifier);
     if (retval == null)
     {
@@ -26,6 +26,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.pentaho.reporting.engine.classic.core.metadata.parser.ExpressionMetaDataCollection;
 import org.pentaho.reporting.libraries.resourceloader.Resource;
+import org.pentaho.reporting.libraries.resourceloader.ResourceException;
 import org.pentaho.reporting.libraries.resourceloader.ResourceManager;
 
 public class ExpressionRegistry
@@ -35,6 +36,7 @@ public class ExpressionRegistry
 
   private ConcurrentHashMap<String,ExpressionMetaData> backend;
   private ResourceManager resourceManager;
+  private DeferredMetaDataSources deferredSources;
 
   public static synchronized ExpressionRegistry getInstance()
   {
@@ -47,6 +49,13 @@ public class ExpressionRegistry
 
   private ExpressionRegistry()
   {
+    this.deferredSources = new DeferredMetaDataSources(new DeferredMetaDataSources.MetaDataSourceParser()
+    {
+      public void registerFromXml(final URL source) throws IOException
+      {
+        ExpressionRegistry.this.registerFromXml(source);
+      }
+    });
     this.resourceManager = new ResourceManager();
     this.resourceManager.registerDefaults();
     this.backend = new ConcurrentHashMap<String,ExpressionMetaData>();
@@ -60,9 +69,7 @@ public class ExpressionRegistry
     }
     try
     {
-      final Resource resource = resourceManager.createDirectly(expressionMetaSource,
-          ExpressionMetaDataCollection.class);
-      final ExpressionMetaDataCollection typeCollection = (ExpressionMetaDataCollection) resource.getResource();
+      final ExpressionMetaDataCollection typeCollection = loadCollection(expressionMetaSource);
       final ExpressionMetaData[] types = typeCollection.getExpressionMetaData();
       for (int i = 0; i < types.length; i++)
       {
@@ -79,6 +86,36 @@ public class ExpressionRegistry
     }
   }
 
+  private ExpressionMetaDataCollection loadCollection(final URL source) throws ResourceException
+  {
+    final ExpressionMetaDataCollection index = MetaDataIndex.readIndex(source, ExpressionMetaDataCollection.class);
+    if (index != null)
+    {
+      return index;
+    }
+    final Resource resource = resourceManager.createDirectly(source, ExpressionMetaDataCollection.class);
+    return (ExpressionMetaDataCollection) resource.getResource();
+  }
+
+  /**
+   * Registers an expression meta-data file that is parsed when this registry is queried for the first time.
+   *
+   * @param metaDataSource the meta-data file.
+   */
+  public void registerFromXmlDeferred(final URL metaDataSource)
+  {
+    if (metaDataSource == null)
+    {
+      throw new NullPointerException();
+    }
+    deferredSources.add(metaDataSource);
+  }
+
+  private void ensureLoaded()
+  {
+    deferredSources.ensureLoaded();
+  }
+
   public void registerExpression(final ExpressionMetaData metaData)
   {
     if (metaData == null)
@@ -96,6 +133,7 @@ public class ExpressionRegistry
 
   public ExpressionMetaData[] getAllExpressionMetaDatas()
   {
+    ensureLoaded();
     return backend.values().toArray(new ExpressionMetaData[backend.size()]);
   }
 
@@ -105,6 +143,7 @@ public class ExpressionRegistry
     {
       throw new NullPointerException();
     }
+    ensureLoaded();
     return backend.containsKey(identifier);
   }
 
@@ -114,6 +153,7 @@ public class ExpressionRegistry
     {
       throw new NullPointerException();
     }
+    ensureLoaded();
     final ExpressionMetaData retval = backend.get(identifier);
     if (retval == null)
     {
@@ -0,0 +1,321 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+
+package org.pentaho.reporting.engine.classic.core.metadata;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.reporting.engine.classic.core.ClassicEngineBoot;
+import org.pentaho.reporting.engine.classic.core.ClassicEngineInfo;
+import org.pentaho.reporting.engine.classic.core.metadata.parser.ElementTypeCollection;
+import org.pentaho.reporting.libraries.base.config.Configuration;
+import org.pentaho.reporting.libraries.base.util.StringUtils;
+import org.pentaho.reporting.libraries.resourceloader.ResourceException;
+import org.pentaho.reporting.libraries.resourceloader.ResourceKey;
+import org.pentaho.reporting.libraries.resourceloader.ResourceManager;
+
+/**
+ * Reads and writes the precompiled form of a meta-data file. The index of a meta-data file is the serialized parse
+ * result of the file and is stored next to it, using the same name with an added ".index" suffix. Reading the index
+ * skips the XML parsing and the resolving of the attribute, style and property definitions during the boot.
+ * <p/>
+ * The index is generated at build time and is only valid for the engine version that wrote it and for the exact XML
+ * content it has been created from. Each index starts with a header holding the engine version and a checksum of the
+ * XML file; indexes that do not match are ignored and the XML file is parsed as usual. Element meta-data files also
+ * merge the global includes configured by the loaded modules, so their header holds a checksum of the locations and
+ * contents of these includes as well.
+ *
+ * @author Thomas Morgner
+ */
+public final class MetaDataIndex
+{
+  public static final String INDEX_SUFFIX = ".index";
+  public static final String USE_INDEX_KEY = "org.pentaho.reporting.engine.classic.core.metadata.UseMetaDataIndex";
+
+  private static final Log logger = LogFactory.getLog(MetaDataIndex.class);
+  private static final byte[] MAGIC = new byte[]{'P', 'R', 'D', '-', 'M', 'E', 'T', 'A'};
+  private static final int FORMAT_VERSION = 2;
+
+  private MetaDataIndex()
+  {
+  }
+
+  private static String getEngineVersion()
+  {
+    final ClassicEngineInfo info = ClassicEngineInfo.getInstance();
+    return info.getName() + ' ' + info.getVersion();
+  }
+
+  private static boolean isIndexEnabled()
+  {
+    return ClassicEngineBoot.getInstance().getExtendedConfig().getBoolProperty(USE_INDEX_KEY, true);
+  }
+
+  /**
+   * Returns the location of the index for the given meta-data file.
+   *
+   * @param source the meta-data file.
+   * @return the index location.
+   * @throws MalformedURLException if the location cannot be expressed as URL.
+   */
+  public static URL getIndexLocation(final URL source) throws MalformedURLException
+  {
+    if (source == null)
+    {
+      throw new NullPointerException();
+    }
+    return new URL(source.toExternalForm() + INDEX_SUFFIX);
+  }
+
+  /**
+   * Computes the checksum of the given meta-data file.
+   *
+   * @param source the meta-data file.
+   * @return the CRC32 checksum of the file's content.
+   * @throws IOException if the file could not be read.
+   */
+  public static long computeChecksum(final URL source) throws IOException
+  {
+    if (source == null)
+    {
+      throw new NullPointerException();
+    }
+
+    final CRC32 crc = new CRC32();
+    final InputStream in = source.openStream();
+    try
+    {
+      final byte[] buffer = new byte[8192];
+      int length;
+      while ((length = in.read(buffer)) != -1)
+      {
+        crc.update(buffer, 0, length);
+      }
+    }
+    finally
+    {
+      in.close();
+    }
+    return crc.getValue();
+  }
+
+  /**
+   * Computes the checksum of the global includes that are merged into element meta-data files. The checksum covers
+   * the configured locations and the content found at each location, so that modules adding or changing global
+   * attribute groups invalidate the indexes of the element meta-data files.
+   *
+   * @param source the element meta-data file against which relative locations are resolved.
+   * @return the CRC32 checksum of the global includes.
+   * @throws IOException if the location of the meta-data file is invalid.
+   */
+  public static long computeGlobalIncludesChecksum(final URL source) throws IOException
+  {
+    if (source == null)
+    {
+      throw new NullPointerException();
+    }
+
+    final Configuration configuration = ClassicEngineBoot.getInstance().getGlobalConfig();
+    final TreeSet<String> hrefs = new TreeSet<String>();
+    final Iterator keys = configuration.findPropertyKeys(ElementMetaDataParser.GLOBAL_INCLUDES_PREFIX);
+    while (keys.hasNext())
+    {
+      final String key = (String) keys.next();
+      final String href = configuration.getConfigProperty(key);
+      if (StringUtils.isEmpty(href, true) == false)
+      {
+        hrefs.add(href);
+      }
+    }
+
+    final CRC32 crc = new CRC32();
+    final ResourceManager resourceManager = new ResourceManager();
+    final ResourceKey context;
+    try
+    {
+      context = resourceManager.createKey(source);
+    }
+    catch (ResourceException e)
+    {
+      throw new IOException("Unable to create a resource key for " + source, e);
+    }
+
+    for (final String href : hrefs)
+    {
+      crc.update(href.getBytes("UTF-8"));
+      try
+      {
+        final ResourceKey key = resourceManager.deriveKey(context, href);
+        crc.update(resourceManager.load(key).getResource(resourceManager));
+      }
+      catch (ResourceException e)
+      {
+        // the parser skips global includes that cannot be loaded, so these only contribute their location.
+        logger.debug("Unable to load global include " + href, e);
+      }
+    }
+    return crc.getValue();
+  }
+
+  private static boolean isElementCollection(final Class type)
+  {
+    return ElementTypeCollection.class.isAssignableFrom(type);
+  }
+
+  /**
+   * Writes the index for the given meta-data file.
+   *
+   * @param source     the meta-data file the collection has been parsed from.
+   * @param collection the parse result.
+   * @param out        the target stream. The stream is not closed.
+   * @throws IOException if the source could not be read or the collection could not be serialized.
+   */
+  public static void writeIndex(final URL source,
+                                final Serializable collection,
+                                final OutputStream out) throws IOException
+  {
+    if (collection == null)
+    {
+      throw new NullPointerException();
+    }
+    if (out == null)
+    {
+      throw new NullPointerException();
+    }
+
+    final long checksum = computeChecksum(source);
+    final long includesChecksum;
+    if (isElementCollection(collection.getClass()))
+    {
+      includesChecksum = computeGlobalIncludesChecksum(source);
+    }
+    else
+    {
+      includesChecksum = 0;
+    }
+    final BufferedOutputStream bufferedOut = new BufferedOutputStream(out);
+    final DataOutputStream dataOut = new DataOutputStream(bufferedOut);
+    dataOut.write(MAGIC);
+    dataOut.writeInt(FORMAT_VERSION);
+    dataOut.writeUTF(getEngineVersion());
+    dataOut.writeLong(checksum);
+    dataOut.writeLong(includesChecksum);
+
+    final ObjectOutputStream objectOut = new ObjectOutputStream(dataOut);
+    objectOut.writeObject(collection);
+    objectOut.flush();
+    bufferedOut.flush();
+  }
+
+  /**
+   * Reads the index of the given meta-data file. Returns null if the index is disabled, does not exist, or if it does
+   * not match the engine version or the content of the meta-data file. Broken indexes are logged and ignored, as the
+   * caller can always fall back to parsing the XML file.
+   *
+   * @param source the meta-data file.
+   * @param type   the expected type of the parse result.
+   * @return the parse result or null.
+   */
+  public static <T> T readIndex(final URL source, final Class<T> type)
+  {
+    if (source == null)
+    {
+      throw new NullPointerException();
+    }
+    if (type == null)
+    {
+      throw new NullPointerException();
+    }
+    if (isIndexEnabled() == false)
+    {
+      return null;
+    }
+
+    try
+    {
+      final InputStream in;
+      try
+      {
+        in = getIndexLocation(source).openStream();
+      }
+      catch (FileNotFoundException fnfe)
+      {
+        return null;
+      }
+
+      try
+      {
+        final DataInputStream dataIn = new DataInputStream(new BufferedInputStream(in));
+        final byte[] magic = new byte[MAGIC.length];
+        dataIn.readFully(magic);
+        if (Arrays.equals(MAGIC, magic) == false ||
+            dataIn.readInt() != FORMAT_VERSION ||
+            getEngineVersion().equals(dataIn.readUTF()) == false)
+        {
+          logger.debug("Ignoring meta-data index written by a different engine version: " + source);
+          return null;
+        }
+        if (dataIn.readLong() != computeChecksum(source))
+        {
+          logger.debug("Ignoring outdated meta-data index: " + source);
+          return null;
+        }
+        final long includesChecksum = dataIn.readLong();
+        if (isElementCollection(type) && includesChecksum != computeGlobalIncludesChecksum(source))
+        {
+          logger.debug("Ignoring meta-data index created with different global includes: " + source);
+          return null;
+        }
+
+        final ObjectInputStream objectIn = new ObjectInputStream(dataIn);
+        final Object o = objectIn.readObject();
+        if (type.isInstance(o) == false)
+        {
+          return null;
+        }
+        return type.cast(o);
+      }
+      finally
+      {
+        in.close();
+      }
+    }
+    catch (Exception e)
+    {
+      logger.warn("Failed to read the meta-data index for " + source + ". Parsing the XML file instead.", e);
+      return null;
+    }
+  }
+}
@@ -26,6 +26,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.pentaho.reporting.engine.classic.core.metadata.parser.ReportPreProcessorMetaDataCollection;
 import org.pentaho.reporting.libraries.resourceloader.Resource;
+import org.pentaho.reporting.libraries.resourceloader.ResourceException;
 import org.pentaho.reporting.libraries.resourceloader.ResourceManager;
 
 public class ReportPreProcessorRegistry
@@ -35,6 +36,7 @@ public class ReportPreProcessorRegistry
 
   private HashMap<String,ReportPreProcessorMetaData> backend;
   private ResourceManager resourceManager;
+  private DeferredMetaDataSources deferredSources;
 
   public static synchronized ReportPreProcessorRegistry getInstance()
   {
@@ -47,6 +49,13 @@ public class ReportPreProcessorRegistry
 
   private ReportPreProcessorRegistry()
   {
+    this.deferredSources = new DeferredMetaDataSources(new DeferredMetaDataSources.MetaDataSourceParser()
+    {
+      public void registerFromXml(final URL source) throws IOException
+      {
+        ReportPreProcessorRegistry.this.registerFromXml(source);
+      }
+    });
     this.resourceManager = new ResourceManager();
     this.resourceManager.registerDefaults();
     this.backend = new HashMap<String, ReportPreProcessorMetaData>();
@@ -61,9 +70,7 @@ public class ReportPreProcessorRegistry
 
     try
     {
-      final Resource resource = resourceManager.createDirectly(expressionMetaSource,
-          ReportPreProcessorMetaDataCollection.class);
-      final ReportPreProcessorMetaDataCollection typeCollection = (ReportPreProcessorMetaDataCollection) resource.getResource();
+      final ReportPreProcessorMetaDataCollection typeCollection = loadCollection(expressionMetaSource);
       final ReportPreProcessorMetaData[] types = typeCollection.getReportPreProcessorMetaData();
       for (int i = 0; i < types.length; i++)
       {
@@ -81,6 +88,36 @@ public class ReportPreProcessorRegistry
     }
   }
 
+  private ReportPreProcessorMetaDataCollection loadCollection(final URL source) throws ResourceException
+  {
+    final ReportPreProcessorMetaDataCollection index = MetaDataIndex.readIndex(source, ReportPreProcessorMetaDataCollection.class);
+    if (index != null)
+    {
+      return index;
+    }
+    final Resource resource = resourceManager.createDirectly(source, ReportPreProcessorMetaDataCollection.class);
+    return (ReportPreProcessorMetaDataCollection) resource.getResource();
+  }
+
+  /**
+   * Registers a report-preprocessor meta-data file that is parsed when this registry is queried for the first time.
+   *
+   * @param metaDataSource the meta-data file.
+   */
+  public void registerFromXmlDeferred(final URL metaDataSource)
+  {
+    if (metaDataSource == null)
+    {
+      throw new NullPointerException();
+    }
+    deferredSources.add(metaDataSource);
+  }
+
+  private void ensureLoaded()
+  {
+    deferredSources.ensureLoaded();
+  }
+
   public void registerReportPreProcessor(final ReportPreProcessorMetaData metaData)
   {
     if (metaData == null)
@@ -98,6 +135,7 @@ public class ReportPreProcessorRegistry
 
   public ReportPreProcessorMetaData[] getAllReportPreProcessorMetaDatas()
   {
+    ensureLoaded();
     return backend.values().toArray(new ReportPreProcessorMetaData[backend.size()]);
   }
 
@@ -107,6 +145,7 @@ public class ReportPreProcessorRegistry
     {
       throw new NullPointerException();
     }
+    ensureLoaded();
     return backend.containsKey(identifier);
   }
 
@@ -116,6 +155,7 @@ public class ReportPreProcessorRegistry
     {
       throw new NullPointerException();
     }
+    ensureLoaded();
     final ReportPreProcessorMetaData retval = backend.get(identifier);
     if (retval == null)
     {
@@ -23,6 +23,8 @@ import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
 import java.util.HashMap;
 
+import org.pentaho.reporting.engine.classic.core.util.beans.BeanPropertyIndex;
+
 public class SharedBeanInfo
 {
   private Class beanClass;
@@ -39,20 +41,13 @@ public class SharedBeanInfo
     return beanClass;
   }
 
-  public BeanInfo getBeanInfo()
+  public synchronized BeanInfo getBeanInfo()
   {
     if (beanInfo == null)
     {
-      this.propertyDescriptors = new HashMap<String, PropertyDescriptor>();
       try
       {
         beanInfo = Introspector.getBeanInfo(beanClass);
-        final PropertyDescriptor[] descriptors = beanInfo.getPropertyDescriptors();
-        for (int i = 0; i < descriptors.length; i++)
-        {
-          final PropertyDescriptor descriptor = descriptors[i];
-          propertyDescriptors.put(descriptor.getName(), descriptor);
-        }
       }
       catch (IntrospectionException e)
       {
@@ -62,12 +57,27 @@ public class SharedBeanInfo
     return beanInfo;
   }
 
-  public PropertyDescriptor getPropertyDescriptor(final String name)
+  public synchronized PropertyDescriptor getPropertyDescriptor(final String name)
   {
-    if (beanInfo == null)
+    if (propertyDescriptors == null)
     {
-      // initialize propery map ..
-      getBeanInfo();
+      // initialize the property map from the bean-property index, so that a full introspection is only needed
+      // when someone asks for the complete bean-info.
+      final HashMap<String, PropertyDescriptor> map = new HashMap<String, PropertyDescriptor>();
+      try
+      {
+        final PropertyDescriptor[] descriptors = BeanPropertyIndex.getInstance().getPropertyDescriptors(beanClass);
+        for (int i = 0; i < descriptors.length; i++)
+        {
+          final PropertyDescriptor descriptor = descriptors[i];
+          map.put(descriptor.getName(), descriptor);
+        }
+      }
+      catch (IntrospectionException e)
+      {
+        throw new IllegalStateException("Cannot introspect specified " + beanClass);
+      }
+      propertyDescriptors = map;
     }
     return propertyDescriptors.get(name);
   }
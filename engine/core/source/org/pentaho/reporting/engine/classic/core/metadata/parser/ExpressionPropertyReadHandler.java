@@ -70,6 +70,11 @@ public class ExpressionPropertyReadHandler extends AbstractXmlReadHandler
     {
       throw new ParseException("Attribute 'name' is undefined", getLocator());
     }
+    final String bundleFromAttributes = attrs.getValue(getUri(), "bundle-name"); // NON-NLS
+    if (bundleFromAttributes != null)
+    {
+      bundleLocation = bundleFromAttributes;
+    }
 
     experimental = "true".equals(attrs.getValue(getUri(), "experimental")); // NON-NLS
     compatibilityLevel = ReportParserUtil.parseVersion(attrs.getValue(getUri(), "compatibility-level"));
@@ -4,7 +4,7 @@ import java.sql.Connection;
 
 import org.pentaho.reporting.engine.classic.core.DataRow;
 
-public class DefaultParametrizationProvider implements ParametrizationProvider
+public class DefaultParametrizationProvider implements LimitingParametrizationProvider
 {
   private SQLParameterLookupParser parser;
 
@@ -25,4 +25,11 @@ public class DefaultParametrizationProvider implements ParametrizationProvider
   {
     return parser.getFields();
   }
+
+  public String rewriteQueryForLimit(final Connection connection,
+                                     final String query,
+                                     final int limit)
+  {
+    return QueryLimitRewriter.rewrite(connection, query, limit);
+  }
 }
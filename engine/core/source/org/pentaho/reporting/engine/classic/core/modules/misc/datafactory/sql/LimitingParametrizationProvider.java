@@ -0,0 +1,40 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+
+package org.pentaho.reporting.engine.classic.core.modules.misc.datafactory.sql;
+
+import java.sql.Connection;
+
+/**
+ * A parametrization provider that is able to push the report's query-limit into the SQL query itself, so that the
+ * database does not compute and transfer rows that are never read.
+ *
+ * @author Thomas Morgner
+ */
+public interface LimitingParametrizationProvider extends ParametrizationProvider
+{
+  /**
+   * Rewrites the already parametrized query so that it returns at most <code>limit</code> rows. Implementations
+   * must return the query unchanged if they cannot rewrite it safely.
+   *
+   * @param connection the connection on which the query will be executed.
+   * @param query      the parametrized query.
+   * @param limit      the maximum number of rows, always greater than zero.
+   * @return the rewritten query.
+   */
+  public String rewriteQueryForLimit(Connection connection, String query, int limit);
+}
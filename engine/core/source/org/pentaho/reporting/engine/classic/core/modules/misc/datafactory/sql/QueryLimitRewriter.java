@@ -0,0 +1,383 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+
+package org.pentaho.reporting.engine.classic.core.modules.misc.datafactory.sql;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Rewrites a select statement so that the database only returns the first rows of the result. The original query is
+ * wrapped into a sub-select and the row limit is applied with the syntax of the database product. The closing
+ * parenthesis starts on a new line, so that a trailing line comment in the original query cannot swallow it. Queries for
+ * unknown databases are not rewritten; for them the limit is only passed to the driver via
+ * <code>Statement.setMaxRows</code>.
+ * <p/>
+ * A sub-select fails if two of its columns share the same name, and columns without an explicit name may receive a
+ * different generated label once wrapped. Therefore a query is only rewritten if every entry of its select-list is a
+ * plain column reference or carries an alias, and all resulting column names are distinct.
+ *
+ * @author Thomas Morgner
+ */
+public final class QueryLimitRewriter
+{
+  private static final Log logger = LogFactory.getLog(QueryLimitRewriter.class);
+
+  private static final String ALIAS = "pentaho_limited_query";
+
+  private static final int DIALECT_NONE = 0;
+  private static final int DIALECT_LIMIT = 1;
+  private static final int DIALECT_ROWNUM = 2;
+  private static final int DIALECT_FETCH_FIRST = 3;
+
+  private static final String IDENTIFIER = "(?:[A-Za-z_][A-Za-z0-9_$#]*|\"[^\"]+\"|`[^`]+`|\\[[^\\]]+\\])";
+  private static final Pattern COLUMN_REFERENCE =
+      Pattern.compile("(?:" + IDENTIFIER + "\\s*\\.\\s*)*(" + IDENTIFIER + ")");
+  private static final Pattern ALIASED_COLUMN =
+      Pattern.compile("(.*?\\S)\\s+(?:(AS)\\s+)?(" + IDENTIFIER + ")", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+  private QueryLimitRewriter()
+  {
+  }
+
+  /**
+   * Rewrites the query for the database behind the given connection.
+   *
+   * @param connection the connection.
+   * @param query      the translated query.
+   * @param limit      the maximum number of rows.
+   * @return the rewritten query or the original query if it cannot be rewritten safely.
+   */
+  public static String rewrite(final Connection connection,
+                               final String query,
+                               final int limit)
+  {
+    try
+    {
+      return rewrite(connection.getMetaData().getDatabaseProductName(), query, limit);
+    }
+    catch (SQLException e)
+    {
+      logger.debug("Unable to query the database product name, query-limit is not pushed into the query.", e);
+      return query;
+    }
+  }
+
+  /**
+   * Rewrites the query for the given database product.
+   *
+   * @param databaseProductName the product name as returned by the JDBC driver.
+   * @param query               the translated query.
+   * @param limit               the maximum number of rows.
+   * @return the rewritten query or the original query if it cannot be rewritten safely.
+   */
+  public static String rewrite(final String databaseProductName,
+                               final String query,
+                               final int limit)
+  {
+    if (limit <= 0 || query == null || databaseProductName == null)
+    {
+      return query;
+    }
+
+    final String trimmedQuery = stripTrailingSemicolon(query.trim());
+    if (isSelectStatement(trimmedQuery) == false)
+    {
+      return query;
+    }
+
+    final int dialect = getDialect(databaseProductName);
+    if (dialect == DIALECT_NONE)
+    {
+      // SQL-Server, Sybase and friends do not accept an ORDER BY inside a sub-select, so we
+      // leave the query alone and rely on Statement.setMaxRows(..).
+      return query;
+    }
+    if (isSelectListAliasSafe(trimmedQuery) == false)
+    {
+      return query;
+    }
+
+    switch (dialect)
+    {
+      case DIALECT_LIMIT:
+        return "SELECT * FROM (" + trimmedQuery + "\n) " + ALIAS + " LIMIT " + limit;
+      case DIALECT_ROWNUM:
+        // ROWNUM is assigned after the inner query has been ordered.
+        return "SELECT * FROM (" + trimmedQuery + "\n) WHERE ROWNUM <= " + limit;
+      case DIALECT_FETCH_FIRST:
+        return "SELECT * FROM (" + trimmedQuery + "\n) " + ALIAS + " FETCH FIRST " + limit + " ROWS ONLY";
+      default:
+        throw new IllegalStateException();
+    }
+  }
+
+  /**
+   * Maps the product name reported by the JDBC driver to the limit syntax of the database. DB2 drivers report the
+   * platform as part of the product name (for instance "DB2/LINUXX8664"), so DB2 is matched by its prefix.
+   *
+   * @param databaseProductName the product name.
+   * @return the dialect constant.
+   */
+  private static int getDialect(final String databaseProductName)
+  {
+    final String product = databaseProductName.trim();
+    if ("MySQL".equalsIgnoreCase(product) ||
+        "MariaDB".equalsIgnoreCase(product) ||
+        "PostgreSQL".equalsIgnoreCase(product) ||
+        "H2".equalsIgnoreCase(product) ||
+        "HSQL Database Engine".equalsIgnoreCase(product) ||
+        "SQLite".equalsIgnoreCase(product) ||
+        "Vertica Database".equalsIgnoreCase(product) ||
+        "MonetDB".equalsIgnoreCase(product))
+    {
+      return DIALECT_LIMIT;
+    }
+    if ("Oracle".equalsIgnoreCase(product))
+    {
+      return DIALECT_ROWNUM;
+    }
+    if ("Apache Derby".equalsIgnoreCase(product) ||
+        "DB2".equalsIgnoreCase(product) ||
+        product.toUpperCase(Locale.ENGLISH).startsWith("DB2/"))
+    {
+      return DIALECT_FETCH_FIRST;
+    }
+    return DIALECT_NONE;
+  }
+
+  /**
+   * Checks whether the select-list of the given query produces explicit and distinct column names. Entries like
+   * <code>*</code>, <code>t.*</code> or expressions without an alias may produce duplicate or generated column names
+   * and make the query unsafe to wrap.
+   *
+   * @param query the trimmed select statement.
+   * @return true, if the query can be wrapped into a sub-select without changing its column names.
+   */
+  static boolean isSelectListAliasSafe(final String query)
+  {
+    final ArrayList<String> items = parseSelectList(query);
+    if (items == null || items.isEmpty())
+    {
+      return false;
+    }
+
+    final HashSet<String> names = new HashSet<String>();
+    for (int i = 0; i < items.size(); i++)
+    {
+      final String name = computeColumnName(items.get(i));
+      if (name == null)
+      {
+        return false;
+      }
+      // compare case-insensitive, as most databases fold unquoted names.
+      if (names.add(name.toUpperCase(Locale.ENGLISH)) == false)
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static String computeColumnName(final String item)
+  {
+    final Matcher columnReference = COLUMN_REFERENCE.matcher(item);
+    if (columnReference.matches())
+    {
+      return unquote(columnReference.group(1));
+    }
+
+    final Matcher aliasedColumn = ALIASED_COLUMN.matcher(item);
+    if (aliasedColumn.matches() == false)
+    {
+      return null;
+    }
+    final String alias = aliasedColumn.group(3);
+    if (aliasedColumn.group(2) != null)
+    {
+      return unquote(alias);
+    }
+
+    // without AS, only accept aliases that follow a column reference or a function call. Otherwise
+    // the trailing word may as well be a keyword like the END of a CASE expression.
+    final String expression = aliasedColumn.group(1);
+    if (COLUMN_REFERENCE.matcher(expression).matches() || expression.endsWith(")"))
+    {
+      return unquote(alias);
+    }
+    return null;
+  }
+
+  private static String unquote(final String identifier)
+  {
+    final char first = identifier.charAt(0);
+    if (first == '"' || first == '`' || first == '[')
+    {
+      return identifier.substring(1, identifier.length() - 1);
+    }
+    return identifier;
+  }
+
+  /**
+   * Splits the select-list of the query into its entries. Comments are removed, nested parenthesis and quoted text are
+   * kept intact.
+   *
+   * @param query the select statement.
+   * @return the entries of the select-list or null, if the query could not be parsed.
+   */
+  private static ArrayList<String> parseSelectList(final String query)
+  {
+    final ArrayList<String> items = new ArrayList<String>();
+    final StringBuilder item = new StringBuilder();
+    final int length = query.length();
+    int depth = 0;
+    int i = 6;
+    while (i < length)
+    {
+      final char c = query.charAt(i);
+      if (c == '\'' || c == '"' || c == '`')
+      {
+        final int end = query.indexOf(c, i + 1);
+        if (end == -1)
+        {
+          return null;
+        }
+        item.append(query, i, end + 1);
+        i = end + 1;
+        continue;
+      }
+      if (c == '-' && query.startsWith("--", i))
+      {
+        final int end = query.indexOf('\n', i);
+        if (end == -1)
+        {
+          return null;
+        }
+        item.append(' ');
+        i = end + 1;
+        continue;
+      }
+      if (c == '/' && query.startsWith("/*", i))
+      {
+        final int end = query.indexOf("*/", i + 2);
+        if (end == -1)
+        {
+          return null;
+        }
+        item.append(' ');
+        i = end + 2;
+        continue;
+      }
+
+      if (c == '(')
+      {
+        depth += 1;
+      }
+      else if (c == ')')
+      {
+        depth -= 1;
+        if (depth < 0)
+        {
+          return null;
+        }
+      }
+      else if (depth == 0)
+      {
+        if (c == ',')
+        {
+          items.add(item.toString().trim());
+          item.setLength(0);
+          i += 1;
+          continue;
+        }
+        if (isKeyword(query, i, "from"))
+        {
+          break;
+        }
+      }
+      item.append(c);
+      i += 1;
+    }
+
+    items.add(item.toString().trim());
+
+    final String first = items.get(0);
+    if (isKeyword(first, 0, "distinct"))
+    {
+      items.set(0, first.substring(8).trim());
+    }
+    else if (isKeyword(first, 0, "all"))
+    {
+      items.set(0, first.substring(3).trim());
+    }
+    return items;
+  }
+
+  private static boolean isKeyword(final String text, final int position, final String keyword)
+  {
+    final int end = position + keyword.length();
+    if (end > text.length() || text.regionMatches(true, position, keyword, 0, keyword.length()) == false)
+    {
+      return false;
+    }
+    if (position > 0 && isIdentifierPart(text.charAt(position - 1)))
+    {
+      return false;
+    }
+    return end == text.length() || isIdentifierPart(text.charAt(end)) == false;
+  }
+
+  private static boolean isIdentifierPart(final char c)
+  {
+    return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '#' || c == '.';
+  }
+
+  private static String stripTrailingSemicolon(final String query)
+  {
+    if (query.endsWith(";"))
+    {
+      return query.substring(0, query.length() - 1).trim();
+    }
+    return query;
+  }
+
+  private static boolean isSelectStatement(final String query)
+  {
+    if (query.length() < 7)
+    {
+      return false;
+    }
+    if (query.regionMatches(true, 0, "select", 0, 6) == false)
+    {
+      return false;
+    }
+    if (Character.isWhitespace(query.charAt(6)) == false && query.charAt(6) != '*')
+    {
+      return false;
+    }
+    // multiple statements cannot be wrapped.
+    return query.indexOf(';') == -1;
+  }
+}
@@ -40,6 +40,7 @@ import org.pentaho.reporting.engine.classic.core.DataRow;
 import org.pentaho.reporting.engine.classic.core.ReportDataFactoryException;
 import org.pentaho.reporting.libraries.base.config.Configuration;
 import org.pentaho.reporting.libraries.base.util.ObjectUtilities;
+import org.pentaho.reporting.libraries.xmlns.common.ParserUtil;
 
 /**
  * @noinspection AssignmentToCollectionOrArrayFieldFromParameter
@@ -50,6 +51,12 @@ public class SimpleSQLReportDataFactory extends AbstractDataFactory
   private ConnectionProvider connectionProvider;
   private static final Log logger = LogFactory.getLog(SimpleSQLReportDataFactory.class);
 
+  private static final String QUERY_LIMIT_PUSHDOWN_KEY =
+      "org.pentaho.reporting.engine.classic.core.modules.misc.datafactory.sql.QueryLimitPushdown";
+  private static final String FETCH_SIZE_KEY =
+      "org.pentaho.reporting.engine.classic.core.modules.misc.datafactory.sql.FetchSize";
+  private static final int MAX_LIMITED_FETCH_SIZE = 1000;
+
   private boolean columnNameMapping;
   private static final String COLUMN_NAME_MAPPING_KEY =
       "org.pentaho.reporting.engine.classic.core.modules.misc.datafactory.sql.ColumnNameMapping"; //$NON-NLS-1$
@@ -194,8 +201,8 @@ public class SimpleSQLReportDataFactory extends AbstractDataFactory
 
       final Connection connection = getConnection(parameters);
       final ParametrizationProvider parametrizationProvider = factory.create(connection);
-      final String translatedQuery = parametrizationProvider.rewriteQueryForParametrization
-          (connection, query, parameters);
+      final String translatedQuery = rewriteQueryForLimit(connection, parametrizationProvider,
+          parametrizationProvider.rewriteQueryForParametrization(connection, query, parameters), parameters);
       final String[] preparedParameterNames = parametrizationProvider.getPreparedParameterNames();
       if (logger.isDebugEnabled())
       {
@@ -215,6 +222,61 @@ public class SimpleSQLReportDataFactory extends AbstractDataFactory
     }
   }
 
+  /**
+   * Pushes the report's query-limit into the query itself, if the parametrization provider supports it. Without that,
+   * the database may compute the complete result even though the driver stops reading after the limit.
+   */
+  private String rewriteQueryForLimit(final Connection connection,
+                                      final ParametrizationProvider parametrizationProvider,
+                                      final String translatedQuery,
+                                      final DataRow parameters)
+  {
+    if (parametrizationProvider instanceof LimitingParametrizationProvider == false)
+    {
+      return translatedQuery;
+    }
+    if ("true".equals(getConfiguration().getConfigProperty(QUERY_LIMIT_PUSHDOWN_KEY)) == false) //$NON-NLS-1$
+    {
+      return translatedQuery;
+    }
+    if (isCallableStatement(translatedQuery) || isCallableStatementQuery(translatedQuery))
+    {
+      return translatedQuery;
+    }
+
+    final int queryLimit = getQueryLimit(parameters);
+    if (queryLimit <= 0)
+    {
+      return translatedQuery;
+    }
+    final LimitingParametrizationProvider limitingProvider = (LimitingParametrizationProvider) parametrizationProvider;
+    return limitingProvider.rewriteQueryForLimit(connection, translatedQuery, queryLimit);
+  }
+
+  private static int getQueryLimit(final DataRow parameters)
+  {
+    final Object queryLimit = parameters.get(DataFactory.QUERY_LIMIT);
+    if (queryLimit instanceof Number)
+    {
+      return ((Number) queryLimit).intValue();
+    }
+    return 0;
+  }
+
+  private int computeFetchSize(final int queryLimit)
+  {
+    final int configuredFetchSize = ParserUtil.parseInt(getConfiguration().getConfigProperty(FETCH_SIZE_KEY), 0);
+    if (queryLimit > 0 && queryLimit <= MAX_LIMITED_FETCH_SIZE)
+    {
+      // small results can be transferred in a single round-trip.
+      if (configuredFetchSize <= 0 || queryLimit < configuredFetchSize)
+      {
+        return queryLimit;
+      }
+    }
+    return configuredFetchSize;
+  }
+
   private ParametrizationProviderFactory createParametrizationProviderFactory()
       throws ReportDataFactoryException
   {
@@ -346,6 +408,18 @@ public class SimpleSQLReportDataFactory extends AbstractDataFactory
       // manufacturer instead.
       logger.warn("Driver indicated error: Failed to set query-limit: " + queryLimit, sqle);
     }
+    final int fetchSize = computeFetchSize(getQueryLimit(parameters));
+    try
+    {
+      if (fetchSize > 0)
+      {
+        statement.setFetchSize(fetchSize);
+      }
+    }
+    catch (SQLException sqle)
+    {
+      logger.warn("Driver indicated error: Failed to set fetch-size: " + fetchSize, sqle);
+    }
     final Object queryTimeout = parameters.get(DataFactory.QUERY_TIMEOUT);
     try
     {
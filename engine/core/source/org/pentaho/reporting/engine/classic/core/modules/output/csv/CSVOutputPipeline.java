@@ -0,0 +1,317 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+
+package org.pentaho.reporting.engine.classic.core.modules.output.csv;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Moves the quoting and writing of CSV rows to a separate writer thread. The report processing thread converts the
+ * row values into text and hands them over in batches, so that the data-source and the functions can compute the next
+ * rows while the previous rows are written. The values themselves never reach the writer thread, as data-row values
+ * and function results are not required to be thread-safe and may be modified once the report advances.
+ * <p/>
+ * The queue between both threads is bounded. If the writer cannot keep up, the report processing waits until a batch
+ * has been written. An I/O error on the writer thread is reported on the next call to {@link #write(Object[])} or in
+ * {@link #close()}.
+ * <p/>
+ * This class is not thread-safe; all public methods must be called from the report processing thread.
+ *
+ * @author Thomas Morgner
+ */
+public class CSVOutputPipeline
+{
+  private static final String[][] END_OF_DATA = new String[0][];
+  private static final int QUEUE_SIZE = 4;
+  private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+  private class WriterTask implements Runnable
+  {
+    private final StringBuilder buffer;
+    private char[] chars;
+
+    private WriterTask()
+    {
+      buffer = new StringBuilder(WRITE_BUFFER_SIZE + 1024);
+      chars = new char[WRITE_BUFFER_SIZE + 1024];
+    }
+
+    public void run()
+    {
+      try
+      {
+        while (true)
+        {
+          final String[][] rows = queue.take();
+          if (rows == END_OF_DATA)
+          {
+            break;
+          }
+          if (error != null)
+          {
+            // keep draining the queue, so that the report processing thread does not block.
+            continue;
+          }
+          try
+          {
+            writeRows(rows);
+          }
+          catch (IOException ioe)
+          {
+            error = ioe;
+          }
+          catch (RuntimeException re)
+          {
+            error = re;
+          }
+        }
+
+        if (error == null)
+        {
+          flushBuffer();
+          writer.flush();
+        }
+      }
+      catch (InterruptedException ie)
+      {
+        if (error == null)
+        {
+          error = new InterruptedIOException("CSV writer thread has been interrupted.");
+        }
+      }
+      catch (IOException ioe)
+      {
+        error = ioe;
+      }
+      catch (RuntimeException re)
+      {
+        error = re;
+      }
+    }
+
+    private void writeRows(final String[][] rows) throws IOException
+    {
+      final String separator = quoter.getSeparator();
+      for (int r = 0; r < rows.length; r++)
+      {
+        final String[] row = rows[r];
+        if (row == null)
+        {
+          break;
+        }
+
+        for (int i = 0; i < row.length; i++)
+        {
+          if (i > 0)
+          {
+            buffer.append(separator);
+          }
+          buffer.append(quoter.doQuoting(row[i]));
+        }
+        buffer.append(lineSeparator);
+
+        if (buffer.length() >= WRITE_BUFFER_SIZE)
+        {
+          flushBuffer();
+        }
+      }
+    }
+
+    private void flushBuffer() throws IOException
+    {
+      final int length = buffer.length();
+      if (length == 0)
+      {
+        return;
+      }
+      if (chars.length < length)
+      {
+        chars = new char[length];
+      }
+      buffer.getChars(0, length, chars, 0);
+      writer.write(chars, 0, length);
+      buffer.setLength(0);
+    }
+  }
+
+  private final Writer writer;
+  private final CSVQuoter quoter;
+  private final String lineSeparator;
+  private final BlockingQueue<String[][]> queue;
+  private final int batchSize;
+  private String[][] batch;
+  private int batchFill;
+  private Thread thread;
+  private volatile Exception error;
+
+  /**
+   * Creates a new pipeline. The writer thread is started on the first row.
+   *
+   * @param writer        the target writer.
+   * @param separator     the column separator.
+   * @param lineSeparator the row separator.
+   * @param batchSize     the number of rows handed over to the writer thread at once.
+   */
+  public CSVOutputPipeline(final Writer writer,
+                           final String separator,
+                           final String lineSeparator,
+                           final int batchSize)
+  {
+    if (writer == null)
+    {
+      throw new NullPointerException();
+    }
+    if (separator == null)
+    {
+      throw new NullPointerException();
+    }
+    if (lineSeparator == null)
+    {
+      throw new NullPointerException();
+    }
+    if (batchSize < 1)
+    {
+      throw new IllegalArgumentException("Batch size must be positive");
+    }
+    this.writer = writer;
+    this.quoter = new CSVQuoter(separator);
+    this.lineSeparator = lineSeparator;
+    this.batchSize = batchSize;
+    this.queue = new ArrayBlockingQueue<String[][]>(QUEUE_SIZE);
+  }
+
+  /**
+   * Adds a row to the current batch. The array is handed over to the writer thread and must not be modified
+   * afterwards.
+   *
+   * @param row the text of the row's columns.
+   * @throws IOException if a previous batch could not be written.
+   */
+  public void write(final String[] row) throws IOException
+  {
+    if (row == null)
+    {
+      throw new NullPointerException();
+    }
+    checkError();
+    if (batch == null)
+    {
+      batch = new String[batchSize][];
+      batchFill = 0;
+    }
+    batch[batchFill] = row;
+    batchFill += 1;
+    if (batchFill == batchSize)
+    {
+      submit(batch);
+      batch = null;
+    }
+  }
+
+  /**
+   * Writes all pending rows, waits for the writer thread to finish and flushes the writer. The writer itself is not
+   * closed.
+   *
+   * @throws IOException if writing failed.
+   */
+  public void close() throws IOException
+  {
+    if (batch != null)
+    {
+      submit(batch);
+      batch = null;
+    }
+
+    if (thread != null)
+    {
+      submit(END_OF_DATA);
+      try
+      {
+        thread.join();
+      }
+      catch (InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for the CSV writer thread.");
+      }
+      finally
+      {
+        thread = null;
+      }
+    }
+    else
+    {
+      writer.flush();
+    }
+    checkError();
+  }
+
+  /**
+   * Stops the writer thread without writing the pending rows. Does nothing if the pipeline has been closed already.
+   */
+  public void dispose()
+  {
+    batch = null;
+    if (thread != null)
+    {
+      thread.interrupt();
+      thread = null;
+    }
+  }
+
+  private void submit(final String[][] rows) throws IOException
+  {
+    if (thread == null)
+    {
+      if (rows == END_OF_DATA)
+      {
+        return;
+      }
+      thread = new Thread(new WriterTask(), "CSV-Writer");
+      thread.setDaemon(true);
+      thread.start();
+    }
+
+    try
+    {
+      queue.put(rows);
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for the CSV writer thread.");
+    }
+  }
+
+  private void checkError() throws IOException
+  {
+    final Exception e = error;
+    if (e == null)
+    {
+      return;
+    }
+    if (e instanceof IOException)
+    {
+      throw (IOException) e;
+    }
+    throw (RuntimeException) e;
+  }
+}
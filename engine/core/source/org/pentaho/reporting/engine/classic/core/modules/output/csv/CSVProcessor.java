@@ -17,30 +17,47 @@
 
 package org.pentaho.reporting.engine.classic.core.modules.output.csv;
 
+import java.io.IOException;
 import java.io.Writer;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.reporting.engine.classic.core.ClassicEngineBoot;
 import org.pentaho.reporting.engine.classic.core.ClassicEngineCoreModule;
 import org.pentaho.reporting.engine.classic.core.MasterReport;
 import org.pentaho.reporting.engine.classic.core.ReportProcessingException;
+import org.pentaho.reporting.engine.classic.core.event.ReportProgressEvent;
 import org.pentaho.reporting.engine.classic.core.function.OutputFunction;
 import org.pentaho.reporting.engine.classic.core.layout.model.LogicalPageBox;
 import org.pentaho.reporting.engine.classic.core.layout.output.AbstractOutputProcessor;
 import org.pentaho.reporting.engine.classic.core.layout.output.AbstractReportProcessor;
 import org.pentaho.reporting.engine.classic.core.layout.output.ContentProcessingException;
+import org.pentaho.reporting.engine.classic.core.layout.output.DefaultProcessingContext;
 import org.pentaho.reporting.engine.classic.core.layout.output.GenericOutputProcessorMetaData;
 import org.pentaho.reporting.engine.classic.core.layout.output.LogicalPageKey;
 import org.pentaho.reporting.engine.classic.core.layout.output.OutputProcessorMetaData;
+import org.pentaho.reporting.engine.classic.core.states.InitialLayoutProcess;
+import org.pentaho.reporting.engine.classic.core.states.LayoutProcess;
+import org.pentaho.reporting.engine.classic.core.states.ProcessStateHandle;
+import org.pentaho.reporting.engine.classic.core.states.process.ProcessState;
 import org.pentaho.reporting.libraries.base.config.Configuration;
+import org.pentaho.reporting.libraries.xmlns.common.ParserUtil;
 
 /**
  * The <code>CSVProcessor</code> coordinates the writing process for the raw CSV output.
  * <p/>
  * A {@link CSVWriter} is added to the private copy of the report to handle the output process.
+ * <p/>
+ * In pipelined mode the rows are quoted and written on a separate thread (see {@link CSVOutputPipeline}) and the
+ * report is processed in a single streaming pass. As the CSV export has no pages, the pagination run is skipped and
+ * only the function levels that compute totals are run before the output pass.
  *
  * @author Thomas Morgner
  */
 public class CSVProcessor extends AbstractReportProcessor
 {
+  private static final Log logger = LogFactory.getLog(CSVProcessor.class);
+
   private static class CSVDataOutputProcessor extends AbstractOutputProcessor
   {
     private OutputProcessorMetaData metaData;
@@ -85,6 +102,10 @@ public class CSVProcessor extends AbstractReportProcessor
       = "org.pentaho.reporting.engine.classic.core.modules.output.csv.EnableGroupFooters";
   public static final String CSV_ENABLE_ITEMBANDS
       = "org.pentaho.reporting.engine.classic.core.modules.output.csv.EnableItembands";
+  public static final String CSV_PIPELINED_OUTPUT
+      = "org.pentaho.reporting.engine.classic.core.modules.output.csv.PipelinedOutput";
+  public static final String CSV_PIPELINE_BATCH_SIZE
+      = "org.pentaho.reporting.engine.classic.core.modules.output.csv.PipelineBatchSize";
 
   /**
    * The character stream writer to be used by the {@link CSVWriter} function.
@@ -94,6 +115,8 @@ public class CSVProcessor extends AbstractReportProcessor
   private static final String EXPORT_DESCRIPTOR = "data/csv";
   private String separator;
   private boolean writeDataRowNames;
+  private boolean pipelinedOutput;
+  private CSVOutputPipeline pipeline;
 
   /**
    * Creates a new <code>CSVProcessor</code>. The processor will use a comma (",") to separate the column values, unless
@@ -143,6 +166,7 @@ public class CSVProcessor extends AbstractReportProcessor
     super(report, new CSVDataOutputProcessor());
     this.separator = separator;
     this.writeDataRowNames = writeDataRowNames;
+    this.pipelinedOutput = CSVProcessor.queryBoolConfig(report.getReportConfiguration(), CSV_PIPELINED_OUTPUT);
   }
 
   private static boolean queryBoolConfig(final Configuration config,
@@ -171,12 +195,34 @@ public class CSVProcessor extends AbstractReportProcessor
     this.writer = writer;
   }
 
+  /**
+   * Returns whether the rows are written on a separate thread in a single streaming pass.
+   *
+   * @return true, if pipelined output is enabled, false otherwise.
+   */
+  public boolean isPipelinedOutput()
+  {
+    return pipelinedOutput;
+  }
+
+  /**
+   * Defines whether the rows are written on a separate thread in a single streaming pass. Defaults to the value of
+   * the report configuration.
+   *
+   * @param pipelinedOutput true, to enable pipelined output, false otherwise.
+   */
+  public void setPipelinedOutput(final boolean pipelinedOutput)
+  {
+    this.pipelinedOutput = pipelinedOutput;
+  }
+
   protected OutputFunction createLayoutManager()
   {
     final CSVWriter lm = new CSVWriter();
     lm.setSeparator(separator);
     lm.setWriteDataRowNames(writeDataRowNames);
     lm.setWriter(getWriter());
+    lm.setPipeline(pipeline);
 
     final Configuration config = getReport().getReportConfiguration();
     lm.setWriteStateColumns(CSVProcessor.queryBoolConfig(config, CSVProcessor.CSV_WRITE_STATECOLUMNS));
@@ -189,6 +235,155 @@ public class CSVProcessor extends AbstractReportProcessor
     return lm;
   }
 
+  /**
+   * Processes the report. In pipelined mode, the report is processed in a single streaming pass while the rows are
+   * written on a separate thread. Errors are handled like in the non-pipelined mode: Event errors are only fatal if
+   * strict error handling is enabled, all other errors abort the processing. An error on the writer thread is
+   * reported on the next row and at the latest when all rows have been written. If the processing fails, the writer
+   * thread is stopped and the rows that have not been written yet are discarded.
+   *
+   * @throws ReportProcessingException if the report processing failed.
+   */
+  public void processReport() throws ReportProcessingException
+  {
+    if (isPipelinedOutput() == false)
+    {
+      super.processReport();
+      return;
+    }
+
+    final Writer writer = getWriter();
+    if (writer == null)
+    {
+      throw new ReportProcessingException("No writer defined.");
+    }
+
+    final Configuration config = getReport().getReportConfiguration();
+    final String lineSeparator =
+        ClassicEngineBoot.getInstance().getGlobalConfig().getConfigProperty("line.separator", "\n");
+    final int batchSize = Math.max(1, ParserUtil.parseInt(config.getConfigProperty(CSV_PIPELINE_BATCH_SIZE), 1000));
+
+    final long startTime = System.currentTimeMillis();
+    fireProcessingStarted(new ReportProgressEvent(this));
+
+    pipeline = new CSVOutputPipeline(writer, separator, lineSeparator, batchSize);
+    try
+    {
+      processStreaming();
+      pipeline.close();
+    }
+    catch (ReportProcessingException re)
+    {
+      logger.error(System.identityHashCode(Thread.currentThread()) + ": Report processing failed.", re);
+      throw re;
+    }
+    catch (IOException ioe)
+    {
+      logger.error(System.identityHashCode(Thread.currentThread()) + ": Report processing failed.", ioe);
+      throw new ReportProcessingException("Failed to write the CSV data", ioe);
+    }
+    catch (Exception e)
+    {
+      logger.error(System.identityHashCode(Thread.currentThread()) + ": Report processing failed.", e);
+      throw new ReportProcessingException("Failed to process the report", e);
+    }
+    finally
+    {
+      // stops the writer thread if the report processing failed.
+      pipeline.dispose();
+      pipeline = null;
+    }
+
+    if (logger.isDebugEnabled())
+    {
+      logger.debug("Pipelined CSV export finished in " + (System.currentTimeMillis() - startTime) + "ms");
+    }
+    fireProcessingFinished(new ReportProgressEvent(this));
+  }
+
+  /**
+   * Runs all function levels of the report. The prepare runs are only needed to compute the values of functions
+   * with a dependency level above the pagination level. The pagination level itself is processed only once and
+   * produces the output, as there are no page-states to collect.
+   *
+   * @throws ReportProcessingException if the report processing failed.
+   */
+  private void processStreaming() throws ReportProcessingException
+  {
+    final DefaultProcessingContext processingContext = createProcessingContext();
+    final OutputFunction lm = createLayoutManager();
+
+    final ProcessState startState = new ProcessState();
+    ProcessStateHandle processHandle = null;
+    try
+    {
+      try
+      {
+        startState.initializeForMasterReport
+            (getReport(), processingContext, new InitialLayoutProcess((OutputFunction) lm.getInstance()));
+      }
+      finally
+      {
+        processHandle = startState.getProcessHandle();
+      }
+
+      final int maxRows = startState.getNumberOfRows();
+      ProcessState state = startState;
+      processingContext.setPrepareRun(true);
+      if (state.isStructuralPreprocessingNeeded())
+      {
+        processingContext.setProcessingLevel(LayoutProcess.LEVEL_STRUCTURAL_PREPROCESSING);
+        processingContext.setProgressLevel(-1);
+        state = restart(processPrepareLevels(state, maxRows));
+      }
+
+      final int[] levels = state.getRequiredRuntimeLevels();
+      processingContext.setProgressLevelCount(levels.length);
+      boolean restartNeeded = false;
+      for (int index = 0; index < levels.length; index++)
+      {
+        final int level = levels[index];
+        if (level == LayoutProcess.LEVEL_STRUCTURAL_PREPROCESSING)
+        {
+          continue;
+        }
+
+        if (restartNeeded)
+        {
+          state = restart(state);
+        }
+        restartNeeded = true;
+        processingContext.setProcessingLevel(level);
+        processingContext.setProgressLevel(index);
+        if (level == LayoutProcess.LEVEL_PAGINATE)
+        {
+          processingContext.setPrepareRun(false);
+          processPrepareLevels(state, maxRows);
+          // the pagination level is always the last level.
+          return;
+        }
+        state = processPrepareLevels(state, maxRows);
+      }
+    }
+    finally
+    {
+      processingContext.setPrepareRun(false);
+      if (processHandle != null)
+      {
+        processHandle.close();
+      }
+    }
+  }
+
+  private static ProcessState restart(final ProcessState state) throws ReportProcessingException
+  {
+    if (state.isFinish() == false)
+    {
+      throw new IllegalStateException("Repaginate did not produce an finish state");
+    }
+    return state.restart();
+  }
+
   /**
    * Checks whether report processing should be aborted when an exception occurs.
    *
@@ -122,6 +122,22 @@ public class CSVWriter extends AbstractFunction implements OutputFunction
       }
       w.write(lineSeparator);
     }
+
+    /**
+     * Returns the text of the collected values of this row. The values are converted in the same way as in
+     * {@link #write(java.io.Writer)}, but are not quoted.
+     *
+     * @return the text of the values.
+     */
+    public String[] toStrings()
+    {
+      final String[] text = new String[data.size()];
+      for (int i = 0; i < text.length; i++)
+      {
+        text[i] = String.valueOf(data.get(i));
+      }
+      return text;
+    }
   }
 
   /**
@@ -152,6 +168,11 @@ public class CSVWriter extends AbstractFunction implements OutputFunction
 
   private ArrayList<InlineSubreportMarker> inlineSubreports;
 
+  /**
+   * The pipeline that writes the rows on a separate thread, or null to write the rows directly.
+   */
+  private CSVOutputPipeline pipeline;
+
   /**
    * DefaulConstructor. Creates a CSVWriter with a dependency level of -1 and a default CSVQuoter.
    */
@@ -262,6 +283,46 @@ public class CSVWriter extends AbstractFunction implements OutputFunction
     this.w = w;
   }
 
+  /**
+   * Returns the pipeline used to write the rows on a separate thread.
+   *
+   * @return the pipeline or null, if rows are written directly to the writer.
+   */
+  public CSVOutputPipeline getPipeline()
+  {
+    return pipeline;
+  }
+
+  /**
+   * Defines the pipeline used to write the rows on a separate thread. If a pipeline is given, the writer and the
+   * separator of this function are ignored for the row data.
+   *
+   * @param pipeline the pipeline or null, to write the rows directly to the writer.
+   */
+  public void setPipeline(final CSVOutputPipeline pipeline)
+  {
+    this.pipeline = pipeline;
+  }
+
+  /**
+   * Writes the row either directly or through the pipeline. The values are converted into text before they are
+   * handed over to the pipeline, so that the writer thread never touches the values of the data-row.
+   *
+   * @param row the row.
+   * @throws IOException if an I/O error occurred.
+   */
+  private void writeRow(final CSVRow row) throws IOException
+  {
+    if (pipeline != null)
+    {
+      pipeline.write(row.toStrings());
+    }
+    else
+    {
+      row.write(getWriter());
+    }
+  }
+
   /**
    * Defines the separator, which is used to separate columns in a row.
    *
@@ -350,7 +411,7 @@ public class CSVWriter extends AbstractFunction implements OutputFunction
           names.append("report.eventtype");
         }
         writeDataRowNames(event.getDataRow(), names);
-        names.write(getWriter());
+        writeRow(names);
       }
 
       if (isEnableReportHeader() == false)
@@ -365,7 +426,7 @@ public class CSVWriter extends AbstractFunction implements OutputFunction
         row.append("reportheader");
       }
       writeDataRow(event.getDataRow(), row);
-      row.write(getWriter());
+      writeRow(row);
 
       collectSubReports(event.getReport().getReportHeader());
     }
@@ -403,7 +464,7 @@ public class CSVWriter extends AbstractFunction implements OutputFunction
         row.append("reportfooter");
       }
       writeDataRow(event.getDataRow(), row);
-      row.write(getWriter());
+      writeRow(row);
 
       collectSubReports(event.getReport().getReportFooter());
     }
@@ -449,7 +510,7 @@ public class CSVWriter extends AbstractFunction implements OutputFunction
         row.append(bandInfo);
       }
       writeDataRow(event.getDataRow(), row);
-      row.write(getWriter());
+      writeRow(row);
 
       final Group g = event.getReport().getGroup(currentIndex);
       collectSubReports(g, ElementMetaData.TypeClassification.HEADER);
@@ -496,7 +557,7 @@ public class CSVWriter extends AbstractFunction implements OutputFunction
         row.append(bandInfo);
       }
       writeDataRow(event.getDataRow(), row);
-      row.write(getWriter());
+      writeRow(row);
       final Group g = event.getReport().getGroup(currentIndex);
       collectSubReports(g, ElementMetaData.TypeClassification.FOOTER);
     }
@@ -556,7 +617,7 @@ public class CSVWriter extends AbstractFunction implements OutputFunction
         row.append("itemband");
       }
       writeDataRow(event.getDataRow(), row);
-      row.write(getWriter());
+      writeRow(row);
       collectSubReports(event.getReport().getItemBand());
     }
     catch (IOException ioe)
@@ -40,7 +40,6 @@ import org.pentaho.reporting.engine.classic.core.modules.output.pageable.graphic
 import org.pentaho.reporting.engine.classic.core.modules.output.pageable.pdf.PdfPageableModule;
 import org.pentaho.reporting.engine.classic.core.util.geom.StrictGeomUtility;
 import org.pentaho.reporting.libraries.base.config.Configuration;
-import org.pentaho.reporting.libraries.base.util.LFUMap;
 import org.pentaho.reporting.libraries.resourceloader.ResourceManager;
 
 
@@ -78,7 +77,7 @@ public class PdfDocumentWriter
   private boolean awaitOpenDocument;
   private Configuration config;
   private ResourceManager resourceManager;
-  private LFUMap imageCache;
+  private PdfImageCache imageCache;
   private char version;
 
   public PdfDocumentWriter(final PdfOutputProcessorMetaData metaData,
@@ -98,7 +97,7 @@ public class PdfDocumentWriter
       throw new NullPointerException();
     }
 
-    this.imageCache = new LFUMap(50);
+    this.imageCache = new PdfImageCache();
     this.resourceManager = resourceManager;
     this.metaData = metaData;
     this.out = out;
@@ -123,6 +122,20 @@ public class PdfDocumentWriter
     writer.setPdfVersion(version);
     writer.setViewerPreferences(getViewerPreferences());
 
+    if ("true".equals(config.getConfigProperty
+        ("org.pentaho.reporting.engine.classic.core.modules.output.pageable.pdf.FullCompression")))
+    {
+      // object streams and cross-reference streams are only available since PDF 1.5.
+      if (version >= '5')
+      {
+        writer.setFullCompression();
+      }
+      else
+      {
+        logger.info("Full compression requires at least PDF version 1.5, ignoring the setting.");
+      }
+    }
+
     final String encrypt = config.getConfigProperty
         ("org.pentaho.reporting.engine.classic.core.modules.output.pageable.pdf.Encryption");
 
@@ -370,7 +383,8 @@ public class PdfDocumentWriter
     }
 
     final PdfContentByte directContent = writer.getDirectContent();
-    final Graphics2D graphics = new PdfGraphics2D(directContent, width, height, metaData);
+    final PdfGraphics2D graphics = new PdfGraphics2D(directContent, width, height, metaData);
+    graphics.setImageCache(imageCache);
     final PdfLogicalPageDrawable logicalPageDrawable =
         new PdfLogicalPageDrawable(logicalPage, metaData, writer, page, resourceManager, imageCache, version);
     final PhysicalPageDrawable drawable = new PhysicalPageDrawable(logicalPageDrawable, page);
@@ -401,7 +415,8 @@ public class PdfDocumentWriter
       awaitOpenDocument = false;
     }
 
-    final Graphics2D graphics = new PdfGraphics2D(writer.getDirectContent(), width, height, metaData);
+    final PdfGraphics2D graphics = new PdfGraphics2D(writer.getDirectContent(), width, height, metaData);
+    graphics.setImageCache(imageCache);
     // and now process the box ..
     final PdfLogicalPageDrawable logicalPageDrawable =
         new PdfLogicalPageDrawable(logicalPage, metaData, writer, null, resourceManager, imageCache, version);
@@ -144,6 +144,7 @@ public class PdfGraphics2D extends Graphics2D
   // Added by Alexej Suchov
   private Paint realPaint;
   private PdfOutputProcessorMetaData metaData;
+  private PdfImageCache imageCache;
   private static final AffineTransform FLIP_TRANSFORM = AffineTransform.getScaleInstance(1, -1);
 
   private PdfGraphics2D()
@@ -920,6 +921,7 @@ public class PdfGraphics2D extends Graphics2D
     final PdfGraphics2D g2 = new PdfGraphics2D();
     g2.transform = new AffineTransform(this.transform);
     g2.metaData = this.metaData;
+    g2.imageCache = this.imageCache;
     g2.paint = this.paint;
     g2.fillGState = this.fillGState;
     g2.strokeGState = this.strokeGState;
@@ -957,6 +959,22 @@ public class PdfGraphics2D extends Graphics2D
     return g2;
   }
 
+  public PdfImageCache getImageCache()
+  {
+    return imageCache;
+  }
+
+  /**
+   * Defines the document wide image cache. Images drawn without mask or background color are looked up in this
+   * cache, so that equal images are embedded only once.
+   *
+   * @param imageCache the image cache or null to convert each image separately.
+   */
+  public void setImageCache(final PdfImageCache imageCache)
+  {
+    this.imageCache = imageCache;
+  }
+
   public PdfContentByte getContent()
   {
     return this.cb;
@@ -1601,6 +1619,11 @@ public class PdfGraphics2D extends Graphics2D
   {
     try
     {
+      if (mask == null && bgColor == null && imageCache != null)
+      {
+        return drawPdfImage(imageCache.getImage(img), img, xform, obs);
+      }
+
       final com.lowagie.text.Image image = com.lowagie.text.Image.getInstance(img, bgColor);
       image.setDeflated(true);
       if (mask != null)
@@ -0,0 +1,150 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+
+
+package org.pentaho.reporting.engine.classic.core.modules.output.pageable.pdf.internal;
+
+import java.awt.Image;
+import java.io.IOException;
+import java.util.WeakHashMap;
+
+import com.lowagie.text.BadElementException;
+import org.pentaho.reporting.engine.classic.core.util.ImageContentKey;
+import org.pentaho.reporting.libraries.base.util.LFUMap;
+import org.pentaho.reporting.libraries.resourceloader.ResourceException;
+import org.pentaho.reporting.libraries.resourceloader.ResourceKey;
+import org.pentaho.reporting.libraries.resourceloader.ResourceManager;
+
+/**
+ * Caches the iText images created for a PDF document. iText writes an image only once per document, as long as the
+ * same image instance is used each time. This cache maps images with the same content to the same iText image,
+ * so that repeated images (like a logo printed in every row) are decoded once and embedded as a single XObject.
+ *
+ * @author Thomas Morgner
+ */
+public class PdfImageCache
+{
+  private LFUMap<ResourceKey, com.lowagie.text.Image> imagesByResource;
+  private LFUMap<ImageContentKey, com.lowagie.text.Image> imagesByContent;
+  /**
+   * Remembers the content keys of immutable images, so that images loaded once and printed many times are not hashed
+   * over and over again. Mutable images are never stored here, as their pixels may change between two calls.
+   */
+  private WeakHashMap<Image, ImageContentKey> contentKeys;
+
+  public PdfImageCache()
+  {
+    this(50);
+  }
+
+  public PdfImageCache(final int cacheSize)
+  {
+    imagesByResource = new LFUMap<ResourceKey, com.lowagie.text.Image>(cacheSize);
+    imagesByContent = new LFUMap<ImageContentKey, com.lowagie.text.Image>(cacheSize);
+    contentKeys = new WeakHashMap<Image, ImageContentKey>();
+  }
+
+  /**
+   * Returns the iText image for the raw image data referenced by the given resource key.
+   *
+   * @param resourceManager the resource manager used to load the data.
+   * @param resource        the resource key of the image.
+   * @return the iText image.
+   * @throws ResourceException   if the image data could not be loaded.
+   * @throws IOException         if the image data could not be read.
+   * @throws BadElementException if iText failed to parse the image data.
+   */
+  public com.lowagie.text.Image getImage(final ResourceManager resourceManager,
+                                         final ResourceKey resource)
+      throws ResourceException, IOException, BadElementException
+  {
+    final com.lowagie.text.Image cachedImage = imagesByResource.get(resource);
+    if (cachedImage != null)
+    {
+      return cachedImage;
+    }
+
+    final byte[] data = resourceManager.load(resource).getResource(resourceManager);
+    final ImageContentKey contentKey = ImageContentKey.createFromData(data);
+    com.lowagie.text.Image image = null;
+    if (contentKey != null)
+    {
+      image = imagesByContent.get(contentKey);
+    }
+    if (image == null)
+    {
+      image = com.lowagie.text.Image.getInstance(data);
+      if (contentKey != null)
+      {
+        imagesByContent.put(contentKey, image);
+      }
+    }
+    imagesByResource.put(resource, image);
+    return image;
+  }
+
+  /**
+   * Returns the iText image for the given AWT image. The image is converted into a deflated iText image, if no
+   * image with the same pixels has been converted before. Buffered and volatile images can be redrawn at any time,
+   * so their pixels are hashed on each call.
+   *
+   * @param awtImage the AWT image.
+   * @return the iText image.
+   * @throws IOException         if the image could not be read.
+   * @throws BadElementException if iText failed to convert the image.
+   */
+  public com.lowagie.text.Image getImage(final Image awtImage) throws IOException, BadElementException
+  {
+    final ImageContentKey contentKey = getContentKey(awtImage);
+
+    if (contentKey != null)
+    {
+      final com.lowagie.text.Image cachedImage = imagesByContent.get(contentKey);
+      if (cachedImage != null)
+      {
+        return cachedImage;
+      }
+    }
+
+    final com.lowagie.text.Image image = com.lowagie.text.Image.getInstance(awtImage, null);
+    image.setDeflated(true);
+    if (contentKey != null)
+    {
+      imagesByContent.put(contentKey, image);
+    }
+    return image;
+  }
+
+  private ImageContentKey getContentKey(final Image awtImage)
+  {
+    if (ImageContentKey.isImmutable(awtImage) == false)
+    {
+      return ImageContentKey.createFromImage(awtImage, null);
+    }
+
+    ImageContentKey contentKey = contentKeys.get(awtImage);
+    if (contentKey == null)
+    {
+      contentKey = ImageContentKey.createFromImage(awtImage, null);
+      if (contentKey != null)
+      {
+        contentKeys.put(awtImage, contentKey);
+      }
+    }
+    return contentKey;
+  }
+}
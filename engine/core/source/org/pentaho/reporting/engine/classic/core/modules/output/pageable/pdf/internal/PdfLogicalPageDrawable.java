@@ -61,7 +61,6 @@ import org.pentaho.reporting.engine.classic.core.style.ElementStyleKeys;
 import org.pentaho.reporting.engine.classic.core.style.StyleSheet;
 import org.pentaho.reporting.engine.classic.core.style.TextStyleKeys;
 import org.pentaho.reporting.engine.classic.core.util.geom.StrictGeomUtility;
-import org.pentaho.reporting.libraries.base.util.LFUMap;
 import org.pentaho.reporting.libraries.base.util.StringUtils;
 import org.pentaho.reporting.libraries.base.util.WaitingImageObserver;
 import org.pentaho.reporting.libraries.fonts.encoding.CodePointBuffer;
@@ -69,7 +68,6 @@ import org.pentaho.reporting.libraries.fonts.itext.BaseFontFontMetrics;
 import org.pentaho.reporting.libraries.fonts.registry.FontNativeContext;
 import org.pentaho.reporting.libraries.fonts.text.Spacing;
 import org.pentaho.reporting.libraries.resourceloader.Resource;
-import org.pentaho.reporting.libraries.resourceloader.ResourceData;
 import org.pentaho.reporting.libraries.resourceloader.ResourceKey;
 import org.pentaho.reporting.libraries.resourceloader.ResourceManager;
 import org.pentaho.reporting.libraries.resourceloader.factory.drawable.DrawableWrapper;
@@ -135,7 +133,7 @@ public class PdfLogicalPageDrawable extends LogicalPageDrawable
   private float globalHeight;
   private PdfOutputProcessorMetaData outputProcessorMetaData;
   private boolean globalEmbed;
-  private LFUMap<ResourceKey,com.lowagie.text.Image> imageCache;
+  private PdfImageCache imageCache;
   private char version;
 
   public PdfLogicalPageDrawable(final LogicalPageBox rootBox,
@@ -143,7 +141,7 @@ public class PdfLogicalPageDrawable extends LogicalPageDrawable
                                 final PdfWriter writer,
                                 final PhysicalPageBox page,
                                 final ResourceManager resourceManager,
-                                final LFUMap<ResourceKey,com.lowagie.text.Image> imageCache,
+                                final PdfImageCache imageCache,
                                 final char version)
   {
     super(rootBox, metaData, resourceManager);
@@ -523,18 +521,7 @@ public class PdfLogicalPageDrawable extends LogicalPageDrawable
           try
           {
             final ResourceManager resourceManager = getResourceManager();
-            final com.lowagie.text.Image instance;
-            final com.lowagie.text.Image maybeImage = imageCache.get(resource);
-            if (maybeImage != null)
-            {
-              instance = maybeImage;
-            }
-            else
-            {
-              final ResourceData data = resourceManager.load(resource);
-              instance = com.lowagie.text.Image.getInstance(data.getResource(resourceManager));
-              imageCache.put(resource, instance);
-            }
+            final com.lowagie.text.Image instance = imageCache.getImage(resourceManager, resource);
 
             final Resource imageWrapped = resourceManager.create(resource, null, Image.class);
             final Image image = (Image) imageWrapped.getResource();
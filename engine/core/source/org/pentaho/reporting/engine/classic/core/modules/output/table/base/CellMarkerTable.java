@@ -0,0 +1,237 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+
+
+package org.pentaho.reporting.engine.classic.core.modules.output.table.base;
+
+import java.util.Arrays;
+
+/**
+ * A sparse table of cell-markers that only holds the rows that have not been finished yet. Rows are stored in a
+ * window that starts at the first row that has not been discarded. Discarded rows read as empty and the window
+ * is moved forward each time the table producer has flushed finished rows, so that the memory used by this table
+ * is proportional to the number of open rows instead of the number of rows of the whole sheet.
+ * <p/>
+ * Row arrays are only allocated once a cell in that row receives a marker.
+ *
+ * @author Thomas Morgner
+ */
+final class CellMarkerTable
+{
+  private static final int ROW_INCREMENT = 10;
+
+  private CellMarker[][] data;
+  private int windowStart;
+  private int firstRow;
+  private int rowCount;
+  private int columnCount;
+
+  CellMarkerTable()
+  {
+    this.data = new CellMarker[ROW_INCREMENT][];
+  }
+
+  /**
+   * Returns the number of rows of this table. This includes the rows that have been discarded already.
+   *
+   * @return the row count.
+   */
+  public int getRowCount()
+  {
+    return rowCount;
+  }
+
+  public int getColumnCount()
+  {
+    return columnCount;
+  }
+
+  /**
+   * Returns the index of the first row that has not been discarded.
+   *
+   * @return the first row held in the window.
+   */
+  public int getFirstRow()
+  {
+    return firstRow;
+  }
+
+  /**
+   * Returns the number of rows currently held in memory.
+   *
+   * @return the number of rows in the window.
+   */
+  public int getWindowSize()
+  {
+    return Math.max(0, rowCount - firstRow);
+  }
+
+  /**
+   * Makes sure that the row exists in the window. Unlike the dense object tables, this does not allocate any cell
+   * storage.
+   *
+   * @param row    the row index.
+   * @param column the column index.
+   */
+  public void ensureCapacity(final int row, final int column)
+  {
+    if (row < 0)
+    {
+      throw new IndexOutOfBoundsException("Row is invalid. " + row);
+    }
+    if (column < 0)
+    {
+      throw new IndexOutOfBoundsException("Column is invalid. " + column);
+    }
+    if (row >= firstRow)
+    {
+      ensureWindowCapacity(row - firstRow + 1);
+    }
+  }
+
+  public CellMarker getObject(final int row, final int column)
+  {
+    if (row < firstRow || row >= rowCount)
+    {
+      return null;
+    }
+    final CellMarker[] rowData = data[windowStart + row - firstRow];
+    if (rowData == null || column >= rowData.length)
+    {
+      return null;
+    }
+    return rowData[column];
+  }
+
+  public void setObject(final int row, final int column, final CellMarker marker)
+  {
+    if (row < firstRow)
+    {
+      if (marker == null)
+      {
+        return;
+      }
+      // a discarded row is written again. This should not happen, but if it does we have to re-open the window.
+      reopenWindow(row);
+    }
+
+    ensureCapacity(row, column);
+    final int index = windowStart + row - firstRow;
+    CellMarker[] rowData = data[index];
+    if (rowData == null)
+    {
+      rowData = new CellMarker[Math.max(column + 1, columnCount)];
+      data[index] = rowData;
+    }
+    else if (column >= rowData.length)
+    {
+      final CellMarker[] enlarged = new CellMarker[Math.max(column + 1, columnCount)];
+      System.arraycopy(rowData, 0, enlarged, 0, rowData.length);
+      rowData = enlarged;
+      data[index] = rowData;
+    }
+
+    rowData[column] = marker;
+    this.rowCount = Math.max(this.rowCount, row + 1);
+    this.columnCount = Math.max(this.columnCount, column + 1);
+  }
+
+  /**
+   * Releases the cell storage of the given row. The row stays part of the window.
+   *
+   * @param row the row to be cleared.
+   */
+  public void clearRow(final int row)
+  {
+    if (row < firstRow)
+    {
+      return;
+    }
+    final int index = windowStart + row - firstRow;
+    if (index >= data.length)
+    {
+      return;
+    }
+    data[index] = null;
+  }
+
+  /**
+   * Removes all rows before the given row from the window. Reading these rows afterwards will return
+   * <code>null</code>.
+   *
+   * @param row the first row that should be kept.
+   */
+  public void discardRows(final int row)
+  {
+    if (row <= firstRow)
+    {
+      return;
+    }
+
+    final int count = Math.min(row - firstRow, data.length - windowStart);
+    Arrays.fill(data, windowStart, windowStart + count, null);
+    windowStart += count;
+    firstRow = row;
+
+    if (windowStart >= data.length)
+    {
+      windowStart = 0;
+    }
+    else if (windowStart > (data.length / 2))
+    {
+      // compact the window, so that the backend does not grow with the number of discarded rows.
+      final int size = data.length - windowStart;
+      System.arraycopy(data, windowStart, data, 0, size);
+      Arrays.fill(data, size, data.length, null);
+      windowStart = 0;
+    }
+  }
+
+  public void clear()
+  {
+    Arrays.fill(data, null);
+    this.windowStart = 0;
+    this.firstRow = 0;
+    this.rowCount = 0;
+    this.columnCount = 0;
+  }
+
+  private void ensureWindowCapacity(final int size)
+  {
+    if (windowStart + size <= data.length)
+    {
+      return;
+    }
+
+    final int windowSize = data.length - windowStart;
+    final CellMarker[][] enlarged = new CellMarker[Math.max(size + ROW_INCREMENT, windowSize * 2)][];
+    System.arraycopy(data, windowStart, enlarged, 0, windowSize);
+    this.data = enlarged;
+    this.windowStart = 0;
+  }
+
+  private void reopenWindow(final int row)
+  {
+    final int windowSize = data.length - windowStart;
+    final int additionalRows = firstRow - row;
+    final CellMarker[][] enlarged = new CellMarker[windowSize + additionalRows + ROW_INCREMENT][];
+    System.arraycopy(data, windowStart, enlarged, additionalRows, windowSize);
+    this.data = enlarged;
+    this.windowStart = 0;
+    this.firstRow = row;
+  }
+}
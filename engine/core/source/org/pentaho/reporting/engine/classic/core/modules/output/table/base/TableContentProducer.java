@@ -30,7 +30,6 @@ import org.pentaho.reporting.engine.classic.core.layout.process.IterateSimpleStr
 import org.pentaho.reporting.engine.classic.core.layout.process.util.ProcessUtility;
 import org.pentaho.reporting.engine.classic.core.style.BandStyleKeys;
 import org.pentaho.reporting.libraries.base.config.Configuration;
-import org.pentaho.reporting.libraries.base.util.GenericObjectTable;
 import org.pentaho.reporting.libraries.xmlns.common.ParserUtil;
 
 /**
@@ -44,7 +43,7 @@ public class TableContentProducer extends IterateSimpleStructureProcessStep
 {
   private static final Log logger = LogFactory.getLog(TableContentProducer.class);
   private SheetLayout sheetLayout;
-  private GenericObjectTable<CellMarker> contentBackend;
+  private CellMarkerTable contentBackend;
   private long maximumHeight;
   private long maximumWidth;
   private TableRectangle lookupRectangle;
@@ -120,9 +119,7 @@ public class TableContentProducer extends IterateSimpleStructureProcessStep
     this.sheetLayout = sheetLayout;
     this.maximumHeight = sheetLayout.getMaxHeight();
     this.maximumWidth = sheetLayout.getMaxWidth();
-    this.contentBackend = new GenericObjectTable<CellMarker>(Math.max(1, sheetLayout.getRowCount()), Math.max(1,
-        sheetLayout.getColumnCount()));
-    this.contentBackend.ensureCapacity(sheetLayout.getRowCount(), sheetLayout.getColumnCount());
+    this.contentBackend = new CellMarkerTable();
   }
 
   public String getSheetName()
@@ -619,7 +616,20 @@ public class TableContentProducer extends IterateSimpleStructureProcessStep
     return finishedRows;
   }
 
+  /**
+   * Clears all rows that have been fully processed by the output target. Unless verbose cell-markers are enabled,
+   * these rows are also dropped from the content backend, as they are never read or written again.
+   */
   public void clearFinishedBoxes()
+  {
+    clearFinishedRows();
+    if (verboseCellMarkers == false)
+    {
+      contentBackend.discardRows(finishedRows);
+    }
+  }
+
+  private void clearFinishedRows()
   {
     final int rowCount = getFilledRows();
     final int columnCount = getColumnCount();
@@ -21,17 +21,17 @@ import java.awt.Color;
 import java.awt.Image;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
-import java.io.BufferedWriter;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.net.URL;
 import java.text.NumberFormat;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.WeakHashMap;
+import java.util.zip.GZIPOutputStream;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -66,10 +66,13 @@ import org.pentaho.reporting.engine.classic.core.modules.output.table.html.helpe
 import org.pentaho.reporting.engine.classic.core.modules.output.table.html.helper.InlineStyleManager;
 import org.pentaho.reporting.engine.classic.core.modules.output.table.html.helper.StyleBuilder;
 import org.pentaho.reporting.engine.classic.core.modules.output.table.html.helper.StyleManager;
+import org.pentaho.reporting.engine.classic.core.modules.output.table.html.util.CharsetEncodingWriter;
 import org.pentaho.reporting.engine.classic.core.modules.output.table.html.util.HtmlColors;
 import org.pentaho.reporting.engine.classic.core.modules.output.table.html.util.HtmlEncoderUtil;
 import org.pentaho.reporting.engine.classic.core.style.ElementStyleKeys;
 import org.pentaho.reporting.engine.classic.core.style.StyleSheet;
+import org.pentaho.reporting.engine.classic.core.util.ImageContentKey;
+import org.pentaho.reporting.engine.classic.core.util.InstanceID;
 import org.pentaho.reporting.engine.classic.core.style.TextStyleKeys;
 import org.pentaho.reporting.engine.classic.core.style.WhitespaceCollapse;
 import org.pentaho.reporting.engine.classic.core.util.geom.StrictGeomUtility;
@@ -106,6 +109,78 @@ import org.pentaho.reporting.libraries.xmlns.writer.XmlWriterSupport;
  */
 public abstract class HtmlPrinter implements HtmlContentGenerator
 {
+  /**
+   * Identifies the computed style of a table cell. Extra styles are always given as constant arrays, so they are
+   * compared by identity.
+   */
+  private static class CellStyleCacheKey
+  {
+    private InstanceID styleSheetId;
+    private long changeTracker;
+    private CellBackground background;
+    private Object extraStyleKeys;
+    private Object extraStyleValues;
+    private int hashCode;
+
+    protected CellStyleCacheKey(final RenderBox content,
+                                final CellBackground background,
+                                final Object extraStyleKeys,
+                                final Object extraStyleValues)
+    {
+      if (content != null)
+      {
+        final StyleSheet styleSheet = content.getStyleSheet();
+        this.styleSheetId = styleSheet.getId();
+        this.changeTracker = styleSheet.getChangeTracker();
+      }
+      this.background = background;
+      this.extraStyleKeys = extraStyleKeys;
+      this.extraStyleValues = extraStyleValues;
+
+      int result = styleSheetId != null ? styleSheetId.hashCode() : 0;
+      result = 31 * result + (int) (changeTracker ^ (changeTracker >>> 32));
+      result = 31 * result + (background != null ? background.hashCode() : 0);
+      result = 31 * result + System.identityHashCode(extraStyleKeys);
+      this.hashCode = result;
+    }
+
+    public boolean equals(final Object o)
+    {
+      if (this == o)
+      {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass())
+      {
+        return false;
+      }
+
+      final CellStyleCacheKey that = (CellStyleCacheKey) o;
+      if (hashCode != that.hashCode)
+      {
+        return false;
+      }
+      if (changeTracker != that.changeTracker)
+      {
+        return false;
+      }
+      if (extraStyleKeys != that.extraStyleKeys || extraStyleValues != that.extraStyleValues)
+      {
+        return false;
+      }
+      if (ObjectUtilities.equal(styleSheetId, that.styleSheetId) == false)
+      {
+        return false;
+      }
+      return ObjectUtilities.equal(background, that.background);
+    }
+
+    public int hashCode()
+    {
+      return hashCode;
+    }
+  }
+
 
   private static class ImageData
   {
@@ -186,6 +261,11 @@ public abstract class HtmlPrinter implements HtmlContentGenerator
   private ResourceManager resourceManager;
   private HashMap<ResourceKey, String> knownResources;
   private HashMap<String, String> knownImages;
+  private HashMap<ImageContentKey, String> knownImageContents;
+  /**
+   * The pixel keys of immutable images, so that an image printed many times is hashed only once.
+   */
+  private WeakHashMap<Image, ImageContentKey> pixelKeys;
   private HashSet<String> validRawTypes;
 
   private URLRewriter urlRewriter;
@@ -196,9 +276,15 @@ public abstract class HtmlPrinter implements HtmlContentGenerator
   private StyleBuilder styleBuilder;
   private static final DefaultStyleBuilder.CSSKeys[] EMPTY_CELL_ATTRNAMES = new DefaultStyleBuilder.CSSKeys[]{DefaultStyleBuilder.CSSKeys.FONT_SIZE};
   private static final String[] EMPTY_CELL_ATTRVALS = new String[]{"1pt"};
+  private static final int MAX_CELL_STYLE_CACHE_SIZE = 5000;
 
   private MemoryStringWriter bufferWriter;
-  private BufferedWriter writer;
+  private Writer writer;
+  private AttributeList emptyCellAttributes;
+  private boolean sharedStyleSheet;
+  private ContentItem sharedStyleFile;
+  private GlobalStyleManager sharedStyleManager;
+  private HashMap<CellStyleCacheKey, StyleBuilder.StyleCarrier[]> cellStyleCache;
   private ContentItem styleFile;
   private String styleFileUrl;
   private HtmlTextExtractor textExtractor;
@@ -217,7 +303,10 @@ public abstract class HtmlPrinter implements HtmlContentGenerator
     this.resourceManager = resourceManager;
     this.knownResources = new HashMap<ResourceKey, String>();
     this.knownImages = new HashMap<String, String>();
+    this.knownImageContents = new HashMap<ImageContentKey, String>();
+    this.pixelKeys = new WeakHashMap<Image, ImageContentKey>();
     this.styleBuilder = new DefaultStyleBuilder();
+    this.cellStyleCache = new HashMap<CellStyleCacheKey, StyleBuilder.StyleCarrier[]>();
 
     this.validRawTypes = new HashSet<String>();
     this.validRawTypes.add("image/gif");
@@ -315,6 +404,11 @@ public abstract class HtmlPrinter implements HtmlContentGenerator
   public void setDataWriter(final ContentLocation dataLocation,
                             final NameGenerator dataNameGenerator)
   {
+    if (this.dataLocation != dataLocation)
+    {
+      // the URLs of the images written so far are not valid for the new location.
+      this.knownImageContents.clear();
+    }
     this.dataNameGenerator = dataNameGenerator;
     this.dataLocation = dataLocation;
   }
@@ -608,6 +702,17 @@ public abstract class HtmlPrinter implements HtmlContentGenerator
       cacheKey = null;
     }
 
+    // Images without a loadable source are identified by their pixels, so that the same picture is encoded only once.
+    final ImageContentKey pixelKey = createPixelKey(image, encoderType, quality, alpha);
+    if (pixelKey != null)
+    {
+      final String retval = knownImageContents.get(pixelKey);
+      if (retval != null)
+      {
+        return retval;
+      }
+    }
+
     try
     {
       final ImageData data = getImageData(image, encoderType, quality, alpha);
@@ -615,6 +720,19 @@ public abstract class HtmlPrinter implements HtmlContentGenerator
       {
         return null;
       }
+
+      // different sources may still provide the same image data, which we only need to store once.
+      final ImageContentKey dataKey = ImageContentKey.createFromData(data.getImageData());
+      if (dataKey != null)
+      {
+        final String knownURL = knownImageContents.get(dataKey);
+        if (knownURL != null)
+        {
+          registerImage(cacheKey, pixelKey, null, knownURL);
+          return knownURL;
+        }
+      }
+
       // write the encoded picture ...
       final String filename = IOUtils.getInstance().stripFileExtension(data.getOriginalFileName());
       final ContentItem dataFile = dataLocation.createItem
@@ -632,11 +750,7 @@ public abstract class HtmlPrinter implements HtmlContentGenerator
       {
         out.close();
       }
-      if (cacheKey != null)
-      {
-        knownImages.put(cacheKey, contentURL);
-      }
-
+      registerImage(cacheKey, pixelKey, dataKey, contentURL);
       return contentURL;
     }
     catch (ContentCreationException cce)
@@ -658,6 +772,65 @@ public abstract class HtmlPrinter implements HtmlContentGenerator
     }
   }
 
+  private void registerImage(final String cacheKey,
+                             final ImageContentKey pixelKey,
+                             final ImageContentKey dataKey,
+                             final String contentURL)
+  {
+    if (cacheKey != null)
+    {
+      knownImages.put(cacheKey, contentURL);
+    }
+    if (pixelKey != null)
+    {
+      knownImageContents.put(pixelKey, contentURL);
+    }
+    if (dataKey != null)
+    {
+      knownImageContents.put(dataKey, contentURL);
+    }
+  }
+
+  private ImageContentKey createPixelKey(final ImageContainer image,
+                                         final String encoderType,
+                                         final float quality,
+                                         final boolean alpha)
+  {
+    if (image instanceof LocalImageContainer == false)
+    {
+      return null;
+    }
+    if (image instanceof URLImageContainer && ((URLImageContainer) image).isLoadable())
+    {
+      // the raw data of loadable images is identified by the URL and the data key.
+      return null;
+    }
+
+    final Image awtImage = ((LocalImageContainer) image).getImage();
+    if (awtImage == null)
+    {
+      return null;
+    }
+
+    final String variant = encoderType + ';' + quality + ';' + alpha;
+    if (ImageContentKey.isImmutable(awtImage) == false)
+    {
+      return ImageContentKey.createFromImage(awtImage, variant);
+    }
+
+    final ImageContentKey knownKey = pixelKeys.get(awtImage);
+    if (knownKey != null && variant.equals(knownKey.getVariant()))
+    {
+      return knownKey;
+    }
+    final ImageContentKey pixelKey = ImageContentKey.createFromImage(awtImage, variant);
+    if (pixelKey != null)
+    {
+      pixelKeys.put(awtImage, pixelKey);
+    }
+    return pixelKey;
+  }
+
   private String extractFilename(final ResourceData resourceData)
   {
     final String filename = (String) resourceData.getAttribute(ResourceData.FILENAME);
@@ -792,10 +965,43 @@ public abstract class HtmlPrinter implements HtmlContentGenerator
     return "true".equals(getConfiguration().getConfigProperty(HtmlTableModule.PROPORTIONAL_COLUMN_WIDTHS, "false"));
   }
 
+  /**
+   * Computes the style of a table cell. The result only depends on the resolved style of the content and the cell's
+   * background, so it is cached by the content's style-sheet identity and change-tracker and the background. Repeated
+   * cells (which are the majority of cells in any report) then no longer need to compute their CSS.
+   */
   private StyleBuilder createCellStyle(final RenderBox content,
                                        final CellBackground background,
                                        final DefaultStyleBuilder.CSSKeys[] extraStyleKeys,
                                        final String[] extraStyleValues)
+  {
+    if (styleBuilder instanceof DefaultStyleBuilder == false)
+    {
+      // only the default builder can restore a cached style.
+      return computeCellStyle(content, background, extraStyleKeys, extraStyleValues);
+    }
+
+    final CellStyleCacheKey key = new CellStyleCacheKey(content, background, extraStyleKeys, extraStyleValues);
+    final StyleBuilder.StyleCarrier[] cachedStyle = cellStyleCache.get(key);
+    if (cachedStyle != null)
+    {
+      ((DefaultStyleBuilder) styleBuilder).restore(cachedStyle);
+      return styleBuilder;
+    }
+
+    final StyleBuilder result = computeCellStyle(content, background, extraStyleKeys, extraStyleValues);
+    if (cellStyleCache.size() >= MAX_CELL_STYLE_CACHE_SIZE)
+    {
+      cellStyleCache.clear();
+    }
+    cellStyleCache.put(key, result.toArray());
+    return result;
+  }
+
+  private StyleBuilder computeCellStyle(final RenderBox content,
+                                        final CellBackground background,
+                                        final DefaultStyleBuilder.CSSKeys[] extraStyleKeys,
+                                        final String[] extraStyleValues)
   {
     if (content == null)
     {
@@ -1354,10 +1560,9 @@ public abstract class HtmlPrinter implements HtmlContentGenerator
         documentContentItem = contentLocation.createItem
             (contentNameGenerator.generateName(null, "text/html"));
 
-        final OutputStream out = documentContentItem.getOutputStream();
         final String encoding = configuration.getConfigProperty
             (HtmlTableModule.ENCODING, EncodingRegistry.getPlatformDefaultEncoding());
-        writer = new BufferedWriter(new OutputStreamWriter(out, encoding));
+        writer = new CharsetEncodingWriter(createDocumentOutputStream(), encoding);
 
         final DefaultTagDescription td = new DefaultTagDescription();
         td.setDefaultNamespace(XHTML_NAMESPACE);
@@ -1398,13 +1603,29 @@ public abstract class HtmlPrinter implements HtmlContentGenerator
           }
           else
           {
-            if (isExternalStyleSheetRequested())
+            if (isSharedStyleSheetActive())
             {
-              this.styleFile = dataLocation.createItem(dataNameGenerator.generateName("style", "text/css"));
+              // all documents of this run link to the same stylesheet, so that class names stay stable and the
+              // styles are written only once when the processing has been finished.
+              if (sharedStyleFile == null)
+              {
+                this.sharedStyleFile = dataLocation.createItem(dataNameGenerator.generateName("style", "text/css"));
+                this.sharedStyleManager = new GlobalStyleManager();
+              }
+              this.styleFile = sharedStyleFile;
               this.styleFileUrl = urlRewriter.rewrite(documentContentItem, styleFile);
+              this.styleManager = sharedStyleManager;
             }
+            else
+            {
+              if (isExternalStyleSheetRequested())
+              {
+                this.styleFile = dataLocation.createItem(dataNameGenerator.generateName("style", "text/css"));
+                this.styleFileUrl = urlRewriter.rewrite(documentContentItem, styleFile);
+              }
 
-            this.styleManager = new GlobalStyleManager();
+              this.styleManager = new GlobalStyleManager();
+            }
             if (isForceBufferedWriting() == false && styleFile != null)
             {
               this.xmlWriter = new XmlWriter(writer, td);
@@ -1496,9 +1717,13 @@ public abstract class HtmlPrinter implements HtmlContentGenerator
               }
               else
               {
-                final AttributeList attrs = new AttributeList();
-                attrs.setAttribute(HtmlPrinter.XHTML_NAMESPACE, "style", "font-size: 1pt");
-                xmlWriter.writeTag(HtmlPrinter.XHTML_NAMESPACE, "td", attrs, XmlWriterSupport.OPEN);
+                if (emptyCellAttributes == null)
+                {
+                  // the attributes never change, so there is no need to create them for every empty cell.
+                  emptyCellAttributes = new AttributeList();
+                  emptyCellAttributes.setAttribute(HtmlPrinter.XHTML_NAMESPACE, "style", "font-size: 1pt");
+                }
+                xmlWriter.writeTag(HtmlPrinter.XHTML_NAMESPACE, "td", emptyCellAttributes, XmlWriterSupport.OPEN);
                 xmlWriter.writeText("&nbsp;");
                 xmlWriter.writeCloseTag();
               }
@@ -1795,13 +2020,10 @@ public abstract class HtmlPrinter implements HtmlContentGenerator
 
     if (styleFile != null)
     {
-      final String encoding = configuration.getConfigProperty
-          (HtmlTableModule.ENCODING, EncodingRegistry.getPlatformDefaultEncoding());
-      final Writer styleOut = new OutputStreamWriter
-          (new BufferedOutputStream(styleFile.getOutputStream()), encoding);
-      styleManager.write(styleOut);
-      styleOut.flush();
-      styleOut.close();
+      if (styleFile != sharedStyleFile)
+      {
+        writeStyleFile(styleFile, styleManager);
+      }
 
       if (isForceBufferedWriting() == false)
       {
@@ -1847,6 +2069,93 @@ public abstract class HtmlPrinter implements HtmlContentGenerator
     docWriter.close();
   }
 
+  private OutputStream createDocumentOutputStream() throws ContentIOException, IOException
+  {
+    final OutputStream out = documentContentItem.getOutputStream();
+    if ("true".equals(configuration.getConfigProperty(HtmlTableModule.GZIP_OUTPUT)))
+    {
+      return new GZIPOutputStream(out, 8192);
+    }
+    return out;
+  }
+
+  private void writeStyleFile(final ContentItem styleFile,
+                              final StyleManager styleManager) throws IOException, ContentIOException
+  {
+    final String encoding = configuration.getConfigProperty
+        (HtmlTableModule.ENCODING, EncodingRegistry.getPlatformDefaultEncoding());
+    final Writer styleOut = new CharsetEncodingWriter(styleFile.getOutputStream(), encoding);
+    styleManager.write(styleOut);
+    styleOut.flush();
+    styleOut.close();
+  }
+
+  /**
+   * Defines whether all documents generated by this printer share a single external stylesheet. Output processors
+   * that generate more than one document per report run enable this and must call {@link
+   * #finishSharedStyleSheet()} once the report processing has been finished. The shared stylesheet is only used if
+   * the configuration requests external stylesheets and does not disable the shared stylesheet.
+   *
+   * @param sharedStyleSheet true, if a shared stylesheet should be used, false otherwise.
+   */
+  public void setSharedStyleSheet(final boolean sharedStyleSheet)
+  {
+    this.sharedStyleSheet = sharedStyleSheet;
+  }
+
+  public boolean isSharedStyleSheet()
+  {
+    return sharedStyleSheet;
+  }
+
+  /**
+   * Writes the shared stylesheet, if one has been used. After this call the next document starts a new stylesheet.
+   *
+   * @throws ContentProcessingException if writing the stylesheet failed.
+   */
+  public void finishSharedStyleSheet() throws ContentProcessingException
+  {
+    if (sharedStyleFile == null)
+    {
+      return;
+    }
+
+    try
+    {
+      if (logger.isDebugEnabled())
+      {
+        logger.debug("Writing shared stylesheet with " + sharedStyleManager.getStyleCount() + " styles.");
+      }
+      writeStyleFile(sharedStyleFile, sharedStyleManager);
+    }
+    catch (IOException ioe)
+    {
+      throw new ContentProcessingException("IOError while writing the shared stylesheet", ioe);
+    }
+    catch (ContentIOException e)
+    {
+      throw new ContentProcessingException("Content-IOError while writing the shared stylesheet", e);
+    }
+    finally
+    {
+      sharedStyleFile = null;
+      sharedStyleManager = null;
+    }
+  }
+
+  private boolean isSharedStyleSheetActive()
+  {
+    if (sharedStyleSheet == false)
+    {
+      return false;
+    }
+    if (isExternalStyleSheetRequested() == false)
+    {
+      return false;
+    }
+    return "false".equals(configuration.getConfigProperty(HtmlTableModule.SHARED_STYLESHEET)) == false;
+  }
+
   private boolean isForceBufferedWriting()
   {
     return "true".equals(configuration.getConfigProperty
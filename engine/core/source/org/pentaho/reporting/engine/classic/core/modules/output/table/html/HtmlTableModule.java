@@ -45,6 +45,18 @@ public class HtmlTableModule extends AbstractModule
    */
   public static final String BODY_FRAGMENT = "org.pentaho.reporting.engine.classic.core.modules.output.table.html.BodyFragment";
 
+  /**
+   * Key for compressing the generated HTML document with GZip (must contain the value "true" to be considered
+   * <code>true</code>). The caller is responsible for serving the document with a matching content-encoding.
+   */
+  public static final String GZIP_OUTPUT = "org.pentaho.reporting.engine.classic.core.modules.output.table.html.GZipOutput";
+
+  /**
+   * Key for sharing a single external stylesheet between all pages of a paged HTML export (must contain the value
+   * "false" to be considered <code>false</code>).
+   */
+  public static final String SHARED_STYLESHEET = "org.pentaho.reporting.engine.classic.core.modules.output.table.html.SharedStyleSheet";
+
   /**
    * Key for allowing raw link targets (must contain the value "true" to be considered <code>true</code>
    */
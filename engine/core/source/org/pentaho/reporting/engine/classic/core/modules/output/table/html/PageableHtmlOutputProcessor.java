@@ -21,6 +21,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+import org.pentaho.reporting.engine.classic.core.InvalidReportStateException;
 import org.pentaho.reporting.engine.classic.core.layout.model.LogicalPageBox;
 import org.pentaho.reporting.engine.classic.core.layout.output.ContentProcessingException;
 import org.pentaho.reporting.engine.classic.core.layout.output.DisplayAllFlowSelector;
@@ -130,6 +131,8 @@ public class PageableHtmlOutputProcessor extends AbstractTableOutputProcessor
       return;
     }
 
+    // all pages share one stylesheet, which is written once the last page has been generated.
+    printer.setSharedStyleSheet(true);
     printer.print(logicalPageKey, logicalPage, contentProducer, metaData, false);
   }
 
@@ -141,5 +144,16 @@ public class PageableHtmlOutputProcessor extends AbstractTableOutputProcessor
     }
 
     this.metaData.commit();
+    if (printer != null)
+    {
+      try
+      {
+        printer.finishSharedStyleSheet();
+      }
+      catch (ContentProcessingException e)
+      {
+        throw new InvalidReportStateException("Failed to write the shared stylesheet", e);
+      }
+    }
   }
 }
@@ -250,6 +250,22 @@ public final class DefaultStyleBuilder implements StyleBuilder
     return usedStyles.clone();
   }
 
+  /**
+   * Replaces the current content of this builder with the given style carriers, as returned by {@link #toArray()}.
+   * This method is not part of the {@link StyleBuilder} interface, so that existing implementations of that interface
+   * keep working.
+   *
+   * @param styles the style carriers.
+   */
+  public void restore(final StyleCarrier[] styles)
+  {
+    if (styles.length != usedStyles.length)
+    {
+      throw new IllegalArgumentException();
+    }
+    System.arraycopy(styles, 0, usedStyles, 0, styles.length);
+  }
+
   public boolean isEmpty()
   {
     for (final StyleCarrier sc : usedStyles)
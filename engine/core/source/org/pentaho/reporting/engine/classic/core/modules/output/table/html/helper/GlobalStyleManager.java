@@ -80,10 +80,11 @@ public class GlobalStyleManager implements StyleManager
     }
 
     final StoredStyle value = new StoredStyle(styleBuilder);
-    final String styleText = styleBuilder.toString();
     String styleName = styles.get(value);
     if (styleName == null)
     {
+      // the style text is only needed for new styles, known styles reuse their cached class name.
+      final String styleText = styleBuilder.toString();
       styleName = "style-" + nameCounter;
       styles.put(value, styleName);
       if (stylesText.contains(styleText))
@@ -106,6 +107,16 @@ public class GlobalStyleManager implements StyleManager
     return attributeList;
   }
 
+  /**
+   * Returns the number of distinct styles known to this style manager.
+   *
+   * @return the number of styles.
+   */
+  public int getStyleCount()
+  {
+    return styles.size();
+  }
+
   /**
    * Returns the global stylesheet, or null, if no global stylesheet was built.
    *
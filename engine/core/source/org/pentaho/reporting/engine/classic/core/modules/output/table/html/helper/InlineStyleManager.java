@@ -21,12 +21,39 @@ import java.io.IOException;
 import java.io.Writer;
 
 import org.pentaho.reporting.engine.classic.core.modules.output.table.html.HtmlPrinter;
+import org.pentaho.reporting.libraries.base.util.LFUMap;
 import org.pentaho.reporting.libraries.xmlns.common.AttributeList;
 
 public class InlineStyleManager implements StyleManager
 {
+  private static final int STYLE_CACHE_SIZE = 500;
+
+  private LFUMap<StoredStyle, String> styleCache;
+
   public InlineStyleManager()
   {
+    this.styleCache = new LFUMap<StoredStyle, String>(STYLE_CACHE_SIZE);
+  }
+
+  /**
+   * Returns the style text for the given style builder. Reports usually use only a small set of distinct styles,
+   * so the formatted text is cached and shared between all elements with the same style.
+   *
+   * @param styleBuilder the style builder.
+   * @return the formatted style text.
+   */
+  private String computeStyleText(final StyleBuilder styleBuilder)
+  {
+    final StoredStyle key = new StoredStyle(styleBuilder);
+    final String cachedText = styleCache.get(key);
+    if (cachedText != null)
+    {
+      return cachedText;
+    }
+
+    final String styleText = styleBuilder.toString();
+    styleCache.put(key, styleText);
+    return styleText;
   }
 
   /**
@@ -51,22 +78,23 @@ public class InlineStyleManager implements StyleManager
       return attributeList;
     }
     
+    final String styleText = computeStyleText(styleBuilder);
     final String style = attributeList.getAttribute(HtmlPrinter.XHTML_NAMESPACE, "style");
     if (style != null)
     {
       final String trimmedStyle = style.trim();
       if (trimmedStyle.length() > 0 && trimmedStyle.charAt(trimmedStyle.length() - 1) == ';')
       {
-        attributeList.setAttribute(HtmlPrinter.XHTML_NAMESPACE, "style", style + ' ' + styleBuilder.toString());
+        attributeList.setAttribute(HtmlPrinter.XHTML_NAMESPACE, "style", style + ' ' + styleText);
       }
       else
       {
-        attributeList.setAttribute(HtmlPrinter.XHTML_NAMESPACE, "style", style + "; " + styleBuilder.toString());
+        attributeList.setAttribute(HtmlPrinter.XHTML_NAMESPACE, "style", style + "; " + styleText);
       }
       return attributeList;
     }
 
-    attributeList.setAttribute(HtmlPrinter.XHTML_NAMESPACE, "style", styleBuilder.toString());
+    attributeList.setAttribute(HtmlPrinter.XHTML_NAMESPACE, "style", styleText);
     return attributeList;
   }
 
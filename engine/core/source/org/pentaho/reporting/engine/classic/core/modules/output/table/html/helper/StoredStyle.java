@@ -36,8 +36,8 @@ public class StoredStyle
     {
       if (sc != null)
       {
-        final DefaultStyleBuilder.CSSKeys s = sc.getKey();
-        hashCode = s.hashCode() + hashCode * 23;
+        // include the values, so that styles using the same keys do not all end up in the same hash bucket.
+        hashCode = sc.hashCode() + hashCode * 23;
       }
       else
       {
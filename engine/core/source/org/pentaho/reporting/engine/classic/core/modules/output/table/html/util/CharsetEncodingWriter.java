@@ -0,0 +1,239 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+
+
+package org.pentaho.reporting.engine.classic.core.modules.output.table.html.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * A buffered writer that encodes its character buffer directly into the target charset. Unlike the combination of
+ * a <code>BufferedWriter</code> and an <code>OutputStreamWriter</code>, the characters are copied only once and
+ * the writer does not synchronize on each call. Instances of this class must not be shared between threads.
+ * <p/>
+ * Characters that cannot be represented in the target charset are replaced by the charset's replacement bytes,
+ * the same way an <code>OutputStreamWriter</code> would do it.
+ *
+ * @author Thomas Morgner
+ */
+public class CharsetEncodingWriter extends Writer
+{
+  private static final int DEFAULT_BUFFER_SIZE = 16384;
+
+  private OutputStream out;
+  private CharsetEncoder encoder;
+  private char[] buffer;
+  private int position;
+  private ByteBuffer byteBuffer;
+
+  public CharsetEncodingWriter(final OutputStream out,
+                               final String encoding) throws UnsupportedEncodingException
+  {
+    this(out, encoding, DEFAULT_BUFFER_SIZE);
+  }
+
+  public CharsetEncodingWriter(final OutputStream out,
+                               final String encoding,
+                               final int bufferSize) throws UnsupportedEncodingException
+  {
+    if (out == null)
+    {
+      throw new NullPointerException();
+    }
+    if (encoding == null)
+    {
+      throw new NullPointerException();
+    }
+    if (bufferSize < 16)
+    {
+      throw new IllegalArgumentException();
+    }
+
+    final Charset charset;
+    try
+    {
+      charset = Charset.forName(encoding);
+    }
+    catch (IllegalArgumentException iae)
+    {
+      throw new UnsupportedEncodingException(encoding);
+    }
+
+    this.out = out;
+    this.encoder = charset.newEncoder();
+    this.encoder.onMalformedInput(CodingErrorAction.REPLACE);
+    this.encoder.onUnmappableCharacter(CodingErrorAction.REPLACE);
+    this.buffer = new char[bufferSize];
+    this.byteBuffer = ByteBuffer.allocate((int) Math.ceil(bufferSize * encoder.maxBytesPerChar()) + 16);
+  }
+
+  public void write(final int c) throws IOException
+  {
+    ensureOpen();
+    if (position == buffer.length)
+    {
+      encodeBuffer(false);
+    }
+    buffer[position] = (char) c;
+    position += 1;
+  }
+
+  public void write(final char[] cbuf, final int off, final int len) throws IOException
+  {
+    ensureOpen();
+    if (off < 0 || len < 0 || off + len > cbuf.length)
+    {
+      throw new IndexOutOfBoundsException();
+    }
+
+    int offset = off;
+    int remaining = len;
+    while (remaining > 0)
+    {
+      if (position == buffer.length)
+      {
+        encodeBuffer(false);
+      }
+      final int count = Math.min(remaining, buffer.length - position);
+      System.arraycopy(cbuf, offset, buffer, position, count);
+      position += count;
+      offset += count;
+      remaining -= count;
+    }
+  }
+
+  public void write(final String str, final int off, final int len) throws IOException
+  {
+    ensureOpen();
+    if (off < 0 || len < 0 || off + len > str.length())
+    {
+      throw new IndexOutOfBoundsException();
+    }
+
+    int offset = off;
+    int remaining = len;
+    while (remaining > 0)
+    {
+      if (position == buffer.length)
+      {
+        encodeBuffer(false);
+      }
+      final int count = Math.min(remaining, buffer.length - position);
+      str.getChars(offset, offset + count, buffer, position);
+      position += count;
+      offset += count;
+      remaining -= count;
+    }
+  }
+
+  public void flush() throws IOException
+  {
+    ensureOpen();
+    encodeBuffer(false);
+    out.flush();
+  }
+
+  public void close() throws IOException
+  {
+    if (out == null)
+    {
+      return;
+    }
+
+    try
+    {
+      encodeBuffer(true);
+      while (encoder.flush(byteBuffer).isOverflow())
+      {
+        writeBytes();
+      }
+      writeBytes();
+      out.flush();
+    }
+    finally
+    {
+      out.close();
+      out = null;
+    }
+  }
+
+  private void ensureOpen() throws IOException
+  {
+    if (out == null)
+    {
+      throw new IOException("Writer is closed.");
+    }
+  }
+
+  /**
+   * Encodes the buffered characters and writes the resulting bytes to the stream. An incomplete surrogate pair at
+   * the end of the buffer is kept until more characters arrive or the end of the input is reached.
+   *
+   * @param endOfInput true, if no more characters will be written.
+   * @throws IOException if an error occured while writing to the stream.
+   */
+  private void encodeBuffer(final boolean endOfInput) throws IOException
+  {
+    if (position == 0 && endOfInput == false)
+    {
+      return;
+    }
+
+    final CharBuffer charBuffer = CharBuffer.wrap(buffer, 0, position);
+    while (true)
+    {
+      final CoderResult result = encoder.encode(charBuffer, byteBuffer, endOfInput);
+      if (result.isOverflow())
+      {
+        writeBytes();
+        continue;
+      }
+      if (result.isError())
+      {
+        // cannot happen, as we replace all malformed and unmappable input.
+        result.throwException();
+      }
+      break;
+    }
+    writeBytes();
+
+    final int remaining = charBuffer.remaining();
+    if (remaining > 0)
+    {
+      System.arraycopy(buffer, charBuffer.position(), buffer, 0, remaining);
+    }
+    position = remaining;
+  }
+
+  private void writeBytes() throws IOException
+  {
+    if (byteBuffer.position() > 0)
+    {
+      out.write(byteBuffer.array(), 0, byteBuffer.position());
+      byteBuffer.clear();
+    }
+  }
+}
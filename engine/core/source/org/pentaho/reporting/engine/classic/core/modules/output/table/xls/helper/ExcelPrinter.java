@@ -44,6 +44,8 @@ import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.ss.usermodel.WorkbookFactory;
 import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.pentaho.reporting.engine.classic.core.AttributeNames;
 import org.pentaho.reporting.engine.classic.core.DefaultImageReference;
@@ -106,6 +108,10 @@ public class ExcelPrinter
   private boolean useXlsxFormat;
   private int sheetFreezeTop;
   private int sheetFreezeLeft;
+  private boolean streamingXlsx;
+  private boolean streamingSharedStrings;
+  private boolean streamingCompressTempFiles;
+  private boolean richTextWarningIssued;
 
   public ExcelPrinter(final OutputStream outputStream, final ResourceManager resourceManager)
   {
@@ -167,6 +173,13 @@ public class ExcelPrinter
     {
       this.scaleFactor = 50;
     }
+
+    this.streamingXlsx = "true".equals(config.getConfigProperty
+        ("org.pentaho.reporting.engine.classic.core.modules.output.table.xls.StreamingXlsx"));
+    this.streamingSharedStrings = "true".equals(config.getConfigProperty
+        ("org.pentaho.reporting.engine.classic.core.modules.output.table.xls.StreamingSharedStrings"));
+    this.streamingCompressTempFiles = "true".equals(config.getConfigProperty
+        ("org.pentaho.reporting.engine.classic.core.modules.output.table.xls.StreamingCompressTempFiles"));
   }
 
   public InputStream getTemplateInputStream()
@@ -452,6 +465,8 @@ public class ExcelPrinter
 
     }
 
+    flushFinishedRows(finishRow);
+
     if (incremental == false)
     {
       // cleanup ..
@@ -460,6 +475,31 @@ public class ExcelPrinter
     }
   }
 
+  /**
+   * Writes all finished rows of a streaming sheet to the temporary sheet file, so that the rows no longer occupy
+   * memory. Rows at or after the given row may have been created by a merged region that spans into the unfinished
+   * area and must stay accessible.
+   *
+   * @param finishRow the first row that has not been fully printed yet.
+   */
+  private void flushFinishedRows(final int finishRow)
+  {
+    if (sheet instanceof SXSSFSheet == false)
+    {
+      return;
+    }
+
+    final int remainingRows = Math.max(0, sheet.getLastRowNum() - finishRow + 1);
+    try
+    {
+      ((SXSSFSheet) sheet).flushRows(remainingRows);
+    }
+    catch (IOException e)
+    {
+      throw new InvalidReportStateException("Failed to write rows to the temporary sheet data.", e);
+    }
+  }
+
   private void mergeCellRegion(final TableRectangle rectangle,
                                final int row,
                                final int col,
@@ -599,7 +639,15 @@ public class ExcelPrinter
 
     if (value instanceof RichTextString)
     {
-      cell.setCellValue((RichTextString) value);
+      final RichTextString richText = (RichTextString) value;
+      if (workbook instanceof SXSSFWorkbook && richText.numFormattingRuns() > 1 && richTextWarningIssued == false)
+      {
+        // SXSSF only writes the plain string value of a cell.
+        ExcelPrinter.logger.warn("Streaming XLSX exports cannot store rich-text formatting. " +
+            "Cells with mixed fonts are written as plain text.");
+        richTextWarningIssued = true;
+      }
+      cell.setCellValue(richText);
     }
     else if (value instanceof Date)
     {
@@ -734,11 +782,24 @@ public class ExcelPrinter
       }
       finally
       {
+        if (workbook instanceof SXSSFWorkbook)
+        {
+          // removes the temporary sheet files.
+          ((SXSSFWorkbook) workbook).dispose();
+        }
         workbook = null;
       }
     }
     final long end = System.currentTimeMillis();
     logger.info ("Closing workbook finished in " + ((end - start) / 1000f) + "s");
+    if (cellStyleProducer != null && logger.isDebugEnabled())
+    {
+      logger.debug("Cell style statistics: " + cellStyleProducer.getStyleRequestCount() + " requests, " +
+          cellStyleProducer.getStyleSheetCacheHits() + " style-sheet cache hits, " +
+          cellStyleProducer.getStyleCacheHits() + " style cache hits, " +
+          cellStyleProducer.getCreatedStyleCount() + " created styles, " +
+          cellStyleProducer.getRejectedStyleCount() + " rejected styles");
+    }
 
   }
 
@@ -761,6 +822,11 @@ public class ExcelPrinter
           makeUnique(sheetName);
         }
 
+        if (streamingXlsx && workbook instanceof XSSFWorkbook)
+        {
+          // the sheets of the template stay untouched, only the generated sheets are streamed.
+          return createStreamingWorkbook((XSSFWorkbook) workbook);
+        }
         return workbook;
       }
       catch (IOException e)
@@ -774,6 +840,10 @@ public class ExcelPrinter
     }
     if (isUseXlsxFormat())
     {
+      if (streamingXlsx)
+      {
+        return createStreamingWorkbook(new XSSFWorkbook());
+      }
       return new XSSFWorkbook();
     }
     else
@@ -782,6 +852,19 @@ public class ExcelPrinter
     }
   }
 
+  /**
+   * Creates a workbook that writes finished rows into temporary files on the local disk instead of keeping them in
+   * memory. Rows are flushed explicitly once the table content producer declares them finished, so the workbook does
+   * not use an automatic row window.
+   *
+   * @param template the workbook holding styles and predefined sheets.
+   * @return the streaming workbook.
+   */
+  private Workbook createStreamingWorkbook(final XSSFWorkbook template)
+  {
+    return new SXSSFWorkbook(template, -1, streamingCompressTempFiles, streamingSharedStrings);
+  }
+
   private Sheet openSheet(final String sheetName)
   {
     if (sheetName == null)
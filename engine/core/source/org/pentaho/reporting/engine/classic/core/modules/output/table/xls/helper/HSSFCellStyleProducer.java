@@ -30,7 +30,6 @@ import org.apache.poi.ss.usermodel.Font;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.xssf.usermodel.XSSFCellStyle;
 import org.apache.poi.xssf.usermodel.XSSFColor;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.apache.poi.xssf.usermodel.extensions.XSSFCellBorder;
 import org.pentaho.reporting.engine.classic.core.ElementAlignment;
 import org.pentaho.reporting.engine.classic.core.layout.model.BorderEdge;
@@ -41,7 +40,9 @@ import org.pentaho.reporting.engine.classic.core.style.ElementStyleKeys;
 import org.pentaho.reporting.engine.classic.core.style.StyleSheet;
 import org.pentaho.reporting.engine.classic.core.style.TextStyleKeys;
 import org.pentaho.reporting.engine.classic.core.style.TextWrap;
+import org.pentaho.reporting.engine.classic.core.util.InstanceID;
 import org.pentaho.reporting.engine.classic.core.util.geom.StrictGeomUtility;
+import org.pentaho.reporting.libraries.base.util.ObjectUtilities;
 
 /**
  * The cellstyle producer converts the JFreeReport content into excel cell styles. This class is able to use the POI 2.0
@@ -53,6 +54,73 @@ public class HSSFCellStyleProducer
 {
   private static final Log logger = LogFactory.getLog(HSSFCellStyleProducer.class);
 
+  /**
+   * The maximum number of entries in the style-sheet cache. Once that limit is reached, the cache is cleared. The
+   * workbook styles themselves stay deduplicated by the main style cache.
+   */
+  private static final int MAX_STYLESHEET_CACHE_SIZE = 20000;
+
+  /**
+   * Identifies the resolved style of an element by its style-sheet identity and change-tracker instead of the
+   * resolved style values. Repeating bands share the same style-sheet, so a lookup with this key avoids computing
+   * the full HSSFCellStyleKey for every cell.
+   */
+  private static class StyleSheetCacheKey
+  {
+    private InstanceID styleSheetId;
+    private long changeTracker;
+    private CellBackground background;
+    private int hashCode;
+
+    protected StyleSheetCacheKey(final RenderBox element, final CellBackground background)
+    {
+      if (element != null)
+      {
+        final StyleSheet styleSheet = element.getStyleSheet();
+        this.styleSheetId = styleSheet.getId();
+        this.changeTracker = styleSheet.getChangeTracker();
+      }
+      this.background = background;
+
+      int result = styleSheetId != null ? styleSheetId.hashCode() : 0;
+      result = 31 * result + (int) (changeTracker ^ (changeTracker >>> 32));
+      result = 31 * result + (background != null ? background.hashCode() : 0);
+      this.hashCode = result;
+    }
+
+    public boolean equals(final Object o)
+    {
+      if (this == o)
+      {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass())
+      {
+        return false;
+      }
+
+      final StyleSheetCacheKey that = (StyleSheetCacheKey) o;
+      if (hashCode != that.hashCode)
+      {
+        return false;
+      }
+      if (changeTracker != that.changeTracker)
+      {
+        return false;
+      }
+      if (ObjectUtilities.equal(styleSheetId, that.styleSheetId) == false)
+      {
+        return false;
+      }
+      return ObjectUtilities.equal(background, that.background);
+    }
+
+    public int hashCode()
+    {
+      return hashCode;
+    }
+  }
+
   private static class HSSFCellStyleKey
   {
     /**
@@ -563,6 +631,17 @@ public class HSSFCellStyleProducer
    */
   private HashMap<HSSFCellStyleKey,CellStyle> styleCache;
 
+  /**
+   * The first level cache, mapping style-sheets and backgrounds to already generated styles.
+   */
+  private HashMap<StyleSheetCacheKey,CellStyle> styleSheetCache;
+
+  private int styleRequestCount;
+  private int styleSheetCacheHits;
+  private int styleCacheHits;
+  private int createdStyleCount;
+  private int rejectedStyleCount;
+
   private boolean warningDone;
   private boolean hardLimit;
   private ExcelColorProducer colorProducer;
@@ -589,28 +668,23 @@ public class HSSFCellStyleProducer
     }
     this.colorProducer = colorProducer;
     this.styleCache = new HashMap<HSSFCellStyleKey, CellStyle>();
+    this.styleSheetCache = new HashMap<StyleSheetCacheKey, CellStyle>();
     this.workbook = workbook;
     this.fontFactory = new ExcelFontFactory(workbook, fontColorProducer);
     this.dataFormat = workbook.createDataFormat();
     this.hardLimit = hardLimit;
 
-    if (workbook instanceof XSSFWorkbook)
+    // Read in the styles ... Streaming workbooks hand out the XSSF styles of their backing workbook.
+    final short predefinedStyles = workbook.getNumCellStyles();
+    for (short i = 0; i < predefinedStyles; i++)
     {
-      final XSSFWorkbook xssfWorkbook = (XSSFWorkbook) workbook;
-      final short predefinedStyles = workbook.getNumCellStyles();
-      for (short i = 0; i < predefinedStyles; i++)
+      final CellStyle cellStyleAt = workbook.getCellStyleAt(i);
+      if (cellStyleAt instanceof XSSFCellStyle)
       {
-        final XSSFCellStyle cellStyleAt = xssfWorkbook.getCellStyleAt(i);
-        this.styleCache.put(new HSSFCellStyleKey(cellStyleAt), cellStyleAt);
+        this.styleCache.put(new HSSFCellStyleKey((XSSFCellStyle) cellStyleAt), cellStyleAt);
       }
-    }
-    else
-    {
-      // Read in the styles ...
-      final short predefinedStyles = workbook.getNumCellStyles();
-      for (short i = 0; i < predefinedStyles; i++)
+      else
       {
-        final CellStyle cellStyleAt = workbook.getCellStyleAt(i);
         this.styleCache.put(new HSSFCellStyleKey(cellStyleAt), cellStyleAt);
       }
     }
@@ -627,12 +701,26 @@ public class HSSFCellStyleProducer
   public CellStyle createCellStyle(final RenderBox element,
                                    final CellBackground bg)
   {
+    styleRequestCount += 1;
+
+    // first check, whether we have seen this style-sheet with this background before ..
+    final StyleSheetCacheKey styleSheetKey = new StyleSheetCacheKey(element, bg);
+    final CellStyle styleSheetResult = styleSheetCache.get(styleSheetKey);
+    if (styleSheetResult != null)
+    {
+      styleSheetCacheHits += 1;
+      return styleSheetResult;
+    }
+
     // check, whether that style is already created
     final HSSFCellStyleKey styleKey = new HSSFCellStyleKey
         (bg, element, dataFormat, fontFactory, colorProducer, fontColorProducer);
-    if (styleCache.containsKey(styleKey))
+    final CellStyle cachedStyle = styleCache.get(styleKey);
+    if (cachedStyle != null)
     {
-      return styleCache.get(styleKey);
+      styleCacheHits += 1;
+      putStyleSheetCache(styleSheetKey, cachedStyle);
+      return cachedStyle;
     }
 
     if ((styleCache.size()) > 4000)
@@ -646,6 +734,7 @@ public class HSSFCellStyleProducer
       {
         HSSFCellStyleProducer.logger.warn(
             "HSSFCellStyleProducer will not create more styles. New cells will not have any style.");
+        rejectedStyleCount += 1;
         return null;
       }
     }
@@ -726,9 +815,70 @@ public class HSSFCellStyleProducer
 
 
     styleCache.put(styleKey, hssfCellStyle);
+    putStyleSheetCache(styleSheetKey, hssfCellStyle);
+    createdStyleCount += 1;
     return hssfCellStyle;
   }
 
+  private void putStyleSheetCache(final StyleSheetCacheKey key, final CellStyle style)
+  {
+    if (styleSheetCache.size() >= MAX_STYLESHEET_CACHE_SIZE)
+    {
+      styleSheetCache.clear();
+    }
+    styleSheetCache.put(key, style);
+  }
+
+  /**
+   * Returns the number of style requests made to this producer.
+   *
+   * @return the number of style requests.
+   */
+  public int getStyleRequestCount()
+  {
+    return styleRequestCount;
+  }
+
+  /**
+   * Returns the number of requests answered from the style-sheet cache without resolving the style values.
+   *
+   * @return the number of style-sheet cache hits.
+   */
+  public int getStyleSheetCacheHits()
+  {
+    return styleSheetCacheHits;
+  }
+
+  /**
+   * Returns the number of requests answered by an existing workbook style after resolving the style values.
+   *
+   * @return the number of style cache hits.
+   */
+  public int getStyleCacheHits()
+  {
+    return styleCacheHits;
+  }
+
+  /**
+   * Returns the number of cell styles added to the workbook.
+   *
+   * @return the number of created styles.
+   */
+  public int getCreatedStyleCount()
+  {
+    return createdStyleCount;
+  }
+
+  /**
+   * Returns the number of requests that did not receive a style because the style limit had been reached.
+   *
+   * @return the number of rejected style requests.
+   */
+  public int getRejectedStyleCount()
+  {
+    return rejectedStyleCount;
+  }
+
   /**
    * Converts the given element alignment into one of the HSSFCellStyle-constants.
    *
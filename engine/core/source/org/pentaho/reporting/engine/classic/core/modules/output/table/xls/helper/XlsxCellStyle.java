@@ -0,0 +1,448 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+
+
+package org.pentaho.reporting.engine.classic.core.modules.output.table.xls.helper;
+
+import java.awt.Color;
+
+import org.pentaho.reporting.engine.classic.core.ElementAlignment;
+import org.pentaho.reporting.engine.classic.core.layout.model.BorderEdge;
+import org.pentaho.reporting.engine.classic.core.layout.model.RenderBox;
+import org.pentaho.reporting.engine.classic.core.modules.output.table.base.CellBackground;
+import org.pentaho.reporting.engine.classic.core.style.BorderStyle;
+import org.pentaho.reporting.engine.classic.core.style.ElementStyleKeys;
+import org.pentaho.reporting.engine.classic.core.style.StyleSheet;
+import org.pentaho.reporting.engine.classic.core.style.TextStyleKeys;
+import org.pentaho.reporting.engine.classic.core.style.TextWrap;
+import org.pentaho.reporting.engine.classic.core.util.geom.StrictGeomUtility;
+import org.pentaho.reporting.libraries.base.util.ObjectUtilities;
+
+/**
+ * An immutable cell style for the direct XLSX writer. All values are resolved from the element's style-sheet and the
+ * cell background once, and the hash code is computed when the style is created, so that looking up a style in the
+ * style pool is cheap.
+ *
+ * @author Thomas Morgner
+ */
+public final class XlsxCellStyle
+{
+  public static final int NO_COLOR = -1;
+
+  private String fontName;
+  private int fontSize;
+  private boolean bold;
+  private boolean italic;
+  private boolean underline;
+  private boolean strikethrough;
+  private int textColor;
+  private int fillColor;
+  private String[] borderStyles;
+  private int[] borderColors;
+  private String horizontalAlignment;
+  private String verticalAlignment;
+  private boolean wrapText;
+  private String dataFormat;
+  private int hashCode;
+
+  /**
+   * Creates a new cell style.
+   *
+   * @param fontName            the font family or null for the default font.
+   * @param fontSize            the font size in points, or zero for the default size.
+   * @param bold                whether the text is bold.
+   * @param italic              whether the text is italic.
+   * @param underline           whether the text is underlined.
+   * @param strikethrough       whether the text is struck through.
+   * @param textColor           the text color as RGB value or NO_COLOR.
+   * @param fillColor           the background color as RGB value or NO_COLOR.
+   * @param borderStyles        the SpreadsheetML border styles for the top, left, bottom and right edge, null for no
+   *                            border.
+   * @param borderColors        the RGB border colors for the top, left, bottom and right edge.
+   * @param horizontalAlignment the SpreadsheetML horizontal alignment or null.
+   * @param verticalAlignment   the SpreadsheetML vertical alignment or null.
+   * @param wrapText            whether the text wraps.
+   * @param dataFormat          the Excel data format string or null.
+   */
+  public XlsxCellStyle(final String fontName,
+                       final int fontSize,
+                       final boolean bold,
+                       final boolean italic,
+                       final boolean underline,
+                       final boolean strikethrough,
+                       final int textColor,
+                       final int fillColor,
+                       final String[] borderStyles,
+                       final int[] borderColors,
+                       final String horizontalAlignment,
+                       final String verticalAlignment,
+                       final boolean wrapText,
+                       final String dataFormat)
+  {
+    if (borderStyles == null)
+    {
+      throw new NullPointerException();
+    }
+    if (borderColors == null)
+    {
+      throw new NullPointerException();
+    }
+    if (borderStyles.length != 4 || borderColors.length != 4)
+    {
+      throw new IllegalArgumentException();
+    }
+    this.fontName = fontName;
+    this.fontSize = fontSize;
+    this.bold = bold;
+    this.italic = italic;
+    this.underline = underline;
+    this.strikethrough = strikethrough;
+    this.textColor = textColor;
+    this.fillColor = fillColor;
+    this.borderStyles = borderStyles.clone();
+    this.borderColors = borderColors.clone();
+    this.horizontalAlignment = horizontalAlignment;
+    this.verticalAlignment = verticalAlignment;
+    this.wrapText = wrapText;
+    this.dataFormat = dataFormat;
+    this.hashCode = computeHashCode();
+  }
+
+  /**
+   * Resolves the cell style for the given content and background.
+   *
+   * @param content    the cell content, can be null.
+   * @param background the cell background, can be null.
+   * @return the cell style.
+   */
+  public static XlsxCellStyle create(final RenderBox content, final CellBackground background)
+  {
+    final String[] borderStyles = new String[4];
+    final int[] borderColors = new int[4];
+    int fillColor = NO_COLOR;
+    if (background != null)
+    {
+      fillColor = toRGB(background.getBackgroundColor());
+      setBorder(borderStyles, borderColors, 0, background.getTop());
+      setBorder(borderStyles, borderColors, 1, background.getLeft());
+      setBorder(borderStyles, borderColors, 2, background.getBottom());
+      setBorder(borderStyles, borderColors, 3, background.getRight());
+    }
+
+    if (content == null)
+    {
+      return new XlsxCellStyle(null, 0, false, false, false, false, NO_COLOR, fillColor,
+          borderStyles, borderColors, null, null, false, null);
+    }
+
+    final StyleSheet styleSheet = content.getStyleSheet();
+    return new XlsxCellStyle
+        ((String) styleSheet.getStyleProperty(TextStyleKeys.FONT),
+            styleSheet.getIntStyleProperty(TextStyleKeys.FONTSIZE, 0),
+            styleSheet.getBooleanStyleProperty(TextStyleKeys.BOLD),
+            styleSheet.getBooleanStyleProperty(TextStyleKeys.ITALIC),
+            styleSheet.getBooleanStyleProperty(TextStyleKeys.UNDERLINED),
+            styleSheet.getBooleanStyleProperty(TextStyleKeys.STRIKETHROUGH),
+            toRGB((Color) styleSheet.getStyleProperty(ElementStyleKeys.PAINT)),
+            fillColor, borderStyles, borderColors,
+            convertAlignment((ElementAlignment) styleSheet.getStyleProperty(ElementStyleKeys.ALIGNMENT)),
+            convertAlignment((ElementAlignment) styleSheet.getStyleProperty(ElementStyleKeys.VALIGNMENT)),
+            isWrapText(styleSheet),
+            (String) styleSheet.getStyleProperty(ElementStyleKeys.EXCEL_DATA_FORMAT_STRING));
+  }
+
+  private static boolean isWrapText(final StyleSheet styleSheet)
+  {
+    final Object excelWrap = styleSheet.getStyleProperty(ElementStyleKeys.EXCEL_WRAP_TEXT);
+    if (excelWrap != null)
+    {
+      return Boolean.TRUE.equals(excelWrap);
+    }
+    return TextWrap.WRAP.equals(styleSheet.getStyleProperty(TextStyleKeys.TEXT_WRAP, TextWrap.WRAP));
+  }
+
+  private static void setBorder(final String[] borderStyles,
+                                final int[] borderColors,
+                                final int index,
+                                final BorderEdge edge)
+  {
+    if (edge == null)
+    {
+      return;
+    }
+    final String style = translateStroke(edge.getBorderStyle(), edge.getWidth());
+    if (style != null)
+    {
+      borderStyles[index] = style;
+      borderColors[index] = toRGB(edge.getColor());
+    }
+  }
+
+  private static int toRGB(final Color color)
+  {
+    if (color == null)
+    {
+      return NO_COLOR;
+    }
+    return color.getRGB() & 0xFFFFFF;
+  }
+
+  /**
+   * Translates the alignment into the SpreadsheetML vocabulary.
+   *
+   * @param e the alignment.
+   * @return the alignment name or null, if the alignment is not defined.
+   */
+  private static String convertAlignment(final ElementAlignment e)
+  {
+    if (ElementAlignment.LEFT.equals(e))
+    {
+      return "left";
+    }
+    if (ElementAlignment.RIGHT.equals(e))
+    {
+      return "right";
+    }
+    if (ElementAlignment.JUSTIFY.equals(e))
+    {
+      return "justify";
+    }
+    if (ElementAlignment.CENTER.equals(e))
+    {
+      return "center";
+    }
+    if (ElementAlignment.TOP.equals(e))
+    {
+      return "top";
+    }
+    if (ElementAlignment.BOTTOM.equals(e))
+    {
+      return "bottom";
+    }
+    if (ElementAlignment.MIDDLE.equals(e))
+    {
+      return "center";
+    }
+    return null;
+  }
+
+  /**
+   * Translates the border into one of the SpreadsheetML border styles. This follows the rules of the POI based
+   * <code>HSSFCellStyleProducer</code>.
+   *
+   * @param borderStyle the border style.
+   * @param widthRaw    the border width in internal units.
+   * @return the border style name or null, if no border should be drawn.
+   */
+  private static String translateStroke(final BorderStyle borderStyle, final long widthRaw)
+  {
+    final double width = StrictGeomUtility.toExternalValue(widthRaw);
+    if (borderStyle == null || BorderStyle.NONE.equals(borderStyle))
+    {
+      return null;
+    }
+    if (BorderStyle.DASHED.equals(borderStyle))
+    {
+      return (width <= 1.5) ? "dashed" : "mediumDashed";
+    }
+    if (BorderStyle.DOT_DOT_DASH.equals(borderStyle))
+    {
+      return (width <= 1.5) ? "dashDotDot" : "mediumDashDotDot";
+    }
+    if (BorderStyle.DOT_DASH.equals(borderStyle))
+    {
+      return (width <= 1.5) ? "dashDot" : "mediumDashDot";
+    }
+    if (BorderStyle.DOTTED.equals(borderStyle))
+    {
+      return "dotted";
+    }
+    if (BorderStyle.DOUBLE.equals(borderStyle))
+    {
+      return "double";
+    }
+
+    if (width == 0)
+    {
+      return null;
+    }
+    else if (width <= 0.5)
+    {
+      return "hair";
+    }
+    else if (width <= 1)
+    {
+      return "thin";
+    }
+    else if (width <= 1.5)
+    {
+      return "medium";
+    }
+    else
+    {
+      return "thick";
+    }
+  }
+
+  public String getFontName()
+  {
+    return fontName;
+  }
+
+  public int getFontSize()
+  {
+    return fontSize;
+  }
+
+  public boolean isBold()
+  {
+    return bold;
+  }
+
+  public boolean isItalic()
+  {
+    return italic;
+  }
+
+  public boolean isUnderline()
+  {
+    return underline;
+  }
+
+  public boolean isStrikethrough()
+  {
+    return strikethrough;
+  }
+
+  public int getTextColor()
+  {
+    return textColor;
+  }
+
+  public int getFillColor()
+  {
+    return fillColor;
+  }
+
+  public String getBorderStyle(final int edge)
+  {
+    return borderStyles[edge];
+  }
+
+  public int getBorderColor(final int edge)
+  {
+    return borderColors[edge];
+  }
+
+  public boolean isBorderDefined()
+  {
+    for (int i = 0; i < borderStyles.length; i++)
+    {
+      if (borderStyles[i] != null)
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public String getHorizontalAlignment()
+  {
+    return horizontalAlignment;
+  }
+
+  public String getVerticalAlignment()
+  {
+    return verticalAlignment;
+  }
+
+  public boolean isWrapText()
+  {
+    return wrapText;
+  }
+
+  public String getDataFormat()
+  {
+    return dataFormat;
+  }
+
+  public boolean equals(final Object o)
+  {
+    if (this == o)
+    {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass())
+    {
+      return false;
+    }
+
+    final XlsxCellStyle that = (XlsxCellStyle) o;
+    if (hashCode != that.hashCode)
+    {
+      return false;
+    }
+    if (fontSize != that.fontSize || bold != that.bold || italic != that.italic ||
+        underline != that.underline || strikethrough != that.strikethrough || wrapText != that.wrapText)
+    {
+      return false;
+    }
+    if (textColor != that.textColor || fillColor != that.fillColor)
+    {
+      return false;
+    }
+    for (int i = 0; i < 4; i++)
+    {
+      if (borderColors[i] != that.borderColors[i] ||
+          ObjectUtilities.equal(borderStyles[i], that.borderStyles[i]) == false)
+      {
+        return false;
+      }
+    }
+    return ObjectUtilities.equal(fontName, that.fontName) &&
+        ObjectUtilities.equal(horizontalAlignment, that.horizontalAlignment) &&
+        ObjectUtilities.equal(verticalAlignment, that.verticalAlignment) &&
+        ObjectUtilities.equal(dataFormat, that.dataFormat);
+  }
+
+  public int hashCode()
+  {
+    return hashCode;
+  }
+
+  private int computeHashCode()
+  {
+    int result = fontName != null ? fontName.hashCode() : 0;
+    result = 31 * result + fontSize;
+    result = 31 * result + (bold ? 1 : 0);
+    result = 31 * result + (italic ? 1 : 0);
+    result = 31 * result + (underline ? 1 : 0);
+    result = 31 * result + (strikethrough ? 1 : 0);
+    result = 31 * result + textColor;
+    result = 31 * result + fillColor;
+    for (int i = 0; i < 4; i++)
+    {
+      result = 31 * result + (borderStyles[i] != null ? borderStyles[i].hashCode() : 0);
+      result = 31 * result + borderColors[i];
+    }
+    result = 31 * result + (horizontalAlignment != null ? horizontalAlignment.hashCode() : 0);
+    result = 31 * result + (verticalAlignment != null ? verticalAlignment.hashCode() : 0);
+    result = 31 * result + (wrapText ? 1 : 0);
+    result = 31 * result + (dataFormat != null ? dataFormat.hashCode() : 0);
+    return result;
+  }
+}
@@ -0,0 +1,814 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+
+
+package org.pentaho.reporting.engine.classic.core.modules.output.table.xls.helper;
+
+import java.awt.Image;
+import java.awt.Shape;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.reporting.engine.classic.core.AttributeNames;
+import org.pentaho.reporting.engine.classic.core.ImageContainer;
+import org.pentaho.reporting.engine.classic.core.InvalidReportStateException;
+import org.pentaho.reporting.engine.classic.core.layout.model.LogicalPageBox;
+import org.pentaho.reporting.engine.classic.core.layout.model.RenderBox;
+import org.pentaho.reporting.engine.classic.core.layout.output.ContentProcessingException;
+import org.pentaho.reporting.engine.classic.core.layout.output.OutputProcessorFeature;
+import org.pentaho.reporting.engine.classic.core.layout.output.OutputProcessorMetaData;
+import org.pentaho.reporting.engine.classic.core.modules.output.table.base.AbstractTableOutputProcessor;
+import org.pentaho.reporting.engine.classic.core.modules.output.table.base.CellBackground;
+import org.pentaho.reporting.engine.classic.core.modules.output.table.base.CellBackgroundProducer;
+import org.pentaho.reporting.engine.classic.core.modules.output.table.base.DefaultTextExtractor;
+import org.pentaho.reporting.engine.classic.core.modules.output.table.base.SheetLayout;
+import org.pentaho.reporting.engine.classic.core.modules.output.table.base.TableContentProducer;
+import org.pentaho.reporting.engine.classic.core.modules.output.table.base.TableRectangle;
+import org.pentaho.reporting.engine.classic.core.style.ElementStyleKeys;
+import org.pentaho.reporting.engine.classic.core.util.IntegerCache;
+import org.pentaho.reporting.engine.classic.core.util.geom.StrictGeomUtility;
+import org.pentaho.reporting.libraries.base.config.Configuration;
+import org.pentaho.reporting.libraries.resourceloader.factory.drawable.DrawableWrapper;
+import org.pentaho.reporting.libraries.xmlns.common.ParserUtil;
+
+/**
+ * Writes XLSX workbooks directly as SpreadsheetML into a zip stream, without building a POI object model. Rows are
+ * written as soon as the table content producer declares them finished, cell values are stored as inline strings
+ * and cell styles are deduplicated by a precomputed hash of their resolved style values.
+ * <p/>
+ * This printer is meant for data-dump style reports. Rich-text, images and drawables are not exported, and the
+ * printer ignores spreadsheet templates.
+ *
+ * @author Thomas Morgner
+ */
+public class XlsxDirectPrinter
+{
+  private static final Log logger = LogFactory.getLog(XlsxDirectPrinter.class);
+
+  private static final String SPREADSHEET_NAMESPACE = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+  private static final String RELATIONSHIP_NAMESPACE =
+      "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+  private static final String PACKAGE_RELATIONSHIP_NAMESPACE =
+      "http://schemas.openxmlformats.org/package/2006/relationships";
+  private static final String XML_HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n";
+  private static final int MAX_CELL_TEXT_LENGTH = 32767;
+  private static final double MILLIS_PER_DAY = 86400000.0;
+  // the serial number of 1970-01-01 in the 1900 date system.
+  private static final double EXCEL_EPOCH_OFFSET = 25569.0;
+
+  private OutputStream outputStream;
+  private ZipOutputStream zipStream;
+  private Writer writer;
+  private OutputProcessorMetaData metaData;
+  private Configuration config;
+  private double scaleFactor;
+  private CellBackgroundProducer cellBackgroundProducer;
+  private DefaultTextExtractor textExtractor;
+  private XlsxStylePool stylePool;
+  private HashMap<String, Integer> sheetNamesCount;
+  private ArrayList<String> sheetNames;
+  private boolean sheetOpen;
+  private ArrayList<String> mergedRegions;
+  private String sheetHeader;
+  private String sheetFooter;
+  private boolean imageWarningIssued;
+  private int maxStyleCount;
+
+  public XlsxDirectPrinter(final OutputStream outputStream)
+  {
+    this(outputStream, XlsxStylePool.MAX_STYLE_COUNT);
+  }
+
+  /**
+   * Creates a new printer.
+   *
+   * @param outputStream  the target stream.
+   * @param maxStyleCount the maximum number of cell styles written into the workbook.
+   */
+  public XlsxDirectPrinter(final OutputStream outputStream, final int maxStyleCount)
+  {
+    if (outputStream == null)
+    {
+      throw new NullPointerException();
+    }
+    this.outputStream = outputStream;
+    this.maxStyleCount = maxStyleCount;
+    this.sheetNamesCount = new HashMap<String, Integer>();
+    this.sheetNames = new ArrayList<String>();
+    this.mergedRegions = new ArrayList<String>();
+  }
+
+  public boolean isInitialized()
+  {
+    return metaData != null;
+  }
+
+  public void init(final OutputProcessorMetaData metaData)
+  {
+    if (metaData == null)
+    {
+      throw new NullPointerException();
+    }
+
+    this.metaData = metaData;
+    this.config = metaData.getConfiguration();
+    this.cellBackgroundProducer = new CellBackgroundProducer
+        (metaData.isFeatureSupported(AbstractTableOutputProcessor.TREAT_ELLIPSE_AS_RECTANGLE),
+            metaData.isFeatureSupported(OutputProcessorFeature.UNALIGNED_PAGEBANDS));
+    this.textExtractor = new DefaultTextExtractor(metaData);
+    this.stylePool = new XlsxStylePool(maxStyleCount);
+
+    try
+    {
+      final String scaleFactorText = config.getConfigProperty
+          ("org.pentaho.reporting.engine.classic.core.modules.output.table.xls.CellWidthScaleFactor");
+      if (scaleFactorText == null)
+      {
+        scaleFactor = 50;
+      }
+      else
+      {
+        scaleFactor = Double.parseDouble(scaleFactorText);
+      }
+    }
+    catch (Exception e)
+    {
+      this.scaleFactor = 50;
+    }
+  }
+
+  public XlsxStylePool getStylePool()
+  {
+    return stylePool;
+  }
+
+  public void print(final LogicalPageBox logicalPage,
+                    final TableContentProducer contentProducer,
+                    final boolean incremental) throws ContentProcessingException
+  {
+    final int startRow = contentProducer.getFinishedRows();
+    final int finishRow = contentProducer.getFilledRows();
+    if (incremental && startRow == finishRow)
+    {
+      return;
+    }
+
+    try
+    {
+      if (zipStream == null)
+      {
+        zipStream = new ZipOutputStream(outputStream);
+        writer = new BufferedWriter(new OutputStreamWriter(zipStream, "UTF-8"), 65536);
+      }
+
+      if (sheetOpen == false)
+      {
+        openSheet((ExcelTableContentProducer) contentProducer);
+      }
+
+      final SheetLayout sheetLayout = contentProducer.getSheetLayout();
+      for (int row = startRow; row < finishRow; row++)
+      {
+        writeRow(logicalPage, sheetLayout, contentProducer, row);
+      }
+
+      if (incremental == false)
+      {
+        closeSheet();
+      }
+    }
+    catch (IOException ioe)
+    {
+      throw new ContentProcessingException("Failed to write the XLSX content", ioe);
+    }
+  }
+
+  private void writeRow(final LogicalPageBox logicalPage,
+                        final SheetLayout sheetLayout,
+                        final TableContentProducer contentProducer,
+                        final int row) throws IOException
+  {
+    final double rowHeight = StrictGeomUtility.toExternalValue(sheetLayout.getRowHeight(row));
+    writer.write("<row r=\"");
+    writer.write(String.valueOf(row + 1));
+    writer.write("\" ht=\"");
+    writer.write(String.valueOf((float) rowHeight));
+    writer.write("\" customHeight=\"1\">");
+
+    final int colCount = sheetLayout.getColumnCount();
+    for (int col = 0; col < colCount; col++)
+    {
+      final int sectionType = contentProducer.getSectionType(row, col);
+      final RenderBox content = contentProducer.getContent(row, col);
+      if (content == null)
+      {
+        final RenderBox backgroundBox = contentProducer.getBackground(row, col);
+        final CellBackground background;
+        if (backgroundBox != null)
+        {
+          background = cellBackgroundProducer.getBackgroundForBox
+              (logicalPage, sheetLayout, col, row, 1, 1, true, sectionType, backgroundBox);
+        }
+        else
+        {
+          background = cellBackgroundProducer.getBackgroundAt(logicalPage, sheetLayout, col, row, true, sectionType);
+        }
+        if (background != null)
+        {
+          writeCellStart(row, col, stylePool.getStyleIndex(XlsxCellStyle.create(null, background)), null);
+          writer.write("/>");
+        }
+        continue;
+      }
+
+      if (content.isCommited() == false)
+      {
+        throw new InvalidReportStateException("Uncommited content encountered");
+      }
+
+      // Every cell of a merged region is styled with the background of its own grid position,
+      // the same way the POI based printer styles merged regions.
+      final CellBackground background = cellBackgroundProducer.getBackgroundForBox
+          (logicalPage, sheetLayout, col, row, 1, 1, false, sectionType, content);
+      final int style = stylePool.getStyleIndex(XlsxCellStyle.create(content, background));
+
+      final long contentOffset = contentProducer.getContentOffset(row, col);
+      final TableRectangle rectangle = sheetLayout.getTableBounds
+          (content.getX(), content.getY() + contentOffset, content.getWidth(), content.getHeight(), null);
+      if (rectangle.isOrigin(col, row) == false)
+      {
+        // A spanned cell ..
+        writeCellStart(row, col, style, null);
+        writer.write("/>");
+        continue;
+      }
+
+      if (writeCellValue(content, row, col, style))
+      {
+        final int rowSpan = rectangle.getRowSpan();
+        final int columnSpan = rectangle.getColumnSpan();
+        if (rowSpan > 1 || columnSpan > 1)
+        {
+          mergedRegions.add(XlsxXmlUtil.getColumnName(col) + (row + 1) + ':' +
+              XlsxXmlUtil.getColumnName(col + columnSpan - 1) + (row + rowSpan));
+        }
+      }
+      content.setFinishedTable(true);
+    }
+    writer.write("</row>");
+  }
+
+  private void writeCellStart(final int row,
+                              final int col,
+                              final int style,
+                              final String type) throws IOException
+  {
+    writer.write("<c r=\"");
+    writer.write(XlsxXmlUtil.getColumnName(col));
+    writer.write(String.valueOf(row + 1));
+    writer.write('"');
+    if (style > 0)
+    {
+      writer.write(" s=\"");
+      writer.write(String.valueOf(style));
+      writer.write('"');
+    }
+    if (type != null)
+    {
+      writer.write(" t=\"");
+      writer.write(type);
+      writer.write('"');
+    }
+  }
+
+  /**
+   * Writes the cell and its value.
+   *
+   * @return true, if the cell may be put into a merged region, false otherwise.
+   */
+  private boolean writeCellValue(final RenderBox content,
+                                 final int row,
+                                 final int col,
+                                 final int style) throws IOException
+  {
+    textExtractor.compute(content);
+    final Object rawResult = textExtractor.getRawResult();
+    final Object value;
+    if (rawResult != null && rawResult instanceof String == false)
+    {
+      value = rawResult;
+    }
+    else
+    {
+      value = textExtractor.getText();
+    }
+
+    if (value instanceof Image || value instanceof ImageContainer ||
+        value instanceof DrawableWrapper || value instanceof Shape)
+    {
+      if (imageWarningIssued == false)
+      {
+        logger.warn("The direct XLSX export does not support images or drawables. These cells will be empty.");
+        imageWarningIssued = true;
+      }
+      writeCellStart(row, col, style, null);
+      writer.write("/>");
+      return false;
+    }
+
+    final String linkTarget = (String) content.getStyleSheet().getStyleProperty(ElementStyleKeys.HREF_TARGET);
+    if (linkTarget != null)
+    {
+      final String formula = "HYPERLINK(" + excelFormulaSplitAndQuote(linkTarget) +
+          "," + excelFormulaSplitAndQuote(textExtractor.getText()) + ")";
+      if (formula.length() < 1024)
+      {
+        writeFormulaCell(row, col, style, formula);
+        return true;
+      }
+
+      logger.warn(
+          "Excel-Cells cannot contain formulas longer than 1023 characters. Converting hyperlink into plain text");
+    }
+
+    final Object formulaAttr = content.getAttributes().getAttribute(AttributeNames.Excel.NAMESPACE,
+        AttributeNames.Excel.FIELD_FORMULA);
+    if (formulaAttr != null)
+    {
+      final String formula = String.valueOf(formulaAttr);
+      if (formula.length() < 1024)
+      {
+        writeFormulaCell(row, col, style, formula);
+        return true;
+      }
+
+      logger.warn(
+          "Excel-Cells cannot contain formulas longer than 1023 characters. Converting excel formula into plain text");
+    }
+
+    if (value instanceof Date)
+    {
+      writeNumberCell(row, col, style, toExcelDate((Date) value));
+    }
+    else if (value instanceof Number)
+    {
+      final double number = ((Number) value).doubleValue();
+      if (Double.isNaN(number) || Double.isInfinite(number))
+      {
+        writeTextCell(row, col, style, String.valueOf(value));
+      }
+      else
+      {
+        writeNumberCell(row, col, style, number);
+      }
+    }
+    else if (value instanceof Boolean)
+    {
+      writeCellStart(row, col, style, "b");
+      writer.write(Boolean.TRUE.equals(value) ? "><v>1</v></c>" : "><v>0</v></c>");
+    }
+    else if (value == null || "".equals(value))
+    {
+      writeCellStart(row, col, style, null);
+      writer.write("/>");
+    }
+    else
+    {
+      writeTextCell(row, col, style, String.valueOf(value));
+    }
+    return true;
+  }
+
+  private void writeFormulaCell(final int row,
+                                final int col,
+                                final int style,
+                                final String formula) throws IOException
+  {
+    writeCellStart(row, col, style, null);
+    writer.write("><f>");
+    XlsxXmlUtil.writeEscaped(writer, formula);
+    writer.write("</f></c>");
+  }
+
+  private void writeNumberCell(final int row,
+                               final int col,
+                               final int style,
+                               final double number) throws IOException
+  {
+    writeCellStart(row, col, style, null);
+    writer.write("><v>");
+    if (number == Math.rint(number) && Math.abs(number) < 1e15)
+    {
+      writer.write(String.valueOf((long) number));
+    }
+    else
+    {
+      writer.write(String.valueOf(number));
+    }
+    writer.write("</v></c>");
+  }
+
+  private void writeTextCell(final int row,
+                             final int col,
+                             final int style,
+                             final String text) throws IOException
+  {
+    final String cellText;
+    if (text.length() > MAX_CELL_TEXT_LENGTH)
+    {
+      logger.warn("Excel-Cells cannot contain text larger than 32.737 characters. Text will be clipped.");
+      cellText = text.substring(0, MAX_CELL_TEXT_LENGTH);
+    }
+    else
+    {
+      cellText = text;
+    }
+
+    writeCellStart(row, col, style, "inlineStr");
+    writer.write("><is><t xml:space=\"preserve\">");
+    XlsxXmlUtil.writeEscaped(writer, cellText);
+    writer.write("</t></is></c>");
+  }
+
+  private static double toExcelDate(final Date date)
+  {
+    final long time = date.getTime();
+    final long localTime = time + TimeZone.getDefault().getOffset(time);
+    return localTime / MILLIS_PER_DAY + EXCEL_EPOCH_OFFSET;
+  }
+
+  private String excelFormulaSplitAndQuote(final String s)
+  {
+    final StringBuilder b = new StringBuilder();
+    b.append('"');
+    final char[] chars = s.toCharArray();
+    int count = 0;
+    for (int i = 0; i < chars.length; i++)
+    {
+      final char c = chars[i];
+      if (c == '"')
+      {
+        b.append('"');
+        b.append('"');
+        count += 2;
+      }
+      else
+      {
+        b.append(c);
+        count += 1;
+      }
+      if (count > 252)
+      {
+        count = 0;
+        b.append("\" & \"");
+      }
+    }
+    b.append('"');
+    return b.toString();
+  }
+
+  private void openSheet(final ExcelTableContentProducer contentProducer) throws IOException
+  {
+    final int sheetNumber = sheetNames.size() + 1;
+    sheetNames.add(computeSheetName(contentProducer.getSheetName(), sheetNumber));
+    mergedRegions.clear();
+    sheetHeader = computeHeaderFooter(contentProducer.getPageHeaderLeft(),
+        contentProducer.getPageHeaderCenter(), contentProducer.getPageHeaderRight(), "Page-Header");
+    sheetFooter = computeHeaderFooter(contentProducer.getPageFooterLeft(),
+        contentProducer.getPageFooterCenter(), contentProducer.getPageFooterRight(), "Page-Footer");
+
+    zipStream.putNextEntry(new ZipEntry("xl/worksheets/sheet" + sheetNumber + ".xml"));
+    writer.write(XML_HEADER);
+    writer.write("<worksheet xmlns=\"" + SPREADSHEET_NAMESPACE + "\" xmlns:r=\"" + RELATIONSHIP_NAMESPACE + "\">");
+
+    final boolean displayGridLines = "true".equals(config.getConfigProperty
+        ("org.pentaho.reporting.engine.classic.core.modules.output.table.xls.GridLinesDisplayed"));
+    writer.write("<sheetViews><sheetView workbookViewId=\"0\"");
+    if (displayGridLines == false)
+    {
+      writer.write(" showGridLines=\"0\"");
+    }
+    final int freezeTop = contentProducer.getFreezeTop();
+    final int freezeLeft = contentProducer.getFreezeLeft();
+    if (freezeTop > 0 || freezeLeft > 0)
+    {
+      final String activePane;
+      if (freezeTop > 0 && freezeLeft > 0)
+      {
+        activePane = "bottomRight";
+      }
+      else if (freezeTop > 0)
+      {
+        activePane = "bottomLeft";
+      }
+      else
+      {
+        activePane = "topRight";
+      }
+      writer.write("><pane");
+      if (freezeLeft > 0)
+      {
+        writer.write(" xSplit=\"" + freezeLeft + '"');
+      }
+      if (freezeTop > 0)
+      {
+        writer.write(" ySplit=\"" + freezeTop + '"');
+      }
+      writer.write(" topLeftCell=\"" + XlsxXmlUtil.getColumnName(freezeLeft) + (freezeTop + 1) +
+          "\" activePane=\"" + activePane + "\" state=\"frozen\"/></sheetView></sheetViews>");
+    }
+    else
+    {
+      writer.write("/></sheetViews>");
+    }
+
+    final SheetLayout sheetLayout = contentProducer.getSheetLayout();
+    final int columnCount = contentProducer.getColumnCount();
+    if (columnCount > 0)
+    {
+      writer.write("<cols>");
+      for (int col = 0; col < columnCount; col++)
+      {
+        final double cellWidth = StrictGeomUtility.toExternalValue(sheetLayout.getCellWidth(col, col + 1));
+        final int poiCellWidth = Math.min(255 * 256, (int) (cellWidth * scaleFactor));
+        writer.write("<col min=\"" + (col + 1) + "\" max=\"" + (col + 1) + "\" width=\"" +
+            (poiCellWidth / 256f) + "\" customWidth=\"1\"/>");
+      }
+      writer.write("</cols>");
+    }
+    writer.write("<sheetData>");
+    sheetOpen = true;
+  }
+
+  private void closeSheet() throws IOException
+  {
+    writer.write("</sheetData>");
+    if (mergedRegions.isEmpty() == false)
+    {
+      writer.write("<mergeCells count=\"" + mergedRegions.size() + "\">");
+      for (int i = 0; i < mergedRegions.size(); i++)
+      {
+        writer.write("<mergeCell ref=\"" + mergedRegions.get(i) + "\"/>");
+      }
+      writer.write("</mergeCells>");
+    }
+
+    final boolean printGridLines = "true".equals(config.getConfigProperty
+        ("org.pentaho.reporting.engine.classic.core.modules.output.table.xls.GridLinesPrinted"));
+    if (printGridLines)
+    {
+      writer.write("<printOptions gridLines=\"1\"/>");
+    }
+
+    final String orientation = config.getConfigProperty
+        ("org.pentaho.reporting.engine.classic.core.modules.output.table.xls.PaperOrientation");
+    final int scale = ParserUtil.parseInt(config.getConfigProperty
+        ("org.pentaho.reporting.engine.classic.core.modules.output.table.xls.PrintScaleFactor"), 100);
+    writer.write("<pageSetup scale=\"" + scale + '"');
+    if ("landscape".equalsIgnoreCase(orientation) || "portrait".equalsIgnoreCase(orientation))
+    {
+      writer.write(" orientation=\"" + orientation.toLowerCase(Locale.ENGLISH) + '"');
+    }
+    writer.write("/>");
+
+    if (sheetHeader != null || sheetFooter != null)
+    {
+      writer.write("<headerFooter>");
+      if (sheetHeader != null)
+      {
+        writer.write("<oddHeader>");
+        XlsxXmlUtil.writeEscaped(writer, sheetHeader);
+        writer.write("</oddHeader>");
+      }
+      if (sheetFooter != null)
+      {
+        writer.write("<oddFooter>");
+        XlsxXmlUtil.writeEscaped(writer, sheetFooter);
+        writer.write("</oddFooter>");
+      }
+      writer.write("</headerFooter>");
+    }
+    writer.write("</worksheet>");
+    writer.flush();
+    zipStream.closeEntry();
+    sheetOpen = false;
+  }
+
+  private String computeHeaderFooter(final String left,
+                                     final String center,
+                                     final String right,
+                                     final String type)
+  {
+    if (left == null && center == null && right == null)
+    {
+      return null;
+    }
+
+    final StringBuilder b = new StringBuilder();
+    if (left != null)
+    {
+      b.append("&L").append(left);
+    }
+    if (center != null)
+    {
+      b.append("&C").append(center);
+    }
+    if (right != null)
+    {
+      b.append("&R").append(right);
+    }
+    if (b.length() >= 255)
+    {
+      logger.warn(type + " exceeds the maximum length of 255 characters. No " + type.toLowerCase(Locale.ENGLISH) +
+          " will be added to the sheet.");
+      return null;
+    }
+    return b.toString();
+  }
+
+  private String computeSheetName(final String sheetName, final int sheetNumber)
+  {
+    if (sheetName != null)
+    {
+      final String uniqueSheetname = makeUnique(sheetName);
+      if (uniqueSheetname.length() == 0 || uniqueSheetname.length() > 31)
+      {
+        logger.warn("A sheet name must not be empty and greater than 31 characters");
+      }
+      else if (isValidSheetName(uniqueSheetname) == false)
+      {
+        logger.warn("A sheet name must not contain any of ':/\\*?[]'");
+      }
+      else
+      {
+        return uniqueSheetname;
+      }
+    }
+    return makeUnique("Sheet" + sheetNumber);
+  }
+
+  private String makeUnique(final String name)
+  {
+    // Excel compares sheet names case-insensitive.
+    final String key = name.toUpperCase(Locale.ENGLISH);
+    final Integer count = sheetNamesCount.get(key);
+    if (count == null)
+    {
+      sheetNamesCount.put(key, IntegerCache.getInteger(1));
+      return name;
+    }
+
+    final int value = count.intValue() + 1;
+    sheetNamesCount.put(key, IntegerCache.getInteger(value));
+    return makeUnique(name + ' ' + value);
+  }
+
+  private boolean isValidSheetName(final String sheetname)
+  {
+    return sheetname.indexOf('/') == -1 && sheetname.indexOf('\\') == -1 && sheetname.indexOf('?') == -1 &&
+        sheetname.indexOf('*') == -1 && sheetname.indexOf(']') == -1 && sheetname.indexOf('[') == -1 &&
+        sheetname.indexOf(':') == -1;
+  }
+
+  public void close()
+  {
+    if (zipStream == null)
+    {
+      return;
+    }
+
+    final long start = System.currentTimeMillis();
+    try
+    {
+      if (sheetOpen)
+      {
+        closeSheet();
+      }
+      if (sheetNames.isEmpty())
+      {
+        // a workbook needs at least one sheet.
+        sheetNames.add("Sheet1");
+        zipStream.putNextEntry(new ZipEntry("xl/worksheets/sheet1.xml"));
+        writer.write(XML_HEADER);
+        writer.write("<worksheet xmlns=\"" + SPREADSHEET_NAMESPACE + "\"><sheetData/></worksheet>");
+        writer.flush();
+        zipStream.closeEntry();
+      }
+
+      zipStream.putNextEntry(new ZipEntry("xl/styles.xml"));
+      stylePool.writeStyles(writer);
+      writer.flush();
+      zipStream.closeEntry();
+
+      writeWorkbook();
+      writePackageParts();
+
+      writer.flush();
+      zipStream.finish();
+      outputStream.flush();
+    }
+    catch (IOException e)
+    {
+      logger.warn("could not write xlsx data. Message:", e);
+    }
+    finally
+    {
+      zipStream = null;
+      writer = null;
+    }
+
+    if (logger.isDebugEnabled())
+    {
+      logger.debug("Closing workbook finished in " + ((System.currentTimeMillis() - start) / 1000f) + "s, " +
+          sheetNames.size() + " sheets, " + stylePool.getStyleCount() + " cell styles");
+    }
+  }
+
+  private void writeWorkbook() throws IOException
+  {
+    zipStream.putNextEntry(new ZipEntry("xl/workbook.xml"));
+    writer.write(XML_HEADER);
+    writer.write("<workbook xmlns=\"" + SPREADSHEET_NAMESPACE + "\" xmlns:r=\"" + RELATIONSHIP_NAMESPACE + "\">");
+    writer.write("<sheets>");
+    for (int i = 0; i < sheetNames.size(); i++)
+    {
+      writer.write("<sheet name=\"");
+      XlsxXmlUtil.writeEscaped(writer, sheetNames.get(i));
+      writer.write("\" sheetId=\"" + (i + 1) + "\" r:id=\"rId" + (i + 1) + "\"/>");
+    }
+    writer.write("</sheets></workbook>");
+    writer.flush();
+    zipStream.closeEntry();
+
+    zipStream.putNextEntry(new ZipEntry("xl/_rels/workbook.xml.rels"));
+    writer.write(XML_HEADER);
+    writer.write("<Relationships xmlns=\"" + PACKAGE_RELATIONSHIP_NAMESPACE + "\">");
+    for (int i = 0; i < sheetNames.size(); i++)
+    {
+      writer.write("<Relationship Id=\"rId" + (i + 1) + "\" Type=\"" + RELATIONSHIP_NAMESPACE +
+          "/worksheet\" Target=\"worksheets/sheet" + (i + 1) + ".xml\"/>");
+    }
+    writer.write("<Relationship Id=\"rId" + (sheetNames.size() + 1) + "\" Type=\"" + RELATIONSHIP_NAMESPACE +
+        "/styles\" Target=\"styles.xml\"/>");
+    writer.write("</Relationships>");
+    writer.flush();
+    zipStream.closeEntry();
+  }
+
+  private void writePackageParts() throws IOException
+  {
+    zipStream.putNextEntry(new ZipEntry("[Content_Types].xml"));
+    writer.write(XML_HEADER);
+    writer.write("<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">");
+    writer.write("<Default Extension=\"rels\" " +
+        "ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>");
+    writer.write("<Default Extension=\"xml\" ContentType=\"application/xml\"/>");
+    writer.write("<Override PartName=\"/xl/workbook.xml\" " +
+        "ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>");
+    writer.write("<Override PartName=\"/xl/styles.xml\" " +
+        "ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.styles+xml\"/>");
+    for (int i = 0; i < sheetNames.size(); i++)
+    {
+      writer.write("<Override PartName=\"/xl/worksheets/sheet" + (i + 1) + ".xml\" " +
+          "ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>");
+    }
+    writer.write("</Types>");
+    writer.flush();
+    zipStream.closeEntry();
+
+    zipStream.putNextEntry(new ZipEntry("_rels/.rels"));
+    writer.write(XML_HEADER);
+    writer.write("<Relationships xmlns=\"" + PACKAGE_RELATIONSHIP_NAMESPACE + "\">");
+    writer.write("<Relationship Id=\"rId1\" Type=\"" + RELATIONSHIP_NAMESPACE +
+        "/officeDocument\" Target=\"xl/workbook.xml\"/>");
+    writer.write("</Relationships>");
+    writer.flush();
+    zipStream.closeEntry();
+  }
+}
@@ -0,0 +1,327 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+
+
+package org.pentaho.reporting.engine.classic.core.modules.output.table.xls.helper;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Collects the distinct cell styles of a workbook written by the direct XLSX writer and produces the
+ * <code>xl/styles.xml</code> part. Fonts, fills, borders and number formats are shared between cell styles.
+ * <p/>
+ * The number of cell styles is bounded. Excel refuses to open workbooks with more than 64000 cell styles, so once the
+ * limit is reached, further cells receive the default style.
+ *
+ * @author Thomas Morgner
+ */
+public class XlsxStylePool
+{
+  private static final Log logger = LogFactory.getLog(XlsxStylePool.class);
+
+  /**
+   * The maximum number of cell styles Excel accepts in a workbook.
+   */
+  public static final int MAX_STYLE_COUNT = 64000;
+
+  private static final String DEFAULT_FONT_NAME = "Arial";
+  private static final int DEFAULT_FONT_SIZE = 10;
+  private static final int FIRST_CUSTOM_FORMAT = 164;
+
+  private HashMap<XlsxCellStyle, Integer> styles;
+  private ArrayList<String> cellFormats;
+  private HashMap<String, Integer> fonts;
+  private ArrayList<String> fontDefinitions;
+  private HashMap<String, Integer> fills;
+  private ArrayList<String> fillDefinitions;
+  private HashMap<String, Integer> borders;
+  private ArrayList<String> borderDefinitions;
+  private HashMap<String, Integer> numberFormats;
+  private ArrayList<String> numberFormatDefinitions;
+  private int maxStyleCount;
+  private boolean limitWarningIssued;
+
+  public XlsxStylePool()
+  {
+    this(MAX_STYLE_COUNT);
+  }
+
+  /**
+   * Creates a new style pool that holds at most the given number of cell styles, including the default style.
+   *
+   * @param maxStyleCount the maximum number of cell styles, at most {@link #MAX_STYLE_COUNT}.
+   */
+  public XlsxStylePool(final int maxStyleCount)
+  {
+    if (maxStyleCount < 1 || maxStyleCount > MAX_STYLE_COUNT)
+    {
+      throw new IllegalArgumentException("The style count must be between 1 and " + MAX_STYLE_COUNT);
+    }
+    this.maxStyleCount = maxStyleCount;
+    styles = new HashMap<XlsxCellStyle, Integer>();
+    cellFormats = new ArrayList<String>();
+    fonts = new HashMap<String, Integer>();
+    fontDefinitions = new ArrayList<String>();
+    fills = new HashMap<String, Integer>();
+    fillDefinitions = new ArrayList<String>();
+    borders = new HashMap<String, Integer>();
+    borderDefinitions = new ArrayList<String>();
+    numberFormats = new HashMap<String, Integer>();
+    numberFormatDefinitions = new ArrayList<String>();
+
+    // the mandatory defaults: a default font, the two reserved fills and an empty border.
+    register(fonts, fontDefinitions, createFont(DEFAULT_FONT_NAME, DEFAULT_FONT_SIZE, false, false, false, false,
+        XlsxCellStyle.NO_COLOR));
+    register(fills, fillDefinitions, "<fill><patternFill patternType=\"none\"/></fill>");
+    register(fills, fillDefinitions, "<fill><patternFill patternType=\"gray125\"/></fill>");
+    register(borders, borderDefinitions, "<border><left/><right/><top/><bottom/><diagonal/></border>");
+    cellFormats.add("<xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\"/>");
+  }
+
+  private static int register(final HashMap<String, Integer> index,
+                              final ArrayList<String> definitions,
+                              final String definition)
+  {
+    final Integer existing = index.get(definition);
+    if (existing != null)
+    {
+      return existing.intValue();
+    }
+    final int position = definitions.size();
+    definitions.add(definition);
+    index.put(definition, position);
+    return position;
+  }
+
+  /**
+   * Returns the index of the given style in the cellXfs table, registering the style if it has not been seen before.
+   * If the pool is full, the index of the default style is returned.
+   *
+   * @param style the cell style.
+   * @return the style index.
+   */
+  public int getStyleIndex(final XlsxCellStyle style)
+  {
+    final Integer index = styles.get(style);
+    if (index != null)
+    {
+      return index.intValue();
+    }
+
+    if (cellFormats.size() >= maxStyleCount)
+    {
+      if (limitWarningIssued == false)
+      {
+        logger.warn("XlsxStylePool has reached the limit of " + maxStyleCount +
+            " cell styles. New cells will use the default style.");
+        limitWarningIssued = true;
+      }
+      return 0;
+    }
+
+    final int position = cellFormats.size();
+    cellFormats.add(createCellFormat(style));
+    styles.put(style, position);
+    return position;
+  }
+
+  /**
+   * Returns the number of cell styles including the default style.
+   *
+   * @return the number of cell styles.
+   */
+  public int getStyleCount()
+  {
+    return cellFormats.size();
+  }
+
+  private String createCellFormat(final XlsxCellStyle style)
+  {
+    final int fontSize = style.getFontSize() > 0 ? style.getFontSize() : DEFAULT_FONT_SIZE;
+    final String fontName = style.getFontName() != null ? style.getFontName() : DEFAULT_FONT_NAME;
+    final int fontId = register(fonts, fontDefinitions, createFont(fontName, fontSize, style.isBold(), style.isItalic(),
+        style.isUnderline(), style.isStrikethrough(), style.getTextColor()));
+
+    final int fillId;
+    if (style.getFillColor() == XlsxCellStyle.NO_COLOR)
+    {
+      fillId = 0;
+    }
+    else
+    {
+      fillId = register(fills, fillDefinitions, "<fill><patternFill patternType=\"solid\"><fgColor rgb=\"" +
+          XlsxXmlUtil.toARGB(style.getFillColor()) + "\"/><bgColor indexed=\"64\"/></patternFill></fill>");
+    }
+
+    final int borderId;
+    if (style.isBorderDefined() == false)
+    {
+      borderId = 0;
+    }
+    else
+    {
+      // SpreadsheetML wants the edges in the order left, right, top, bottom. The style stores top, left, bottom, right.
+      borderId = register(borders, borderDefinitions, "<border>" +
+          createBorderEdge("left", style, 1) + createBorderEdge("right", style, 3) +
+          createBorderEdge("top", style, 0) + createBorderEdge("bottom", style, 2) + "<diagonal/></border>");
+    }
+
+    final int numberFormatId = getNumberFormatId(style.getDataFormat());
+
+    final StringBuilder b = new StringBuilder(160);
+    b.append("<xf numFmtId=\"").append(numberFormatId);
+    b.append("\" fontId=\"").append(fontId);
+    b.append("\" fillId=\"").append(fillId);
+    b.append("\" borderId=\"").append(borderId);
+    b.append("\" xfId=\"0\" applyNumberFormat=\"1\" applyFont=\"1\" applyFill=\"1\" applyBorder=\"1\"");
+
+    final String horizontal = style.getHorizontalAlignment();
+    final String vertical = style.getVerticalAlignment();
+    if (horizontal == null && vertical == null && style.isWrapText() == false)
+    {
+      b.append("/>");
+      return b.toString();
+    }
+
+    b.append(" applyAlignment=\"1\"><alignment");
+    if (horizontal != null)
+    {
+      b.append(" horizontal=\"").append(horizontal).append('"');
+    }
+    if (vertical != null)
+    {
+      b.append(" vertical=\"").append(vertical).append('"');
+    }
+    if (style.isWrapText())
+    {
+      b.append(" wrapText=\"1\"");
+    }
+    b.append("/></xf>");
+    return b.toString();
+  }
+
+  private int getNumberFormatId(final String dataFormat)
+  {
+    if (dataFormat == null || "General".equals(dataFormat))
+    {
+      return 0;
+    }
+    final Integer id = numberFormats.get(dataFormat);
+    if (id != null)
+    {
+      return id.intValue();
+    }
+    final int newId = FIRST_CUSTOM_FORMAT + numberFormatDefinitions.size();
+    numberFormatDefinitions.add(dataFormat);
+    numberFormats.put(dataFormat, newId);
+    return newId;
+  }
+
+  private static String createBorderEdge(final String edgeName, final XlsxCellStyle style, final int edge)
+  {
+    final String borderStyle = style.getBorderStyle(edge);
+    if (borderStyle == null)
+    {
+      return "<" + edgeName + "/>";
+    }
+    return "<" + edgeName + " style=\"" + borderStyle + "\"><color rgb=\"" +
+        XlsxXmlUtil.toARGB(style.getBorderColor(edge)) + "\"/></" + edgeName + ">";
+  }
+
+  private static String createFont(final String fontName,
+                                   final int fontSize,
+                                   final boolean bold,
+                                   final boolean italic,
+                                   final boolean underline,
+                                   final boolean strikethrough,
+                                   final int color)
+  {
+    final StringBuilder b = new StringBuilder(100);
+    b.append("<font>");
+    if (bold)
+    {
+      b.append("<b/>");
+    }
+    if (italic)
+    {
+      b.append("<i/>");
+    }
+    if (strikethrough)
+    {
+      b.append("<strike/>");
+    }
+    if (underline)
+    {
+      b.append("<u/>");
+    }
+    b.append("<sz val=\"").append(fontSize).append("\"/>");
+    if (color != XlsxCellStyle.NO_COLOR)
+    {
+      b.append("<color rgb=\"").append(XlsxXmlUtil.toARGB(color)).append("\"/>");
+    }
+    b.append("<name val=\"").append(XlsxXmlUtil.escape(fontName)).append("\"/></font>");
+    return b.toString();
+  }
+
+  /**
+   * Writes the complete <code>xl/styles.xml</code> part.
+   *
+   * @param writer the target writer.
+   * @throws IOException if an error occurs while writing.
+   */
+  public void writeStyles(final Writer writer) throws IOException
+  {
+    writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+    writer.write("<styleSheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\">");
+    if (numberFormatDefinitions.isEmpty() == false)
+    {
+      writer.write("<numFmts count=\"" + numberFormatDefinitions.size() + "\">");
+      for (int i = 0; i < numberFormatDefinitions.size(); i++)
+      {
+        writer.write("<numFmt numFmtId=\"" + (FIRST_CUSTOM_FORMAT + i) + "\" formatCode=\"");
+        XlsxXmlUtil.writeEscaped(writer, numberFormatDefinitions.get(i));
+        writer.write("\"/>");
+      }
+      writer.write("</numFmts>");
+    }
+    writeList(writer, "fonts", fontDefinitions);
+    writeList(writer, "fills", fillDefinitions);
+    writeList(writer, "borders", borderDefinitions);
+    writer.write("<cellStyleXfs count=\"1\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\"/></cellStyleXfs>");
+    writeList(writer, "cellXfs", cellFormats);
+    writer.write("<cellStyles count=\"1\"><cellStyle name=\"Normal\" xfId=\"0\" builtinId=\"0\"/></cellStyles>");
+    writer.write("</styleSheet>");
+  }
+
+  private static void writeList(final Writer writer,
+                                final String tagName,
+                                final ArrayList<String> definitions) throws IOException
+  {
+    writer.write("<" + tagName + " count=\"" + definitions.size() + "\">");
+    for (int i = 0; i < definitions.size(); i++)
+    {
+      writer.write(definitions.get(i));
+    }
+    writer.write("</" + tagName + ">");
+  }
+}
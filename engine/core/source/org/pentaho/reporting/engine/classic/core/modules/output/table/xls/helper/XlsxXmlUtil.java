@@ -0,0 +1,154 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+
+
+package org.pentaho.reporting.engine.classic.core.modules.output.table.xls.helper;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
+/**
+ * Small helpers to write SpreadsheetML markup without going through a DOM or a generic XML writer.
+ *
+ * @author Thomas Morgner
+ */
+final class XlsxXmlUtil
+{
+  private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+  private XlsxXmlUtil()
+  {
+  }
+
+  /**
+   * Writes the text as escaped XML character data. Characters that are not allowed in XML 1.0 documents are dropped.
+   *
+   * @param writer the target writer.
+   * @param text   the text.
+   * @throws IOException if an error occurs while writing.
+   */
+  public static void writeEscaped(final Writer writer, final String text) throws IOException
+  {
+    final int length = text.length();
+    int start = 0;
+    for (int i = 0; i < length; i++)
+    {
+      final char c = text.charAt(i);
+      final String replacement;
+      if (c == '&')
+      {
+        replacement = "&amp;";
+      }
+      else if (c == '<')
+      {
+        replacement = "&lt;";
+      }
+      else if (c == '>')
+      {
+        replacement = "&gt;";
+      }
+      else if (c == '"')
+      {
+        replacement = "&quot;";
+      }
+      else if (c < 0x20 && c != '\t' && c != '\n' && c != '\r')
+      {
+        replacement = "";
+      }
+      else if (c == 0xFFFE || c == 0xFFFF)
+      {
+        replacement = "";
+      }
+      else
+      {
+        continue;
+      }
+
+      if (start < i)
+      {
+        writer.write(text, start, i - start);
+      }
+      writer.write(replacement);
+      start = i + 1;
+    }
+    if (start < length)
+    {
+      writer.write(text, start, length - start);
+    }
+  }
+
+  /**
+   * Returns the text as escaped XML character data.
+   *
+   * @param text the text.
+   * @return the escaped text.
+   */
+  public static String escape(final String text)
+  {
+    final StringWriter writer = new StringWriter(text.length() + 16);
+    try
+    {
+      writeEscaped(writer, text);
+    }
+    catch (IOException e)
+    {
+      // cannot happen with a string writer.
+      throw new IllegalStateException();
+    }
+    return writer.toString();
+  }
+
+  /**
+   * Converts a RGB value into an opaque ARGB hex string as used by SpreadsheetML color definitions.
+   *
+   * @param rgb the RGB value.
+   * @return the hex string.
+   */
+  public static String toARGB(final int rgb)
+  {
+    final char[] chars = new char[8];
+    chars[0] = 'F';
+    chars[1] = 'F';
+    for (int i = 0; i < 6; i++)
+    {
+      chars[7 - i] = HEX_DIGITS[(rgb >> (i * 4)) & 0xF];
+    }
+    return new String(chars);
+  }
+
+  /**
+   * Converts a zero-based column index into the Excel column name (A, B, .. Z, AA, AB ..).
+   *
+   * @param column the column index.
+   * @return the column name.
+   */
+  public static String getColumnName(final int column)
+  {
+    final char[] buffer = new char[4];
+    int position = buffer.length;
+    int value = column + 1;
+    while (value > 0)
+    {
+      final int remainder = (value - 1) % 26;
+      position -= 1;
+      buffer[position] = (char) ('A' + remainder);
+      value = (value - 1) / 26;
+    }
+    return new String(buffer, position, buffer.length - position);
+  }
+}
@@ -17,13 +17,26 @@
 
 package org.pentaho.reporting.engine.classic.core.modules.parser.base;
 
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.pentaho.reporting.engine.classic.core.ClassicEngineBoot;
 import org.pentaho.reporting.engine.classic.core.MasterReport;
+import org.pentaho.reporting.engine.classic.core.modules.parser.bundle.CompiledReportFormat;
 import org.pentaho.reporting.libraries.base.config.Configuration;
+import org.pentaho.reporting.libraries.docbundle.DocumentBundle;
+import org.pentaho.reporting.libraries.resourceloader.CompoundResource;
+import org.pentaho.reporting.libraries.resourceloader.DependencyCollector;
+import org.pentaho.reporting.libraries.resourceloader.FactoryParameterKey;
 import org.pentaho.reporting.libraries.resourceloader.Resource;
+import org.pentaho.reporting.libraries.resourceloader.ResourceBundleData;
 import org.pentaho.reporting.libraries.resourceloader.ResourceCreationException;
 import org.pentaho.reporting.libraries.resourceloader.ResourceData;
+import org.pentaho.reporting.libraries.resourceloader.ResourceException;
 import org.pentaho.reporting.libraries.resourceloader.ResourceKey;
+import org.pentaho.reporting.libraries.resourceloader.ResourceKeyCreationException;
 import org.pentaho.reporting.libraries.resourceloader.ResourceLoadingException;
 import org.pentaho.reporting.libraries.resourceloader.ResourceManager;
 import org.pentaho.reporting.libraries.xmlns.parser.AbstractXmlResourceFactory;
@@ -33,6 +46,7 @@ import org.pentaho.reporting.libraries.xmlns.parser.XmlFactoryModuleRegistry;
 
 public class MasterReportXmlResourceFactory extends AbstractXmlResourceFactory
 {
+  private static final Log logger = LogFactory.getLog(MasterReportXmlResourceFactory.class);
   private static final XmlFactoryModuleRegistry registry = new XmlFactoryModuleRegistry();
 
   public static void register(final Class<? extends XmlFactoryModule> readHandler)
@@ -64,6 +78,236 @@ public class MasterReportXmlResourceFactory extends AbstractXmlResourceFactory
     return MasterReport.class;
   }
 
+  /**
+   * Creates the report, reusing a previously parsed report from the {@link ReportPrototypeCache} if the report
+   * definition has not changed since then.
+   *
+   * @param manager the resource manager used for the parsing.
+   * @param data    the data of the report definition.
+   * @param context the context key, or null.
+   * @return the report resource.
+   * @throws ResourceCreationException if the report could not be parsed.
+   * @throws ResourceLoadingException  if the report definition could not be read.
+   */
+  public Resource create(final ResourceManager manager,
+                         final ResourceData data,
+                         final ResourceKey context)
+      throws ResourceCreationException, ResourceLoadingException
+  {
+    final ReportPrototypeCache cache = ReportPrototypeCache.getInstance();
+    if (cache.isEnabled() == false || isIncludeParsing(data.getKey()))
+    {
+      return super.create(manager, data, context);
+    }
+
+    final MasterReport cachedReport = cache.get(manager, data, context);
+    if (cachedReport != null)
+    {
+      final long version;
+      if (context == null)
+      {
+        version = data.getVersion(manager);
+      }
+      else
+      {
+        version = -1;
+      }
+      final DependencyCollector dependencyCollector = new DependencyCollector(data.getKey(), version);
+      final MasterReport report = (MasterReport) finishCachedResult(cachedReport, manager, data, context);
+      // the report is a fresh clone already, so the resource must not clone it again.
+      return new ReportResource(data.getKey(), dependencyCollector, report, getFactoryType(), false);
+    }
+
+    final Resource resource = createFromDefinition(manager, data, context);
+    if (resource instanceof CompoundResource && resource.isTemporaryResult() == false)
+    {
+      try
+      {
+        // a non-temporary report resource returns a private clone of the parsed report.
+        final CompoundResource compoundResource = (CompoundResource) resource;
+        final Object report = compoundResource.getResource();
+        if (report instanceof MasterReport)
+        {
+          final DependencyCollector dependencyCollector = new DependencyCollector(data.getKey(), -1);
+          final ResourceKey[] dependencies = compoundResource.getDependencies();
+          for (int i = 0; i < dependencies.length; i++)
+          {
+            final ResourceKey dependency = dependencies[i];
+            dependencyCollector.add(dependency, compoundResource.getVersion(dependency));
+          }
+          cache.put(manager, data, context, (MasterReport) report, dependencyCollector);
+        }
+      }
+      catch (ResourceException e)
+      {
+        throw new ResourceCreationException("Unable to retrieve the parsed report", e);
+      }
+    }
+    return resource;
+  }
+
+  private Resource createFromDefinition(final ResourceManager manager,
+                                        final ResourceData data,
+                                        final ResourceKey context)
+      throws ResourceCreationException, ResourceLoadingException
+  {
+    if (data instanceof ResourceBundleData &&
+        "true".equals(getConfiguration().getConfigProperty(CompiledReportFormat.USE_COMPILED_REPORT_KEY)))
+    {
+      final Resource resource = createFromCompiledReport(manager, data, context);
+      if (resource != null)
+      {
+        return resource;
+      }
+    }
+    return super.create(manager, data, context);
+  }
+
+  /**
+   * Loads the report from the precompiled entry of the bundle, if the bundle contains a precompiled report that has
+   * been written for the current XML files of the bundle.
+   *
+   * @return the report resource or null, if the report has to be parsed from the XML files.
+   */
+  private Resource createFromCompiledReport(final ResourceManager manager,
+                                            final ResourceData data,
+                                            final ResourceKey context)
+      throws ResourceCreationException, ResourceLoadingException
+  {
+    final ResourceKey key = data.getKey();
+    if (key.getParent() == null)
+    {
+      return null;
+    }
+
+    final DocumentBundle bundle;
+    try
+    {
+      final Resource bundleResource = manager.create(key.getParent(), null, DocumentBundle.class);
+      bundle = (DocumentBundle) bundleResource.getResource();
+    }
+    catch (ResourceException e)
+    {
+      return null;
+    }
+
+    if (bundle.isEntryExists(CompiledReportFormat.ENTRY_NAME) == false)
+    {
+      return null;
+    }
+
+    final byte[] definitionDigest;
+    try
+    {
+      definitionDigest = CompiledReportFormat.computeDefinitionDigest(bundle);
+    }
+    catch (IOException e)
+    {
+      logger.info("Unable to read the report definition, ignoring the precompiled report: " + key, e);
+      return null;
+    }
+
+    final ResourceKey compiledKey;
+    try
+    {
+      // absolute paths are resolved against the root of the bundle.
+      compiledKey = manager.deriveKey(key, '/' + CompiledReportFormat.ENTRY_NAME);
+    }
+    catch (ResourceKeyCreationException e)
+    {
+      return null;
+    }
+    final ResourceData compiledData = manager.load(compiledKey);
+    final MasterReport report;
+    final InputStream in = compiledData.getResourceAsStream(manager);
+    try
+    {
+      report = CompiledReportFormat.readReport(in, definitionDigest);
+    }
+    catch (Exception e)
+    {
+      logger.info("Unable to read the precompiled report, parsing the report definition instead: " + key, e);
+      return null;
+    }
+    finally
+    {
+      try
+      {
+        in.close();
+      }
+      catch (IOException e)
+      {
+        // ignore ..
+      }
+    }
+
+    if (report == null)
+    {
+      return null;
+    }
+
+    final ResourceKey contextKey;
+    final long version;
+    if (context == null)
+    {
+      contextKey = key;
+      version = data.getVersion(manager);
+    }
+    else
+    {
+      contextKey = context;
+      version = -1;
+    }
+
+    report.setBundle(bundle);
+    final Object result = finishResult(report, manager, data, contextKey);
+    final DependencyCollector dependencyCollector = new DependencyCollector(contextKey, version);
+    dependencyCollector.add(key, data.getVersion(manager));
+    dependencyCollector.add(compiledKey, compiledData.getVersion(manager));
+    return new ReportResource(key, dependencyCollector, result, getFactoryType(), true);
+  }
+
+  private static boolean isIncludeParsing(final ResourceKey key)
+  {
+    final Object value = key.getFactoryParameters().get(new FactoryParameterKey(ReportParserUtil.INCLUDE_PARSING_KEY));
+    return ReportParserUtil.INCLUDE_PARSING_VALUE.equals(value);
+  }
+
+  /**
+   * Binds a report cloned from the prototype cache to the current bundle and resource manager, the same way a freshly
+   * parsed report would be bound.
+   */
+  private Object finishCachedResult(final MasterReport report,
+                                    final ResourceManager manager,
+                                    final ResourceData data,
+                                    final ResourceKey context)
+      throws ResourceCreationException, ResourceLoadingException
+  {
+    final ResourceKey bundleKey = data.getKey().getParent();
+    if (data instanceof ResourceBundleData && bundleKey != null)
+    {
+      try
+      {
+        final Resource bundleResource = manager.create(bundleKey, null, DocumentBundle.class);
+        report.setBundle((DocumentBundle) bundleResource.getResource());
+      }
+      catch (ResourceException e)
+      {
+        throw new ResourceCreationException("Unable to load the bundle. Bundle data may be unavailable.", e);
+      }
+    }
+    final ResourceKey contextKey;
+    if (context == null)
+    {
+      contextKey = data.getKey();
+    }
+    else
+    {
+      contextKey = context;
+    }
+    return finishResult(report, manager, data, contextKey);
+  }
+
   protected Object finishResult(final Object res,
                                 final ResourceManager manager,
                                 final ResourceData data,
@@ -0,0 +1,394 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+
+package org.pentaho.reporting.engine.classic.core.modules.parser.base;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.reporting.engine.classic.core.ClassicEngineBoot;
+import org.pentaho.reporting.engine.classic.core.ExtendedResourceBundleFactory;
+import org.pentaho.reporting.engine.classic.core.MasterReport;
+import org.pentaho.reporting.engine.classic.core.ResourceBundleFactory;
+import org.pentaho.reporting.libraries.base.config.ExtendedConfiguration;
+import org.pentaho.reporting.libraries.base.util.LFUMap;
+import org.pentaho.reporting.libraries.base.util.ObjectUtilities;
+import org.pentaho.reporting.libraries.resourceloader.DependencyCollector;
+import org.pentaho.reporting.libraries.resourceloader.ResourceBundleData;
+import org.pentaho.reporting.libraries.resourceloader.ResourceData;
+import org.pentaho.reporting.libraries.resourceloader.ResourceException;
+import org.pentaho.reporting.libraries.resourceloader.ResourceKey;
+import org.pentaho.reporting.libraries.resourceloader.ResourceManager;
+
+/**
+ * Holds parsed master-reports so that repeated requests for the same, unchanged report definition do not have to
+ * parse the document again. The cache stores a private prototype of each report and hands out clones of it.
+ * <p/>
+ * Unlike the resource-manager's factory cache, this cache is keyed by the bundle key (or the key of the raw data for
+ * plain XML files). Each load of a bundle creates a new bundle repository and thus a new, unique key for the report
+ * definition, so the factory cache never sees the same report twice. A cached prototype is only used as long as the
+ * version (usually the modification time) of the bundle and of all external resources referenced during the parsing
+ * is unchanged.
+ * <p/>
+ * Prototypes do not reference the bundle or the resource manager of the parse operation, so that a cached report
+ * does not keep the bundle data and all resources loaded by that resource manager in memory. Each clone is bound to
+ * the bundle and resource manager of the current request instead.
+ *
+ * @author Thomas Morgner
+ */
+public class ReportPrototypeCache
+{
+  private static final Log logger = LogFactory.getLog(ReportPrototypeCache.class);
+
+  public static final String ENABLE_KEY =
+      "org.pentaho.reporting.engine.classic.core.modules.parser.base.PrototypeCache.Enable";
+  public static final String MAX_ENTRIES_KEY =
+      "org.pentaho.reporting.engine.classic.core.modules.parser.base.PrototypeCache.MaxEntries";
+
+  private static class CacheKey
+  {
+    private final ResourceKey source;
+    private final ResourceKey context;
+
+    private CacheKey(final ResourceKey source, final ResourceKey context)
+    {
+      this.source = source;
+      this.context = context;
+    }
+
+    public boolean equals(final Object o)
+    {
+      if (this == o)
+      {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass())
+      {
+        return false;
+      }
+
+      final CacheKey cacheKey = (CacheKey) o;
+      if (source.equals(cacheKey.source) == false)
+      {
+        return false;
+      }
+      return ObjectUtilities.equal(context, cacheKey.context);
+    }
+
+    public int hashCode()
+    {
+      int result = source.hashCode();
+      result = 31 * result + (context != null ? context.hashCode() : 0);
+      return result;
+    }
+  }
+
+  private static class CacheEntry
+  {
+    private final MasterReport prototype;
+    private final long version;
+    private final ResourceKey[] externalDependencies;
+    private final long[] externalVersions;
+
+    private CacheEntry(final MasterReport prototype,
+                       final long version,
+                       final ResourceKey[] externalDependencies,
+                       final long[] externalVersions)
+    {
+      this.prototype = prototype;
+      this.version = version;
+      this.externalDependencies = externalDependencies;
+      this.externalVersions = externalVersions;
+    }
+  }
+
+  private static ReportPrototypeCache instance;
+
+  private final LFUMap<CacheKey, CacheEntry> entries;
+  private final boolean enabled;
+  private int hitCount;
+
+  /**
+   * Returns the shared cache instance. The cache is configured from the global configuration on first access.
+   *
+   * @return the cache.
+   */
+  public static synchronized ReportPrototypeCache getInstance()
+  {
+    if (instance == null)
+    {
+      final ExtendedConfiguration config = ClassicEngineBoot.getInstance().getExtendedConfig();
+      instance = new ReportPrototypeCache
+          (config.getBoolProperty(ENABLE_KEY, true), config.getIntProperty(MAX_ENTRIES_KEY, 20));
+    }
+    return instance;
+  }
+
+  public ReportPrototypeCache(final boolean enabled, final int maxEntries)
+  {
+    this.enabled = enabled && maxEntries > 0;
+    this.entries = new LFUMap<CacheKey, CacheEntry>(Math.max(1, maxEntries));
+  }
+
+  public boolean isEnabled()
+  {
+    return enabled;
+  }
+
+  /**
+   * Returns the number of requests that have been answered from the cache.
+   *
+   * @return the number of cache hits.
+   */
+  public synchronized int getHitCount()
+  {
+    return hitCount;
+  }
+
+  /**
+   * Removes all cached reports.
+   */
+  public synchronized void clear()
+  {
+    entries.clear();
+  }
+
+  /**
+   * Returns a fresh clone of the cached report for the given data, or null if there is no valid cached report.
+   *
+   * @param manager the resource manager used to validate the cached entry.
+   * @param data    the data of the report definition that is about to be parsed.
+   * @param context the context key of the parse operation, or null.
+   * @return the cloned report or null.
+   */
+  public MasterReport get(final ResourceManager manager,
+                          final ResourceData data,
+                          final ResourceKey context)
+  {
+    if (enabled == false)
+    {
+      return null;
+    }
+
+    final ResourceKey sourceKey = computeSourceKey(data);
+    final CacheKey cacheKey = new CacheKey(sourceKey, context);
+    final CacheEntry entry;
+    synchronized (this)
+    {
+      entry = entries.get(cacheKey);
+    }
+    if (entry == null)
+    {
+      return null;
+    }
+
+    if (isValid(manager, sourceKey, entry) == false)
+    {
+      synchronized (this)
+      {
+        entries.remove(cacheKey);
+      }
+      return null;
+    }
+
+    synchronized (this)
+    {
+      hitCount += 1;
+    }
+
+    // the prototype is never handed out, so cloning it concurrently is safe.
+    final MasterReport report = entry.prototype.clone();
+    // the resource-bundle factory is not cloned with the report. The clone gets its own copy, so that binding it
+    // to the current resource manager does not modify the prototype.
+    final ExtendedResourceBundleFactory resourceBundleFactory = copyResourceBundleFactory(report);
+    if (resourceBundleFactory != null)
+    {
+      report.setResourceBundleFactory(resourceBundleFactory);
+    }
+    return report;
+  }
+
+  /**
+   * Stores the given freshly parsed report as prototype. The cache takes ownership of the report, so the caller must
+   * not use or hand out the report afterwards. Reports that depend on resources with unknown versions are not cached,
+   * as their validity cannot be checked later.
+   *
+   * @param manager      the resource manager used to parse the report.
+   * @param data         the data of the parsed report definition.
+   * @param context      the context key of the parse operation, or null.
+   * @param report       the parsed report.
+   * @param dependencies the dependencies recorded while parsing the report.
+   */
+  public void put(final ResourceManager manager,
+                  final ResourceData data,
+                  final ResourceKey context,
+                  final MasterReport report,
+                  final DependencyCollector dependencies)
+  {
+    if (enabled == false)
+    {
+      return;
+    }
+
+    final ResourceKey sourceKey = computeSourceKey(data);
+    final long version = computeVersion(manager, sourceKey);
+    if (version == -1)
+    {
+      return;
+    }
+
+    final ResourceKey[] allDependencies = dependencies.getDependencies();
+    int count = 0;
+    final ResourceKey[] externalDependencies = new ResourceKey[allDependencies.length];
+    final long[] externalVersions = new long[allDependencies.length];
+    for (int i = 0; i < allDependencies.length; i++)
+    {
+      final ResourceKey dependency = allDependencies[i];
+      if (isInternal(sourceKey, dependency))
+      {
+        continue;
+      }
+      final long dependencyVersion = dependencies.getVersion(dependency);
+      if (dependencyVersion == -1)
+      {
+        return;
+      }
+      externalDependencies[count] = dependency;
+      externalVersions[count] = dependencyVersion;
+      count += 1;
+    }
+
+    final ResourceKey[] trimmedDependencies = new ResourceKey[count];
+    final long[] trimmedVersions = new long[count];
+    System.arraycopy(externalDependencies, 0, trimmedDependencies, 0, count);
+    System.arraycopy(externalVersions, 0, trimmedVersions, 0, count);
+
+    detach(report);
+    final CacheEntry entry = new CacheEntry(report, version, trimmedDependencies, trimmedVersions);
+    synchronized (this)
+    {
+      entries.put(new CacheKey(sourceKey, context), entry);
+    }
+  }
+
+  /**
+   * Removes the references to the bundle and the resource manager of the parse operation from the prototype. Both
+   * are bound again to each clone handed out by {@link #get(ResourceManager, ResourceData, ResourceKey)}.
+   *
+   * @param report the prototype.
+   */
+  private static void detach(final MasterReport report)
+  {
+    report.setBundle(null);
+    report.setResourceManager(null);
+
+    final ExtendedResourceBundleFactory resourceBundleFactory = copyResourceBundleFactory(report);
+    if (resourceBundleFactory != null)
+    {
+      // the original factory is shared with the report returned to the caller, so only the copy can be unbound.
+      resourceBundleFactory.setResourceLoader(null, null);
+      report.setResourceBundleFactory(resourceBundleFactory);
+    }
+  }
+
+  private static ExtendedResourceBundleFactory copyResourceBundleFactory(final MasterReport report)
+  {
+    final ResourceBundleFactory resourceBundleFactory = report.getResourceBundleFactory();
+    if (resourceBundleFactory instanceof ExtendedResourceBundleFactory == false)
+    {
+      return null;
+    }
+    try
+    {
+      return (ExtendedResourceBundleFactory) ((ExtendedResourceBundleFactory) resourceBundleFactory).clone();
+    }
+    catch (CloneNotSupportedException e)
+    {
+      throw new IllegalStateException("Resource-bundle factory does not support cloning.");
+    }
+  }
+
+  private boolean isValid(final ResourceManager manager,
+                          final ResourceKey sourceKey,
+                          final CacheEntry entry)
+  {
+    if (computeVersion(manager, sourceKey) != entry.version)
+    {
+      return false;
+    }
+
+    for (int i = 0; i < entry.externalDependencies.length; i++)
+    {
+      if (computeVersion(manager, entry.externalDependencies[i]) != entry.externalVersions[i])
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static long computeVersion(final ResourceManager manager, final ResourceKey key)
+  {
+    try
+    {
+      return manager.loadRawData(key).getVersion(manager);
+    }
+    catch (ResourceException e)
+    {
+      logger.debug("Unable to compute the version of " + key, e);
+      return -1;
+    }
+  }
+
+  /**
+   * Returns the key that identifies the report definition across loads. For bundles this is the bundle key, as the
+   * key of the bundle's content changes with every load.
+   *
+   * @param data the data of the report definition.
+   * @return the key.
+   */
+  private static ResourceKey computeSourceKey(final ResourceData data)
+  {
+    if (data instanceof ResourceBundleData)
+    {
+      final ResourceBundleData bundleData = (ResourceBundleData) data;
+      return bundleData.getBundleKey();
+    }
+    return data.getKey();
+  }
+
+  /**
+   * Checks whether the given dependency is the source itself or a resource contained in the source bundle. These
+   * dependencies are covered by the version of the source.
+   *
+   * @param sourceKey  the source key.
+   * @param dependency the dependency.
+   * @return true, if the dependency does not need a separate validation.
+   */
+  private static boolean isInternal(final ResourceKey sourceKey, final ResourceKey dependency)
+  {
+    ResourceKey key = dependency;
+    while (key != null)
+    {
+      if (sourceKey.equals(key))
+      {
+        return true;
+      }
+      key = key.getParent();
+    }
+    return false;
+  }
+}
@@ -57,6 +57,7 @@ import org.pentaho.reporting.engine.classic.core.modules.parser.bundle.settings.
 import org.pentaho.reporting.engine.classic.core.modules.parser.bundle.settings.BundleSettingsXmlResourceFactory;
 import org.pentaho.reporting.engine.classic.core.modules.parser.bundle.writer.BundleMetaFileWriter;
 import org.pentaho.reporting.engine.classic.core.modules.parser.bundle.writer.BundleWriterHandlerRegistry;
+import org.pentaho.reporting.engine.classic.core.modules.parser.bundle.writer.CompiledReportFileWriter;
 import org.pentaho.reporting.engine.classic.core.modules.parser.bundle.writer.ContentFileWriter;
 import org.pentaho.reporting.engine.classic.core.modules.parser.bundle.writer.DataDefinitionFileWriter;
 import org.pentaho.reporting.engine.classic.core.modules.parser.bundle.writer.DataSchemaWriter;
@@ -239,6 +240,7 @@ public class BundleXmlModule extends AbstractModule
     BundleWriterHandlerRegistry.getInstance().registerMasterReportHandler(StyleFileWriter.class);
     BundleWriterHandlerRegistry.getInstance().registerMasterReportHandler(LayoutFileWriter.class);
     BundleWriterHandlerRegistry.getInstance().registerMasterReportHandler(ResourceWriter.class);
+    BundleWriterHandlerRegistry.getInstance().registerMasterReportHandler(CompiledReportFileWriter.class);
 
     BundleWriterHandlerRegistry.getInstance().registerSubReportHandler(DataDefinitionFileWriter.class);
     BundleWriterHandlerRegistry.getInstance().registerSubReportHandler(ContentFileWriter.class);
@@ -0,0 +1,373 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+package org.pentaho.reporting.engine.classic.core.modules.parser.bundle;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.pentaho.reporting.engine.classic.core.ClassicEngineInfo;
+import org.pentaho.reporting.engine.classic.core.MasterReport;
+import org.pentaho.reporting.libraries.docbundle.DocumentBundle;
+
+/**
+ * Reads and writes the precompiled form of a report. A precompiled report is a serialized, fully resolved
+ * master-report that is stored as an optional entry next to the XML files of a report bundle. Loading it skips the
+ * XML parsing of the layout, styles and data definitions.
+ * <p/>
+ * The precompiled form is only valid for the exact engine version that wrote it and for the exact XML files it was
+ * written with. Each entry starts with a header holding the engine version and a digest of the bundle's XML files.
+ * Readers ignore entries written by any other engine version and entries whose digest does not match the XML files
+ * of the bundle, as the XML files remain the master copy.
+ * <p/>
+ * Reading a precompiled report deserializes Java objects from the bundle. The reader accepts the classes of the
+ * reporting engine and its libraries and an explicit list of JDK value and collection classes; any other class stops
+ * the reading and the report is parsed from the XML files instead. This narrows what a crafted entry can instantiate,
+ * but it does not make the deserialization safe, as the engine classes have not been reviewed as deserialization
+ * targets. Precompiled reports are therefore disabled by default and must only be enabled for trusted bundles.
+ *
+ * @author Thomas Morgner
+ */
+public final class CompiledReportFormat
+{
+  public static final String ENTRY_NAME = "compiled-report.bin";
+  public static final String MIME_TYPE = "application/vnd.pentaho.reporting.compiled-report";
+  public static final String USE_COMPILED_REPORT_KEY =
+      "org.pentaho.reporting.engine.classic.core.modules.parser.bundle.UseCompiledReport";
+
+  private static final byte[] MAGIC = new byte[]{'P', 'R', 'P', 'T', '-', 'B', 'I', 'N'};
+  private static final int FORMAT_VERSION = 2;
+  private static final int MAX_DIGEST_LENGTH = 64;
+
+  private static final String TRUSTED_PACKAGE_PREFIX = "org.pentaho.reporting.";
+  /**
+   * The JDK classes that can be part of a serialized report: boxed values, dates, formats, geometry and the
+   * collections used by the report model. Classes that open streams or connections, like java.net.URL, are not listed.
+   */
+  private static final HashSet<String> TRUSTED_CLASSES = new HashSet<String>(Arrays.asList(
+      "java.lang.Boolean", "java.lang.Byte", "java.lang.Character", "java.lang.Double", "java.lang.Enum",
+      "java.lang.Float", "java.lang.Integer", "java.lang.Long", "java.lang.Number", "java.lang.Short",
+      "java.lang.String", "java.lang.StringBuffer", "java.lang.StringBuilder",
+      "java.math.BigDecimal", "java.math.BigInteger",
+      "java.util.ArrayList", "java.util.Arrays$ArrayList", "java.util.Date", "java.util.HashMap", "java.util.HashSet",
+      "java.util.Hashtable", "java.util.LinkedHashMap", "java.util.LinkedHashSet", "java.util.LinkedList",
+      "java.util.Locale", "java.util.Properties", "java.util.SimpleTimeZone", "java.util.TimeZone", "java.util.TreeMap",
+      "java.util.TreeSet", "java.util.Vector", "sun.util.calendar.ZoneInfo",
+      "java.util.Collections$EmptyList", "java.util.Collections$EmptyMap", "java.util.Collections$EmptySet",
+      "java.util.Collections$UnmodifiableCollection", "java.util.Collections$UnmodifiableList",
+      "java.util.Collections$UnmodifiableMap", "java.util.Collections$UnmodifiableRandomAccessList",
+      "java.util.Collections$UnmodifiableSet", "java.util.concurrent.ConcurrentHashMap",
+      "java.sql.Date", "java.sql.Time", "java.sql.Timestamp",
+      "java.text.ChoiceFormat", "java.text.DateFormat", "java.text.DateFormatSymbols", "java.text.DecimalFormat",
+      "java.text.DecimalFormatSymbols", "java.text.Format", "java.text.MessageFormat", "java.text.NumberFormat",
+      "java.text.SimpleDateFormat",
+      "java.awt.Color", "java.awt.Dimension", "java.awt.Insets", "java.awt.Point", "java.awt.Rectangle",
+      "java.awt.geom.Point2D$Double", "java.awt.geom.Point2D$Float",
+      "java.awt.geom.Rectangle2D$Double", "java.awt.geom.Rectangle2D$Float"
+  ));
+
+  /**
+   * An object-input-stream that only resolves the classes that can legitimately be part of a serialized report.
+   */
+  private static class ReportObjectInputStream extends ObjectInputStream
+  {
+    private ReportObjectInputStream(final InputStream in) throws IOException
+    {
+      super(in);
+    }
+
+    protected Class<?> resolveClass(final ObjectStreamClass desc) throws IOException, ClassNotFoundException
+    {
+      final String className = desc.getName();
+      if (isTrustedClass(className) == false)
+      {
+        throw new InvalidClassException(className, "Class is not allowed in a precompiled report");
+      }
+      return super.resolveClass(desc);
+    }
+
+    protected Class<?> resolveProxyClass(final String[] interfaces) throws IOException
+    {
+      throw new InvalidClassException("Proxy classes are not allowed in a precompiled report");
+    }
+  }
+
+  private CompiledReportFormat()
+  {
+  }
+
+  private static String getEngineVersion()
+  {
+    final ClassicEngineInfo info = ClassicEngineInfo.getInstance();
+    return info.getName() + ' ' + info.getVersion();
+  }
+
+  /**
+   * Checks whether instances of the given class may be read from a precompiled report.
+   *
+   * @param className the binary class name as stored in the serialized stream.
+   * @return true, if the class is trusted.
+   */
+  static boolean isTrustedClass(final String className)
+  {
+    int start = 0;
+    while (start < className.length() && className.charAt(start) == '[')
+    {
+      start += 1;
+    }
+
+    final String elementName;
+    if (start == 0)
+    {
+      elementName = className;
+    }
+    else if (className.length() == start + 1)
+    {
+      // arrays of primitive types.
+      return true;
+    }
+    else if (className.charAt(start) == 'L' && className.endsWith(";"))
+    {
+      elementName = className.substring(start + 1, className.length() - 1);
+    }
+    else
+    {
+      return false;
+    }
+
+    if (elementName.startsWith(TRUSTED_PACKAGE_PREFIX))
+    {
+      return true;
+    }
+    return TRUSTED_CLASSES.contains(elementName);
+  }
+
+  /**
+   * Checks whether the given data starts like a precompiled report. This does not check the engine version or the
+   * digest of the data.
+   *
+   * @param data the raw data.
+   * @return true, if the data may be a precompiled report.
+   */
+  public static boolean isCompiledReport(final byte[] data)
+  {
+    if (data == null)
+    {
+      throw new NullPointerException();
+    }
+    if (data.length < MAGIC.length)
+    {
+      return false;
+    }
+    for (int i = 0; i < MAGIC.length; i++)
+    {
+      if (data[i] != MAGIC[i])
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Computes the digest of all XML files of the bundle that make up the report definition. The bundle's meta-data
+   * and manifest are not part of the digest.
+   *
+   * @param bundle the bundle.
+   * @return the digest.
+   * @throws IOException if an entry of the bundle could not be read.
+   */
+  public static byte[] computeDefinitionDigest(final DocumentBundle bundle) throws IOException
+  {
+    if (bundle == null)
+    {
+      throw new NullPointerException();
+    }
+
+    final MessageDigest digest;
+    try
+    {
+      digest = MessageDigest.getInstance("SHA-256");
+    }
+    catch (NoSuchAlgorithmException e)
+    {
+      throw new IOException("SHA-256 message digest is not available.");
+    }
+
+    final String[] entryNames = bundle.getMetaData().getManifestEntryNames().clone();
+    Arrays.sort(entryNames);
+    final byte[] buffer = new byte[8192];
+    for (int i = 0; i < entryNames.length; i++)
+    {
+      final String entryName = entryNames[i];
+      final String path;
+      if (entryName.startsWith("/"))
+      {
+        path = entryName.substring(1);
+      }
+      else
+      {
+        path = entryName;
+      }
+      if (path.endsWith(".xml") == false || path.startsWith("META-INF/") || "meta.xml".equals(path))
+      {
+        continue;
+      }
+      if (bundle.isEntryExists(entryName) == false)
+      {
+        continue;
+      }
+
+      digest.update(path.getBytes("UTF-8"));
+      digest.update((byte) 0);
+      long length = 0;
+      final InputStream in = bundle.getEntryAsStream(entryName);
+      try
+      {
+        int read;
+        while ((read = in.read(buffer)) != -1)
+        {
+          digest.update(buffer, 0, read);
+          length += read;
+        }
+      }
+      finally
+      {
+        in.close();
+      }
+      for (int shift = 56; shift >= 0; shift -= 8)
+      {
+        digest.update((byte) (length >>> shift));
+      }
+    }
+    return digest.digest();
+  }
+
+  /**
+   * Writes the given report in the precompiled form. The report's bundle is not part of the written data and must be
+   * supplied again when the report is read.
+   *
+   * @param report           the report, which should not reference a bundle with content.
+   * @param definitionDigest the digest of the XML files the report has been created from.
+   * @param out              the target stream. The stream is not closed.
+   * @throws IOException if the report could not be serialized.
+   * @see #computeDefinitionDigest(DocumentBundle)
+   */
+  public static void writeReport(final MasterReport report,
+                                 final byte[] definitionDigest,
+                                 final OutputStream out) throws IOException
+  {
+    if (report == null)
+    {
+      throw new NullPointerException();
+    }
+    if (definitionDigest == null)
+    {
+      throw new NullPointerException();
+    }
+    if (out == null)
+    {
+      throw new NullPointerException();
+    }
+
+    final BufferedOutputStream bufferedOut = new BufferedOutputStream(out);
+    final DataOutputStream dataOut = new DataOutputStream(bufferedOut);
+    dataOut.write(MAGIC);
+    dataOut.writeInt(FORMAT_VERSION);
+    dataOut.writeUTF(getEngineVersion());
+    dataOut.writeInt(definitionDigest.length);
+    dataOut.write(definitionDigest);
+
+    final ObjectOutputStream objectOut = new ObjectOutputStream(dataOut);
+    objectOut.writeObject(report);
+    objectOut.flush();
+    bufferedOut.flush();
+  }
+
+  /**
+   * Reads a precompiled report. Returns null if the data has not been written by this engine version or has been
+   * written for a different report definition.
+   *
+   * @param in               the source stream. The stream is not closed.
+   * @param definitionDigest the digest of the XML files of the bundle that contains the precompiled report.
+   * @return the report or null, if the data is not recognized.
+   * @throws IOException            if the data could not be read or contains classes that are not allowed.
+   * @throws ClassNotFoundException if the data references classes that are not available.
+   */
+  public static MasterReport readReport(final InputStream in,
+                                        final byte[] definitionDigest) throws IOException, ClassNotFoundException
+  {
+    if (in == null)
+    {
+      throw new NullPointerException();
+    }
+    if (definitionDigest == null)
+    {
+      throw new NullPointerException();
+    }
+
+    final DataInputStream dataIn = new DataInputStream(new BufferedInputStream(in));
+    final byte[] magic = new byte[MAGIC.length];
+    try
+    {
+      dataIn.readFully(magic);
+      if (Arrays.equals(MAGIC, magic) == false ||
+          dataIn.readInt() != FORMAT_VERSION ||
+          getEngineVersion().equals(dataIn.readUTF()) == false)
+      {
+        return null;
+      }
+
+      final int digestLength = dataIn.readInt();
+      if (digestLength != definitionDigest.length || digestLength > MAX_DIGEST_LENGTH)
+      {
+        return null;
+      }
+      final byte[] digest = new byte[digestLength];
+      dataIn.readFully(digest);
+      if (MessageDigest.isEqual(digest, definitionDigest) == false)
+      {
+        return null;
+      }
+    }
+    catch (IOException ioe)
+    {
+      // too short or not a precompiled report at all.
+      return null;
+    }
+
+    final ObjectInputStream objectIn = new ReportObjectInputStream(dataIn);
+    final Object o = objectIn.readObject();
+    if (o instanceof MasterReport == false)
+    {
+      return null;
+    }
+    return (MasterReport) o;
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+
+package org.pentaho.reporting.engine.classic.core.modules.parser.bundle;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.pentaho.reporting.engine.classic.core.ClassicEngineBoot;
+import org.pentaho.reporting.engine.classic.core.MasterReport;
+import org.pentaho.reporting.engine.classic.core.modules.parser.base.ReportResource;
+import org.pentaho.reporting.libraries.docbundle.DocumentBundle;
+import org.pentaho.reporting.libraries.resourceloader.ContentNotRecognizedException;
+import org.pentaho.reporting.libraries.resourceloader.DependencyCollector;
+import org.pentaho.reporting.libraries.resourceloader.Resource;
+import org.pentaho.reporting.libraries.resourceloader.ResourceCreationException;
+import org.pentaho.reporting.libraries.resourceloader.ResourceData;
+import org.pentaho.reporting.libraries.resourceloader.ResourceException;
+import org.pentaho.reporting.libraries.resourceloader.ResourceFactory;
+import org.pentaho.reporting.libraries.resourceloader.ResourceKey;
+import org.pentaho.reporting.libraries.resourceloader.ResourceLoadingException;
+import org.pentaho.reporting.libraries.resourceloader.ResourceManager;
+
+/**
+ * Creates master-reports from the precompiled form written by the
+ * {@link org.pentaho.reporting.engine.classic.core.modules.parser.bundle.writer.CompiledReportFileWriter}. The report
+ * is connected to the bundle that contains the data.
+ * <p/>
+ * Data is only recognized if precompiled reports are enabled, if it is located inside a report bundle and if it has
+ * been written by this engine version for the current XML files of that bundle. All other data is left to the other
+ * factories.
+ *
+ * @author Thomas Morgner
+ */
+public class CompiledReportResourceFactory implements ResourceFactory
+{
+  public CompiledReportResourceFactory()
+  {
+  }
+
+  public Resource create(final ResourceManager manager,
+                         final ResourceData data,
+                         final ResourceKey context)
+      throws ResourceCreationException, ResourceLoadingException
+  {
+    final ResourceKey key = data.getKey();
+    if (key.getParent() == null || "true".equals(ClassicEngineBoot.getInstance().getGlobalConfig().getConfigProperty
+        (CompiledReportFormat.USE_COMPILED_REPORT_KEY)) == false)
+    {
+      throw new ContentNotRecognizedException("Precompiled reports are disabled or not located in a bundle: " + key);
+    }
+
+    final byte[] rawData = data.getResource(manager);
+    if (CompiledReportFormat.isCompiledReport(rawData) == false)
+    {
+      throw new ContentNotRecognizedException("Not a precompiled report: " + key);
+    }
+
+    final DocumentBundle bundle;
+    try
+    {
+      final Resource bundleResource = manager.create(key.getParent(), null, DocumentBundle.class);
+      bundle = (DocumentBundle) bundleResource.getResource();
+    }
+    catch (ResourceException e)
+    {
+      throw new ResourceCreationException("Unable to load the bundle. Bundle data may be unavailable.", e);
+    }
+
+    final MasterReport report;
+    final InputStream in = new ByteArrayInputStream(rawData);
+    try
+    {
+      report = CompiledReportFormat.readReport(in, CompiledReportFormat.computeDefinitionDigest(bundle));
+    }
+    catch (IOException e)
+    {
+      throw new ResourceLoadingException("Unable to read the precompiled report " + key, e);
+    }
+    catch (ClassNotFoundException e)
+    {
+      throw new ResourceCreationException("Unable to create the precompiled report " + key, e);
+    }
+    finally
+    {
+      try
+      {
+        in.close();
+      }
+      catch (IOException e)
+      {
+        // ignore ..
+      }
+    }
+
+    if (report == null)
+    {
+      throw new ContentNotRecognizedException("Not a precompiled report: " + key);
+    }
+
+    final DependencyCollector dependencyCollector = new DependencyCollector(key, data.getVersion(manager));
+    report.setBundle(bundle);
+
+    if (context != null)
+    {
+      report.setContentBase(context);
+    }
+    else
+    {
+      report.setContentBase(key);
+    }
+    report.setDefinitionSource(key);
+    report.setResourceManager(manager);
+    return new ReportResource(key, dependencyCollector, report, getFactoryType(), true);
+  }
+
+  public Class getFactoryType()
+  {
+    return MasterReport.class;
+  }
+
+  public void initializeDefaults()
+  {
+    // nothing needed ...
+  }
+}
@@ -0,0 +1,267 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+
+package org.pentaho.reporting.engine.classic.core.modules.parser.bundle;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.pentaho.reporting.engine.classic.core.ClassicEngineBoot;
+import org.pentaho.reporting.libraries.base.config.Configuration;
+import org.pentaho.reporting.libraries.resourceloader.Resource;
+import org.pentaho.reporting.libraries.resourceloader.ResourceCreationException;
+import org.pentaho.reporting.libraries.resourceloader.ResourceException;
+import org.pentaho.reporting.libraries.resourceloader.ResourceKey;
+import org.pentaho.reporting.libraries.resourceloader.ResourceLoadingException;
+import org.pentaho.reporting.libraries.resourceloader.ResourceManager;
+import org.pentaho.reporting.libraries.xmlns.common.ParserUtil;
+
+/**
+ * Parses independent files of a report bundle in the background while the main parser works on other files. The
+ * content-root handlers announce the files they are going to parse later and pick up the results when they need them.
+ * <p/>
+ * Only files that produce standalone objects (settings, data-definitions, data-schemas) can be parsed ahead, as the
+ * style and layout files modify the report object directly and must be parsed in order. A result is only used if the
+ * file is requested with the same resource-key, including all parse parameters, as it has been announced with;
+ * otherwise the file is parsed again. A file that has been announced but is not yet being parsed when it is requested
+ * is parsed on the requesting thread, so waiting for a result never depends on a free worker thread.
+ * <p/>
+ * Parallel parsing is disabled by default, see {@link #PARALLEL_PARSING_KEY}. This class is not thread-safe; it must
+ * be used from the parser thread only.
+ *
+ * @author Thomas Morgner
+ */
+public final class ParallelBundleLoader
+{
+  public static final String PARALLEL_PARSING_KEY =
+      "org.pentaho.reporting.engine.classic.core.modules.parser.bundle.ParallelParsing";
+  public static final String THREAD_COUNT_KEY =
+      "org.pentaho.reporting.engine.classic.core.modules.parser.bundle.ParallelParsingThreads";
+
+  private static class ParserThreadFactory implements ThreadFactory
+  {
+    private int count;
+
+    private ParserThreadFactory()
+    {
+    }
+
+    public synchronized Thread newThread(final Runnable r)
+    {
+      count += 1;
+      final Thread thread = new Thread(r, "Bundle-Parser-" + count);
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+
+  private static class ParseTask implements Callable<Resource>
+  {
+    private final ResourceManager resourceManager;
+    private final ResourceKey key;
+    private final ResourceKey context;
+    private final Class target;
+    private final ClassLoader contextClassLoader;
+
+    private ParseTask(final ResourceManager resourceManager,
+                      final ResourceKey key,
+                      final ResourceKey context,
+                      final Class target)
+    {
+      this.resourceManager = resourceManager;
+      this.key = key;
+      this.context = context;
+      this.target = target;
+      this.contextClassLoader = Thread.currentThread().getContextClassLoader();
+    }
+
+    public Resource call() throws ResourceException
+    {
+      final Thread thread = Thread.currentThread();
+      final ClassLoader oldClassLoader = thread.getContextClassLoader();
+      thread.setContextClassLoader(contextClassLoader);
+      try
+      {
+        return resourceManager.create(key, context, target);
+      }
+      finally
+      {
+        thread.setContextClassLoader(oldClassLoader);
+      }
+    }
+  }
+
+  private static ThreadPoolExecutor executor;
+
+  private final ResourceManager resourceManager;
+  private final ResourceKey context;
+  private final HashMap<ResourceKey, FutureTask<Resource>> tasks;
+
+  /**
+   * Creates a new loader.
+   *
+   * @param resourceManager the resource manager used to parse the files. The manager must be thread-safe.
+   * @param context         the context key for the parsing.
+   */
+  public ParallelBundleLoader(final ResourceManager resourceManager,
+                              final ResourceKey context)
+  {
+    if (resourceManager == null)
+    {
+      throw new NullPointerException();
+    }
+    this.resourceManager = resourceManager;
+    this.context = context;
+    this.tasks = new HashMap<ResourceKey, FutureTask<Resource>>();
+  }
+
+  /**
+   * Checks whether bundle files should be parsed in parallel.
+   *
+   * @return true, if parallel parsing is enabled and more than one thread is configured.
+   */
+  public static boolean isParallelParsingEnabled()
+  {
+    final Configuration configuration = ClassicEngineBoot.getInstance().getGlobalConfig();
+    if ("true".equals(configuration.getConfigProperty(PARALLEL_PARSING_KEY)) == false)
+    {
+      return false;
+    }
+    return getThreadCount(configuration) > 1;
+  }
+
+  private static int getThreadCount(final Configuration configuration)
+  {
+    final int threadCount = ParserUtil.parseInt(configuration.getConfigProperty(THREAD_COUNT_KEY), 0);
+    if (threadCount <= 0)
+    {
+      return Runtime.getRuntime().availableProcessors();
+    }
+    return threadCount;
+  }
+
+  private static synchronized ThreadPoolExecutor getExecutor()
+  {
+    if (executor == null)
+    {
+      final int threadCount = getThreadCount(ClassicEngineBoot.getInstance().getGlobalConfig());
+      executor = new ThreadPoolExecutor(threadCount, threadCount, 30, TimeUnit.SECONDS,
+          new LinkedBlockingQueue<Runnable>(), new ParserThreadFactory());
+      executor.allowCoreThreadTimeOut(true);
+    }
+    return executor;
+  }
+
+  /**
+   * Starts parsing the given file in the background. Announcing the same key twice has no effect.
+   *
+   * @param key    the fully derived key of the file, including all parse parameters.
+   * @param target the target type of the parse operation.
+   */
+  public void prefetch(final ResourceKey key, final Class target)
+  {
+    if (key == null)
+    {
+      throw new NullPointerException();
+    }
+    if (target == null)
+    {
+      throw new NullPointerException();
+    }
+    if (tasks.containsKey(key))
+    {
+      return;
+    }
+
+    final FutureTask<Resource> task = new FutureTask<Resource>(new ParseTask(resourceManager, key, context, target));
+    tasks.put(key, task);
+    getExecutor().execute(task);
+  }
+
+  /**
+   * Returns the parsed file. If the file has been announced before, the background result is used, otherwise the file
+   * is parsed now.
+   *
+   * @param key    the fully derived key of the file, including all parse parameters.
+   * @param target the target type of the parse operation.
+   * @return the parsed resource.
+   * @throws ResourceLoadingException  if the file could not be loaded.
+   * @throws ResourceCreationException if the file could not be parsed.
+   */
+  public Resource getResource(final ResourceKey key, final Class target)
+      throws ResourceLoadingException, ResourceCreationException
+  {
+    final FutureTask<Resource> task = tasks.remove(key);
+    if (task == null)
+    {
+      return resourceManager.create(key, context, target);
+    }
+
+    // runs the task here, if no worker thread has picked it up yet. Does nothing otherwise.
+    task.run();
+    try
+    {
+      return task.get();
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new ResourceLoadingException("Interrupted while waiting for the parser of " + key, e);
+    }
+    catch (ExecutionException e)
+    {
+      final Throwable cause = e.getCause();
+      if (cause instanceof ResourceLoadingException)
+      {
+        throw (ResourceLoadingException) cause;
+      }
+      if (cause instanceof ResourceCreationException)
+      {
+        throw (ResourceCreationException) cause;
+      }
+      if (cause instanceof RuntimeException)
+      {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Exception)
+      {
+        throw new ResourceCreationException("Failed to parse " + key, (Exception) cause);
+      }
+      throw (Error) cause;
+    }
+  }
+
+  /**
+   * Cancels all announced files that have not been requested.
+   */
+  public void dispose()
+  {
+    final Iterator<FutureTask<Resource>> iterator = tasks.values().iterator();
+    while (iterator.hasNext())
+    {
+      iterator.next().cancel(false);
+    }
+    tasks.clear();
+  }
+}
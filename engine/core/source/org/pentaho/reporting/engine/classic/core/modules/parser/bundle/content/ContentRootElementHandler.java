@@ -31,6 +31,7 @@ import org.pentaho.reporting.engine.classic.core.ReportDataFactoryException;
 import org.pentaho.reporting.engine.classic.core.function.Expression;
 import org.pentaho.reporting.engine.classic.core.modules.parser.base.ReportParserUtil;
 import org.pentaho.reporting.engine.classic.core.modules.parser.bundle.BundleNamespaces;
+import org.pentaho.reporting.engine.classic.core.modules.parser.bundle.ParallelBundleLoader;
 import org.pentaho.reporting.engine.classic.core.modules.parser.bundle.data.DataDefinition;
 import org.pentaho.reporting.engine.classic.core.modules.parser.bundle.settings.BundleSettings;
 import org.pentaho.reporting.engine.classic.core.parameters.ReportParameterDefinition;
@@ -42,6 +43,7 @@ import org.pentaho.reporting.libraries.resourceloader.FactoryParameterKey;
 import org.pentaho.reporting.libraries.resourceloader.Resource;
 import org.pentaho.reporting.libraries.resourceloader.ResourceException;
 import org.pentaho.reporting.libraries.resourceloader.ResourceKey;
+import org.pentaho.reporting.libraries.resourceloader.ResourceKeyCreationException;
 import org.pentaho.reporting.libraries.resourceloader.ResourceLoadingException;
 import org.pentaho.reporting.libraries.resourceloader.ResourceManager;
 import org.pentaho.reporting.libraries.xmlns.parser.AbstractXmlReadHandler;
@@ -67,6 +69,7 @@ public class ContentRootElementHandler extends AbstractXmlReadHandler
   private static final Log logger = LogFactory.getLog(ContentRootElementHandler.class);
   public static final String PRPT_SPEC_VERSION = "prpt-spec-version";
   private MasterReport report;
+  private ParallelBundleLoader bundleLoader;
 
   public ContentRootElementHandler()
   {
@@ -141,6 +144,28 @@ public class ContentRootElementHandler extends AbstractXmlReadHandler
     {
       report = (MasterReport) maybeReport;
     }
+
+    if (ParallelBundleLoader.isParallelParsingEnabled())
+    {
+      // the bundle's own settings, data-definition and data-schema are independent from the layout and can be
+      // parsed while the rest of the content file is processed.
+      bundleLoader = new ParallelBundleLoader(getRootHandler().getResourceManager(), getRootHandler().getContext());
+      boolean success = false;
+      try
+      {
+        prefetch("settings.xml", BundleSettings.class);
+        prefetch("datadefinition.xml", DataDefinition.class);
+        prefetch("dataschema.xml", DataSchemaDefinition.class);
+        success = true;
+      }
+      finally
+      {
+        if (success == false)
+        {
+          disposeBundleLoader();
+        }
+      }
+    }
   }
 
 
@@ -200,6 +225,28 @@ public class ContentRootElementHandler extends AbstractXmlReadHandler
   protected XmlReadHandler getHandlerForChild(final String uri,
                                               final String tagName,
                                               final Attributes atts) throws SAXException
+  {
+    // the child elements parse the referenced files right away. If that fails, the parse is aborted and
+    // doneParsing() will never be called, so the background parsers have to be stopped here.
+    boolean success = false;
+    try
+    {
+      final XmlReadHandler handler = createHandlerForChild(uri, tagName, atts);
+      success = true;
+      return handler;
+    }
+    finally
+    {
+      if (success == false)
+      {
+        disposeBundleLoader();
+      }
+    }
+  }
+
+  private XmlReadHandler createHandlerForChild(final String uri,
+                                               final String tagName,
+                                               final Attributes atts) throws SAXException
   {
     if (BundleNamespaces.CONTENT.equals(uri) == false)
     {
@@ -304,7 +351,14 @@ public class ContentRootElementHandler extends AbstractXmlReadHandler
     // Now, after all the user-defined and global files have been parsed, finally override whatever had been
     //defined in these files with the contents from the bundle. This will merge all the settings from the bundle
     // with the global definitions but grants the local settings higer preference 
-    parseLocalFiles();
+    try
+    {
+      parseLocalFiles();
+    }
+    finally
+    {
+      disposeBundleLoader();
+    }
 
     final Object definedCompatLevel = report.getCompatibilityLevel();
     if (definedCompatLevel instanceof Integer == false)
@@ -322,6 +376,15 @@ public class ContentRootElementHandler extends AbstractXmlReadHandler
     }
   }
 
+  private void disposeBundleLoader()
+  {
+    if (bundleLoader != null)
+    {
+      bundleLoader.dispose();
+      bundleLoader = null;
+    }
+  }
+
   private void parseLocalFiles() throws ParseException
   {
     parseSettings("settings.xml");
@@ -371,8 +434,7 @@ public class ContentRootElementHandler extends AbstractXmlReadHandler
   {
     try
     {
-      final Map parameters = deriveParseParameters();
-      parameters.put(new FactoryParameterKey(ReportParserUtil.HELPER_OBJ_REPORT_NAME), null);
+      final Map parameters = deriveStandaloneParseParameters();
       final DataDefinition dataDefinition = (DataDefinition)
           performExternalParsing(parameterFile, DataDefinition.class, parameters);
 
@@ -419,8 +481,7 @@ public class ContentRootElementHandler extends AbstractXmlReadHandler
   {
     try
     {
-      final Map parameters = deriveParseParameters();
-      parameters.put(new FactoryParameterKey(ReportParserUtil.HELPER_OBJ_REPORT_NAME), null);
+      final Map parameters = deriveStandaloneParseParameters();
       final BundleSettings settings = (BundleSettings)
           performExternalParsing(settingsFile, BundleSettings.class, parameters);
       // todo: Apply settings
@@ -456,8 +517,7 @@ public class ContentRootElementHandler extends AbstractXmlReadHandler
   {
     try
     {
-      final Map parameters = deriveParseParameters();
-      parameters.put(new FactoryParameterKey(ReportParserUtil.HELPER_OBJ_REPORT_NAME), null);
+      final Map parameters = deriveStandaloneParseParameters();
       final DataSchemaDefinition metaData = (DataSchemaDefinition)
           performExternalParsing("dataschema.xml", DataSchemaDefinition.class, parameters);
       report.setDataSchemaDefinition(metaData);
@@ -470,6 +530,64 @@ public class ContentRootElementHandler extends AbstractXmlReadHandler
     }
   }
 
+  private Map deriveStandaloneParseParameters()
+  {
+    final Map parameters = deriveParseParameters();
+    parameters.put(new FactoryParameterKey(ReportParserUtil.HELPER_OBJ_REPORT_NAME), null);
+    return parameters;
+  }
+
+  private void prefetch(final String file, final Class targetClass)
+  {
+    try
+    {
+      final RootXmlReadHandler rootHandler = getRootHandler();
+      final ResourceKey key = rootHandler.getResourceManager().deriveKey
+          (rootHandler.getSource(), file, deriveStandaloneParseParameters());
+      bundleLoader.prefetch(key, targetClass);
+    }
+    catch (ResourceKeyCreationException e)
+    {
+      // the file will be reported as missing when it is parsed.
+    }
+  }
+
+  /**
+   * Parses an external file. Files that have been announced to the parallel bundle loader are taken from there.
+   *
+   * @param file        the file to be parsed.
+   * @param targetClass the target type of the parse operation.
+   * @param map         the map of parse parameters.
+   * @return the result, never null.
+   * @throws ParseException           if parsing the result failed for some reason.
+   * @throws ResourceLoadingException if there was an IO error loading the resource.
+   */
+  protected Object performExternalParsing(final String file, final Class targetClass, final Map map)
+      throws ParseException, ResourceLoadingException
+  {
+    if (bundleLoader == null)
+    {
+      return super.performExternalParsing(file, targetClass, map);
+    }
+
+    try
+    {
+      final RootXmlReadHandler rootHandler = getRootHandler();
+      final ResourceKey target = rootHandler.getResourceManager().deriveKey(rootHandler.getSource(), file, map);
+      final Resource resource = bundleLoader.getResource(target, targetClass);
+      rootHandler.getDependencyCollector().add(resource);
+      return resource.getResource();
+    }
+    catch (ResourceLoadingException rle)
+    {
+      throw rle;
+    }
+    catch (ResourceException e)
+    {
+      throw new ParseException("Failure while loading data: " + file, e, getLocator());
+    }
+  }
+
   /**
    * Returns the object for this element or null, if this element does not create an object.
    *
@@ -40,6 +40,7 @@ import org.pentaho.reporting.engine.classic.core.modules.parser.bundle.layout.El
 import org.pentaho.reporting.engine.classic.core.modules.parser.bundle.layout.ElementStyleReadHandler;
 import org.pentaho.reporting.engine.classic.core.style.StyleKey;
 import org.pentaho.reporting.engine.classic.core.util.beans.BeanException;
+import org.pentaho.reporting.engine.classic.core.util.ValueInterner;
 import org.pentaho.reporting.engine.classic.core.util.beans.ConverterRegistry;
 import org.pentaho.reporting.engine.classic.core.util.beans.ValueConverter;
 import org.pentaho.reporting.libraries.resourceloader.ResourceData;
@@ -131,7 +132,7 @@ public abstract class AbstractElementReadHandler extends AbstractXmlReadHandler
                                  final ReportAttributeMap attributes) throws ParseException {
     final AttributeMetaData attributeMetaData = metaData.getAttributeDescription(namespace, name);
     if (attributeMetaData == null || attributeValue == null) {
-      element.setAttribute(namespace, name, attributeValue);
+      element.setAttribute(namespace, name, ValueInterner.intern(attributeValue));
       return;
     }
 
@@ -155,7 +156,7 @@ public abstract class AbstractElementReadHandler extends AbstractXmlReadHandler
           return;
         }
         if ("local-ref".equals(type)) {
-          element.setAttribute(namespace, name, attributeValue);
+          element.setAttribute(namespace, name, ValueInterner.intern(attributeValue));
           return;
         }
         if ("resource-key".equals(type)) {
@@ -169,7 +170,7 @@ public abstract class AbstractElementReadHandler extends AbstractXmlReadHandler
           element.setAttribute(namespace, name, resourceKey);
           return;
         }
-        element.setAttribute(namespace, name, attributeValue);
+        element.setAttribute(namespace, name, ValueInterner.intern(attributeValue));
         return;
       } catch (MalformedURLException e) {
         throw new ParseException("Failed to parse URL value", e);
@@ -180,22 +181,22 @@ public abstract class AbstractElementReadHandler extends AbstractXmlReadHandler
 
     final Class type = attributeMetaData.getTargetType();
     if (String.class.equals(type)) {
-      element.setAttribute(namespace, name, attributeValue);
+      element.setAttribute(namespace, name, ValueInterner.intern(attributeValue));
     } else {
       try {
         final PropertyEditor propertyEditor = attributeMetaData.getEditor();
         if (propertyEditor != null) {
           propertyEditor.setAsText(attributeValue);
-          element.setAttribute(namespace, name, propertyEditor.getValue());
+          element.setAttribute(namespace, name, ValueInterner.intern(propertyEditor.getValue()));
         } else {
           final ConverterRegistry instance = ConverterRegistry.getInstance();
           final ValueConverter valueConverter = instance.getValueConverter(type);
           if (valueConverter != null) {
             final Object o = ConverterRegistry.toPropertyValue(attributeValue, type);
-            element.setAttribute(namespace, name, o);
+            element.setAttribute(namespace, name, ValueInterner.intern(o));
           } else if (String.class.isAssignableFrom(type)) {
             // the attribute would allow raw-string values, so copy the element ..
-            element.setAttribute(namespace, name, attributeValue);
+            element.setAttribute(namespace, name, ValueInterner.intern(attributeValue));
           }
         }
 
@@ -310,6 +311,9 @@ public abstract class AbstractElementReadHandler extends AbstractXmlReadHandler
       element.setAttribute(expressionReadHandler.getAttributeNameSpace(),
           expressionReadHandler.getAttributeName(), expressionReadHandler.getObject());
     }
+
+    // elements with the same local style share a single copy of the style data.
+    element.getStyle().internStyleData();
   }
 
   /**
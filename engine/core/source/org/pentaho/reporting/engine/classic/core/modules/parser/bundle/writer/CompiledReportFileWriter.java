@@ -0,0 +1,127 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+
+package org.pentaho.reporting.engine.classic.core.modules.parser.bundle.writer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.reporting.engine.classic.core.AttributeNames;
+import org.pentaho.reporting.engine.classic.core.ClassicEngineBoot;
+import org.pentaho.reporting.engine.classic.core.MasterReport;
+import org.pentaho.reporting.engine.classic.core.modules.parser.bundle.CompiledReportFormat;
+import org.pentaho.reporting.libraries.docbundle.DocumentMetaData;
+import org.pentaho.reporting.libraries.docbundle.WriteableDocumentBundle;
+
+/**
+ * Writes the precompiled form of the master-report as an additional entry into the bundle. The XML files remain the
+ * authoritative definition; the precompiled entry only speeds up the loading of the report with the same engine
+ * version. Reports that cannot be serialized are written without the precompiled entry.
+ * <p/>
+ * This handler is disabled by default and must be enabled via the configuration key
+ * <code>org.pentaho.reporting.engine.classic.core.modules.parser.bundle.writer.WriteCompiledReport</code>.
+ *
+ * @author Thomas Morgner
+ */
+public class CompiledReportFileWriter implements BundleWriterHandler
+{
+  private static final Log logger = LogFactory.getLog(CompiledReportFileWriter.class);
+
+  public static final String ENABLE_KEY =
+      "org.pentaho.reporting.engine.classic.core.modules.parser.bundle.writer.WriteCompiledReport";
+
+  public CompiledReportFileWriter()
+  {
+  }
+
+  /**
+   * Returns a processing order that places this handler after all other handlers, so that all XML files of the
+   * bundle exist when their digest is computed.
+   *
+   * @return the relative processing order for this BundleWriterHandler
+   */
+  public int getProcessingOrder()
+  {
+    return 200000;
+  }
+
+  public String writeReport(final WriteableDocumentBundle bundle, final BundleWriterState state)
+      throws IOException, BundleWriterException
+  {
+    if (bundle == null)
+    {
+      throw new NullPointerException();
+    }
+    if (state == null)
+    {
+      throw new NullPointerException();
+    }
+
+    if ("true".equals(ClassicEngineBoot.getInstance().getGlobalConfig().getConfigProperty(ENABLE_KEY)) == false)
+    {
+      return null;
+    }
+
+    // apply the same defaults the bundle parser applies to a freshly parsed report.
+    final MasterReport report = (MasterReport) state.getMasterReport().derive(true);
+    report.setAttribute(AttributeNames.Internal.NAMESPACE, AttributeNames.Internal.FILEFORMAT, "unified-fileformat");
+    if (report.getCompatibilityLevel() == null)
+    {
+      report.setCompatibilityLevel(computeCompatibilityLevel(bundle.getMetaData()));
+    }
+
+    // the digest binds the precompiled report to the XML files written by the other handlers.
+    final byte[] definitionDigest = CompiledReportFormat.computeDefinitionDigest(bundle);
+    final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    try
+    {
+      CompiledReportFormat.writeReport(report, definitionDigest, bout);
+    }
+    catch (IOException ioe)
+    {
+      logger.info("The report cannot be serialized. The bundle will not contain a precompiled report.", ioe);
+      return null;
+    }
+
+    final OutputStream outputStream =
+        bundle.createEntry(CompiledReportFormat.ENTRY_NAME, CompiledReportFormat.MIME_TYPE);
+    try
+    {
+      bout.writeTo(outputStream);
+    }
+    finally
+    {
+      outputStream.close();
+    }
+    return CompiledReportFormat.ENTRY_NAME;
+  }
+
+  private static int computeCompatibilityLevel(final DocumentMetaData metaData)
+  {
+    final Object major = metaData.getBundleAttribute(ClassicEngineBoot.METADATA_NAMESPACE, "prpt-spec.version.major");
+    final Object minor = metaData.getBundleAttribute(ClassicEngineBoot.METADATA_NAMESPACE, "prpt-spec.version.minor");
+    final Object patch = metaData.getBundleAttribute(ClassicEngineBoot.METADATA_NAMESPACE, "prpt-spec.version.patch");
+    if (major instanceof Integer && minor instanceof Integer && patch instanceof Integer)
+    {
+      return ClassicEngineBoot.computeVersionId((Integer) major, (Integer) minor, (Integer) patch);
+    }
+    return ClassicEngineBoot.VERSION_TRUNK;
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+
+package org.pentaho.reporting.engine.classic.core.states;
+
+import java.io.Serializable;
+
+import org.pentaho.reporting.libraries.base.util.ObjectUtilities;
+
+/**
+ * Describes a group total that can be computed directly from the report's table-model before the report processing
+ * starts. Aggregations are used as keys into the {@link PrecomputedGroupTotals}, so two functions that ask for the
+ * same total share the same precomputed values.
+ *
+ * @author Thomas Morgner
+ */
+public final class PrecomputedAggregation implements Serializable
+{
+  /**
+   * The sum of all numeric values of the field.
+   */
+  public static final int SUM = 0;
+  /**
+   * The number of rows.
+   */
+  public static final int ITEM_COUNT = 1;
+  /**
+   * The smallest comparable value of the field.
+   */
+  public static final int MIN = 2;
+  /**
+   * The largest comparable value of the field.
+   */
+  public static final int MAX = 3;
+  /**
+   * The number of group instances of the counted group. If no counted group is given, all group instances are
+   * counted.
+   */
+  public static final int GROUP_COUNT = 4;
+
+  private int type;
+  private String field;
+  private String group;
+  private String countedGroup;
+  private boolean floatingPoint;
+  private int hashCode;
+
+  /**
+   * Creates a new aggregation.
+   *
+   * @param type          the aggregation type.
+   * @param field         the field that is aggregated, or null for count aggregations.
+   * @param group         the group that resets the aggregation, or null to aggregate over the whole report.
+   * @param countedGroup  the group that is counted in a GROUP_COUNT aggregation, or null to count all groups.
+   * @param floatingPoint whether floating point columns can be summed up as primitive double values.
+   */
+  public PrecomputedAggregation(final int type,
+                                final String field,
+                                final String group,
+                                final String countedGroup,
+                                final boolean floatingPoint)
+  {
+    if (type < SUM || type > GROUP_COUNT)
+    {
+      throw new IllegalArgumentException();
+    }
+    if (field == null && (type == SUM || type == MIN || type == MAX))
+    {
+      throw new NullPointerException();
+    }
+    this.type = type;
+    this.field = field;
+    this.group = group;
+    this.countedGroup = countedGroup;
+    this.floatingPoint = floatingPoint;
+  }
+
+  public int getType()
+  {
+    return type;
+  }
+
+  public String getField()
+  {
+    return field;
+  }
+
+  public String getGroup()
+  {
+    return group;
+  }
+
+  public String getCountedGroup()
+  {
+    return countedGroup;
+  }
+
+  public boolean isFloatingPoint()
+  {
+    return floatingPoint;
+  }
+
+  public boolean equals(final Object o)
+  {
+    if (this == o)
+    {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass())
+    {
+      return false;
+    }
+
+    final PrecomputedAggregation that = (PrecomputedAggregation) o;
+    if (type != that.type)
+    {
+      return false;
+    }
+    if (floatingPoint != that.floatingPoint)
+    {
+      return false;
+    }
+    if (ObjectUtilities.equal(field, that.field) == false)
+    {
+      return false;
+    }
+    if (ObjectUtilities.equal(group, that.group) == false)
+    {
+      return false;
+    }
+    return ObjectUtilities.equal(countedGroup, that.countedGroup);
+  }
+
+  public int hashCode()
+  {
+    if (hashCode == 0)
+    {
+      int result = type;
+      result = 31 * result + (field != null ? field.hashCode() : 0);
+      result = 31 * result + (group != null ? group.hashCode() : 0);
+      result = 31 * result + (countedGroup != null ? countedGroup.hashCode() : 0);
+      result = 31 * result + (floatingPoint ? 1 : 0);
+      hashCode = result;
+    }
+    return hashCode;
+  }
+
+  public String toString()
+  {
+    return "PrecomputedAggregation{type=" + type + ", field='" + field + "', group='" + group +
+        "', countedGroup='" + countedGroup + "', floatingPoint=" + floatingPoint + '}';
+  }
+}
@@ -0,0 +1,569 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+
+package org.pentaho.reporting.engine.classic.core.states;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import javax.swing.table.TableModel;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.reporting.engine.classic.core.Group;
+import org.pentaho.reporting.engine.classic.core.RelationalGroup;
+import org.pentaho.reporting.engine.classic.core.ReportDefinition;
+import org.pentaho.reporting.engine.classic.core.function.Expression;
+import org.pentaho.reporting.engine.classic.core.function.FunctionUtilities;
+import org.pentaho.reporting.engine.classic.core.function.NumericSequence;
+import org.pentaho.reporting.engine.classic.core.function.PrecomputableFunction;
+import org.pentaho.reporting.engine.classic.core.util.IntList;
+import org.pentaho.reporting.engine.classic.core.util.IntegerCache;
+import org.pentaho.reporting.engine.classic.core.util.Sequence;
+import org.pentaho.reporting.engine.classic.core.wizard.DataSchema;
+import org.pentaho.reporting.libraries.base.config.Configuration;
+import org.pentaho.reporting.libraries.base.util.ObjectUtilities;
+
+/**
+ * Group totals computed in a single scan over the report's table-model before the report processing starts. The
+ * scan replicates the group-break rules of relational groups and records the start row of each group instance. The
+ * totals of each aggregation are stored in compact arrays indexed by the group instance number.
+ * <p/>
+ * Functions implementing {@link PrecomputableFunction} read their results from here instead of collecting them in a
+ * prepare-run. Totals are only computed when all group fields and aggregated fields are plain columns of the
+ * table-model and the report does not contain a crosstab.
+ *
+ * @author Thomas Morgner
+ */
+public class PrecomputedGroupTotals implements Serializable
+{
+  private static final Log logger = LogFactory.getLog(PrecomputedGroupTotals.class);
+
+  public static final String ENABLE_CONFIG_KEY =
+      "org.pentaho.reporting.engine.classic.core.states.PrecomputeGroupTotals";
+
+  /**
+   * The group level used for aggregations over the whole report.
+   */
+  private static final int GLOBAL_LEVEL = -1;
+  /**
+   * The counted level used for group-count aggregations that count all groups.
+   */
+  private static final int ALL_LEVELS = -2;
+
+  private static class AggregationData implements Serializable
+  {
+    private int type;
+    private int column;
+    private int level;
+    private int countedLevel;
+    private NumericSequence numbers;
+    private Sequence<Comparable> values;
+
+    private AggregationData(final int type,
+                            final int column,
+                            final int level,
+                            final int countedLevel,
+                            final int numericMode)
+    {
+      this.type = type;
+      this.column = column;
+      this.level = level;
+      this.countedLevel = countedLevel;
+      if (type == PrecomputedAggregation.MIN || type == PrecomputedAggregation.MAX)
+      {
+        this.values = new Sequence<Comparable>();
+      }
+      else
+      {
+        this.numbers = new NumericSequence(numericMode);
+      }
+    }
+
+    private int getSlot(final int[] instances)
+    {
+      if (level == GLOBAL_LEVEL)
+      {
+        return 0;
+      }
+      return instances[level];
+    }
+
+    private void collect(final TableModel data,
+                         final int row,
+                         final int[] instances,
+                         final int firstStartedLevel)
+    {
+      final int slot = getSlot(instances);
+      switch (type)
+      {
+        case PrecomputedAggregation.SUM:
+        {
+          final Object value = data.getValueAt(row, column);
+          if (value instanceof Number)
+          {
+            numbers.add(slot, (Number) value);
+          }
+          break;
+        }
+        case PrecomputedAggregation.ITEM_COUNT:
+          numbers.add(slot, 1);
+          break;
+        case PrecomputedAggregation.MIN:
+        case PrecomputedAggregation.MAX:
+          collectComparable(data.getValueAt(row, column), slot);
+          break;
+        case PrecomputedAggregation.GROUP_COUNT:
+        {
+          for (int l = firstStartedLevel; l < instances.length; l++)
+          {
+            if (countedLevel == l || (countedLevel == ALL_LEVELS && l >= level))
+            {
+              numbers.add(slot, 1);
+            }
+          }
+          break;
+        }
+        default:
+          throw new IllegalStateException();
+      }
+    }
+
+    private void collectComparable(final Object value, final int slot)
+    {
+      if (value instanceof Comparable == false)
+      {
+        return;
+      }
+
+      try
+      {
+        final Comparable compare = (Comparable) value;
+        final Comparable oldValue = values.get(slot);
+        if (oldValue == null)
+        {
+          values.set(slot, compare);
+        }
+        else if (type == PrecomputedAggregation.MAX && oldValue.compareTo(compare) < 0)
+        {
+          values.set(slot, compare);
+        }
+        else if (type == PrecomputedAggregation.MIN && oldValue.compareTo(compare) > 0)
+        {
+          values.set(slot, compare);
+        }
+      }
+      catch (Exception e)
+      {
+        logger.debug("PrecomputedGroupTotals: problem comparing values.", e);
+      }
+    }
+
+    private Object getValue(final int slot)
+    {
+      switch (type)
+      {
+        case PrecomputedAggregation.SUM:
+          return numbers.get(slot);
+        case PrecomputedAggregation.ITEM_COUNT:
+        case PrecomputedAggregation.GROUP_COUNT:
+          if (numbers.isDefined(slot) == false)
+          {
+            return null;
+          }
+          return IntegerCache.getInteger((int) numbers.getLong(slot));
+        default:
+          return values.get(slot);
+      }
+    }
+  }
+
+  private int[][] groupStarts;
+  private HashMap<PrecomputedAggregation, AggregationData> aggregations;
+
+  private PrecomputedGroupTotals(final int[][] groupStarts,
+                                 final HashMap<PrecomputedAggregation, AggregationData> aggregations)
+  {
+    this.groupStarts = groupStarts;
+    this.aggregations = aggregations;
+  }
+
+  /**
+   * Checks whether the precomputation of group totals is enabled in the given configuration.
+   *
+   * @param configuration the report configuration.
+   * @return true, if totals should be precomputed, false otherwise.
+   */
+  public static boolean isEnabled(final Configuration configuration)
+  {
+    return "true".equals(configuration.getConfigProperty(ENABLE_CONFIG_KEY, "true"));
+  }
+
+  /**
+   * Scans the given table-model once and computes all totals requested by the given expressions.
+   *
+   * @param report      the report definition providing the group structure.
+   * @param data        the report's table-model.
+   * @param dataSchema  the data-schema used to select the numeric aggregation mode.
+   * @param expressions the report's expressions.
+   * @return the precomputed totals, or null if none of the expressions could be precomputed.
+   */
+  public static PrecomputedGroupTotals compute(final ReportDefinition report,
+                                               final TableModel data,
+                                               final DataSchema dataSchema,
+                                               final Expression[] expressions)
+  {
+    if (report == null || data == null || expressions == null)
+    {
+      throw new NullPointerException();
+    }
+
+    final LinkedHashSet<PrecomputedAggregation> requested = new LinkedHashSet<PrecomputedAggregation>();
+    final HashSet<String> expressionNames = new HashSet<String>();
+    for (int i = 0; i < expressions.length; i++)
+    {
+      final Expression expression = expressions[i];
+      if (expression.getName() != null)
+      {
+        expressionNames.add(expression.getName());
+      }
+      if (expression instanceof PrecomputableFunction)
+      {
+        final PrecomputedAggregation aggregation = ((PrecomputableFunction) expression).getPrecomputedAggregation();
+        if (aggregation != null)
+        {
+          requested.add(aggregation);
+        }
+      }
+    }
+
+    if (requested.isEmpty() || report.getCrosstabCellBody() != null)
+    {
+      return null;
+    }
+
+    final int[][] groupColumns = computeGroupColumns(report, data, expressionNames);
+    if (groupColumns == null)
+    {
+      return null;
+    }
+
+    final HashMap<PrecomputedAggregation, AggregationData> aggregations =
+        new HashMap<PrecomputedAggregation, AggregationData>();
+    for (final PrecomputedAggregation aggregation : requested)
+    {
+      final AggregationData aggregationData =
+          createAggregationData(aggregation, report, data, dataSchema, expressionNames);
+      if (aggregationData != null)
+      {
+        aggregations.put(aggregation, aggregationData);
+      }
+    }
+
+    if (aggregations.isEmpty())
+    {
+      return null;
+    }
+
+    final AggregationData[] collectors = aggregations.values().toArray(new AggregationData[aggregations.size()]);
+    final int groupCount = groupColumns.length;
+    final IntList[] starts = new IntList[groupCount];
+    final Object[][] previousValues = new Object[groupCount][];
+    final int[] instances = new int[groupCount];
+    for (int level = 0; level < groupCount; level++)
+    {
+      starts[level] = new IntList(100);
+      previousValues[level] = new Object[groupColumns[level].length];
+      instances[level] = -1;
+    }
+
+    final int rowCount = data.getRowCount();
+    for (int row = 0; row < rowCount; row++)
+    {
+      // a group break on one level is also a group break for all inner levels.
+      boolean changed = (row == 0);
+      int firstStartedLevel = groupCount;
+      for (int level = 0; level < groupCount; level++)
+      {
+        final int[] columns = groupColumns[level];
+        final Object[] previous = previousValues[level];
+        for (int c = 0; c < columns.length; c++)
+        {
+          final Object value = data.getValueAt(row, columns[c]);
+          if (changed == false && ObjectUtilities.equal(previous[c], value) == false)
+          {
+            changed = true;
+          }
+          previous[c] = value;
+        }
+
+        if (changed)
+        {
+          if (firstStartedLevel == groupCount)
+          {
+            firstStartedLevel = level;
+          }
+          starts[level].add(row);
+          instances[level] += 1;
+        }
+      }
+
+      for (int i = 0; i < collectors.length; i++)
+      {
+        collectors[i].collect(data, row, instances, firstStartedLevel);
+      }
+    }
+
+    final int[][] groupStarts = new int[groupCount][];
+    for (int level = 0; level < groupCount; level++)
+    {
+      groupStarts[level] = starts[level].toArray();
+    }
+    return new PrecomputedGroupTotals(groupStarts, aggregations);
+  }
+
+  /**
+   * Maps the fields of all groups to column indices. Returns null if a group is not a relational group or if a group
+   * field is not a plain column of the table-model.
+   */
+  private static int[][] computeGroupColumns(final ReportDefinition report,
+                                             final TableModel data,
+                                             final HashSet<String> expressionNames)
+  {
+    final int groupCount = report.getGroupCount();
+    final int[][] groupColumns = new int[groupCount][];
+    for (int level = 0; level < groupCount; level++)
+    {
+      final Group group = report.getGroup(level);
+      if (group instanceof RelationalGroup == false)
+      {
+        return null;
+      }
+
+      final String[] fields = ((RelationalGroup) group).getFieldsArray();
+      final IntList columns = new IntList(fields.length);
+      for (int i = 0; i < fields.length; i++)
+      {
+        final String field = fields[i];
+        if (field == null)
+        {
+          continue;
+        }
+        final int column = findColumn(data, field, expressionNames);
+        if (column < 0)
+        {
+          return null;
+        }
+        columns.add(column);
+      }
+      groupColumns[level] = columns.toArray();
+    }
+    return groupColumns;
+  }
+
+  private static int findColumn(final TableModel data,
+                                final String field,
+                                final HashSet<String> expressionNames)
+  {
+    if (expressionNames.contains(field))
+    {
+      return -1;
+    }
+
+    final int columnCount = data.getColumnCount();
+    for (int i = 0; i < columnCount; i++)
+    {
+      if (field.equals(data.getColumnName(i)))
+      {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Finds the group level for the given name. Returns GLOBAL_LEVEL for null names and -3 if the name does not
+   * identify exactly one group.
+   */
+  private static int findGroupLevel(final ReportDefinition report, final String groupName)
+  {
+    if (groupName == null)
+    {
+      return GLOBAL_LEVEL;
+    }
+
+    int result = -3;
+    final int groupCount = report.getGroupCount();
+    for (int level = 0; level < groupCount; level++)
+    {
+      final Group group = report.getGroup(level);
+      if (groupName.equals(group.getName()) || groupName.equals(group.getGeneratedName()))
+      {
+        if (result != -3)
+        {
+          return -3;
+        }
+        result = level;
+      }
+    }
+    return result;
+  }
+
+  private static AggregationData createAggregationData(final PrecomputedAggregation aggregation,
+                                                       final ReportDefinition report,
+                                                       final TableModel data,
+                                                       final DataSchema dataSchema,
+                                                       final HashSet<String> expressionNames)
+  {
+    final int level = findGroupLevel(report, aggregation.getGroup());
+    if (level < GLOBAL_LEVEL)
+    {
+      return null;
+    }
+
+    final int type = aggregation.getType();
+    if (type == PrecomputedAggregation.ITEM_COUNT)
+    {
+      return new AggregationData(type, -1, level, 0, NumericSequence.MODE_LONG);
+    }
+
+    if (type == PrecomputedAggregation.GROUP_COUNT)
+    {
+      if (aggregation.getGroup() == null)
+      {
+        // Group.matches(null) also accepts unnamed groups, which would reset the count in the middle of the report.
+        for (int i = 0; i < report.getGroupCount(); i++)
+        {
+          if (report.getGroup(i).getName() == null)
+          {
+            return null;
+          }
+        }
+      }
+
+      final int countedLevel;
+      if (aggregation.getCountedGroup() == null)
+      {
+        countedLevel = ALL_LEVELS;
+      }
+      else
+      {
+        countedLevel = findGroupLevel(report, aggregation.getCountedGroup());
+        if (countedLevel < 0 || countedLevel < level)
+        {
+          return null;
+        }
+      }
+      return new AggregationData(type, -1, level, countedLevel, NumericSequence.MODE_LONG);
+    }
+
+    final int column = findColumn(data, aggregation.getField(), expressionNames);
+    if (column < 0)
+    {
+      return null;
+    }
+
+    final int numericMode;
+    if (dataSchema != null)
+    {
+      numericMode = FunctionUtilities.computeAggregationMode
+          (dataSchema, aggregation.getField(), aggregation.isFloatingPoint());
+    }
+    else
+    {
+      numericMode = NumericSequence.MODE_EXACT;
+    }
+    return new AggregationData(type, column, level, 0, numericMode);
+  }
+
+  /**
+   * Checks whether the given aggregation has been precomputed.
+   *
+   * @param aggregation the aggregation.
+   * @return true, if the aggregation's values are available, false otherwise.
+   */
+  public boolean isComputed(final PrecomputedAggregation aggregation)
+  {
+    return aggregations.containsKey(aggregation);
+  }
+
+  /**
+   * Returns the number of the group instance that contains the given row. Rows before the first row map to the last
+   * group instance, to mimic the values that a prepare-run leaves behind for the report-header.
+   *
+   * @param level the group level.
+   * @param row   the row number.
+   * @return the group instance number or -1 if the group has no instances.
+   */
+  public int getGroupInstance(final int level, final int row)
+  {
+    if (level == GLOBAL_LEVEL)
+    {
+      return 0;
+    }
+
+    final int[] starts = groupStarts[level];
+    if (starts.length == 0)
+    {
+      return -1;
+    }
+    if (row < 0)
+    {
+      return starts.length - 1;
+    }
+
+    int low = 0;
+    int high = starts.length - 1;
+    while (low < high)
+    {
+      final int mid = (low + high + 1) >>> 1;
+      if (starts[mid] <= row)
+      {
+        low = mid;
+      }
+      else
+      {
+        high = mid - 1;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Returns the total of the given aggregation for the group instance that contains the given row.
+   *
+   * @param aggregation the aggregation.
+   * @param row         the current row or -1 to query the last group instance.
+   * @return the total or null if there is no value for the group instance.
+   */
+  public Object getValue(final PrecomputedAggregation aggregation, final int row)
+  {
+    final AggregationData data = aggregations.get(aggregation);
+    if (data == null)
+    {
+      throw new IllegalArgumentException("Aggregation has not been precomputed: " + aggregation);
+    }
+
+    final int instance = getGroupInstance(data.level, row);
+    if (instance < 0)
+    {
+      return null;
+    }
+    return data.getValue(instance);
+  }
+}
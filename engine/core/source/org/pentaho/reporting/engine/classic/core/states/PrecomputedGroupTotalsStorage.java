@@ -0,0 +1,118 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2009 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+package org.pentaho.reporting.engine.classic.core.states;
+
+import java.io.Serializable;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import javax.swing.table.TableModel;
+
+/**
+ * Keeps the precomputed group totals of subreport instances for the duration of a report run. Each processing level
+ * re-enters the same subreport instances, so without this storage the subreport's data would be rescanned on each
+ * level. The totals are only reused as long as the subreport still works on the same table-model instance, which is
+ * the case whenever the query result is served from the data-cache.
+ *
+ * @author Thomas Morgner
+ */
+public class PrecomputedGroupTotalsStorage implements Serializable
+{
+  private static class StoredTotals
+  {
+    private WeakReference<TableModel> data;
+    private PrecomputedGroupTotals totals;
+
+    private StoredTotals(final TableModel data, final PrecomputedGroupTotals totals)
+    {
+      this.data = new WeakReference<TableModel>(data);
+      this.totals = totals;
+    }
+  }
+
+  private transient HashMap<FunctionStorageKey, StoredTotals> storage;
+
+  public PrecomputedGroupTotalsStorage()
+  {
+    storage = new HashMap<FunctionStorageKey, StoredTotals>();
+  }
+
+  public void store(final FunctionStorageKey key,
+                    final TableModel data,
+                    final PrecomputedGroupTotals totals)
+  {
+    if (key == null)
+    {
+      throw new NullPointerException();
+    }
+    if (data == null)
+    {
+      throw new NullPointerException();
+    }
+
+    if (storage == null)
+    {
+      storage = new HashMap<FunctionStorageKey, StoredTotals>();
+    }
+    storage.put(key, new StoredTotals(data, totals));
+  }
+
+  /**
+   * Checks whether totals have been stored for the given subreport instance and table-model.
+   *
+   * @param key  the key of the subreport instance.
+   * @param data the table-model the subreport currently works on.
+   * @return true, if the stored totals were computed from the given table-model.
+   */
+  public boolean contains(final FunctionStorageKey key, final TableModel data)
+  {
+    if (key == null)
+    {
+      throw new NullPointerException();
+    }
+    if (storage == null)
+    {
+      return false;
+    }
+    final StoredTotals storedTotals = storage.get(key);
+    return storedTotals != null && storedTotals.data.get() == data;
+  }
+
+  /**
+   * Returns the totals stored for the given subreport instance. The result may be null if the subreport did not
+   * request any totals; use {@link #contains(FunctionStorageKey, TableModel)} to check for a valid entry first.
+   *
+   * @param key the key of the subreport instance.
+   * @return the stored totals or null.
+   */
+  public PrecomputedGroupTotals restore(final FunctionStorageKey key)
+  {
+    if (key == null)
+    {
+      throw new NullPointerException();
+    }
+    if (storage == null)
+    {
+      return null;
+    }
+    final StoredTotals storedTotals = storage.get(key);
+    if (storedTotals == null)
+    {
+      return null;
+    }
+    return storedTotals.totals;
+  }
+}
@@ -0,0 +1,556 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+
+package org.pentaho.reporting.engine.classic.core.states;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.swing.table.TableModel;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.reporting.engine.classic.core.AttributeNames;
+import org.pentaho.reporting.engine.classic.core.CrosstabColumnGroup;
+import org.pentaho.reporting.engine.classic.core.CrosstabOtherGroup;
+import org.pentaho.reporting.engine.classic.core.CrosstabRowGroup;
+import org.pentaho.reporting.engine.classic.core.Group;
+import org.pentaho.reporting.engine.classic.core.RelationalGroup;
+import org.pentaho.reporting.engine.classic.core.ReportDefinition;
+import org.pentaho.reporting.libraries.base.config.Configuration;
+import org.pentaho.reporting.libraries.base.util.ObjectUtilities;
+import org.pentaho.reporting.libraries.xmlns.common.ParserUtil;
+
+/**
+ * Sorts the report data inside the engine for data-sources that cannot sort their result themselves. The sort is
+ * stable and only computes a new row order, the rows of the original tablemodel are never copied.
+ * <p/>
+ * Sorting is enabled by setting the report attribute <code>core:sort-data</code> to true. The rows are then sorted by
+ * the fields given in the <code>core:sort-fields</code> attribute or, if that attribute is not set, by the fields of
+ * all groups of the report.
+ *
+ * @author Thomas Morgner
+ */
+public final class ReportDataSorter
+{
+  private static final Log logger = LogFactory.getLog(ReportDataSorter.class);
+
+  /**
+   * The maximum number of cells that are copied into a key array before sorting. Larger results are compared by
+   * reading the values from the tablemodel directly, which is slower but needs no additional memory.
+   */
+  public static final String KEY_CACHE_LIMIT_KEY =
+      "org.pentaho.reporting.engine.classic.core.states.SortKeyCacheLimit";
+
+  private static final int INSERTION_SORT_THRESHOLD = 7;
+
+  private abstract static class RowComparator
+  {
+    protected RowComparator()
+    {
+    }
+
+    public abstract int compare(final int row1, final int row2);
+  }
+
+  /**
+   * Compares rows by reading the sort keys from the tablemodel.
+   */
+  private static class TableModelRowComparator extends RowComparator
+  {
+    private TableModel data;
+    private int[] columns;
+
+    private TableModelRowComparator(final TableModel data, final int[] columns)
+    {
+      this.data = data;
+      this.columns = columns;
+    }
+
+    public int compare(final int row1, final int row2)
+    {
+      for (int i = 0; i < columns.length; i++)
+      {
+        final int column = columns[i];
+        final int result = compareValues(data.getValueAt(row1, column), data.getValueAt(row2, column));
+        if (result != 0)
+        {
+          return result;
+        }
+      }
+      return 0;
+    }
+  }
+
+  /**
+   * Compares rows using sort keys that have been copied out of the tablemodel.
+   */
+  private static class CachedKeyRowComparator extends RowComparator
+  {
+    private Object[][] keys;
+
+    private CachedKeyRowComparator(final TableModel data, final int[] columns)
+    {
+      final int rowCount = data.getRowCount();
+      this.keys = new Object[columns.length][];
+      for (int i = 0; i < columns.length; i++)
+      {
+        final Object[] values = new Object[rowCount];
+        final int column = columns[i];
+        for (int row = 0; row < rowCount; row++)
+        {
+          values[row] = data.getValueAt(row, column);
+        }
+        keys[i] = values;
+      }
+    }
+
+    public int compare(final int row1, final int row2)
+    {
+      for (int i = 0; i < keys.length; i++)
+      {
+        final Object[] values = keys[i];
+        final int result = compareValues(values[row1], values[row2]);
+        if (result != 0)
+        {
+          return result;
+        }
+      }
+      return 0;
+    }
+  }
+
+  private ReportDataSorter()
+  {
+  }
+
+  /**
+   * Computes the fields by which the report's data should be sorted.
+   *
+   * @param report the report definition.
+   * @return the sort fields or null, if the report does not request in-engine sorting.
+   */
+  public static String[] computeSortFields(final ReportDefinition report)
+  {
+    if (Boolean.TRUE.equals(report.getAttribute(AttributeNames.Core.NAMESPACE, AttributeNames.Core.SORT_DATA)) == false)
+    {
+      return null;
+    }
+
+    final Object sortFields = report.getAttribute(AttributeNames.Core.NAMESPACE, AttributeNames.Core.SORT_FIELDS);
+    if (sortFields instanceof String[])
+    {
+      final String[] fields = (String[]) sortFields;
+      if (fields.length > 0)
+      {
+        return fields.clone();
+      }
+    }
+
+    final LinkedHashSet<String> fields = new LinkedHashSet<String>();
+    final int groupCount = report.getGroupCount();
+    for (int i = 0; i < groupCount; i++)
+    {
+      final Group group = report.getGroup(i);
+      if (group instanceof RelationalGroup)
+      {
+        final String[] groupFields = ((RelationalGroup) group).getFieldsArray();
+        for (int f = 0; f < groupFields.length; f++)
+        {
+          if (groupFields[f] != null)
+          {
+            fields.add(groupFields[f]);
+          }
+        }
+      }
+      else if (group instanceof CrosstabOtherGroup)
+      {
+        addField(fields, ((CrosstabOtherGroup) group).getField());
+      }
+      else if (group instanceof CrosstabRowGroup)
+      {
+        addField(fields, ((CrosstabRowGroup) group).getField());
+      }
+      else if (group instanceof CrosstabColumnGroup)
+      {
+        addField(fields, ((CrosstabColumnGroup) group).getField());
+      }
+    }
+
+    if (fields.isEmpty())
+    {
+      return null;
+    }
+    return fields.toArray(new String[fields.size()]);
+  }
+
+  private static void addField(final LinkedHashSet<String> fields, final String field)
+  {
+    if (field != null)
+    {
+      fields.add(field);
+    }
+  }
+
+  /**
+   * Returns the maximum number of cells copied into the key cache as defined in the given configuration.
+   *
+   * @param configuration the report configuration.
+   * @return the key cache limit.
+   */
+  public static int getKeyCacheLimit(final Configuration configuration)
+  {
+    return ParserUtil.parseInt(configuration.getConfigProperty(KEY_CACHE_LIMIT_KEY), 1000000);
+  }
+
+  /**
+   * Sorts the given tablemodel by the given fields. Fields that are not contained in the tablemodel are ignored. If
+   * the data is already sorted, the original tablemodel is returned.
+   *
+   * @param data          the data to be sorted.
+   * @param fields        the sort fields, in order of precedence.
+   * @param keyCacheLimit the maximum number of cells that can be copied into the key cache.
+   * @return the sorted data.
+   */
+  public static TableModel sort(final TableModel data,
+                                final String[] fields,
+                                final int keyCacheLimit)
+  {
+    if (data == null)
+    {
+      throw new NullPointerException();
+    }
+    if (fields == null)
+    {
+      throw new NullPointerException();
+    }
+
+    final int rowCount = data.getRowCount();
+    if (rowCount < 2)
+    {
+      return data;
+    }
+
+    final int[] columns = findColumns(data, fields);
+    if (columns.length == 0)
+    {
+      return data;
+    }
+
+    final RowComparator comparator;
+    if ((long) rowCount * columns.length <= keyCacheLimit)
+    {
+      comparator = new CachedKeyRowComparator(data, columns);
+    }
+    else
+    {
+      comparator = new TableModelRowComparator(data, columns);
+    }
+
+    if (isSorted(comparator, rowCount))
+    {
+      return data;
+    }
+
+    final long startTime = System.currentTimeMillis();
+    final int[] rowIndex = new int[rowCount];
+    for (int i = 0; i < rowCount; i++)
+    {
+      rowIndex[i] = i;
+    }
+    mergeSort(rowIndex.clone(), rowIndex, 0, rowCount, comparator);
+    if (logger.isDebugEnabled())
+    {
+      logger.debug("Sorted " + rowCount + " rows in " + (System.currentTimeMillis() - startTime) + "ms");
+    }
+    return new SortedTableModel(data, rowIndex);
+  }
+
+  private static int[] findColumns(final TableModel data, final String[] fields)
+  {
+    final int columnCount = data.getColumnCount();
+    final int[] columns = new int[fields.length];
+    int count = 0;
+    for (int f = 0; f < fields.length; f++)
+    {
+      final String field = fields[f];
+      for (int i = 0; i < columnCount; i++)
+      {
+        if (ObjectUtilities.equal(field, data.getColumnName(i)))
+        {
+          columns[count] = i;
+          count += 1;
+          break;
+        }
+      }
+    }
+
+    if (count == columns.length)
+    {
+      return columns;
+    }
+    final int[] retval = new int[count];
+    System.arraycopy(columns, 0, retval, 0, count);
+    return retval;
+  }
+
+  private static boolean isSorted(final RowComparator comparator, final int rowCount)
+  {
+    for (int row = 1; row < rowCount; row++)
+    {
+      if (comparator.compare(row - 1, row) > 0)
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * A stable merge sort on row indices. Sorts the range [low, high) of <code>dest</code>, using <code>src</code> as
+   * scratch space. Both arrays must contain the same values when this method is called.
+   */
+  private static void mergeSort(final int[] src,
+                                final int[] dest,
+                                final int low,
+                                final int high,
+                                final RowComparator comparator)
+  {
+    final int length = high - low;
+    if (length < INSERTION_SORT_THRESHOLD)
+    {
+      for (int i = low + 1; i < high; i++)
+      {
+        for (int j = i; j > low && comparator.compare(dest[j - 1], dest[j]) > 0; j--)
+        {
+          final int tmp = dest[j];
+          dest[j] = dest[j - 1];
+          dest[j - 1] = tmp;
+        }
+      }
+      return;
+    }
+
+    final int mid = (low + high) >>> 1;
+    mergeSort(dest, src, low, mid, comparator);
+    mergeSort(dest, src, mid, high, comparator);
+
+    // the two halves are already in order, so just copy them.
+    if (comparator.compare(src[mid - 1], src[mid]) <= 0)
+    {
+      System.arraycopy(src, low, dest, low, length);
+      return;
+    }
+
+    for (int i = low, p = low, q = mid; i < high; i++)
+    {
+      if (q >= high || (p < mid && comparator.compare(src[p], src[q]) <= 0))
+      {
+        dest[i] = src[p];
+        p += 1;
+      }
+      else
+      {
+        dest[i] = src[q];
+        q += 1;
+      }
+    }
+  }
+
+  /**
+   * Compares two values of a sort column. Null values sort first and numbers are compared by their exact value
+   * regardless of their type. All other values are ordered by their type first, dates and their subclasses count as one
+   * type. Values of the same type are compared by their natural order or, if that fails, by their string
+   * representation.
+   *
+   * @param value1 the first value.
+   * @param value2 the second value.
+   * @return the comparison result.
+   */
+  static int compareValues(final Object value1, final Object value2)
+  {
+    if (value1 == value2)
+    {
+      return 0;
+    }
+    if (value1 == null)
+    {
+      return -1;
+    }
+    if (value2 == null)
+    {
+      return +1;
+    }
+
+    final boolean number1 = value1 instanceof Number;
+    final boolean number2 = value2 instanceof Number;
+    if (number1 && number2)
+    {
+      return compareNumbers((Number) value1, (Number) value2);
+    }
+    if (number1)
+    {
+      return -1;
+    }
+    if (number2)
+    {
+      return +1;
+    }
+
+    final int typeOrder = getTypeName(value1).compareTo(getTypeName(value2));
+    if (typeOrder != 0)
+    {
+      return typeOrder;
+    }
+    if (value1 instanceof Comparable && value2 instanceof Comparable)
+    {
+      try
+      {
+        return ((Comparable) value1).compareTo(value2);
+      }
+      catch (Exception cce)
+      {
+        // incompatible comparables, fall back to the string representation.
+      }
+    }
+    return String.valueOf(value1).compareTo(String.valueOf(value2));
+  }
+
+  private static String getTypeName(final Object value)
+  {
+    if (value instanceof Date)
+    {
+      return Date.class.getName();
+    }
+    return value.getClass().getName();
+  }
+
+  private static int compareNumbers(final Number value1, final Number value2)
+  {
+    if (isIntegral(value1) && isIntegral(value2))
+    {
+      final long long1 = value1.longValue();
+      final long long2 = value2.longValue();
+      if (long1 < long2)
+      {
+        return -1;
+      }
+      if (long1 > long2)
+      {
+        return +1;
+      }
+      return 0;
+    }
+
+    // NaN and infinite values have no exact representation. They sort by their rank, all finite values share rank 0.
+    final int rank1 = getFloatingPointRank(value1);
+    final int rank2 = getFloatingPointRank(value2);
+    if (rank1 != 0 || rank2 != 0)
+    {
+      if (rank1 < rank2)
+      {
+        return -1;
+      }
+      if (rank1 > rank2)
+      {
+        return +1;
+      }
+      return 0;
+    }
+
+    if (isFloatingPoint(value1) && isFloatingPoint(value2))
+    {
+      // both values are finite here, and -0.0 and 0.0 must compare equal just like their exact values do.
+      final double double1 = value1.doubleValue();
+      final double double2 = value2.doubleValue();
+      if (double1 < double2)
+      {
+        return -1;
+      }
+      if (double1 > double2)
+      {
+        return +1;
+      }
+      return 0;
+    }
+    return toBigDecimal(value1).compareTo(toBigDecimal(value2));
+  }
+
+  private static boolean isIntegral(final Number value)
+  {
+    return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte ||
+        value instanceof AtomicLong || value instanceof AtomicInteger;
+  }
+
+  private static boolean isFloatingPoint(final Number value)
+  {
+    return value instanceof Double || value instanceof Float;
+  }
+
+  private static int getFloatingPointRank(final Number value)
+  {
+    if (isFloatingPoint(value) == false)
+    {
+      return 0;
+    }
+    final double d = value.doubleValue();
+    if (Double.isNaN(d))
+    {
+      return 2;
+    }
+    if (d == Double.POSITIVE_INFINITY)
+    {
+      return 1;
+    }
+    if (d == Double.NEGATIVE_INFINITY)
+    {
+      return -1;
+    }
+    return 0;
+  }
+
+  private static BigDecimal toBigDecimal(final Number value)
+  {
+    if (value instanceof BigDecimal)
+    {
+      return (BigDecimal) value;
+    }
+    if (value instanceof BigInteger)
+    {
+      return new BigDecimal((BigInteger) value);
+    }
+    if (isIntegral(value))
+    {
+      return BigDecimal.valueOf(value.longValue());
+    }
+    if (isFloatingPoint(value))
+    {
+      return new BigDecimal(value.doubleValue());
+    }
+    try
+    {
+      return new BigDecimal(value.toString());
+    }
+    catch (NumberFormatException nfe)
+    {
+      return new BigDecimal(value.doubleValue());
+    }
+  }
+}
@@ -122,4 +122,12 @@ public interface ReportState extends Cloneable
 
   public long getGroupSequenceCounter (final int groupIndex);
   public long getCrosstabColumnSequenceCounter (final int groupIndex);
+
+  /**
+   * Returns the group totals that have been computed in a single scan over the report's data before the report
+   * processing started.
+   *
+   * @return the precomputed totals or null, if no totals have been precomputed for the current report.
+   */
+  public PrecomputedGroupTotals getPrecomputedGroupTotals();
 }
@@ -0,0 +1,148 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+
+package org.pentaho.reporting.engine.classic.core.states;
+
+import javax.swing.event.TableModelListener;
+import javax.swing.table.TableModel;
+
+import org.pentaho.reporting.engine.classic.core.MetaTableModel;
+import org.pentaho.reporting.engine.classic.core.wizard.DataAttributes;
+import org.pentaho.reporting.engine.classic.core.wizard.EmptyDataAttributes;
+
+/**
+ * A read-only view on a tablemodel that presents the rows of the backend in a different order. The rows are not
+ * copied, the model only holds the row index of the backend for each row of the view.
+ *
+ * @author Thomas Morgner
+ */
+public class SortedTableModel implements MetaTableModel
+{
+  private TableModel backend;
+  private MetaTableModel metaBackend;
+  private int[] rowIndex;
+
+  /**
+   * Creates a new sorted view.
+   *
+   * @param backend  the backend tablemodel.
+   * @param rowIndex the row index of the backend for each row of this model.
+   */
+  public SortedTableModel(final TableModel backend,
+                          final int[] rowIndex)
+  {
+    if (backend == null)
+    {
+      throw new NullPointerException();
+    }
+    if (rowIndex == null)
+    {
+      throw new NullPointerException();
+    }
+    if (rowIndex.length != backend.getRowCount())
+    {
+      throw new IllegalArgumentException();
+    }
+    this.backend = backend;
+    this.rowIndex = rowIndex;
+    if (backend instanceof MetaTableModel)
+    {
+      metaBackend = (MetaTableModel) backend;
+    }
+  }
+
+  public int getRowCount()
+  {
+    return rowIndex.length;
+  }
+
+  public int getColumnCount()
+  {
+    return backend.getColumnCount();
+  }
+
+  public String getColumnName(final int columnIndex)
+  {
+    return backend.getColumnName(columnIndex);
+  }
+
+  public Class getColumnClass(final int columnIndex)
+  {
+    return backend.getColumnClass(columnIndex);
+  }
+
+  public boolean isCellEditable(final int rowIndex, final int columnIndex)
+  {
+    return false;
+  }
+
+  public Object getValueAt(final int rowIndex, final int columnIndex)
+  {
+    return backend.getValueAt(this.rowIndex[rowIndex], columnIndex);
+  }
+
+  public void setValueAt(final Object aValue, final int rowIndex, final int columnIndex)
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  public void addTableModelListener(final TableModelListener l)
+  {
+    backend.addTableModelListener(l);
+  }
+
+  public void removeTableModelListener(final TableModelListener l)
+  {
+    backend.removeTableModelListener(l);
+  }
+
+  public DataAttributes getCellDataAttributes(final int row, final int column)
+  {
+    if (metaBackend != null)
+    {
+      return metaBackend.getCellDataAttributes(rowIndex[row], column);
+    }
+    return EmptyDataAttributes.INSTANCE;
+  }
+
+  public boolean isCellDataAttributesSupported()
+  {
+    if (metaBackend != null)
+    {
+      return metaBackend.isCellDataAttributesSupported();
+    }
+    return false;
+  }
+
+  public DataAttributes getColumnAttributes(final int column)
+  {
+    if (metaBackend != null)
+    {
+      return metaBackend.getColumnAttributes(column);
+    }
+    return EmptyDataAttributes.INSTANCE;
+  }
+
+  public DataAttributes getTableAttributes()
+  {
+    if (metaBackend != null)
+    {
+      return metaBackend.getTableAttributes();
+    }
+    return EmptyDataAttributes.INSTANCE;
+  }
+}
@@ -32,6 +32,7 @@ import org.pentaho.reporting.engine.classic.core.ReportPreProcessor;
 import org.pentaho.reporting.engine.classic.core.ReportProcessingException;
 import org.pentaho.reporting.engine.classic.core.SubReport;
 import org.pentaho.reporting.engine.classic.core.function.Expression;
+import org.pentaho.reporting.engine.classic.core.function.PrecomputableFunction;
 import org.pentaho.reporting.engine.classic.core.function.StructureFunction;
 import org.pentaho.reporting.engine.classic.core.metadata.ReportPreProcessorMetaData;
 import org.pentaho.reporting.engine.classic.core.metadata.ReportPreProcessorRegistry;
@@ -87,6 +88,25 @@ public class StateUtilities
   public static boolean computeLevels(final DefaultFlowController report,
                                       final LayoutProcess lp,
                                       final HashSet<Integer> levels)
+  {
+    return computeLevels(report, lp, levels, null);
+  }
+
+  /**
+   * Computes the processing levels required by the report's functions. If group totals have been precomputed,
+   * functions that read their values from these totals do not require a prepare-run. Plain expressions are evaluated
+   * in every processing level anyway, so in that case they do not force a prepare-run either.
+   *
+   * @param report                 the flow controller of the current report.
+   * @param lp                     the layout process holding the structure functions.
+   * @param levels                 the collected levels.
+   * @param precomputedGroupTotals the precomputed totals of the report or null.
+   * @return true, if a prepare-run other than the pagination run is needed.
+   */
+  public static boolean computeLevels(final DefaultFlowController report,
+                                      final LayoutProcess lp,
+                                      final HashSet<Integer> levels,
+                                      final PrecomputedGroupTotals precomputedGroupTotals)
   {
     if (report == null)
     {
@@ -125,6 +145,10 @@ public class StateUtilities
     for (int i = 0; i < expressions.length; i++)
     {
       final Expression expression = expressions[i];
+      if (precomputedGroupTotals != null && isServedByPrecomputedTotals(expression, precomputedGroupTotals))
+      {
+        continue;
+      }
       final Integer level = IntegerCache.getInteger(expression.getDependencyLevel());
       levels.add(level);
       if (level != LayoutProcess.LEVEL_PAGINATE)
@@ -136,6 +160,25 @@ public class StateUtilities
     return retval;
   }
 
+  /**
+   * Checks whether the given expression gets its value from the precomputed totals and therefore does not need a
+   * prepare run of its own. Plain expressions are never served from the totals and keep their dependency level.
+   *
+   * @param expression             the expression.
+   * @param precomputedGroupTotals the precomputed totals of the report.
+   * @return true, if the expression is a function that is served from the totals, false otherwise.
+   */
+  private static boolean isServedByPrecomputedTotals(final Expression expression,
+                                                     final PrecomputedGroupTotals precomputedGroupTotals)
+  {
+    if (expression instanceof PrecomputableFunction == false)
+    {
+      return false;
+    }
+    final PrecomputedAggregation aggregation = ((PrecomputableFunction) expression).getPrecomputedAggregation();
+    return aggregation != null && precomputedGroupTotals.isComputed(aggregation);
+  }
+
   public static ValidationResult validate(final MasterReport report,
                                           final ValidationResult result) throws ReportProcessingException
   {
@@ -32,6 +32,7 @@ import org.pentaho.reporting.engine.classic.core.function.Expression;
 import org.pentaho.reporting.engine.classic.core.function.ProcessingContext;
 import org.pentaho.reporting.engine.classic.core.states.LengthLimitingTableModel;
 import org.pentaho.reporting.engine.classic.core.states.QueryDataRowWrapper;
+import org.pentaho.reporting.engine.classic.core.states.ReportDataSorter;
 import org.pentaho.reporting.engine.classic.core.states.crosstab.CrosstabSpecification;
 import org.pentaho.reporting.engine.classic.core.util.IntegerCache;
 import org.pentaho.reporting.engine.classic.core.util.ReportParameterValues;
@@ -172,6 +173,29 @@ public final class DefaultFlowController
                                             final int queryTimeout,
                                             final ResourceBundleFactory resourceBundleFactory)
       throws ReportDataFactoryException
+  {
+    return performQuery(dataFactory, query, queryLimit, queryTimeout, resourceBundleFactory, null);
+  }
+
+  /**
+   * Performs the query of the global master report and sorts the result by the given fields, if any.
+   *
+   * @param dataFactory           the data-factory.
+   * @param query                 the query.
+   * @param queryLimit            the query limit.
+   * @param queryTimeout          the query timeout.
+   * @param resourceBundleFactory the resource-bundle factory.
+   * @param sortFields            the fields by which the result is sorted, or null to keep the order of the result.
+   * @return the derived flow-controller.
+   * @throws ReportDataFactoryException if the query failed.
+   */
+  public DefaultFlowController performQuery(final DataFactory dataFactory,
+                                            final String query,
+                                            final int queryLimit,
+                                            final int queryTimeout,
+                                            final ResourceBundleFactory resourceBundleFactory,
+                                            final String[] sortFields)
+      throws ReportDataFactoryException
   {
     if (dataFactory == null)
     {
@@ -187,7 +211,7 @@ public final class DefaultFlowController
             (reportContext, dataFactory, new ParameterDataRow(parameters), resourceBundleFactory);
     final TableModel tableData = performQueryData
           (masterRowWithoutData.getDataFactory(), query, queryLimit, queryTimeout,
-              masterRowWithoutData.getGlobalView());
+              masterRowWithoutData.getGlobalView(), sortFields);
     final MasterDataRow masterRow = masterRowWithoutData.deriveWithQueryData(tableData);
 
     final DefaultFlowController fc = new DefaultFlowController(this, masterRow);
@@ -201,7 +225,8 @@ public final class DefaultFlowController
                                       final String query,
                                       final int queryLimit,
                                       final int queryTimeout,
-                                      final DataRow parameters)
+                                      final DataRow parameters,
+                                      final String[] sortFields)
       throws ReportDataFactoryException
   {
     if (dataFactory == null)
@@ -220,11 +245,22 @@ public final class DefaultFlowController
 
     final TableModel reportData = dataFactory.queryData
         (query, new QueryDataRowWrapper(parameters, queryLimit, queryTimeout));
+    final TableModel limitedData;
     if (queryLimit > 0 && reportData.getRowCount() > queryLimit)
     {
-      return new LengthLimitingTableModel(reportData, queryLimit);
+      limitedData = new LengthLimitingTableModel(reportData, queryLimit);
+    }
+    else
+    {
+      limitedData = reportData;
     }
-    return reportData;
+
+    if (sortFields == null || sortFields.length == 0)
+    {
+      return limitedData;
+    }
+    return ReportDataSorter.sort(limitedData, sortFields,
+        ReportDataSorter.getKeyCacheLimit(reportContext.getConfiguration()));
   }
 
   public DefaultFlowController performInitSubreport(final DataFactory dataFactory,
@@ -270,6 +306,27 @@ public final class DefaultFlowController
                                                      final int queryTimeout,
                                                      final ParameterMapping[] outputParameters)
       throws ReportDataFactoryException
+  {
+    return performSubReportQuery(query, queryLimit, queryTimeout, outputParameters, null);
+  }
+
+  /**
+   * Performs the query of a subreport and sorts the result by the given fields, if any.
+   *
+   * @param query            the query.
+   * @param queryLimit       the query limit.
+   * @param queryTimeout     the query timeout.
+   * @param outputParameters the export mappings of the subreport.
+   * @param sortFields       the fields by which the result is sorted, or null to keep the order of the result.
+   * @return the derived flow-controller.
+   * @throws ReportDataFactoryException if the query failed.
+   */
+  public DefaultFlowController performSubReportQuery(final String query,
+                                                     final int queryLimit,
+                                                     final int queryTimeout,
+                                                     final ParameterMapping[] outputParameters,
+                                                     final String[] sortFields)
+      throws ReportDataFactoryException
   {
     if (outputParameters == null)
     {
@@ -280,7 +337,8 @@ public final class DefaultFlowController
     // perform the query ...
     // add the resultset ...
     final TableModel tableData = performQueryData
-          (subReportDataRow.getDataFactory(), query, queryLimit, queryTimeout, subReportDataRow.getGlobalView());
+          (subReportDataRow.getDataFactory(), query, queryLimit, queryTimeout, subReportDataRow.getGlobalView(),
+              sortFields);
     final MasterDataRow masterRow = subReportDataRow.deriveWithQueryData(tableData);
 
     if (isGlobalImportOrExport(outputParameters))
@@ -21,6 +21,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import javax.swing.table.TableModel;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -79,7 +80,10 @@ import org.pentaho.reporting.engine.classic.core.states.GroupingState;
 import org.pentaho.reporting.engine.classic.core.states.IgnoreEverythingReportErrorHandler;
 import org.pentaho.reporting.engine.classic.core.states.InitialLayoutProcess;
 import org.pentaho.reporting.engine.classic.core.states.LayoutProcess;
+import org.pentaho.reporting.engine.classic.core.states.PrecomputedGroupTotals;
+import org.pentaho.reporting.engine.classic.core.states.PrecomputedGroupTotalsStorage;
 import org.pentaho.reporting.engine.classic.core.states.ProcessStateHandle;
+import org.pentaho.reporting.engine.classic.core.states.ReportDataSorter;
 import org.pentaho.reporting.engine.classic.core.states.ReportDefinitionImpl;
 import org.pentaho.reporting.engine.classic.core.states.ReportProcessingErrorHandler;
 import org.pentaho.reporting.engine.classic.core.states.ReportState;
@@ -281,6 +285,8 @@ public class ProcessState implements ReportState
   private LongSequence groupSequenceCounter;
   private LongSequence crosstabColumnSequenceCounter;
   private boolean designtime;
+  private PrecomputedGroupTotals precomputedGroupTotals;
+  private PrecomputedGroupTotalsStorage precomputedGroupTotalsStorage;
 
   public ProcessState()
   {
@@ -353,6 +359,7 @@ public class ProcessState implements ReportState
         (null, ReportState.BEFORE_FIRST_ROW, 0, ReportState.BEFORE_FIRST_GROUP, -1, sequenceCounter, false);
     this.dataFactoryManager = new DataFactoryManager();
     this.subReportStorage = new SubReportStorage();
+    this.precomputedGroupTotalsStorage = new PrecomputedGroupTotalsStorage();
     this.processHandle = new InternalProcessHandle(dataFactoryManager);
     this.crosstabColumnSequenceCounter = new LongSequence(10, -1);
     this.groupSequenceCounter = new LongSequence(10, -1);
@@ -392,7 +399,7 @@ public class ProcessState implements ReportState
 
     DefaultFlowController postQueryFlowController = flowController.performQuery
         (dataFactory, query, queryLimit.intValue(), queryTimeout.intValue(),
-            processingContext.getResourceBundleFactory());
+            processingContext.getResourceBundleFactory(), ReportDataSorter.computeSortFields(processedReport));
 
     final MasterReportProcessPreprocessor postProcessor = new MasterReportProcessPreprocessor(postQueryFlowController);
     final MasterReport fullReport = postProcessor.invokePreProcessing(processedReport);
@@ -429,7 +436,8 @@ public class ProcessState implements ReportState
         computeStructureFunctions(fullReport.getStructureFunctions(),
             getFlowController().getReportContext().getOutputProcessorMetaData()), fullReport.getObjectID());
 
-    if (StateUtilities.computeLevels(this.flowController, this.layoutProcess, processLevels))
+    this.precomputedGroupTotals = computeGroupTotals(expressions);
+    if (StateUtilities.computeLevels(this.flowController, this.layoutProcess, processLevels, precomputedGroupTotals))
     {
       this.recorder = new DefaultGroupSizeRecorder();
     }
@@ -510,6 +518,7 @@ public class ProcessState implements ReportState
     this.subReports = subReports.clone();
     this.dataFactoryManager = parentState.dataFactoryManager;
     this.subReportStorage = parentState.subReportStorage;
+    this.precomputedGroupTotalsStorage = parentState.precomputedGroupTotalsStorage;
     this.structuralPreprocessingNeeded = parentState.structuralPreprocessingNeeded;
     this.processLevels = parentState.processLevels;
     this.sequenceCounter = parentState.getSequenceCounter() + 1;
@@ -615,7 +624,8 @@ public class ProcessState implements ReportState
       this.queryTimeout = (Integer) ConverterRegistry.convert(queryTimeoutRaw, Integer.class, queryTimeoutDefault);
 
       DefaultFlowController postQueryFlowController = flowController.performSubReportQuery
-          (query, queryLimit.intValue(), queryTimeout.intValue(), exportMappings);
+          (query, queryLimit.intValue(), queryTimeout.intValue(), exportMappings,
+              ReportDataSorter.computeSortFields(preDataSubReport));
       final ProxyDataSchemaDefinition schemaDefinition =
           new ProxyDataSchemaDefinition(preDataSubReport.getDataSchemaDefinition(),
               postQueryFlowController.getMasterRow().getDataSchemaDefinition());
@@ -668,6 +678,7 @@ public class ProcessState implements ReportState
 
       this.flowController = fullFlowController.activateExpressions(expressions, preserve);
       this.flowController = this.flowController.refreshDataRow();
+      this.precomputedGroupTotals = computeGroupTotals(functionStorageKey, expressions);
 
       // now a bunch of paranoid assertions, just in case I missed something.
       if (this.report.getParentSection() == null)
@@ -691,10 +702,70 @@ public class ProcessState implements ReportState
       }
     }
 
-    StateUtilities.computeLevels(this.flowController, this.layoutProcess, processLevels);
+    StateUtilities.computeLevels(this.flowController, this.layoutProcess, processLevels, precomputedGroupTotals);
     this.processKey = createKey();
   }
 
+  /**
+   * Scans the report's data once to compute the group totals of all functions that support it. Functions served
+   * from these totals do not need a prepare-run of their own.
+   *
+   * @param expressions the expressions of the current report.
+   * @return the precomputed totals or null, if there are no totals to compute.
+   */
+  private PrecomputedGroupTotals computeGroupTotals(final Expression[] expressions)
+  {
+    final TableModel reportData = getGroupTotalsData();
+    if (reportData == null)
+    {
+      return null;
+    }
+    final MasterDataRow masterRow = flowController.getMasterRow();
+    return PrecomputedGroupTotals.compute(report, reportData, masterRow.getDataSchema(), expressions);
+  }
+
+  /**
+   * Computes the group totals of a subreport instance. The subreport instance is entered again on every processing
+   * level, so the totals are computed once per run and subreport instance and reused as long as the subreport's
+   * data has not changed.
+   *
+   * @param functionStorageKey the key identifying the subreport instance.
+   * @param expressions        the expressions of the subreport.
+   * @return the precomputed totals or null, if there are no totals to compute.
+   */
+  private PrecomputedGroupTotals computeGroupTotals(final FunctionStorageKey functionStorageKey,
+                                                    final Expression[] expressions)
+  {
+    final TableModel reportData = getGroupTotalsData();
+    if (reportData == null)
+    {
+      return null;
+    }
+    if (precomputedGroupTotalsStorage.contains(functionStorageKey, reportData))
+    {
+      return precomputedGroupTotalsStorage.restore(functionStorageKey);
+    }
+
+    final MasterDataRow masterRow = flowController.getMasterRow();
+    final PrecomputedGroupTotals totals =
+        PrecomputedGroupTotals.compute(report, reportData, masterRow.getDataSchema(), expressions);
+    precomputedGroupTotalsStorage.store(functionStorageKey, reportData, totals);
+    return totals;
+  }
+
+  private TableModel getGroupTotalsData()
+  {
+    if (designtime)
+    {
+      return null;
+    }
+    if (PrecomputedGroupTotals.isEnabled(flowController.getReportContext().getConfiguration()) == false)
+    {
+      return null;
+    }
+    return flowController.getMasterRow().getReportData();
+  }
+
   private DataFactory lookupDataFactory(final AbstractReportDefinition report)
   {
     if (designtime)
@@ -1517,6 +1588,11 @@ public class ProcessState implements ReportState
     return crosstabColumnSequenceCounter.get(groupIndex);
   }
 
+  public PrecomputedGroupTotals getPrecomputedGroupTotals()
+  {
+    return precomputedGroupTotals;
+  }
+
   public void crosstabResetColumnIndices()
   {
     crosstabColumnSequenceCounter.clear();
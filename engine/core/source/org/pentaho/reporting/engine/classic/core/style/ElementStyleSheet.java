@@ -24,6 +24,7 @@ import java.io.Serializable;
 import java.util.Arrays;
 
 import org.pentaho.reporting.engine.classic.core.layout.style.SimpleStyleSheet;
+import org.pentaho.reporting.engine.classic.core.util.ValueInterner;
 import org.pentaho.reporting.libraries.base.util.ObjectUtilities;
 import org.pentaho.reporting.libraries.serializer.SerializerHelper;
 
@@ -38,6 +39,10 @@ import org.pentaho.reporting.libraries.serializer.SerializerHelper;
  * <p/>
  * All StyleSheet entries are checked against the StyleKeyDefinition for validity.
  * <p/>
+ * Clones share the arrays holding the locally defined properties until either copy is modified. Definitions that
+ * are complete, like the ones created by the report parsers, can additionally be interned via
+ * {@link #internStyleData()}, so that style-sheets with the same content share a single copy.
+ * <p/>
  * As usual, this implementation is not synchronized, we need the performance during the reporting.
  *
  * @author Thomas Morgner
@@ -69,6 +74,17 @@ public class ElementStyleSheet extends AbstractStyleSheet implements Serializabl
   private long changeTrackerHash;
   private static final StyleKey[] EMPTY_KEYS = new StyleKey[0];
 
+  /**
+   * Whether the properties and source arrays are shared with other style-sheets and must be copied before they can be
+   * modified. Cloning writes this flag on the source as well, and a style-sheet that is never modified (like the
+   * style of a cached report prototype) can be cloned by several threads at once.
+   */
+  private transient volatile boolean shared;
+  /**
+   * The pooled style data, if the arrays have been interned. Keeps the pool entry alive as long as it is used.
+   */
+  private transient SharedStyleData sharedData;
+
   /**
    * Creates a new element style-sheet. The style-sheet initially contains no attributes, and has
    * no parent style-sheets.
@@ -108,10 +124,27 @@ public class ElementStyleSheet extends AbstractStyleSheet implements Serializabl
     return source[identifier] == SOURCE_DIRECT;
   }
 
+  private boolean hasCachedEntries()
+  {
+    if (source == null)
+    {
+      return false;
+    }
+    for (int i = 0; i < source.length; i++)
+    {
+      if (source[i] == SOURCE_FROM_PARENT)
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
   private void pruneCachedEntries()
   {
-    if (source != null && properties != null)
+    if (source != null && properties != null && hasCachedEntries())
     {
+      ensureWritable();
       for (int i = 0; i < source.length; i++)
       {
         if (source[i] == SOURCE_FROM_PARENT)
@@ -185,6 +218,11 @@ public class ElementStyleSheet extends AbstractStyleSheet implements Serializabl
       }
     }
 
+    if (shared)
+    {
+      // caching the lookup would force a copy of the shared data, which would be more expensive than the lookup.
+      return defaultValue;
+    }
     putInCache(key, null, SOURCE_FROM_PARENT);
     return defaultValue;
   }
@@ -264,13 +302,12 @@ public class ElementStyleSheet extends AbstractStyleSheet implements Serializabl
           + " is not assignable: " + value.getClass()
           + " is not assignable from " + key.getValueType());
     }
-    ensurePropertiesReady();
-
-    if (ObjectUtilities.equal(properties[identifier], value))
+    if (properties != null && ObjectUtilities.equal(properties[identifier], value))
     {
       // no need to change anything ..
       return;
     }
+    ensurePropertiesReady();
 
     // invalidate the cache ..
     putInCache(key, value, SOURCE_DIRECT);
@@ -286,7 +323,82 @@ public class ElementStyleSheet extends AbstractStyleSheet implements Serializabl
       final int definedStyleKeyCount = propertyKeys.length;
       properties = new Object[definedStyleKeyCount];
       source = new byte[definedStyleKeyCount];
+      shared = false;
+      sharedData = null;
+    }
+    else
+    {
+      ensureWritable();
+    }
+  }
+
+  private void ensureWritable()
+  {
+    if (shared == false)
+    {
+      return;
+    }
+    if (properties != null)
+    {
+      properties = properties.clone();
+    }
+    if (source != null)
+    {
+      source = source.clone();
     }
+    shared = false;
+    sharedData = null;
+  }
+
+  private void shareWith(final ElementStyleSheet sc)
+  {
+    if (properties == null || source == null || hasCachedEntries())
+    {
+      // cached values from the parent must not be visible in the copy, so the copy gets its own pruned arrays.
+      if (properties != null)
+      {
+        sc.properties = properties.clone();
+      }
+      if (source != null)
+      {
+        sc.source = source.clone();
+      }
+      sc.shared = false;
+      sc.sharedData = null;
+      sc.pruneCachedEntries();
+      return;
+    }
+
+    if (shared == false)
+    {
+      shared = true;
+    }
+    sc.shared = true;
+  }
+
+  /**
+   * Replaces the locally defined properties with a shared copy of equal content. Immutable values are interned as well.
+   * Style-sheets that hold values cached from their parents are not interned. Modifying the style-sheet afterwards
+   * creates a private copy again.
+   */
+  public void internStyleData()
+  {
+    if (properties == null || source == null || sharedData != null || hasCachedEntries())
+    {
+      return;
+    }
+
+    ensureWritable();
+    for (int i = 0; i < properties.length; i++)
+    {
+      properties[i] = ValueInterner.intern(properties[i]);
+    }
+
+    final SharedStyleData data = SharedStyleData.intern(properties, source);
+    this.properties = data.getProperties();
+    this.source = data.getSource();
+    this.sharedData = data;
+    this.shared = true;
   }
 
   /**
@@ -299,34 +411,18 @@ public class ElementStyleSheet extends AbstractStyleSheet implements Serializabl
   public ElementStyleSheet clone()
   {
     final ElementStyleSheet sc = (ElementStyleSheet) super.clone();
-    if (properties != null)
-    {
-      sc.properties = properties.clone();
-    }
-    if (source != null)
-    {
-      sc.source = source.clone();
-    }
+    shareWith(sc);
     //noinspection CloneCallsConstructors
     sc.styleChangeSupport = new StyleChangeSupport(sc);
-    sc.pruneCachedEntries();
     return sc;
   }
 
   public ElementStyleSheet derive(final boolean preserveId)
   {
     final ElementStyleSheet sc = (ElementStyleSheet) super.derive(preserveId);
-    if (properties != null)
-    {
-      sc.properties = properties.clone();
-    }
-    if (source != null)
-    {
-      sc.source = source.clone();
-    }
+    shareWith(sc);
     //noinspection CloneCallsConstructors
     sc.styleChangeSupport = new StyleChangeSupport(sc);
-    sc.pruneCachedEntries();
     return sc;
   }
 
@@ -557,6 +653,7 @@ public class ElementStyleSheet extends AbstractStyleSheet implements Serializabl
     changeTrackerHash = 0;
     modificationCount = 0;
 
+    ensureWritable();
     Arrays.fill(properties, null);
     Arrays.fill(source, SOURCE_UNDEFINED);
   }
@@ -586,6 +683,21 @@ public class ElementStyleSheet extends AbstractStyleSheet implements Serializabl
     this.changeTrackerHash = style.changeTrackerHash;
     this.modificationCount = style.modificationCount;
     this.propertyKeys = style.propertyKeys.clone();
+    if (style.source != null && style.properties != null)
+    {
+      // share the data with the source style-sheet until either of them is modified.
+      this.source = style.source;
+      this.properties = style.properties;
+      this.sharedData = style.sharedData;
+      this.shared = true;
+      if (style.shared == false)
+      {
+        style.shared = true;
+      }
+      return;
+    }
+
+    ensureWritable();
     if (style.source != null)
     {
       this.source = style.source.clone();
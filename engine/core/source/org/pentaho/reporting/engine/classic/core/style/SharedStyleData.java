@@ -0,0 +1,106 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+
+package org.pentaho.reporting.engine.classic.core.style;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.WeakHashMap;
+
+/**
+ * The locally defined properties of a style-sheet, shared by all style-sheets with the same content. Instances are
+ * held in a weak pool keyed by the content hash, and the arrays of a pooled instance must never be modified.
+ *
+ * @author Thomas Morgner
+ */
+final class SharedStyleData
+{
+  private static final WeakHashMap<SharedStyleData, WeakReference<SharedStyleData>> pool =
+      new WeakHashMap<SharedStyleData, WeakReference<SharedStyleData>>();
+
+  private final Object[] properties;
+  private final byte[] source;
+  private final int hashCode;
+
+  private SharedStyleData(final Object[] properties, final byte[] source)
+  {
+    this.properties = properties;
+    this.source = source;
+    this.hashCode = 31 * Arrays.hashCode(properties) + Arrays.hashCode(source);
+  }
+
+  public Object[] getProperties()
+  {
+    return properties;
+  }
+
+  public byte[] getSource()
+  {
+    return source;
+  }
+
+  public boolean equals(final Object o)
+  {
+    if (this == o)
+    {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass())
+    {
+      return false;
+    }
+
+    final SharedStyleData that = (SharedStyleData) o;
+    if (hashCode != that.hashCode)
+    {
+      return false;
+    }
+    return Arrays.equals(source, that.source) && Arrays.equals(properties, that.properties);
+  }
+
+  public int hashCode()
+  {
+    return hashCode;
+  }
+
+  /**
+   * Returns the pooled style data with the given content. If there is no such data yet, the given arrays are added to
+   * the pool and must not be modified afterwards.
+   *
+   * @param properties the property values.
+   * @param source     the source flags of the values.
+   * @return the shared style data.
+   */
+  public static SharedStyleData intern(final Object[] properties, final byte[] source)
+  {
+    final SharedStyleData data = new SharedStyleData(properties, source);
+    synchronized (pool)
+    {
+      final WeakReference<SharedStyleData> reference = pool.get(data);
+      if (reference != null)
+      {
+        final SharedStyleData canonical = reference.get();
+        if (canonical != null)
+        {
+          return canonical;
+        }
+      }
+      pool.put(data, new WeakReference<SharedStyleData>(data));
+      return data;
+    }
+  }
+}
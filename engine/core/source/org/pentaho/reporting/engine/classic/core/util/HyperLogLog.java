@@ -0,0 +1,217 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+
+package org.pentaho.reporting.engine.classic.core.util;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * A HyperLogLog cardinality estimator. The estimator counts the number of distinct values in a fixed amount of memory
+ * of <code>2^precision</code> bytes. The standard error of the estimate is roughly <code>1.04 / sqrt(2^precision)
+ * </code>, so a precision of 14 uses 16kb and has an error of less than one percent.
+ *
+ * @author Thomas Morgner
+ */
+public class HyperLogLog implements Serializable, Cloneable
+{
+  public static final int MIN_PRECISION = 4;
+  public static final int MAX_PRECISION = 18;
+  public static final int DEFAULT_PRECISION = 14;
+
+  private int precision;
+  private byte[] registers;
+
+  public HyperLogLog()
+  {
+    this(DEFAULT_PRECISION);
+  }
+
+  public HyperLogLog(final int precision)
+  {
+    if (precision < MIN_PRECISION || precision > MAX_PRECISION)
+    {
+      throw new IllegalArgumentException("Precision must be between " + MIN_PRECISION + " and " + MAX_PRECISION);
+    }
+    this.precision = precision;
+    this.registers = new byte[1 << precision];
+  }
+
+  public int getPrecision()
+  {
+    return precision;
+  }
+
+  /**
+   * Spreads the bits of the given value over the full 64 bit range (MurmurHash3 finalizer).
+   *
+   * @param value the value.
+   * @return the mixed hash.
+   */
+  private static long mix(long value)
+  {
+    value ^= value >>> 33;
+    value *= 0xff51afd7ed558ccdL;
+    value ^= value >>> 33;
+    value *= 0xc4ceb9fe1a85ec53L;
+    value ^= value >>> 33;
+    return value;
+  }
+
+  /**
+   * Adds an integral value to the estimator.
+   *
+   * @param value the value.
+   */
+  public void add(final long value)
+  {
+    addHash(mix(value));
+  }
+
+  /**
+   * Adds an arbitrary value to the estimator. Integral numbers are hashed by their value, floating point numbers and
+   * dates by their 64 bit representation and character sequences by a 64 bit hash over their characters. All other
+   * objects are hashed by their <code>hashCode()</code>, so objects that are equal produce the same hash. As
+   * <code>hashCode()</code> only yields 32 bits, the estimate for such objects degrades once the cardinality
+   * approaches the billions.
+   *
+   * @param value the value, never null.
+   */
+  public void add(final Object value)
+  {
+    if (value == null)
+    {
+      throw new NullPointerException();
+    }
+
+    if (value instanceof Long || value instanceof Integer ||
+        value instanceof Short || value instanceof Byte)
+    {
+      add(((Number) value).longValue());
+    }
+    else
+    {
+      addHash(mix(hash64(value)));
+    }
+  }
+
+  /**
+   * Computes a 64 bit hash for the given value that is consistent with the value's <code>equals</code> method.
+   *
+   * @param value the value.
+   * @return the unmixed 64 bit hash.
+   */
+  private static long hash64(final Object value)
+  {
+    if (value instanceof String)
+    {
+      final String text = (String) value;
+      long hash = 0xcbf29ce484222325L;
+      for (int i = 0; i < text.length(); i++)
+      {
+        hash ^= text.charAt(i);
+        hash *= 0x100000001b3L;
+      }
+      return hash;
+    }
+    if (value instanceof Double)
+    {
+      return Double.doubleToLongBits((Double) value);
+    }
+    if (value instanceof Float)
+    {
+      return Float.floatToIntBits((Float) value);
+    }
+    if (value instanceof Date)
+    {
+      return ((Date) value).getTime();
+    }
+    return value.hashCode();
+  }
+
+  private void addHash(final long hash)
+  {
+    final int index = (int) (hash >>> (64 - precision));
+    // the guard bit limits the rank to 64 - precision + 1
+    final long remainder = (hash << precision) | (1L << (precision - 1));
+    final byte rank = (byte) (Long.numberOfLeadingZeros(remainder) + 1);
+    if (registers[index] < rank)
+    {
+      registers[index] = rank;
+    }
+  }
+
+  /**
+   * Returns the estimated number of distinct values added to this estimator.
+   *
+   * @return the estimated cardinality.
+   */
+  public long getCardinality()
+  {
+    final int m = registers.length;
+    double sum = 0;
+    int zeros = 0;
+    for (int i = 0; i < m; i++)
+    {
+      final int register = registers[i];
+      sum += 1.0 / (1L << register);
+      if (register == 0)
+      {
+        zeros += 1;
+      }
+    }
+
+    final double alpha;
+    switch (m)
+    {
+      case 16:
+        alpha = 0.673;
+        break;
+      case 32:
+        alpha = 0.697;
+        break;
+      case 64:
+        alpha = 0.709;
+        break;
+      default:
+        alpha = 0.7213 / (1 + 1.079 / m);
+    }
+
+    final double estimate = alpha * m * m / sum;
+    if (estimate <= 2.5 * m && zeros > 0)
+    {
+      // small range correction: use linear counting.
+      return Math.round(m * Math.log((double) m / zeros));
+    }
+    return Math.round(estimate);
+  }
+
+  public void clear()
+  {
+    for (int i = 0; i < registers.length; i++)
+    {
+      registers[i] = 0;
+    }
+  }
+
+  public Object clone() throws CloneNotSupportedException
+  {
+    final HyperLogLog hyperLogLog = (HyperLogLog) super.clone();
+    hyperLogLog.registers = registers.clone();
+    return hyperLogLog;
+  }
+}
@@ -0,0 +1,257 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+
+
+package org.pentaho.reporting.engine.classic.core.util;
+
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.awt.image.PixelGrabber;
+import java.awt.image.VolatileImage;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.reporting.libraries.base.util.WaitingImageObserver;
+
+/**
+ * A key that identifies an image by its content. Output targets use this key to detect images that are used more
+ * than once in a document, so that these images are encoded and stored only once, regardless whether they have been
+ * loaded from the same source or not.
+ * <p/>
+ * A key is either computed from the raw (encoded) image data or from the pixels of a decoded image. Keys of the
+ * two kinds never match each other. The optional variant allows callers to distinguish between different encodings
+ * of the same pixels.
+ *
+ * @author Thomas Morgner
+ */
+public final class ImageContentKey
+{
+  private static final Log logger = LogFactory.getLog(ImageContentKey.class);
+
+  private static final int RAW_DATA = 0;
+  private static final int PIXEL_DATA = 1;
+
+  private final int kind;
+  private final int width;
+  private final int height;
+  private final String variant;
+  private final byte[] digest;
+  private final int hashCode;
+
+  private ImageContentKey(final int kind,
+                          final int width,
+                          final int height,
+                          final String variant,
+                          final byte[] digest)
+  {
+    this.kind = kind;
+    this.width = width;
+    this.height = height;
+    this.variant = variant;
+    this.digest = digest;
+
+    int result = kind;
+    result = 31 * result + width;
+    result = 31 * result + height;
+    result = 31 * result + (variant != null ? variant.hashCode() : 0);
+    result = 31 * result + Arrays.hashCode(digest);
+    this.hashCode = result;
+  }
+
+  /**
+   * Creates a key for the given raw image data.
+   *
+   * @param data the encoded image data.
+   * @return the key or null, if no message digest is available.
+   */
+  public static ImageContentKey createFromData(final byte[] data)
+  {
+    if (data == null)
+    {
+      throw new NullPointerException();
+    }
+    final MessageDigest messageDigest = createDigest();
+    if (messageDigest == null)
+    {
+      return null;
+    }
+    messageDigest.update(data);
+    return new ImageContentKey(RAW_DATA, data.length, 0, null, messageDigest.digest());
+  }
+
+  /**
+   * Creates a key for the pixels of the given image. The image will be fully loaded before its pixels are read.
+   *
+   * @param image   the image.
+   * @param variant an optional string describing how the image is going to be encoded, or null.
+   * @return the key or null, if the pixels of the image could not be read.
+   */
+  public static ImageContentKey createFromImage(final Image image, final String variant)
+  {
+    if (image == null)
+    {
+      throw new NullPointerException();
+    }
+
+    final WaitingImageObserver obs = new WaitingImageObserver(image);
+    obs.waitImageLoaded();
+    final int width = image.getWidth(obs);
+    final int height = image.getHeight(obs);
+    if (width < 1 || height < 1)
+    {
+      return null;
+    }
+
+    final MessageDigest messageDigest = createDigest();
+    if (messageDigest == null)
+    {
+      return null;
+    }
+
+    final byte[] buffer = new byte[width * 4];
+    if (image instanceof BufferedImage)
+    {
+      final BufferedImage bufferedImage = (BufferedImage) image;
+      final int[] row = new int[width];
+      for (int y = 0; y < height; y++)
+      {
+        bufferedImage.getRGB(0, y, width, 1, row, 0, width);
+        update(messageDigest, row, 0, width, buffer);
+      }
+    }
+    else
+    {
+      final int[] pixels = new int[width * height];
+      final PixelGrabber grabber = new PixelGrabber(image, 0, 0, width, height, pixels, 0, width);
+      try
+      {
+        if (grabber.grabPixels() == false)
+        {
+          return null;
+        }
+      }
+      catch (InterruptedException e)
+      {
+        logger.debug("Interrupted while reading the image pixels", e);
+        return null;
+      }
+      for (int y = 0; y < height; y++)
+      {
+        update(messageDigest, pixels, y * width, width, buffer);
+      }
+    }
+    return new ImageContentKey(PIXEL_DATA, width, height, variant, messageDigest.digest());
+  }
+
+  /**
+   * Checks whether the pixels of the image can change after the image has been created. Images produced by an
+   * image-producer (like the images created by the toolkit from encoded data) cannot be drawn on, so a key computed
+   * for them stays valid for the lifetime of the image.
+   *
+   * @param image the image.
+   * @return true, if the image cannot be modified.
+   */
+  public static boolean isImmutable(final Image image)
+  {
+    return image instanceof BufferedImage == false &&
+        image instanceof VolatileImage == false;
+  }
+
+  /**
+   * Returns the variant given when the key was created.
+   *
+   * @return the variant or null.
+   */
+  public String getVariant()
+  {
+    return variant;
+  }
+
+  private static void update(final MessageDigest messageDigest,
+                             final int[] pixels,
+                             final int offset,
+                             final int length,
+                             final byte[] buffer)
+  {
+    for (int i = 0; i < length; i++)
+    {
+      final int pixel = pixels[offset + i];
+      final int pos = i << 2;
+      buffer[pos] = (byte) (pixel >>> 24);
+      buffer[pos + 1] = (byte) (pixel >>> 16);
+      buffer[pos + 2] = (byte) (pixel >>> 8);
+      buffer[pos + 3] = (byte) pixel;
+    }
+    messageDigest.update(buffer, 0, length << 2);
+  }
+
+  private static MessageDigest createDigest()
+  {
+    try
+    {
+      return MessageDigest.getInstance("MD5");
+    }
+    catch (NoSuchAlgorithmException e)
+    {
+      logger.debug("MD5 message digest is not available, images will not be shared.", e);
+      return null;
+    }
+  }
+
+  public boolean equals(final Object o)
+  {
+    if (this == o)
+    {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass())
+    {
+      return false;
+    }
+
+    final ImageContentKey that = (ImageContentKey) o;
+    if (hashCode != that.hashCode)
+    {
+      return false;
+    }
+    if (kind != that.kind)
+    {
+      return false;
+    }
+    if (width != that.width)
+    {
+      return false;
+    }
+    if (height != that.height)
+    {
+      return false;
+    }
+    if (variant != null ? !variant.equals(that.variant) : that.variant != null)
+    {
+      return false;
+    }
+    return Arrays.equals(digest, that.digest);
+  }
+
+  public int hashCode()
+  {
+    return hashCode;
+  }
+}
@@ -0,0 +1,218 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+
+package org.pentaho.reporting.engine.classic.core.util;
+
+import java.io.Serializable;
+
+/**
+ * A hash set for primitive long values. The values are stored in an open-addressing table, so that adding a value
+ * does not create a java.lang.Long object and a hash-map entry for it.
+ * <p/>
+ * Using this set for storing longs needs roughly a tenth of the memory of a <code>HashSet&lt;Long&gt;</code>.
+ * <p/>
+ * This set is not synchronized and does not implement the full Set interface. Values can only be added and queried.
+ *
+ * @author Thomas Morgner
+ */
+public class LongHashSet implements Serializable, Cloneable
+{
+  /**
+   * The value zero marks a free slot in the table, so zero itself is tracked separately.
+   */
+  private static final long FREE = 0;
+
+  private long[] table;
+  private int mask;
+  private int size;
+  private boolean containsFree;
+
+  public LongHashSet()
+  {
+    this(16);
+  }
+
+  /**
+   * Creates a new set that can hold at least the given number of values without resizing.
+   *
+   * @param expectedSize the expected number of values.
+   */
+  public LongHashSet(final int expectedSize)
+  {
+    int capacity = 16;
+    while (capacity < expectedSize * 2)
+    {
+      capacity <<= 1;
+    }
+    this.table = new long[capacity];
+    this.mask = capacity - 1;
+  }
+
+  /**
+   * Mixes the bits of the value, so that sequential keys spread evenly across the table.
+   *
+   * @param value the value.
+   * @return the mixed hash.
+   */
+  private static int hash(final long value)
+  {
+    long h = value;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    return (int) h;
+  }
+
+  /**
+   * Adds the given value to the set.
+   *
+   * @param value the value.
+   * @return true, if the value was not yet contained in the set, false otherwise.
+   */
+  public boolean add(final long value)
+  {
+    if (value == FREE)
+    {
+      if (containsFree)
+      {
+        return false;
+      }
+      containsFree = true;
+      size += 1;
+      return true;
+    }
+
+    int pos = hash(value) & mask;
+    while (true)
+    {
+      final long existing = table[pos];
+      if (existing == FREE)
+      {
+        table[pos] = value;
+        size += 1;
+        if (size * 2 > table.length)
+        {
+          rehash(table.length << 1);
+        }
+        return true;
+      }
+      if (existing == value)
+      {
+        return false;
+      }
+      pos = (pos + 1) & mask;
+    }
+  }
+
+  public boolean contains(final long value)
+  {
+    if (value == FREE)
+    {
+      return containsFree;
+    }
+
+    int pos = hash(value) & mask;
+    while (true)
+    {
+      final long existing = table[pos];
+      if (existing == FREE)
+      {
+        return false;
+      }
+      if (existing == value)
+      {
+        return true;
+      }
+      pos = (pos + 1) & mask;
+    }
+  }
+
+  private void rehash(final int newCapacity)
+  {
+    final long[] oldTable = table;
+    table = new long[newCapacity];
+    mask = newCapacity - 1;
+    for (int i = 0; i < oldTable.length; i++)
+    {
+      final long value = oldTable[i];
+      if (value == FREE)
+      {
+        continue;
+      }
+
+      int pos = hash(value) & mask;
+      while (table[pos] != FREE)
+      {
+        pos = (pos + 1) & mask;
+      }
+      table[pos] = value;
+    }
+  }
+
+  /**
+   * Returns the number of values in this set.
+   *
+   * @return the number of values.
+   */
+  public int size()
+  {
+    return size;
+  }
+
+  public void clear()
+  {
+    for (int i = 0; i < table.length; i++)
+    {
+      table[i] = FREE;
+    }
+    size = 0;
+    containsFree = false;
+  }
+
+  /**
+   * Copys the set contents into a new array. The order of the values is undefined.
+   *
+   * @return the set contents as array.
+   */
+  public long[] toArray()
+  {
+    final long[] retval = new long[size];
+    int index = 0;
+    if (containsFree)
+    {
+      retval[index] = FREE;
+      index += 1;
+    }
+    for (int i = 0; i < table.length; i++)
+    {
+      final long value = table[i];
+      if (value != FREE)
+      {
+        retval[index] = value;
+        index += 1;
+      }
+    }
+    return retval;
+  }
+
+  public Object clone() throws CloneNotSupportedException
+  {
+    final LongHashSet set = (LongHashSet) super.clone();
+    set.table = table.clone();
+    return set;
+  }
+}
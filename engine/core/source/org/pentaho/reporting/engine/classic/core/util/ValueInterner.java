@@ -0,0 +1,113 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+
+package org.pentaho.reporting.engine.classic.core.util;
+
+import java.awt.Color;
+import java.lang.ref.WeakReference;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.WeakHashMap;
+
+/**
+ * A weak canonicalizing pool for immutable values. Report definitions often contain thousands of equal attribute and
+ * style values, like font names, colors and sizes. Interning them while the report is parsed lets all elements share
+ * one instance per value. Values that are no longer used anywhere are removed by the garbage collector.
+ * <p/>
+ * Only instances of well-known immutable classes are interned; all other values, including subclasses of the known
+ * classes, are returned unchanged.
+ *
+ * @author Thomas Morgner
+ */
+public final class ValueInterner
+{
+  private static final HashSet<Class> IMMUTABLE_TYPES;
+
+  static
+  {
+    IMMUTABLE_TYPES = new HashSet<Class>();
+    IMMUTABLE_TYPES.add(String.class);
+    IMMUTABLE_TYPES.add(Integer.class);
+    IMMUTABLE_TYPES.add(Long.class);
+    IMMUTABLE_TYPES.add(Short.class);
+    IMMUTABLE_TYPES.add(Byte.class);
+    IMMUTABLE_TYPES.add(Float.class);
+    IMMUTABLE_TYPES.add(Double.class);
+    IMMUTABLE_TYPES.add(Character.class);
+    IMMUTABLE_TYPES.add(BigDecimal.class);
+    IMMUTABLE_TYPES.add(BigInteger.class);
+    IMMUTABLE_TYPES.add(Color.class);
+    IMMUTABLE_TYPES.add(Locale.class);
+  }
+
+  private static final WeakHashMap<Object, WeakReference<Object>> pool = new WeakHashMap<Object, WeakReference<Object>>();
+
+  private ValueInterner()
+  {
+  }
+
+  /**
+   * Checks whether values of the given type are interned.
+   *
+   * @param type the type to test.
+   * @return true, if the type is a known immutable type, false otherwise.
+   */
+  public static boolean isInternable(final Class type)
+  {
+    return IMMUTABLE_TYPES.contains(type);
+  }
+
+  /**
+   * Returns the canonical instance of the given value.
+   *
+   * @param value the value, can be null.
+   * @return the canonical instance that is equal to the given value, or the value itself, if the value is not of
+   *         a known immutable type.
+   */
+  public static <T> T intern(final T value)
+  {
+    if (value == null)
+    {
+      return null;
+    }
+    if (value instanceof Boolean)
+    {
+      return (T) Boolean.valueOf(((Boolean) value).booleanValue());
+    }
+    if (IMMUTABLE_TYPES.contains(value.getClass()) == false)
+    {
+      return value;
+    }
+
+    synchronized (pool)
+    {
+      final WeakReference<Object> reference = pool.get(value);
+      if (reference != null)
+      {
+        final Object canonical = reference.get();
+        if (canonical != null)
+        {
+          return (T) canonical;
+        }
+      }
+      pool.put(value, new WeakReference<Object>(value));
+      return value;
+    }
+  }
+}
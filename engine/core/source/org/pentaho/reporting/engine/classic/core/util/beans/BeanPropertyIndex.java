@@ -0,0 +1,354 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+
+package org.pentaho.reporting.engine.classic.core.util.beans;
+
+import java.beans.BeanInfo;
+import java.beans.IndexedPropertyDescriptor;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.WeakHashMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.reporting.engine.classic.core.ClassicEngineInfo;
+import org.pentaho.reporting.libraries.base.util.ObjectUtilities;
+
+/**
+ * Provides the bean properties of classes without running the bean introspection each time. The properties of the
+ * engine's own expressions and report-preprocessors are read from an index that is generated at build time and
+ * packaged with the engine; all other classes are introspected once and the result is cached. The cache holds the
+ * classes weakly and the descriptors softly, so that it does not keep the class loaders of report classes alive.
+ *
+ * @author Thomas Morgner
+ */
+public final class BeanPropertyIndex
+{
+  public static final String INDEX_RESOURCE = "org/pentaho/reporting/engine/classic/core/util/beans/bean-properties.index";
+
+  private static final Log logger = LogFactory.getLog(BeanPropertyIndex.class);
+  private static final byte[] MAGIC = new byte[]{'P', 'R', 'D', '-', 'B', 'E', 'A', 'N'};
+  private static final int FORMAT_VERSION = 1;
+
+  /**
+   * The serialized form of a property descriptor. Methods are stored by name and resolved when the index is used.
+   */
+  private static class PropertyInfo implements Serializable
+  {
+    private static final long serialVersionUID = 2795390460426315254L;
+
+    private String name;
+    private String readMethod;
+    private String writeMethod;
+    private String writeParameterType;
+    private String indexedReadMethod;
+    private String indexedWriteMethod;
+    private boolean hidden;
+    private boolean expert;
+    private boolean preferred;
+
+    private PropertyInfo(final PropertyDescriptor descriptor)
+    {
+      this.name = descriptor.getName();
+      this.readMethod = getName(descriptor.getReadMethod());
+      final Method write = descriptor.getWriteMethod();
+      this.writeMethod = getName(write);
+      if (write != null)
+      {
+        this.writeParameterType = write.getParameterTypes()[0].getName();
+      }
+      if (descriptor instanceof IndexedPropertyDescriptor)
+      {
+        final IndexedPropertyDescriptor indexedDescriptor = (IndexedPropertyDescriptor) descriptor;
+        this.indexedReadMethod = getName(indexedDescriptor.getIndexedReadMethod());
+        this.indexedWriteMethod = getName(indexedDescriptor.getIndexedWriteMethod());
+      }
+      this.hidden = descriptor.isHidden();
+      this.expert = descriptor.isExpert();
+      this.preferred = descriptor.isPreferred();
+    }
+
+    private static String getName(final Method method)
+    {
+      if (method == null)
+      {
+        return null;
+      }
+      return method.getName();
+    }
+
+    private PropertyDescriptor toDescriptor(final Class beanClass) throws IntrospectionException
+    {
+      final Method read = findMethod(beanClass, readMethod, 0, null);
+      final Method write = findMethod(beanClass, writeMethod, 1, writeParameterType);
+      final PropertyDescriptor descriptor;
+      if (indexedReadMethod != null || indexedWriteMethod != null)
+      {
+        descriptor = new IndexedPropertyDescriptor(name, read, write,
+            findMethod(beanClass, indexedReadMethod, 1, "int"), findMethod(beanClass, indexedWriteMethod, 2, "int"));
+      }
+      else
+      {
+        descriptor = new PropertyDescriptor(name, read, write);
+      }
+      descriptor.setHidden(hidden);
+      descriptor.setExpert(expert);
+      descriptor.setPreferred(preferred);
+      return descriptor;
+    }
+
+    private static Method findMethod(final Class beanClass,
+                                     final String methodName,
+                                     final int parameterCount,
+                                     final String firstParameterType) throws IntrospectionException
+    {
+      if (methodName == null)
+      {
+        return null;
+      }
+      final Method[] methods = beanClass.getMethods();
+      for (int i = 0; i < methods.length; i++)
+      {
+        final Method method = methods[i];
+        if (methodName.equals(method.getName()) == false)
+        {
+          continue;
+        }
+        final Class[] parameterTypes = method.getParameterTypes();
+        if (parameterTypes.length != parameterCount)
+        {
+          continue;
+        }
+        if (firstParameterType != null && firstParameterType.equals(parameterTypes[0].getName()) == false)
+        {
+          continue;
+        }
+        return method;
+      }
+      throw new IntrospectionException("Method " + methodName + " no longer exists on " + beanClass);
+    }
+  }
+
+  private static BeanPropertyIndex instance;
+
+  private HashMap<String, PropertyInfo[]> index;
+  private final WeakHashMap<Class, SoftReference<PropertyDescriptor[]>> descriptors;
+
+  public static synchronized BeanPropertyIndex getInstance()
+  {
+    if (instance == null)
+    {
+      instance = new BeanPropertyIndex(loadIndex());
+    }
+    return instance;
+  }
+
+  private BeanPropertyIndex(final HashMap<String, PropertyInfo[]> index)
+  {
+    this.index = index;
+    this.descriptors = new WeakHashMap<Class, SoftReference<PropertyDescriptor[]>>();
+  }
+
+  /**
+   * Returns the property descriptors of the given class. The returned array is shared and must not be modified.
+   *
+   * @param beanClass the bean class.
+   * @return the property descriptors, never null.
+   * @throws IntrospectionException if the class could not be introspected.
+   */
+  public PropertyDescriptor[] getPropertyDescriptors(final Class beanClass) throws IntrospectionException
+  {
+    if (beanClass == null)
+    {
+      throw new NullPointerException();
+    }
+
+    synchronized (descriptors)
+    {
+      final SoftReference<PropertyDescriptor[]> reference = descriptors.get(beanClass);
+      if (reference != null)
+      {
+        final PropertyDescriptor[] cached = reference.get();
+        if (cached != null)
+        {
+          return cached;
+        }
+      }
+    }
+
+    PropertyDescriptor[] result = fromIndex(beanClass);
+    if (result == null)
+    {
+      final BeanInfo beanInfo = Introspector.getBeanInfo(beanClass);
+      result = beanInfo.getPropertyDescriptors();
+    }
+    // the descriptors reference the methods of the class, so holding them strongly would pin the class.
+    synchronized (descriptors)
+    {
+      descriptors.put(beanClass, new SoftReference<PropertyDescriptor[]>(result));
+    }
+    return result;
+  }
+
+  private PropertyDescriptor[] fromIndex(final Class beanClass)
+  {
+    final PropertyInfo[] infos = index.get(beanClass.getName());
+    if (infos == null)
+    {
+      return null;
+    }
+
+    try
+    {
+      final PropertyDescriptor[] result = new PropertyDescriptor[infos.length];
+      for (int i = 0; i < infos.length; i++)
+      {
+        result[i] = infos[i].toDescriptor(beanClass);
+      }
+      return result;
+    }
+    catch (IntrospectionException e)
+    {
+      // the class has changed since the index has been built.
+      logger.debug("Ignoring stale bean-property index entry for " + beanClass, e);
+      return null;
+    }
+  }
+
+  private static String getEngineVersion()
+  {
+    final ClassicEngineInfo info = ClassicEngineInfo.getInstance();
+    return info.getName() + ' ' + info.getVersion();
+  }
+
+  private static HashMap<String, PropertyInfo[]> loadIndex()
+  {
+    final InputStream in = ObjectUtilities.getResourceRelativeAsStream("bean-properties.index", BeanPropertyIndex.class);
+    if (in == null)
+    {
+      return new HashMap<String, PropertyInfo[]>();
+    }
+
+    try
+    {
+      try
+      {
+        return readIndex(in);
+      }
+      finally
+      {
+        in.close();
+      }
+    }
+    catch (Exception e)
+    {
+      logger.warn("Failed to read the bean-property index. Falling back to runtime introspection.", e);
+      return new HashMap<String, PropertyInfo[]>();
+    }
+  }
+
+  private static HashMap<String, PropertyInfo[]> readIndex(final InputStream in)
+      throws IOException, ClassNotFoundException
+  {
+    final DataInputStream dataIn = new DataInputStream(new BufferedInputStream(in));
+    final byte[] magic = new byte[MAGIC.length];
+    dataIn.readFully(magic);
+    if (Arrays.equals(MAGIC, magic) == false ||
+        dataIn.readInt() != FORMAT_VERSION ||
+        getEngineVersion().equals(dataIn.readUTF()) == false)
+    {
+      logger.debug("Ignoring bean-property index written by a different engine version.");
+      return new HashMap<String, PropertyInfo[]>();
+    }
+
+    final ObjectInputStream objectIn = new ObjectInputStream(dataIn);
+    return (HashMap<String, PropertyInfo[]>) objectIn.readObject();
+  }
+
+  /**
+   * Creates a new index from the given index data. This method is used for testing.
+   *
+   * @param in the index data as written by {@link #writeIndex(Class[], OutputStream)}. The stream is not closed.
+   * @return the index.
+   * @throws IOException            if the data could not be read.
+   * @throws ClassNotFoundException if the data could not be deserialized.
+   */
+  static BeanPropertyIndex createIndex(final InputStream in) throws IOException, ClassNotFoundException
+  {
+    return new BeanPropertyIndex(readIndex(in));
+  }
+
+  /**
+   * Introspects the given classes and writes their properties as index. This method is used by the build tools.
+   *
+   * @param classes the classes that should be part of the index.
+   * @param out     the target stream. The stream is not closed.
+   * @throws IOException            if writing failed.
+   * @throws IntrospectionException if one of the classes could not be introspected.
+   */
+  public static void writeIndex(final Class[] classes, final OutputStream out)
+      throws IOException, IntrospectionException
+  {
+    if (classes == null)
+    {
+      throw new NullPointerException();
+    }
+    if (out == null)
+    {
+      throw new NullPointerException();
+    }
+
+    final HashMap<String, PropertyInfo[]> index = new HashMap<String, PropertyInfo[]>();
+    for (int i = 0; i < classes.length; i++)
+    {
+      final Class beanClass = classes[i];
+      final PropertyDescriptor[] propertyDescriptors = Introspector.getBeanInfo(beanClass).getPropertyDescriptors();
+      final PropertyInfo[] infos = new PropertyInfo[propertyDescriptors.length];
+      for (int j = 0; j < propertyDescriptors.length; j++)
+      {
+        infos[j] = new PropertyInfo(propertyDescriptors[j]);
+      }
+      index.put(beanClass.getName(), infos);
+    }
+
+    final BufferedOutputStream bufferedOut = new BufferedOutputStream(out);
+    final DataOutputStream dataOut = new DataOutputStream(bufferedOut);
+    dataOut.write(MAGIC);
+    dataOut.writeInt(FORMAT_VERSION);
+    dataOut.writeUTF(getEngineVersion());
+
+    final ObjectOutputStream objectOut = new ObjectOutputStream(dataOut);
+    objectOut.writeObject(index);
+    objectOut.flush();
+    bufferedOut.flush();
+  }
+}
@@ -17,10 +17,8 @@
 
 package org.pentaho.reporting.engine.classic.core.util.beans;
 
-import java.beans.BeanInfo;
 import java.beans.IndexedPropertyDescriptor;
 import java.beans.IntrospectionException;
-import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
 import java.lang.reflect.Array;
 import java.lang.reflect.Method;
@@ -131,19 +129,17 @@ public final class BeanUtility
     }
   }
 
-  private BeanInfo beanInfo;
+  private PropertyDescriptor[] propertyDescriptors;
   private Object bean;
   private HashMap<String,PropertyDescriptor> properties;
 
   public BeanUtility(final Object o)
       throws IntrospectionException
   {
-    beanInfo = Introspector.getBeanInfo(o.getClass());
+    propertyDescriptors = BeanPropertyIndex.getInstance().getPropertyDescriptors(o.getClass());
     bean = o;
     properties = new HashMap<String,PropertyDescriptor>();
 
-    final PropertyDescriptor[] propertyDescriptors =
-        beanInfo.getPropertyDescriptors();
     for (int i = 0; i < propertyDescriptors.length; i++)
     {
       properties.put(propertyDescriptors[i].getName(), propertyDescriptors[i]);
@@ -158,12 +154,10 @@ public final class BeanUtility
     }
     else
     {
-      beanInfo = Introspector.getBeanInfo(o.getClass());
+      propertyDescriptors = BeanPropertyIndex.getInstance().getPropertyDescriptors(o.getClass());
       bean = o;
       properties.clear();
 
-      final PropertyDescriptor[] propertyDescriptors =
-          beanInfo.getPropertyDescriptors();
       for (int i = 0; i < propertyDescriptors.length; i++)
       {
         properties.put(propertyDescriptors[i].getName(), propertyDescriptors[i]);
@@ -173,7 +167,7 @@ public final class BeanUtility
 
   public PropertyDescriptor[] getPropertyInfos()
   {
-    return beanInfo.getPropertyDescriptors();
+    return propertyDescriptors.clone();
   }
 
   public Object getProperty(final String name)
@@ -0,0 +1,245 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+
+package org.pentaho.reporting.engine.classic.core.function;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import javax.swing.table.TableModel;
+
+import junit.framework.TestCase;
+import org.pentaho.reporting.engine.classic.core.ClassicEngineBoot;
+import org.pentaho.reporting.engine.classic.core.MasterReport;
+import org.pentaho.reporting.engine.classic.core.MetaAttributeNames;
+import org.pentaho.reporting.engine.classic.core.RelationalGroup;
+import org.pentaho.reporting.engine.classic.core.StaticDataRow;
+import org.pentaho.reporting.engine.classic.core.event.ReportEvent;
+import org.pentaho.reporting.engine.classic.core.states.ReportState;
+import org.pentaho.reporting.engine.classic.core.util.Sequence;
+import org.pentaho.reporting.engine.classic.core.util.TypedTableModel;
+import org.pentaho.reporting.engine.classic.core.wizard.DefaultConceptQueryMapper;
+import org.pentaho.reporting.engine.classic.core.wizard.DefaultDataAttributes;
+import org.pentaho.reporting.engine.classic.core.wizard.DefaultDataSchema;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/** @noinspection HardCodedStringLiteral*/
+public class CountDistinctFunctionTest extends TestCase
+{
+  private static final String GROUP = "Group";
+  private static final String LONG = "Long";
+  private static final String DOUBLE = "Double";
+  private static final String STRING = "String";
+  private static final String MIXED = "Mixed";
+
+  private MasterReport report;
+
+  public CountDistinctFunctionTest()
+  {
+  }
+
+  public CountDistinctFunctionTest(final String name)
+  {
+    super(name);
+  }
+
+  protected void setUp() throws Exception
+  {
+    ClassicEngineBoot.getInstance().start();
+
+    final RelationalGroup group = new RelationalGroup();
+    group.setName("group");
+    group.addField(GROUP);
+    report = new MasterReport();
+    report.setRootGroup(group);
+  }
+
+  private TableModel createTableModel()
+  {
+    final TypedTableModel model = new TypedTableModel();
+    model.addColumn(GROUP, String.class);
+    model.addColumn(LONG, Long.class);
+    model.addColumn(DOUBLE, Double.class);
+    model.addColumn(STRING, String.class);
+    // declared as integral column, but the last group contains a value of a different type.
+    model.addColumn(MIXED, Long.class);
+
+    model.addRow("G1", 1L, 1.5, "a", 1L);
+    model.addRow("G1", 2L, 1.5, "b", 1L);
+    model.addRow("G1", 2L, 2.0, "a", 2L);
+    model.addRow("G1", 3L, 2.5, "c", 3L);
+    model.addRow("G2", 5L, 0.5, "x", 7L);
+    model.addRow("G2", 5L, null, "x", 7);
+    model.addRow("G2", null, 0.5, "x", 8L);
+    return model;
+  }
+
+  private CountDistinctFunction create(final String field)
+  {
+    final CountDistinctFunction function = new CountDistinctFunction();
+    function.setName("count-distinct");
+    function.setField(field);
+    function.setGroup("group");
+    return function;
+  }
+
+  public void testLongColumnUsesPrimitiveSet() throws Exception
+  {
+    final CountDistinctFunction function = create(LONG);
+    assertCounts(new int[]{3, 2}, function);
+    final Object collector = getCollector(function);
+    assertEquals("NumericValueCollector", collector.getClass().getSimpleName());
+    assertNull(getField(collector, "fallback"));
+  }
+
+  public void testIgnoreNullValues() throws Exception
+  {
+    final CountDistinctFunction function = create(LONG);
+    function.setIgnoreNullValues(true);
+    assertCounts(new int[]{3, 1}, function);
+  }
+
+  public void testDoubleColumnUsesObjectSet() throws Exception
+  {
+    final CountDistinctFunction function = create(DOUBLE);
+    assertCounts(new int[]{3, 2}, function);
+    assertEquals("ObjectValueCollector", getCollector(function).getClass().getSimpleName());
+  }
+
+  public void testStringColumnUsesObjectSet() throws Exception
+  {
+    final CountDistinctFunction function = create(STRING);
+    assertCounts(new int[]{3, 1}, function);
+    assertEquals("ObjectValueCollector", getCollector(function).getClass().getSimpleName());
+  }
+
+  public void testMixedTypesFallBackToObjectSet() throws Exception
+  {
+    final CountDistinctFunction function = create(MIXED);
+    // Long(7) and Integer(7) are different values, just as they are in a HashSet<Object>.
+    assertCounts(new int[]{3, 3}, function);
+    final Object collector = getCollector(function);
+    assertEquals("NumericValueCollector", collector.getClass().getSimpleName());
+    assertNotNull(getField(collector, "fallback"));
+    assertNull(getField(collector, "values"));
+  }
+
+  public void testApproximateCount() throws Exception
+  {
+    final TypedTableModel model = new TypedTableModel();
+    model.addColumn(GROUP, String.class);
+    model.addColumn(LONG, Long.class);
+    for (int i = 0; i < 20000; i++)
+    {
+      model.addRow("G1", Long.valueOf(i % 5000));
+    }
+
+    final CountDistinctFunction function = create(LONG);
+    function.setApproximate(true);
+    final int[] counts = computeCounts(function, model);
+    assertEquals(1, counts.length);
+    assertTrue(String.valueOf(counts[0]), Math.abs(counts[0] - 5000) < 250);
+    assertEquals("ApproximateValueCollector", getCollector(function).getClass().getSimpleName());
+  }
+
+  private void assertCounts(final int[] expected, final CountDistinctFunction function)
+  {
+    final int[] counts = computeCounts(function, createTableModel());
+    assertEquals(expected.length, counts.length);
+    for (int i = 0; i < expected.length; i++)
+    {
+      assertEquals("Group " + i, expected[i], counts[i]);
+    }
+  }
+
+  /**
+   * Fires the report events for the rows of the given table model and returns the value of the function at the end of
+   * each group.
+   */
+  private int[] computeCounts(final CountDistinctFunction function, final TableModel model)
+  {
+    final DefaultDataSchema dataSchema = new DefaultDataSchema();
+    for (int col = 0; col < model.getColumnCount(); col++)
+    {
+      final DefaultDataAttributes attributes = new DefaultDataAttributes();
+      attributes.setMetaAttribute(MetaAttributeNames.Core.NAMESPACE, MetaAttributeNames.Core.TYPE,
+          DefaultConceptQueryMapper.INSTANCE, model.getColumnClass(col));
+      dataSchema.setAttributes(model.getColumnName(col), attributes);
+    }
+    final ExpressionRuntime runtime = mock(ExpressionRuntime.class);
+    when(runtime.getDataSchema()).thenReturn(dataSchema);
+    function.setRuntime(runtime);
+
+    function.reportInitialized(createEvent(model, 0, ReportEvent.REPORT_INITIALIZED));
+
+    final ArrayList<Integer> counts = new ArrayList<Integer>();
+    Object lastGroup = null;
+    for (int row = 0; row < model.getRowCount(); row++)
+    {
+      final Object currentGroup = model.getValueAt(row, 0);
+      if (row == 0 || currentGroup.equals(lastGroup) == false)
+      {
+        if (row > 0)
+        {
+          counts.add((Integer) function.getValue());
+        }
+        function.groupStarted(createEvent(model, row, ReportEvent.GROUP_STARTED));
+        lastGroup = currentGroup;
+      }
+      function.itemsAdvanced(createEvent(model, row, ReportEvent.ITEMS_ADVANCED));
+    }
+    counts.add((Integer) function.getValue());
+
+    final int[] result = new int[counts.size()];
+    for (int i = 0; i < result.length; i++)
+    {
+      result[i] = counts.get(i);
+    }
+    return result;
+  }
+
+  private ReportEvent createEvent(final TableModel model, final int row, final int type)
+  {
+    final String[] names = new String[model.getColumnCount()];
+    final Object[] values = new Object[model.getColumnCount()];
+    for (int col = 0; col < names.length; col++)
+    {
+      names[col] = model.getColumnName(col);
+      values[col] = model.getValueAt(row, col);
+    }
+
+    final ReportState state = mock(ReportState.class);
+    when(state.getReport()).thenReturn(report);
+    when(state.getCurrentGroupIndex()).thenReturn(0);
+    when(state.getDataRow()).thenReturn(new StaticDataRow(names, values));
+    return new ReportEvent(state, type);
+  }
+
+  private static Object getCollector(final CountDistinctFunction function) throws Exception
+  {
+    final Sequence<?> values = (Sequence<?>) getField(function, "values");
+    return values.get(0);
+  }
+
+  private static Object getField(final Object object, final String name) throws Exception
+  {
+    final Field field = object.getClass().getDeclaredField(name);
+    field.setAccessible(true);
+    return field.get(object);
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+
+package org.pentaho.reporting.engine.classic.core.function;
+
+import java.math.BigDecimal;
+
+import junit.framework.TestCase;
+
+public class NumericSequenceTest extends TestCase
+{
+  public NumericSequenceTest()
+  {
+  }
+
+  public NumericSequenceTest(final String name)
+  {
+    super(name);
+  }
+
+  public void testLongMode()
+  {
+    final NumericSequence sequence = new NumericSequence(NumericSequence.MODE_LONG);
+    assertFalse(sequence.isDefined(0));
+    assertNull(sequence.get(0));
+
+    sequence.add(2, Integer.valueOf(5));
+    sequence.add(2, Long.valueOf(7));
+    assertFalse(sequence.isDefined(1));
+    assertEquals(new BigDecimal(12), sequence.get(2));
+  }
+
+  public void testLongOverflowFallsBackToExact()
+  {
+    final NumericSequence sequence = new NumericSequence(NumericSequence.MODE_LONG);
+    sequence.add(0, Long.valueOf(Long.MAX_VALUE));
+    sequence.add(0, Integer.valueOf(1));
+    assertEquals(BigDecimal.valueOf(Long.MAX_VALUE).add(BigDecimal.ONE), sequence.get(0));
+  }
+
+  public void testNonIntegralValueFallsBackToExact()
+  {
+    final NumericSequence sequence = new NumericSequence(NumericSequence.MODE_LONG);
+    sequence.add(0, Integer.valueOf(1));
+    sequence.add(0, new BigDecimal("0.25"));
+    sequence.add(0, Integer.valueOf(1));
+    assertEquals(new BigDecimal("2.25"), sequence.get(0));
+  }
+
+  public void testDoubleMode()
+  {
+    final NumericSequence sequence = new NumericSequence(NumericSequence.MODE_DOUBLE);
+    sequence.add(0, Double.valueOf(0.5));
+    sequence.add(0, Float.valueOf(0.25f));
+    assertEquals(0.75, sequence.get(0).doubleValue(), 0.0);
+  }
+
+  public void testDoubleOverflowFallsBackToExact()
+  {
+    final NumericSequence sequence = new NumericSequence(NumericSequence.MODE_DOUBLE);
+    sequence.add(0, Double.valueOf(Double.MAX_VALUE));
+    sequence.add(0, Double.valueOf(Double.MAX_VALUE));
+    assertEquals(new BigDecimal(Double.toString(Double.MAX_VALUE)).multiply(new BigDecimal(2)), sequence.get(0));
+  }
+
+  public void testNaNIsRejectedOnAdd()
+  {
+    final NumericSequence sequence = new NumericSequence(NumericSequence.MODE_DOUBLE);
+    sequence.add(0, Double.valueOf(1));
+    try
+    {
+      sequence.add(0, Double.valueOf(Double.NaN));
+      fail();
+    }
+    catch (NumberFormatException e)
+    {
+      // expected, like the exact arithmetic.
+    }
+
+    try
+    {
+      sequence.add(1, Float.valueOf(Float.POSITIVE_INFINITY));
+      fail();
+    }
+    catch (NumberFormatException e)
+    {
+      // expected
+    }
+  }
+
+  public void testCloneIsIndependent()
+  {
+    final NumericSequence sequence = new NumericSequence(NumericSequence.MODE_LONG);
+    sequence.add(0, 10);
+    final NumericSequence clone = sequence.clone();
+    clone.add(0, 5);
+    assertEquals(10, sequence.getLong(0));
+    assertEquals(15, clone.getLong(0));
+  }
+
+  public void testClearResetsSlots()
+  {
+    final NumericSequence sequence = new NumericSequence(NumericSequence.MODE_DOUBLE);
+    sequence.add(0, Double.valueOf(3));
+    sequence.clear();
+    assertFalse(sequence.isDefined(0));
+    sequence.add(0, Double.valueOf(1));
+    assertEquals(1.0, sequence.get(0).doubleValue(), 0.0);
+  }
+}
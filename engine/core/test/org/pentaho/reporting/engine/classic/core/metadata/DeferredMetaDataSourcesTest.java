@@ -0,0 +1,88 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+
+package org.pentaho.reporting.engine.classic.core.metadata;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+
+import junit.framework.TestCase;
+
+public class DeferredMetaDataSourcesTest extends TestCase
+{
+  private static class RecordingParser implements DeferredMetaDataSources.MetaDataSourceParser
+  {
+    private ArrayList<URL> parsedSources;
+    private DeferredMetaDataSources sources;
+
+    private RecordingParser()
+    {
+      parsedSources = new ArrayList<URL>();
+    }
+
+    public void registerFromXml(final URL source) throws IOException
+    {
+      parsedSources.add(source);
+      // parsing a file may query the registry again.
+      sources.ensureLoaded();
+      if (source.getPath().endsWith("broken.xml"))
+      {
+        throw new IOException("Broken");
+      }
+    }
+  }
+
+  public DeferredMetaDataSourcesTest()
+  {
+  }
+
+  public DeferredMetaDataSourcesTest(final String name)
+  {
+    super(name);
+  }
+
+  public void testSourcesAreParsedOnFirstUse() throws Exception
+  {
+    final RecordingParser parser = new RecordingParser();
+    final DeferredMetaDataSources sources = new DeferredMetaDataSources(parser);
+    parser.sources = sources;
+
+    final URL first = new URL("file:/meta-elements.xml");
+    final URL broken = new URL("file:/broken.xml");
+    final URL last = new URL("file:/meta-expressions.xml");
+    sources.add(first);
+    sources.add(broken);
+    sources.add(last);
+    assertTrue(parser.parsedSources.isEmpty());
+
+    sources.ensureLoaded();
+    assertEquals(3, parser.parsedSources.size());
+    assertEquals(first, parser.parsedSources.get(0));
+    assertEquals(last, parser.parsedSources.get(2));
+
+    // already parsed sources are not parsed again.
+    sources.ensureLoaded();
+    assertEquals(3, parser.parsedSources.size());
+
+    final URL late = new URL("file:/meta-datafactory.xml");
+    sources.add(late);
+    sources.ensureLoaded();
+    assertEquals(4, parser.parsedSources.size());
+    assertEquals(late, parser.parsedSources.get(3));
+  }
+}
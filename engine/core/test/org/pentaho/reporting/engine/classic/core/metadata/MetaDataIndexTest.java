@@ -0,0 +1,204 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+
+package org.pentaho.reporting.engine.classic.core.metadata;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+
+import junit.framework.TestCase;
+import org.pentaho.reporting.engine.classic.core.ClassicEngineBoot;
+import org.pentaho.reporting.engine.classic.core.metadata.parser.ElementTypeCollection;
+import org.pentaho.reporting.libraries.base.config.ModifiableConfiguration;
+import org.pentaho.reporting.libraries.resourceloader.Resource;
+import org.pentaho.reporting.libraries.resourceloader.ResourceManager;
+
+public class MetaDataIndexTest extends TestCase
+{
+  private static final String INCLUDE_KEY = ElementMetaDataParser.GLOBAL_INCLUDES_PREFIX + "index-test";
+  private static final String ELEMENT_NAME = "index-test-element";
+  private static final String TEST_NAMESPACE = "http://reporting.pentaho.org/namespaces/engine/attributes/index-test";
+  private static final String TEST_ATTRIBUTE = "CachedTestData";
+
+  private File directory;
+
+  public MetaDataIndexTest()
+  {
+  }
+
+  public MetaDataIndexTest(final String name)
+  {
+    super(name);
+  }
+
+  protected void setUp() throws Exception
+  {
+    ClassicEngineBoot.getInstance().start();
+    directory = File.createTempFile("meta-data-index", "");
+    assertTrue(directory.delete());
+    assertTrue(directory.mkdir());
+  }
+
+  protected void tearDown() throws Exception
+  {
+    getConfiguration().setConfigProperty(INCLUDE_KEY, null);
+    final File[] files = directory.listFiles();
+    if (files != null)
+    {
+      for (int i = 0; i < files.length; i++)
+      {
+        files[i].delete();
+      }
+    }
+    directory.delete();
+  }
+
+  private static ModifiableConfiguration getConfiguration()
+  {
+    return ClassicEngineBoot.getInstance().getEditableConfig();
+  }
+
+  private static String readResource(final String name) throws IOException
+  {
+    final InputStream in = MetaDataIndexTest.class.getResourceAsStream(name);
+    assertNotNull(name, in);
+    try
+    {
+      final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+      final byte[] buffer = new byte[8192];
+      int length;
+      while ((length = in.read(buffer)) != -1)
+      {
+        bout.write(buffer, 0, length);
+      }
+      return bout.toString("UTF-8");
+    }
+    finally
+    {
+      in.close();
+    }
+  }
+
+  private File writeFile(final String name, final String content) throws IOException
+  {
+    final File file = new File(directory, name);
+    final OutputStream out = new FileOutputStream(file);
+    try
+    {
+      out.write(content.getBytes("UTF-8"));
+    }
+    finally
+    {
+      out.close();
+    }
+    return file;
+  }
+
+  private URL createElementMetaData() throws IOException
+  {
+    final String content = readResource
+        ("/org/pentaho/reporting/engine/classic/core/modules/misc/survey/meta-elements.xml");
+    final String renamed = content.replace("name=\"survey-scale\"", "name=\"" + ELEMENT_NAME + "\"");
+    return writeFile("meta-elements.xml", renamed).toURI().toURL();
+  }
+
+  private URL createGlobalInclude() throws IOException
+  {
+    final String content =
+        "<meta-data xmlns=\"http://reporting.pentaho.org/namespaces/engine/classic/metadata/1.0\">\n" +
+        "  <attribute-group name=\"common-attributes\">\n" +
+        "    <attribute namespace=\"" + TEST_NAMESPACE + "\" name=\"" + TEST_ATTRIBUTE + "\"\n" +
+        "               mandatory=\"false\" expert=\"true\" hidden=\"true\" computed=\"true\"\n" +
+        "               value-type=\"java.lang.Object\" value-role=\"Value\"/>\n" +
+        "  </attribute-group>\n" +
+        "</meta-data>\n";
+    return writeFile("global-meta-elements.xml", content).toURI().toURL();
+  }
+
+  private void writeIndex(final URL source) throws Exception
+  {
+    final ResourceManager resourceManager = new ResourceManager();
+    final Resource resource = resourceManager.createDirectly(source, ElementTypeCollection.class);
+    final OutputStream out = new FileOutputStream(new File(source.toURI().getPath() + MetaDataIndex.INDEX_SUFFIX));
+    try
+    {
+      MetaDataIndex.writeIndex(source, (ElementTypeCollection) resource.getResource(), out);
+    }
+    finally
+    {
+      out.close();
+    }
+  }
+
+  private static ElementMetaData findElement(final ElementTypeCollection collection)
+  {
+    final ElementMetaData[] types = collection.getElementTypes();
+    for (int i = 0; i < types.length; i++)
+    {
+      if (ELEMENT_NAME.equals(types[i].getName()))
+      {
+        return types[i];
+      }
+    }
+    fail("Element " + ELEMENT_NAME + " not found");
+    return null;
+  }
+
+  public void testIndexIsRead() throws Exception
+  {
+    final URL source = createElementMetaData();
+    writeIndex(source);
+
+    final ElementTypeCollection index = MetaDataIndex.readIndex(source, ElementTypeCollection.class);
+    assertNotNull(index);
+    assertNotNull(findElement(index).getAttributeDescription
+        ("http://reporting.pentaho.org/namespaces/engine/attributes/core", "name"));
+  }
+
+  public void testAdditionalGlobalIncludeInvalidatesIndex() throws Exception
+  {
+    final URL source = createElementMetaData();
+    writeIndex(source);
+
+    getConfiguration().setConfigProperty(INCLUDE_KEY, createGlobalInclude().toExternalForm());
+    assertNull(MetaDataIndex.readIndex(source, ElementTypeCollection.class));
+
+    // the registry falls back to parsing the XML file and sees the attributes of the new include.
+    ElementTypeRegistry.getInstance().registerFromXml(source);
+    final ElementMetaData metaData = ElementTypeRegistry.getInstance().getElementType(ELEMENT_NAME);
+    assertNotNull(metaData.getAttributeDescription(TEST_NAMESPACE, TEST_ATTRIBUTE));
+  }
+
+  public void testIndexRecordsGlobalIncludes() throws Exception
+  {
+    final URL source = createElementMetaData();
+    getConfiguration().setConfigProperty(INCLUDE_KEY, createGlobalInclude().toExternalForm());
+    writeIndex(source);
+
+    final ElementTypeCollection index = MetaDataIndex.readIndex(source, ElementTypeCollection.class);
+    assertNotNull(index);
+    assertNotNull(findElement(index).getAttributeDescription(TEST_NAMESPACE, TEST_ATTRIBUTE));
+
+    getConfiguration().setConfigProperty(INCLUDE_KEY, null);
+    assertNull(MetaDataIndex.readIndex(source, ElementTypeCollection.class));
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+
+package org.pentaho.reporting.engine.classic.core.modules.misc.datafactory.sql;
+
+import junit.framework.TestCase;
+
+public class QueryLimitRewriterTest extends TestCase
+{
+  public QueryLimitRewriterTest()
+  {
+  }
+
+  public QueryLimitRewriterTest(final String name)
+  {
+    super(name);
+  }
+
+  public void testLimitDialects()
+  {
+    final String query = "SELECT id, name FROM customers ORDER BY name";
+    assertEquals("SELECT * FROM (SELECT id, name FROM customers ORDER BY name\n) pentaho_limited_query LIMIT 10",
+        QueryLimitRewriter.rewrite("MySQL", query, 10));
+    assertEquals("SELECT * FROM (SELECT id, name FROM customers ORDER BY name\n) pentaho_limited_query LIMIT 10",
+        QueryLimitRewriter.rewrite("PostgreSQL", query + ";", 10));
+    assertEquals("SELECT * FROM (SELECT id, name FROM customers ORDER BY name\n) WHERE ROWNUM <= 10",
+        QueryLimitRewriter.rewrite("Oracle", query, 10));
+    assertEquals("SELECT * FROM (SELECT id, name FROM customers ORDER BY name\n) pentaho_limited_query " +
+        "FETCH FIRST 10 ROWS ONLY", QueryLimitRewriter.rewrite("Apache Derby", query, 10));
+    assertEquals("SELECT * FROM (SELECT id, name FROM customers ORDER BY name\n) pentaho_limited_query " +
+        "FETCH FIRST 10 ROWS ONLY", QueryLimitRewriter.rewrite("DB2/LINUXX8664", query, 10));
+  }
+
+  public void testProductNamesMatchExactly()
+  {
+    final String query = "SELECT id FROM customers";
+    assertSame(query, QueryLimitRewriter.rewrite("Microsoft SQL Server", query, 10));
+    assertSame(query, QueryLimitRewriter.rewrite("H2O Analytics", query, 10));
+    assertSame(query, QueryLimitRewriter.rewrite("Oracle Rdb", query, 10));
+    assertNotSame(query, QueryLimitRewriter.rewrite("h2", query, 10));
+  }
+
+  public void testUnsupportedQueriesAreNotRewritten()
+  {
+    final String query = "SELECT id FROM customers";
+    assertSame(query, QueryLimitRewriter.rewrite("MySQL", query, 0));
+
+    final String update = "UPDATE customers SET name = 'x'";
+    assertSame(update, QueryLimitRewriter.rewrite("MySQL", update, 10));
+    final String batch = "SELECT 1; SELECT 2";
+    assertSame(batch, QueryLimitRewriter.rewrite("MySQL", batch, 10));
+    final String selector = "selector";
+    assertSame(selector, QueryLimitRewriter.rewrite("MySQL", selector, 10));
+  }
+
+  public void testDuplicateColumnsAreNotRewritten()
+  {
+    final String join = "SELECT c.id, o.id FROM customers c JOIN orders o ON c.id = o.customer";
+    assertSame(join, QueryLimitRewriter.rewrite("MySQL", join, 10));
+    assertSame(join, QueryLimitRewriter.rewrite("Oracle", join, 10));
+
+    final String aliasClash = "SELECT name, code AS NAME FROM customers";
+    assertSame(aliasClash, QueryLimitRewriter.rewrite("MySQL", aliasClash, 10));
+
+    final String star = "SELECT * FROM customers c JOIN orders o ON c.id = o.customer";
+    assertSame(star, QueryLimitRewriter.rewrite("MySQL", star, 10));
+    final String tableStar = "SELECT c.*, o.total FROM customers c JOIN orders o ON c.id = o.customer";
+    assertSame(tableStar, QueryLimitRewriter.rewrite("MySQL", tableStar, 10));
+  }
+
+  public void testExpressionsWithoutAliasAreNotRewritten()
+  {
+    final String count = "SELECT region, COUNT(*) FROM customers GROUP BY region";
+    assertSame(count, QueryLimitRewriter.rewrite("PostgreSQL", count, 10));
+    final String sum = "SELECT a + b FROM t";
+    assertSame(sum, QueryLimitRewriter.rewrite("PostgreSQL", sum, 10));
+    final String caseExpression = "SELECT CASE WHEN a > 0 THEN 1 ELSE 0 END FROM t";
+    assertSame(caseExpression, QueryLimitRewriter.rewrite("PostgreSQL", caseExpression, 10));
+  }
+
+  public void testAliasedSelectListsAreRewritten()
+  {
+    assertTrue(QueryLimitRewriter.isSelectListAliasSafe
+        ("SELECT DISTINCT c.id AS customer_id, o.id order_id, COUNT(*) total, " +
+            "CASE WHEN a > 0 THEN 'a, b' ELSE 'c' END AS flag, \"Name\" FROM t -- trailing, comment\n"));
+    assertTrue(QueryLimitRewriter.isSelectListAliasSafe
+        ("SELECT (SELECT MAX(id) FROM orders) AS max_id, CAST(x AS INTEGER) x_value FROM t"));
+    assertFalse(QueryLimitRewriter.isSelectListAliasSafe("SELECT a AS x, b AS \"X\" FROM t"));
+  }
+}
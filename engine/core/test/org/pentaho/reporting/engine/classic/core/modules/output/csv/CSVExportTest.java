@@ -1,17 +1,64 @@
 package org.pentaho.reporting.engine.classic.core.modules.output.csv;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import javax.swing.table.DefaultTableModel;
 
 import junit.framework.TestCase;
 import org.pentaho.reporting.engine.classic.core.ClassicEngineBoot;
+import org.pentaho.reporting.engine.classic.core.ClassicEngineCoreModule;
 import org.pentaho.reporting.engine.classic.core.ItemBand;
 import org.pentaho.reporting.engine.classic.core.MasterReport;
+import org.pentaho.reporting.engine.classic.core.ReportProcessingException;
 import org.pentaho.reporting.engine.classic.core.TableDataFactory;
 import org.pentaho.reporting.engine.classic.core.elementfactory.TextFieldElementFactory;
+import org.pentaho.reporting.engine.classic.core.function.AbstractExpression;
 import org.pentaho.reporting.engine.classic.core.testsupport.DebugReportRunner;
 
 public class CSVExportTest extends TestCase
 {
+  /**
+   * Returns the same mutable object on every row, like functions that reuse their result object.
+   */
+  private static class MutableValueExpression extends AbstractExpression
+  {
+    private StringBuilder value;
+
+    private MutableValueExpression(final String name)
+    {
+      setName(name);
+      value = new StringBuilder();
+    }
+
+    public Object getValue()
+    {
+      value.setLength(0);
+      value.append("Mutable ").append(getDataRow().get("number"));
+      return value;
+    }
+  }
+
+  private static class FailingWriter extends Writer
+  {
+    private FailingWriter()
+    {
+    }
+
+    public void write(final char[] cbuf, final int off, final int len) throws IOException
+    {
+      throw new IOException("Disk full");
+    }
+
+    public void flush() throws IOException
+    {
+    }
+
+    public void close() throws IOException
+    {
+    }
+  }
+
   public CSVExportTest()
   {
   }
@@ -46,4 +93,126 @@ public class CSVExportTest extends TestCase
 
     DebugReportRunner.createDataCSV(report);
   }
+
+  public void testPipelinedExport() throws Exception
+  {
+    final DefaultTableModel tableModel = new DefaultTableModel(new String[]{"field", "number"}, 5000);
+    for (int row = 0; row < tableModel.getRowCount(); row++)
+    {
+      tableModel.setValueAt("Value, row = " + row, row, 0);
+      tableModel.setValueAt(row, row, 1);
+    }
+
+    final MasterReport report = new MasterReport();
+    report.setDataFactory(new TableDataFactory("default", tableModel));
+
+    final StringWriter direct = new StringWriter();
+    final CSVProcessor directProcessor = new CSVProcessor(report);
+    directProcessor.setWriter(direct);
+    directProcessor.processReport();
+    directProcessor.close();
+
+    final StringWriter pipelined = new StringWriter();
+    final CSVProcessor pipelinedProcessor = new CSVProcessor(report);
+    pipelinedProcessor.setPipelinedOutput(true);
+    pipelinedProcessor.setWriter(pipelined);
+    pipelinedProcessor.processReport();
+    pipelinedProcessor.close();
+
+    assertTrue(direct.toString().length() > 0);
+    assertEquals(direct.toString(), pipelined.toString());
+  }
+
+  private MasterReport createPipelineReport()
+  {
+    final DefaultTableModel tableModel = new DefaultTableModel(new String[]{"field", "number"}, 5000);
+    for (int row = 0; row < tableModel.getRowCount(); row++)
+    {
+      tableModel.setValueAt("Value, row = " + row, row, 0);
+      tableModel.setValueAt(row, row, 1);
+    }
+
+    final MasterReport report = new MasterReport();
+    report.setDataFactory(new TableDataFactory("default", tableModel));
+    report.addExpression(new MutableValueExpression("mutable"));
+    return report;
+  }
+
+  public void testPipelinedExportWithMutableValues() throws Exception
+  {
+    final MasterReport report = createPipelineReport();
+
+    final StringWriter direct = new StringWriter();
+    final CSVProcessor directProcessor = new CSVProcessor(report);
+    directProcessor.setWriter(direct);
+    directProcessor.processReport();
+    directProcessor.close();
+
+    final StringWriter pipelined = new StringWriter();
+    final CSVProcessor pipelinedProcessor = new CSVProcessor(report);
+    pipelinedProcessor.setPipelinedOutput(true);
+    pipelinedProcessor.setWriter(pipelined);
+    pipelinedProcessor.processReport();
+    pipelinedProcessor.close();
+
+    assertTrue(direct.toString().indexOf("Mutable 4999") > 0);
+    assertEquals(direct.toString(), pipelined.toString());
+  }
+
+  public void testPipelinedExportReportsWriterErrors() throws Exception
+  {
+    assertWriterErrorIsReported(createPipelineReport());
+  }
+
+  public void testPipelinedExportReportsWriterErrorsWithStrictErrorHandling() throws Exception
+  {
+    final MasterReport report = createPipelineReport();
+    report.getReportConfiguration().setConfigProperty(ClassicEngineCoreModule.STRICT_ERROR_HANDLING_KEY, "true");
+    assertWriterErrorIsReported(report);
+  }
+
+  private void assertWriterErrorIsReported(final MasterReport report) throws Exception
+  {
+    final CSVProcessor processor = new CSVProcessor(report);
+    processor.setPipelinedOutput(true);
+    processor.setWriter(new FailingWriter());
+    try
+    {
+      processor.processReport();
+      fail();
+    }
+    catch (ReportProcessingException re)
+    {
+      // expected
+    }
+    finally
+    {
+      processor.close();
+    }
+
+    // the writer thread must not outlive the failed report processing.
+    final long timeout = System.currentTimeMillis() + 10000;
+    while (isWriterThreadAlive())
+    {
+      if (System.currentTimeMillis() > timeout)
+      {
+        fail("CSV writer thread is still running.");
+      }
+      Thread.sleep(10);
+    }
+  }
+
+  private boolean isWriterThreadAlive()
+  {
+    final Thread[] threads = new Thread[Thread.activeCount() + 10];
+    final int count = Thread.enumerate(threads);
+    for (int i = 0; i < count; i++)
+    {
+      if ("CSV-Writer".equals(threads[i].getName()) && threads[i].isAlive())
+      {
+        return true;
+      }
+    }
+    return false;
+  }
 }
@@ -0,0 +1,111 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+
+package org.pentaho.reporting.engine.classic.core.modules.output.csv;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import junit.framework.TestCase;
+
+public class CSVOutputPipelineTest extends TestCase
+{
+  private static class FailingWriter extends Writer
+  {
+    private FailingWriter()
+    {
+    }
+
+    public void write(final char[] cbuf, final int off, final int len) throws IOException
+    {
+      throw new IOException("Disk full");
+    }
+
+    public void flush() throws IOException
+    {
+    }
+
+    public void close() throws IOException
+    {
+    }
+  }
+
+  public CSVOutputPipelineTest()
+  {
+  }
+
+  public CSVOutputPipelineTest(final String name)
+  {
+    super(name);
+  }
+
+  public void testOutputMatchesDirectWriting() throws IOException
+  {
+    final CSVQuoter quoter = new CSVQuoter(";");
+    final StringBuilder expected = new StringBuilder();
+    final StringWriter out = new StringWriter();
+    final CSVOutputPipeline pipeline = new CSVOutputPipeline(out, ";", "\n", 7);
+    for (int i = 0; i < 1000; i++)
+    {
+      final String[] row = new String[]{String.valueOf(i), "text;" + i, "null", "say \"" + i + '"'};
+      pipeline.write(row);
+
+      for (int c = 0; c < row.length; c++)
+      {
+        if (c > 0)
+        {
+          expected.append(';');
+        }
+        expected.append(quoter.doQuoting(row[c]));
+      }
+      expected.append('\n');
+    }
+    pipeline.close();
+    assertEquals(expected.toString(), out.toString());
+  }
+
+  public void testEmptyOutput() throws IOException
+  {
+    final StringWriter out = new StringWriter();
+    final CSVOutputPipeline pipeline = new CSVOutputPipeline(out, ",", "\n", 10);
+    pipeline.close();
+    assertEquals("", out.toString());
+  }
+
+  public void testWriterErrorIsReported()
+  {
+    final CSVOutputPipeline pipeline = new CSVOutputPipeline(new FailingWriter(), ",", "\n", 1);
+    try
+    {
+      for (int i = 0; i < 100000; i++)
+      {
+        pipeline.write(new String[]{"value"});
+      }
+      pipeline.close();
+      fail();
+    }
+    catch (IOException e)
+    {
+      assertEquals("Disk full", e.getMessage());
+    }
+    finally
+    {
+      pipeline.dispose();
+    }
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+package org.pentaho.reporting.engine.classic.core.modules.output.pageable.pdf.internal;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import junit.framework.TestCase;
+
+public class PdfImageCacheTest extends TestCase
+{
+  public PdfImageCacheTest()
+  {
+  }
+
+  public PdfImageCacheTest(final String name)
+  {
+    super(name);
+  }
+
+  private BufferedImage createImage(final Color color)
+  {
+    final BufferedImage image = new BufferedImage(20, 10, BufferedImage.TYPE_INT_ARGB);
+    paint(image, color);
+    return image;
+  }
+
+  private void paint(final BufferedImage image, final Color color)
+  {
+    final Graphics2D graphics = image.createGraphics();
+    graphics.setColor(color);
+    graphics.fillRect(2, 2, 10, 5);
+    graphics.dispose();
+  }
+
+  public void testEqualImagesAreShared() throws Exception
+  {
+    final PdfImageCache cache = new PdfImageCache();
+    final com.lowagie.text.Image image1 = cache.getImage(createImage(Color.RED));
+    final com.lowagie.text.Image image2 = cache.getImage(createImage(Color.RED));
+    assertSame(image1, image2);
+  }
+
+  public void testRedrawnImageIsNotShared() throws Exception
+  {
+    final PdfImageCache cache = new PdfImageCache();
+    final BufferedImage awtImage = createImage(Color.RED);
+    final com.lowagie.text.Image red = cache.getImage(awtImage);
+
+    paint(awtImage, Color.BLUE);
+    final com.lowagie.text.Image blue = cache.getImage(awtImage);
+    assertNotSame(red, blue);
+    assertSame(blue, cache.getImage(createImage(Color.BLUE)));
+
+    paint(awtImage, Color.RED);
+    assertSame(red, cache.getImage(awtImage));
+  }
+}
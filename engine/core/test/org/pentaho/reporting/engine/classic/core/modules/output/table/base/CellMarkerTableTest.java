@@ -0,0 +1,101 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+
+
+package org.pentaho.reporting.engine.classic.core.modules.output.table.base;
+
+import junit.framework.TestCase;
+
+public class CellMarkerTableTest extends TestCase
+{
+  public CellMarkerTableTest()
+  {
+  }
+
+  public CellMarkerTableTest(final String name)
+  {
+    super(name);
+  }
+
+  public void testSetAndGet()
+  {
+    final CellMarkerTable table = new CellMarkerTable();
+    table.setObject(5, 3, FinishedMarker.INSTANCE);
+    assertEquals(6, table.getRowCount());
+    assertEquals(4, table.getColumnCount());
+    assertSame(FinishedMarker.INSTANCE, table.getObject(5, 3));
+    assertNull(table.getObject(5, 2));
+    assertNull(table.getObject(4, 3));
+    assertNull(table.getObject(50, 50));
+  }
+
+  public void testDiscardedRowsAreReleased()
+  {
+    final CellMarkerTable table = new CellMarkerTable();
+    for (int row = 0; row < 10000; row++)
+    {
+      table.setObject(row, 0, FinishedMarker.INSTANCE);
+      table.setObject(row, 4, FinishedMarker.INSTANCE);
+      if (row >= 10)
+      {
+        table.discardRows(row - 10);
+      }
+    }
+
+    assertEquals(10000, table.getRowCount());
+    assertEquals(5, table.getColumnCount());
+    assertEquals(9989, table.getFirstRow());
+    assertTrue(table.getWindowSize() <= 11);
+    assertNull(table.getObject(100, 0));
+    assertSame(FinishedMarker.INSTANCE, table.getObject(9995, 4));
+    assertSame(FinishedMarker.INSTANCE, table.getObject(9999, 0));
+  }
+
+  public void testDiscardBeyondContent()
+  {
+    final CellMarkerTable table = new CellMarkerTable();
+    table.setObject(2, 2, FinishedMarker.INSTANCE);
+    table.discardRows(100);
+    assertNull(table.getObject(2, 2));
+    table.setObject(105, 1, FinishedMarker.INSTANCE);
+    assertSame(FinishedMarker.INSTANCE, table.getObject(105, 1));
+    assertEquals(106, table.getRowCount());
+  }
+
+  public void testWriteToDiscardedRow()
+  {
+    final CellMarkerTable table = new CellMarkerTable();
+    table.setObject(20, 0, FinishedMarker.INSTANCE);
+    table.discardRows(15);
+    table.setObject(10, 1, FinishedMarker.INSTANCE);
+    assertSame(FinishedMarker.INSTANCE, table.getObject(10, 1));
+    assertSame(FinishedMarker.INSTANCE, table.getObject(20, 0));
+  }
+
+  public void testClear()
+  {
+    final CellMarkerTable table = new CellMarkerTable();
+    table.setObject(20, 3, FinishedMarker.INSTANCE);
+    table.discardRows(10);
+    table.clear();
+    assertEquals(0, table.getRowCount());
+    assertEquals(0, table.getColumnCount());
+    assertNull(table.getObject(20, 3));
+    table.setObject(0, 0, FinishedMarker.INSTANCE);
+    assertSame(FinishedMarker.INSTANCE, table.getObject(0, 0));
+  }
+}
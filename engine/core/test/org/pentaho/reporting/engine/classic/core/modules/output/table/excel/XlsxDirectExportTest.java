@@ -0,0 +1,169 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+
+package org.pentaho.reporting.engine.classic.core.modules.output.table.excel;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.text.DecimalFormat;
+import java.util.HashSet;
+import java.util.Locale;
+import javax.swing.table.DefaultTableModel;
+
+import junit.framework.TestCase;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.usermodel.XSSFCell;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.pentaho.reporting.engine.classic.core.ClassicEngineBoot;
+import org.pentaho.reporting.engine.classic.core.ElementAlignment;
+import org.pentaho.reporting.engine.classic.core.GroupHeader;
+import org.pentaho.reporting.engine.classic.core.MasterReport;
+import org.pentaho.reporting.engine.classic.core.RelationalGroup;
+import org.pentaho.reporting.engine.classic.core.TableDataFactory;
+import org.pentaho.reporting.engine.classic.core.elementfactory.NumberFieldElementFactory;
+import org.pentaho.reporting.engine.classic.core.elementfactory.TextFieldElementFactory;
+import org.pentaho.reporting.engine.classic.core.function.FormulaExpression;
+import org.pentaho.reporting.engine.classic.core.modules.output.table.base.FlowReportProcessor;
+import org.pentaho.reporting.engine.classic.core.modules.output.table.xls.FlowDirectXExcelOutputProcessor;
+import org.pentaho.reporting.engine.classic.core.style.BandStyleKeys;
+import org.pentaho.reporting.engine.classic.core.style.FontDefinition;
+
+public class XlsxDirectExportTest extends TestCase
+{
+  public XlsxDirectExportTest()
+  {
+  }
+
+  public XlsxDirectExportTest(final String name)
+  {
+    super(name);
+  }
+
+  protected void setUp() throws Exception
+  {
+    ClassicEngineBoot.getInstance().start();
+  }
+
+  private MasterReport createReport()
+  {
+    final DefaultTableModel model = new DefaultTableModel(new Object[]{"sheet", "name", "amount"}, 0);
+    model.addRow(new Object[]{"Data", "alpha", Double.valueOf(10.5)});
+    model.addRow(new Object[]{"Data", "beta", Double.valueOf(-2)});
+    model.addRow(new Object[]{"DATA", "gamma <&>", Double.valueOf(1000)});
+
+    final MasterReport report = new MasterReport();
+    report.setDataFactory(new TableDataFactory("default", model));
+    report.setQuery("default");
+
+    final RelationalGroup group = new RelationalGroup();
+    group.setName("sheet-group");
+    group.addField("sheet");
+    report.setRootGroup(group);
+
+    // every group instance starts a new sheet named after the group's value.
+    final FormulaExpression sheetName = new FormulaExpression();
+    sheetName.setFormula("=[sheet]");
+    final GroupHeader header = group.getHeader();
+    header.getStyle().setStyleProperty(BandStyleKeys.PAGEBREAK_BEFORE, Boolean.TRUE);
+    header.setStyleExpression(BandStyleKeys.COMPUTED_SHEETNAME, sheetName);
+    header.addElement(TextFieldElementFactory.createStringElement
+        ("sheet-field", new Rectangle(0, 0, 200, 20), Color.BLACK, ElementAlignment.LEFT,
+            new FontDefinition("Arial", 12, true, false, false, false), "-", "sheet"));
+
+    report.getItemBand().addElement(TextFieldElementFactory.createStringElement
+        ("name-field", new Rectangle(0, 0, 100, 20), Color.BLACK, ElementAlignment.LEFT,
+            new FontDefinition("Arial", 10), "-", "name"));
+    report.getItemBand().addElement(NumberFieldElementFactory.createNumberElement
+        ("amount-field", new Rectangle(100, 0, 100, 20), Color.BLACK, ElementAlignment.RIGHT,
+            new FontDefinition("Arial", 10), "-", new DecimalFormat("#,##0.00"), "amount"));
+    return report;
+  }
+
+  private XSSFWorkbook export(final MasterReport report) throws Exception
+  {
+    final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    final FlowDirectXExcelOutputProcessor outputProcessor =
+        new FlowDirectXExcelOutputProcessor(report.getConfiguration(), bout);
+    final FlowReportProcessor reportProcessor = new FlowReportProcessor(report, outputProcessor);
+    try
+    {
+      reportProcessor.processReport();
+    }
+    finally
+    {
+      reportProcessor.close();
+    }
+    return new XSSFWorkbook(new ByteArrayInputStream(bout.toByteArray()));
+  }
+
+  private static XSSFCell findCell(final XSSFWorkbook workbook, final String text)
+  {
+    for (int s = 0; s < workbook.getNumberOfSheets(); s++)
+    {
+      final XSSFSheet sheet = workbook.getSheetAt(s);
+      for (final Row row : sheet)
+      {
+        for (final Cell cell : row)
+        {
+          if (cell.getCellType() == Cell.CELL_TYPE_STRING && text.equals(cell.getStringCellValue()))
+          {
+            return (XSSFCell) cell;
+          }
+        }
+      }
+    }
+    return null;
+  }
+
+  public void testExportCanBeReadBack() throws Exception
+  {
+    final XSSFWorkbook workbook = export(createReport());
+
+    final XSSFCell alpha = findCell(workbook, "alpha");
+    assertNotNull(alpha);
+    final Cell amount = alpha.getRow().getCell(alpha.getColumnIndex() + 1);
+    assertNotNull(amount);
+    assertEquals(Cell.CELL_TYPE_NUMERIC, amount.getCellType());
+    assertEquals(10.5, amount.getNumericCellValue(), 0.0001);
+    assertEquals("#,##0.00", amount.getCellStyle().getDataFormatString());
+
+    assertNotNull(findCell(workbook, "beta"));
+    assertNotNull(findCell(workbook, "gamma <&>"));
+
+    final XSSFCell header = findCell(workbook, "Data");
+    assertNotNull(header);
+    assertTrue(header.getCellStyle().getFont().getBold());
+  }
+
+  public void testSheetNamesAreUniqueIgnoringCase() throws Exception
+  {
+    final XSSFWorkbook workbook = export(createReport());
+    assertTrue(workbook.getNumberOfSheets() >= 2);
+
+    final HashSet<String> names = new HashSet<String>();
+    for (int s = 0; s < workbook.getNumberOfSheets(); s++)
+    {
+      final String name = workbook.getSheetName(s);
+      assertTrue(name, names.add(name.toUpperCase(Locale.ENGLISH)));
+    }
+    assertNotNull(workbook.getSheet("Data"));
+  }
+}
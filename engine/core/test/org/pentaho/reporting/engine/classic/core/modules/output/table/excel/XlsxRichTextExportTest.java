@@ -0,0 +1,95 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+
+package org.pentaho.reporting.engine.classic.core.modules.output.table.excel;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import junit.framework.TestCase;
+import org.apache.poi.xssf.usermodel.XSSFCell;
+import org.apache.poi.xssf.usermodel.XSSFRichTextString;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.pentaho.reporting.engine.classic.core.AttributeNames;
+import org.pentaho.reporting.engine.classic.core.ClassicEngineBoot;
+import org.pentaho.reporting.engine.classic.core.Element;
+import org.pentaho.reporting.engine.classic.core.MasterReport;
+import org.pentaho.reporting.engine.classic.core.filter.types.LabelType;
+import org.pentaho.reporting.engine.classic.core.modules.output.table.xls.ExcelReportUtil;
+import org.pentaho.reporting.engine.classic.core.style.ElementStyleKeys;
+
+public class XlsxRichTextExportTest extends TestCase
+{
+  private static final String STREAMING_KEY =
+      "org.pentaho.reporting.engine.classic.core.modules.output.table.xls.StreamingXlsx";
+
+  public XlsxRichTextExportTest()
+  {
+  }
+
+  public XlsxRichTextExportTest(final String s)
+  {
+    super(s);
+  }
+
+  protected void setUp() throws Exception
+  {
+    ClassicEngineBoot.getInstance().start();
+  }
+
+  private MasterReport createReport()
+  {
+    final Element label = new Element();
+    label.setElementType(LabelType.INSTANCE);
+    label.setAttribute(AttributeNames.Core.NAMESPACE, AttributeNames.Core.VALUE, "<b>Bold</b> and <i>italic</i>");
+    label.setAttribute(AttributeNames.Core.NAMESPACE, AttributeNames.Core.RICH_TEXT_TYPE, "text/html");
+    label.getStyle().setStyleProperty(ElementStyleKeys.MIN_WIDTH, 400f);
+    label.getStyle().setStyleProperty(ElementStyleKeys.MIN_HEIGHT, 20f);
+
+    final MasterReport report = new MasterReport();
+    report.getReportHeader().addElement(label);
+    return report;
+  }
+
+  private XSSFCell export(final MasterReport report) throws Exception
+  {
+    final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    ExcelReportUtil.createXLSX(report, bout);
+
+    final XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(bout.toByteArray()));
+    final XSSFCell cell = workbook.getSheetAt(0).getRow(0).getCell(0);
+    assertNotNull(cell);
+    return cell;
+  }
+
+  public void testRichTextIsKeptByDefault() throws Exception
+  {
+    final XSSFCell cell = export(createReport());
+    final XSSFRichTextString text = cell.getRichStringCellValue();
+    assertEquals("Bold and italic", text.getString().trim());
+    assertTrue(text.numFormattingRuns() > 1);
+  }
+
+  public void testStreamingExportKeepsText() throws Exception
+  {
+    final MasterReport report = createReport();
+    report.getReportConfiguration().setConfigProperty(STREAMING_KEY, "true");
+
+    final XSSFCell cell = export(report);
+    assertEquals("Bold and italic", cell.getRichStringCellValue().getString().trim());
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+
+
+package org.pentaho.reporting.engine.classic.core.modules.output.table.excel;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import junit.framework.TestCase;
+import org.pentaho.reporting.engine.classic.core.modules.output.table.xls.helper.XlsxCellStyle;
+import org.pentaho.reporting.engine.classic.core.modules.output.table.xls.helper.XlsxStylePool;
+import org.w3c.dom.Document;
+
+public class XlsxStylePoolTest extends TestCase
+{
+  public XlsxStylePoolTest()
+  {
+  }
+
+  public XlsxStylePoolTest(final String name)
+  {
+    super(name);
+  }
+
+  private XlsxCellStyle createStyle(final String fontName, final int fillColor, final String dataFormat)
+  {
+    return new XlsxCellStyle(fontName, 10, true, false, false, false, 0x000000, fillColor,
+        new String[]{"thin", null, "thin", null}, new int[]{0xFF0000, 0, 0xFF0000, 0},
+        "left", "top", false, dataFormat);
+  }
+
+  public void testStylesAreShared()
+  {
+    final XlsxStylePool pool = new XlsxStylePool();
+    final int first = pool.getStyleIndex(createStyle("Arial", 0xEEEEEE, "#,##0.00"));
+    final int second = pool.getStyleIndex(createStyle("Arial", 0xEEEEEE, "#,##0.00"));
+    final int third = pool.getStyleIndex(createStyle("Times & Roman", XlsxCellStyle.NO_COLOR, null));
+    assertEquals(first, second);
+    assertTrue(first != third);
+    assertTrue(first > 0);
+    assertEquals(3, pool.getStyleCount());
+  }
+
+  public void testStylesAreWellFormed() throws Exception
+  {
+    final XlsxStylePool pool = new XlsxStylePool();
+    pool.getStyleIndex(createStyle("Arial", 0xEEEEEE, "\"EUR\" #,##0.00"));
+    pool.getStyleIndex(createStyle("Times & Roman", XlsxCellStyle.NO_COLOR, null));
+
+    final StringWriter writer = new StringWriter();
+    pool.writeStyles(writer);
+    final Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse
+        (new ByteArrayInputStream(writer.toString().getBytes("UTF-8")));
+    assertEquals(3, document.getElementsByTagName("xf").getLength() - 1);
+    assertEquals(1, document.getElementsByTagName("numFmt").getLength());
+    assertEquals(3, document.getElementsByTagName("fill").getLength());
+  }
+
+  public void testStyleCountIsBounded()
+  {
+    final XlsxStylePool pool = new XlsxStylePool(3);
+    assertEquals(1, pool.getStyleIndex(createStyle("Arial", 0x000001, null)));
+    assertEquals(2, pool.getStyleIndex(createStyle("Arial", 0x000002, null)));
+    assertEquals(0, pool.getStyleIndex(createStyle("Arial", 0x000003, null)));
+    assertEquals(2, pool.getStyleIndex(createStyle("Arial", 0x000002, null)));
+    assertEquals(3, pool.getStyleCount());
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+
+package org.pentaho.reporting.engine.classic.core.modules.output.table.html;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import junit.framework.TestCase;
+import org.pentaho.reporting.engine.classic.core.ClassicEngineBoot;
+import org.pentaho.reporting.engine.classic.core.DefaultImageReference;
+import org.pentaho.reporting.libraries.base.encoder.FastPngEncoder;
+import org.pentaho.reporting.libraries.base.encoder.ImageEncoder;
+import org.pentaho.reporting.libraries.base.encoder.ImageEncoderRegistry;
+import org.pentaho.reporting.libraries.base.encoder.UnsupportedEncoderException;
+import org.pentaho.reporting.libraries.repository.ContentEntity;
+import org.pentaho.reporting.libraries.repository.ContentLocation;
+import org.pentaho.reporting.libraries.repository.DefaultNameGenerator;
+import org.pentaho.reporting.libraries.repository.zipwriter.ZipRepository;
+import org.pentaho.reporting.libraries.resourceloader.ResourceManager;
+
+public class HtmlPrinterImageTest extends TestCase
+{
+  private static final String COUNTING_PNG = "image/x-counting-png";
+
+  /**
+   * Encodes images as PNG and counts how often it has been called.
+   */
+  public static class CountingPngEncoder implements ImageEncoder
+  {
+    private static int encodeCount;
+
+    public CountingPngEncoder()
+    {
+    }
+
+    public void encodeImage(final Image image,
+                            final OutputStream outputStream,
+                            final float quality,
+                            final boolean encodeAlpha) throws IOException, UnsupportedEncoderException
+    {
+      encodeCount += 1;
+      new FastPngEncoder().encodeImage(image, outputStream, quality, encodeAlpha);
+    }
+
+    public String getMimeType()
+    {
+      return COUNTING_PNG;
+    }
+  }
+
+  private static class NameRewriter implements URLRewriter
+  {
+    public String rewrite(final ContentEntity sourceDocument, final ContentEntity dataEntity)
+    {
+      return dataEntity.getName();
+    }
+  }
+
+  public HtmlPrinterImageTest()
+  {
+  }
+
+  public HtmlPrinterImageTest(final String name)
+  {
+    super(name);
+  }
+
+  protected void setUp() throws Exception
+  {
+    ClassicEngineBoot.getInstance().start();
+    ImageEncoderRegistry.getInstance().addEncoder(COUNTING_PNG, CountingPngEncoder.class.getName());
+    CountingPngEncoder.encodeCount = 0;
+  }
+
+  /**
+   * Charts are rendered into a new buffered image each time they are printed, so the same chart arrives as
+   * different image instances with identical pixels.
+   */
+  private static BufferedImage createChartImage()
+  {
+    final BufferedImage image = new BufferedImage(120, 80, BufferedImage.TYPE_INT_ARGB);
+    final Graphics2D g2 = image.createGraphics();
+    g2.setColor(Color.WHITE);
+    g2.fillRect(0, 0, 120, 80);
+    g2.setColor(Color.BLUE);
+    g2.fillRect(10, 40, 20, 40);
+    g2.setColor(Color.RED);
+    g2.fillRect(50, 20, 20, 60);
+    g2.setColor(Color.GREEN);
+    g2.fillRect(90, 10, 20, 70);
+    g2.dispose();
+    return image;
+  }
+
+  public void testSameChartIsWrittenOnce() throws Exception
+  {
+    final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    final ZipRepository zipRepository = new ZipRepository(bout);
+    final ContentLocation data = zipRepository.getRoot();
+
+    final HtmlPrinter printer = new AllItemsHtmlPrinter(new ResourceManager());
+    printer.setDataWriter(data, new DefaultNameGenerator(data, "content"));
+    printer.setUrlRewriter(new NameRewriter());
+
+    final String firstURL = printer.writeImage
+        (new DefaultImageReference(createChartImage()), COUNTING_PNG, 0.9f, true);
+    final String secondURL = printer.writeImage
+        (new DefaultImageReference(createChartImage()), COUNTING_PNG, 0.9f, true);
+    assertNotNull(firstURL);
+    assertEquals(firstURL, secondURL);
+    assertEquals(1, CountingPngEncoder.encodeCount);
+
+    zipRepository.close();
+    assertEquals(1, listFiles(bout.toByteArray()).size());
+  }
+
+  private static ArrayList<String> listFiles(final byte[] zipData) throws IOException
+  {
+    final ArrayList<String> files = new ArrayList<String>();
+    final ZipInputStream zipIn = new ZipInputStream(new ByteArrayInputStream(zipData));
+    ZipEntry entry;
+    while ((entry = zipIn.getNextEntry()) != null)
+    {
+      if (entry.isDirectory() == false)
+      {
+        files.add(entry.getName());
+      }
+    }
+    zipIn.close();
+    return files;
+  }
+}
@@ -0,0 +1,201 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2009 Pentaho Corporation..  All rights reserved.
+ */
+package org.pentaho.reporting.engine.classic.core.modules.output.table.html;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import javax.swing.table.DefaultTableModel;
+
+import junit.framework.TestCase;
+import org.pentaho.reporting.engine.classic.core.ClassicEngineBoot;
+import org.pentaho.reporting.engine.classic.core.ElementAlignment;
+import org.pentaho.reporting.engine.classic.core.MasterReport;
+import org.pentaho.reporting.engine.classic.core.TableDataFactory;
+import org.pentaho.reporting.engine.classic.core.elementfactory.TextFieldElementFactory;
+import org.pentaho.reporting.engine.classic.core.layout.output.PageableReportProcessor;
+import org.pentaho.reporting.engine.classic.core.modules.output.table.html.helper.DefaultStyleBuilder;
+import org.pentaho.reporting.engine.classic.core.modules.output.table.html.helper.StyleBuilder;
+import org.pentaho.reporting.engine.classic.core.style.BandStyleKeys;
+import org.pentaho.reporting.engine.classic.core.style.FontDefinition;
+import org.pentaho.reporting.libraries.base.util.IOUtils;
+import org.pentaho.reporting.libraries.repository.ContentLocation;
+import org.pentaho.reporting.libraries.repository.DefaultNameGenerator;
+import org.pentaho.reporting.libraries.repository.RepositoryUtilities;
+import org.pentaho.reporting.libraries.repository.zipwriter.ZipRepository;
+
+public class SharedStyleSheetTest extends TestCase
+{
+  private static final Pattern CLASS_PATTERN = Pattern.compile("class=\"([^\"]+)\"");
+
+  public SharedStyleSheetTest()
+  {
+  }
+
+  public SharedStyleSheetTest(final String s)
+  {
+    super(s);
+  }
+
+  protected void setUp() throws Exception
+  {
+    ClassicEngineBoot.getInstance().start();
+  }
+
+  private MasterReport createReport()
+  {
+    final DefaultTableModel model = new DefaultTableModel(new Object[]{"name"}, 0);
+    model.addRow(new Object[]{"first"});
+    model.addRow(new Object[]{"second"});
+    model.addRow(new Object[]{"third"});
+
+    final MasterReport report = new MasterReport();
+    report.setDataFactory(new TableDataFactory("default", model));
+    report.setQuery("default");
+    report.getItemBand().getStyle().setStyleProperty(BandStyleKeys.PAGEBREAK_AFTER, Boolean.TRUE);
+    report.getItemBand().addElement(TextFieldElementFactory.createStringElement
+        ("name-field", new Rectangle(0, 0, 200, 20), Color.BLUE, ElementAlignment.LEFT,
+            new FontDefinition("Arial", 12, true, false, false, false), "-", "name"));
+    return report;
+  }
+
+  /**
+   * Runs a paged HTML export into a zip-file and returns the content of all generated files by name.
+   */
+  private HashMap<String, String> export(final MasterReport report) throws Exception
+  {
+    final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    final ZipRepository zipRepository = new ZipRepository(bout);
+    final ContentLocation root = zipRepository.getRoot();
+    final ContentLocation data = RepositoryUtilities.createLocation
+        (zipRepository, RepositoryUtilities.splitPath("data", "/"));
+
+    final PageableHtmlOutputProcessor outputProcessor = new PageableHtmlOutputProcessor(report.getConfiguration());
+    final HtmlPrinter printer = new AllItemsHtmlPrinter(report.getResourceManager());
+    printer.setContentWriter(root, new DefaultNameGenerator(root, "report.html"));
+    printer.setDataWriter(data, new DefaultNameGenerator(data, "content"));
+    printer.setUrlRewriter(new SingleRepositoryURLRewriter());
+    outputProcessor.setPrinter(printer);
+
+    final PageableReportProcessor reportProcessor = new PageableReportProcessor(report, outputProcessor);
+    try
+    {
+      reportProcessor.processReport();
+    }
+    finally
+    {
+      reportProcessor.close();
+    }
+    zipRepository.close();
+
+    final HashMap<String, String> files = new HashMap<String, String>();
+    final ZipInputStream zipIn = new ZipInputStream(new ByteArrayInputStream(bout.toByteArray()));
+    ZipEntry entry;
+    while ((entry = zipIn.getNextEntry()) != null)
+    {
+      if (entry.isDirectory())
+      {
+        continue;
+      }
+      final ByteArrayOutputStream content = new ByteArrayOutputStream();
+      IOUtils.getInstance().copyStreams(zipIn, content);
+      files.put(entry.getName(), content.toString("UTF-8"));
+    }
+    zipIn.close();
+    return files;
+  }
+
+  private static ArrayList<String> filter(final HashMap<String, String> files, final String suffix)
+  {
+    final ArrayList<String> result = new ArrayList<String>();
+    for (final String name : files.keySet())
+    {
+      if (name.endsWith(suffix))
+      {
+        result.add(name);
+      }
+    }
+    return result;
+  }
+
+  private static String getFileName(final String path)
+  {
+    return path.substring(path.lastIndexOf('/') + 1);
+  }
+
+  public void testPagesShareOneStyleSheet() throws Exception
+  {
+    final HashMap<String, String> files = export(createReport());
+    final ArrayList<String> pages = filter(files, ".html");
+    final ArrayList<String> styleSheets = filter(files, ".css");
+    assertTrue(pages.size() >= 3);
+    assertEquals(1, styleSheets.size());
+
+    final String styleSheetName = getFileName(styleSheets.get(0));
+    final String css = files.get(styleSheets.get(0));
+    for (final String page : pages)
+    {
+      final String html = files.get(page);
+      assertTrue(page, html.contains(styleSheetName));
+
+      // every class used on any page must be declared in the shared stylesheet.
+      final Matcher matcher = CLASS_PATTERN.matcher(html);
+      while (matcher.find())
+      {
+        final String[] classNames = matcher.group(1).split(" ");
+        for (final String className : classNames)
+        {
+          assertTrue(page + ": " + className, css.contains("." + className));
+        }
+      }
+    }
+  }
+
+  public void testStyleSheetPerPageIfSharingIsDisabled() throws Exception
+  {
+    final MasterReport report = createReport();
+    report.getReportConfiguration().setConfigProperty(HtmlTableModule.SHARED_STYLESHEET, "false");
+
+    final HashMap<String, String> files = export(report);
+    final ArrayList<String> pages = filter(files, ".html");
+    final ArrayList<String> styleSheets = filter(files, ".css");
+    assertTrue(pages.size() >= 3);
+    assertEquals(pages.size(), styleSheets.size());
+  }
+
+  public void testRestoreStyleBuilder()
+  {
+    final DefaultStyleBuilder builder = new DefaultStyleBuilder();
+    builder.append(DefaultStyleBuilder.CSSKeys.COLOR, "red");
+    builder.append(DefaultStyleBuilder.CSSKeys.FONT_SIZE, "12pt");
+    final String expected = builder.toString();
+    final StyleBuilder.StyleCarrier[] styles = builder.toArray();
+
+    builder.clear();
+    assertTrue(builder.isEmpty());
+
+    builder.restore(styles);
+    assertEquals(expected, builder.toString());
+  }
+}
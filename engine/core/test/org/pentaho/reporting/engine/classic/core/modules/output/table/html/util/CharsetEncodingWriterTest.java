@@ -0,0 +1,120 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+
+
+package org.pentaho.reporting.engine.classic.core.modules.output.table.html.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class CharsetEncodingWriterTest extends TestCase
+{
+  public CharsetEncodingWriterTest()
+  {
+  }
+
+  public CharsetEncodingWriterTest(final String name)
+  {
+    super(name);
+  }
+
+  private String createText()
+  {
+    final StringBuilder b = new StringBuilder();
+    for (int i = 0; i < 500; i++)
+    {
+      b.append("<td class=\"style-");
+      b.append(i);
+      b.append("\">\u00e4\u00f6\u00fc \u20ac \ud834\udd1e</td>\n");
+    }
+    return b.toString();
+  }
+
+  private byte[] write(final String text, final String encoding, final int bufferSize) throws IOException
+  {
+    final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    final CharsetEncodingWriter writer = new CharsetEncodingWriter(bout, encoding, bufferSize);
+    // mix all write methods, so that surrogate pairs get split across buffer boundaries.
+    int pos = 0;
+    int chunk = 1;
+    while (pos < text.length())
+    {
+      final int end = Math.min(text.length(), pos + chunk);
+      if (chunk % 3 == 0)
+      {
+        writer.write(text.charAt(pos));
+        pos += 1;
+      }
+      else if (chunk % 3 == 1)
+      {
+        writer.write(text, pos, end - pos);
+        pos = end;
+      }
+      else
+      {
+        writer.write(text.toCharArray(), pos, end - pos);
+        pos = end;
+      }
+      chunk = (chunk % 37) + 1;
+    }
+    writer.close();
+    return bout.toByteArray();
+  }
+
+  public void testUtf8()
+  {
+    final String text = createText();
+    try
+    {
+      assertTrue(Arrays.equals(text.getBytes("UTF-8"), write(text, "UTF-8", 16)));
+      assertTrue(Arrays.equals(text.getBytes("UTF-8"), write(text, "UTF-8", 8192)));
+    }
+    catch (IOException e)
+    {
+      fail();
+    }
+  }
+
+  public void testUnmappableCharacters()
+  {
+    final String text = createText();
+    try
+    {
+      assertTrue(Arrays.equals(text.getBytes("ISO-8859-1"), write(text, "ISO-8859-1", 16)));
+    }
+    catch (IOException e)
+    {
+      fail();
+    }
+  }
+
+  public void testUnknownEncoding()
+  {
+    try
+    {
+      new CharsetEncodingWriter(new ByteArrayOutputStream(), "no-such-encoding");
+      fail();
+    }
+    catch (IOException e)
+    {
+      // expected
+    }
+  }
+}
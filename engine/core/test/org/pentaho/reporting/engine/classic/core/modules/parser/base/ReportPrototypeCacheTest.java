@@ -0,0 +1,198 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+
+package org.pentaho.reporting.engine.classic.core.modules.parser.base;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.TestCase;
+import org.pentaho.reporting.engine.classic.core.ClassicEngineBoot;
+import org.pentaho.reporting.engine.classic.core.MasterReport;
+import org.pentaho.reporting.engine.classic.core.ResourceBundleFactory;
+import org.pentaho.reporting.libraries.base.util.IOUtils;
+import org.pentaho.reporting.libraries.resourceloader.DependencyCollector;
+import org.pentaho.reporting.libraries.resourceloader.ResourceData;
+import org.pentaho.reporting.libraries.resourceloader.ResourceKey;
+import org.pentaho.reporting.libraries.resourceloader.ResourceManager;
+
+public class ReportPrototypeCacheTest extends TestCase
+{
+  private File file;
+
+  public ReportPrototypeCacheTest()
+  {
+  }
+
+  public ReportPrototypeCacheTest(final String name)
+  {
+    super(name);
+  }
+
+  protected void setUp() throws Exception
+  {
+    ClassicEngineBoot.getInstance().start();
+    ReportPrototypeCache.getInstance().clear();
+    final InputStream in = ReportPrototypeCacheTest.class.getResourceAsStream
+        ("/org/pentaho/reporting/engine/classic/core/bugs/Prd-2058.prpt");
+    assertNotNull(in);
+    file = File.createTempFile("prototype-cache", ".prpt");
+    final FileOutputStream out = new FileOutputStream(file);
+    try
+    {
+      IOUtils.getInstance().copyStreams(in, out);
+    }
+    finally
+    {
+      in.close();
+      out.close();
+    }
+  }
+
+  protected void tearDown() throws Exception
+  {
+    if (file.delete() == false)
+    {
+      file.deleteOnExit();
+    }
+  }
+
+  private MasterReport load() throws Exception
+  {
+    final ResourceManager resourceManager = new ResourceManager();
+    resourceManager.registerDefaults();
+    return (MasterReport) resourceManager.createDirectly(file, MasterReport.class).getResource();
+  }
+
+  public void testSecondLoadIsServedFromCache() throws Exception
+  {
+    final ReportPrototypeCache cache = ReportPrototypeCache.getInstance();
+    assertTrue(cache.isEnabled());
+
+    final int hits = cache.getHitCount();
+    load();
+    assertEquals(hits, cache.getHitCount());
+    load();
+    assertEquals(hits + 1, cache.getHitCount());
+  }
+
+  public void testCachedReportsAreIndependent() throws Exception
+  {
+    final MasterReport first = load();
+    final MasterReport second = load();
+    assertNotSame(first, second);
+    assertNotSame(first.getBundle(), second.getBundle());
+    assertEquals(first.getName(), second.getName());
+
+    first.setName("Changed name");
+    final MasterReport third = load();
+    assertEquals(second.getName(), third.getName());
+    assertFalse("Changed name".equals(third.getName()));
+  }
+
+  public void testModifiedFileIsParsedAgain() throws Exception
+  {
+    final int hits = ReportPrototypeCache.getInstance().getHitCount();
+    final MasterReport first = load();
+    assertTrue(file.setLastModified(file.lastModified() - 60000));
+    final MasterReport second = load();
+    assertNotSame(first, second);
+    assertEquals(first.getName(), second.getName());
+    assertEquals(hits, ReportPrototypeCache.getInstance().getHitCount());
+  }
+
+  public void testConcurrentLoadsReturnIndependentClones() throws Exception
+  {
+    final String name = load().getName();
+    final int hits = ReportPrototypeCache.getInstance().getHitCount();
+
+    final int threadCount = 8;
+    final int loadsPerThread = 10;
+    final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+    final ArrayList<Future<MasterReport[]>> results = new ArrayList<Future<MasterReport[]>>();
+    try
+    {
+      for (int t = 0; t < threadCount; t++)
+      {
+        final int thread = t;
+        results.add(executor.submit(new Callable<MasterReport[]>()
+        {
+          public MasterReport[] call() throws Exception
+          {
+            final MasterReport[] reports = new MasterReport[loadsPerThread];
+            for (int i = 0; i < loadsPerThread; i++)
+            {
+              reports[i] = load();
+              assertEquals(name, reports[i].getName());
+              // modifying a clone must neither affect the prototype nor the clones of other threads.
+              reports[i].setName(thread + "-" + i);
+            }
+            return reports;
+          }
+        }));
+      }
+
+      final IdentityHashMap<Object, Boolean> seen = new IdentityHashMap<Object, Boolean>();
+      for (int t = 0; t < threadCount; t++)
+      {
+        final MasterReport[] reports = results.get(t).get();
+        for (int i = 0; i < reports.length; i++)
+        {
+          assertEquals(t + "-" + i, reports[i].getName());
+          assertNull(seen.put(reports[i], Boolean.TRUE));
+          assertNull(seen.put(reports[i].getRootGroup(), Boolean.TRUE));
+        }
+      }
+    }
+    finally
+    {
+      executor.shutdown();
+    }
+
+    assertEquals(hits + threadCount * loadsPerThread, ReportPrototypeCache.getInstance().getHitCount());
+    assertEquals(name, load().getName());
+  }
+
+  public void testPrototypeIsDetachedFromResourceManager() throws Exception
+  {
+    final ResourceManager resourceManager = new ResourceManager();
+    resourceManager.registerDefaults();
+    final MasterReport report = (MasterReport) resourceManager.createDirectly(file, MasterReport.class).getResource();
+    assertNotNull(report.getBundle());
+    final ResourceBundleFactory originalFactory = report.getResourceBundleFactory();
+
+    final ResourceKey key = resourceManager.createKey(file);
+    final ResourceData data = resourceManager.load(key);
+    final ReportPrototypeCache cache = new ReportPrototypeCache(true, 10);
+    cache.put(resourceManager, data, null, report, new DependencyCollector(key, data.getVersion(resourceManager)));
+
+    assertNull(report.getBundle());
+    assertNotSame(originalFactory, report.getResourceBundleFactory());
+    assertNotSame(resourceManager, report.getResourceManager());
+
+    final MasterReport clone = cache.get(resourceManager, data, null);
+    assertNotNull(clone);
+    assertNotSame(report.getResourceBundleFactory(), clone.getResourceBundleFactory());
+  }
+}
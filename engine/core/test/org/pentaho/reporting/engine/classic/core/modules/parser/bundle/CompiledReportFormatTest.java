@@ -0,0 +1,215 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+
+package org.pentaho.reporting.engine.classic.core.modules.parser.bundle;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.InvalidClassException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+import javax.swing.tree.DefaultMutableTreeNode;
+
+import junit.framework.TestCase;
+import org.pentaho.reporting.engine.classic.core.ClassicEngineBoot;
+import org.pentaho.reporting.engine.classic.core.MasterReport;
+import org.pentaho.reporting.engine.classic.core.modules.parser.base.ReportPrototypeCache;
+import org.pentaho.reporting.engine.classic.core.modules.parser.bundle.writer.BundleWriter;
+import org.pentaho.reporting.engine.classic.core.modules.parser.bundle.writer.CompiledReportFileWriter;
+import org.pentaho.reporting.libraries.base.util.IOUtils;
+import org.pentaho.reporting.libraries.docbundle.DocumentBundle;
+import org.pentaho.reporting.libraries.resourceloader.ResourceManager;
+
+public class CompiledReportFormatTest extends TestCase
+{
+  private static final byte[] DIGEST = new byte[32];
+
+  public CompiledReportFormatTest()
+  {
+  }
+
+  public CompiledReportFormatTest(final String name)
+  {
+    super(name);
+  }
+
+  protected void setUp() throws Exception
+  {
+    ClassicEngineBoot.getInstance().start();
+  }
+
+  protected void tearDown() throws Exception
+  {
+    ClassicEngineBoot.getInstance().getEditableConfig().setConfigProperty(CompiledReportFileWriter.ENABLE_KEY, null);
+    ClassicEngineBoot.getInstance().getEditableConfig().setConfigProperty
+        (CompiledReportFormat.USE_COMPILED_REPORT_KEY, null);
+  }
+
+  public void testForeignDataIsIgnored() throws Exception
+  {
+    assertNull(CompiledReportFormat.readReport(new ByteArrayInputStream("<report/>".getBytes("UTF-8")), DIGEST));
+    assertNull(CompiledReportFormat.readReport(new ByteArrayInputStream(new byte[0]), DIGEST));
+
+    final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    final DataOutputStream dout = new DataOutputStream(bout);
+    dout.write("PRPT-BIN".getBytes("ISO-8859-1"));
+    dout.writeInt(1);
+    dout.writeUTF("Some other engine 0.1");
+    dout.close();
+    assertNull(CompiledReportFormat.readReport(new ByteArrayInputStream(bout.toByteArray()), DIGEST));
+  }
+
+  public void testWriteAndRead() throws Exception
+  {
+    final MasterReport report = new MasterReport();
+    report.setName("compiled-report");
+
+    final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    CompiledReportFormat.writeReport(report, DIGEST, bout);
+    final MasterReport report2 =
+        CompiledReportFormat.readReport(new ByteArrayInputStream(bout.toByteArray()), DIGEST);
+    assertNotNull(report2);
+    assertEquals("compiled-report", report2.getName());
+
+    final byte[] otherDigest = DIGEST.clone();
+    otherDigest[0] = 1;
+    assertNull(CompiledReportFormat.readReport(new ByteArrayInputStream(bout.toByteArray()), otherDigest));
+  }
+
+  public void testUntrustedClassesAreRejected() throws Exception
+  {
+    final MasterReport report = new MasterReport();
+    report.setAttribute("http://example.com/test", "node", new DefaultMutableTreeNode("node"));
+
+    final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    CompiledReportFormat.writeReport(report, DIGEST, bout);
+    try
+    {
+      CompiledReportFormat.readReport(new ByteArrayInputStream(bout.toByteArray()), DIGEST);
+      fail();
+    }
+    catch (InvalidClassException e)
+    {
+      // expected
+    }
+  }
+
+  public void testTrustedClasses()
+  {
+    assertTrue(CompiledReportFormat.isTrustedClass(MasterReport.class.getName()));
+    assertTrue(CompiledReportFormat.isTrustedClass("java.util.ArrayList"));
+    assertTrue(CompiledReportFormat.isTrustedClass("[Ljava.lang.String;"));
+    assertTrue(CompiledReportFormat.isTrustedClass("[[I"));
+    assertTrue(CompiledReportFormat.isTrustedClass("java.util.HashMap"));
+    assertTrue(CompiledReportFormat.isTrustedClass("[Ljava.math.BigDecimal;"));
+    assertTrue(CompiledReportFormat.isTrustedClass("java.awt.Color"));
+    // the classes of the URLDNS gadget and other classes that reach files or the network.
+    assertFalse(CompiledReportFormat.isTrustedClass("java.net.URL"));
+    assertFalse(CompiledReportFormat.isTrustedClass("java.net.InetAddress"));
+    assertFalse(CompiledReportFormat.isTrustedClass("java.io.File"));
+    assertFalse(CompiledReportFormat.isTrustedClass("java.util.PriorityQueue"));
+    assertFalse(CompiledReportFormat.isTrustedClass("java.util.concurrent.ThreadPoolExecutor"));
+    assertFalse(CompiledReportFormat.isTrustedClass("java.lang.reflect.Proxy"));
+    assertFalse(CompiledReportFormat.isTrustedClass("javax.management.BadAttributeValueExpException"));
+    assertFalse(CompiledReportFormat.isTrustedClass("org.apache.commons.collections.functors.InvokerTransformer"));
+    assertFalse(CompiledReportFormat.isTrustedClass("[Lcom.sun.rowset.JdbcRowSetImpl;"));
+  }
+
+  private byte[] writeBundle(final String name, final boolean compiled) throws Exception
+  {
+    ClassicEngineBoot.getInstance().getEditableConfig().setConfigProperty
+        (CompiledReportFileWriter.ENABLE_KEY, String.valueOf(compiled));
+
+    final MasterReport report = new MasterReport();
+    report.setName(name);
+    final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    BundleWriter.writeReportToZipStream(report, bout);
+    return bout.toByteArray();
+  }
+
+  private MasterReport load(final byte[] data) throws Exception
+  {
+    // make sure the report is created from the bundle and not from a previous load.
+    ReportPrototypeCache.getInstance().clear();
+    final ResourceManager mgr = new ResourceManager();
+    mgr.registerDefaults();
+    return (MasterReport) mgr.createDirectly(data, MasterReport.class).getResource();
+  }
+
+  public void testBundleWithCompiledReport() throws Exception
+  {
+    ClassicEngineBoot.getInstance().getEditableConfig().setConfigProperty
+        (CompiledReportFormat.USE_COMPILED_REPORT_KEY, "true");
+
+    final byte[] data = writeBundle("compiled-report", true);
+    final ResourceManager mgr = new ResourceManager();
+    mgr.registerDefaults();
+    final DocumentBundle bundle = (DocumentBundle) mgr.createDirectly(data, DocumentBundle.class).getResource();
+    assertTrue(bundle.isEntryExists(CompiledReportFormat.ENTRY_NAME));
+
+    final MasterReport report2 = load(data);
+    assertEquals("compiled-report", report2.getName());
+    assertNotNull(report2.getBundle());
+    assertTrue(report2.getBundle().isEntryExists(CompiledReportFormat.ENTRY_NAME));
+  }
+
+  /**
+   * A precompiled entry copied into a bundle with different XML files must not replace the XML definition, neither
+   * with the default configuration nor with precompiled reports enabled.
+   */
+  public void testForeignCompiledReportIsIgnored() throws Exception
+  {
+    final byte[] compiledBundle = writeBundle("compiled-report", true);
+    final byte[] plainBundle = writeBundle("xml-report", false);
+    final byte[] data = copyEntry(compiledBundle, plainBundle, CompiledReportFormat.ENTRY_NAME);
+
+    assertEquals("xml-report", load(data).getName());
+
+    ClassicEngineBoot.getInstance().getEditableConfig().setConfigProperty
+        (CompiledReportFormat.USE_COMPILED_REPORT_KEY, "true");
+    assertEquals("xml-report", load(data).getName());
+  }
+
+  private static byte[] copyEntry(final byte[] source, final byte[] target, final String entryName) throws Exception
+  {
+    final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    final ZipOutputStream zout = new ZipOutputStream(bout);
+    final ZipInputStream targetIn = new ZipInputStream(new ByteArrayInputStream(target));
+    ZipEntry entry;
+    while ((entry = targetIn.getNextEntry()) != null)
+    {
+      zout.putNextEntry(new ZipEntry(entry.getName()));
+      IOUtils.getInstance().copyStreams(targetIn, zout);
+      zout.closeEntry();
+    }
+
+    final ZipInputStream sourceIn = new ZipInputStream(new ByteArrayInputStream(source));
+    while ((entry = sourceIn.getNextEntry()) != null)
+    {
+      if (entryName.equals(entry.getName()))
+      {
+        zout.putNextEntry(new ZipEntry(entry.getName()));
+        IOUtils.getInstance().copyStreams(sourceIn, zout);
+        zout.closeEntry();
+      }
+    }
+    zout.close();
+    return bout.toByteArray();
+  }
+}
@@ -0,0 +1,235 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+
+package org.pentaho.reporting.engine.classic.core.modules.parser.bundle;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import junit.framework.TestCase;
+import org.pentaho.reporting.engine.classic.core.AbstractReportDefinition;
+import org.pentaho.reporting.engine.classic.core.ClassicEngineBoot;
+import org.pentaho.reporting.engine.classic.core.DataFactory;
+import org.pentaho.reporting.engine.classic.core.Element;
+import org.pentaho.reporting.engine.classic.core.MasterReport;
+import org.pentaho.reporting.engine.classic.core.Section;
+import org.pentaho.reporting.engine.classic.core.SubReport;
+import org.pentaho.reporting.engine.classic.core.function.ExpressionCollection;
+import org.pentaho.reporting.engine.classic.core.modules.parser.base.ReportPrototypeCache;
+import org.pentaho.reporting.libraries.base.util.IOUtils;
+import org.pentaho.reporting.libraries.resourceloader.ResourceException;
+import org.pentaho.reporting.libraries.resourceloader.ResourceManager;
+import org.pentaho.reporting.libraries.resourceloader.cache.NullResourceDataCache;
+import org.pentaho.reporting.libraries.resourceloader.cache.NullResourceFactoryCache;
+
+public class ParallelBundleLoaderTest extends TestCase
+{
+  private static final String REPORT = "/org/pentaho/reporting/engine/classic/core/bugs/Prd-2228.prpt";
+
+  public ParallelBundleLoaderTest()
+  {
+  }
+
+  public ParallelBundleLoaderTest(final String name)
+  {
+    super(name);
+  }
+
+  protected void setUp() throws Exception
+  {
+    ClassicEngineBoot.getInstance().start();
+  }
+
+  protected void tearDown() throws Exception
+  {
+    ClassicEngineBoot.getInstance().getEditableConfig().setConfigProperty
+        (ParallelBundleLoader.PARALLEL_PARSING_KEY, null);
+    ClassicEngineBoot.getInstance().getEditableConfig().setConfigProperty
+        (ParallelBundleLoader.THREAD_COUNT_KEY, null);
+  }
+
+  public void testDisabledByDefault()
+  {
+    assertFalse(ParallelBundleLoader.isParallelParsingEnabled());
+  }
+
+  public void testParallelParsingProducesSameReport() throws Exception
+  {
+    final byte[] data = readReport();
+    final String sequential = load(data, false);
+    final String parallel = load(data, true);
+    assertTrue(sequential, sequential.contains("SubReport"));
+    assertEquals(sequential, parallel);
+  }
+
+  public void testMissingDataDefinition() throws Exception
+  {
+    final byte[] data = replaceEntry(readReport(), "datadefinition.xml", null);
+    assertEquals(load(data, false), load(data, true));
+  }
+
+  public void testCorruptDataDefinition() throws Exception
+  {
+    final byte[] data = replaceEntry(readReport(), "datadefinition.xml", "<data-definition");
+    final String sequential = load(data, false);
+    assertTrue(sequential, sequential.startsWith("failed"));
+    assertEquals(sequential, load(data, true));
+  }
+
+  public void testCorruptSubReportDataDefinition() throws Exception
+  {
+    final byte[] data = replaceEntry(readReport(), "subreport1/datadefinition.xml", "<data-definition");
+    final String sequential = load(data, false);
+    assertTrue(sequential, sequential.startsWith("failed"));
+    assertEquals(sequential, load(data, true));
+  }
+
+  private byte[] readReport() throws Exception
+  {
+    final InputStream in = ParallelBundleLoaderTest.class.getResourceAsStream(REPORT);
+    assertNotNull(in);
+    try
+    {
+      final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+      IOUtils.getInstance().copyStreams(in, bout);
+      return bout.toByteArray();
+    }
+    finally
+    {
+      in.close();
+    }
+  }
+
+  /**
+   * Loads the report and describes the result, so that loads with and without parallel parsing can be compared.
+   *
+   * @param data     the bundle.
+   * @param parallel whether to parse in parallel.
+   * @return the description of the report or of the failure.
+   */
+  private String load(final byte[] data, final boolean parallel)
+  {
+    ClassicEngineBoot.getInstance().getEditableConfig().setConfigProperty
+        (ParallelBundleLoader.PARALLEL_PARSING_KEY, String.valueOf(parallel));
+    // more than one thread, so that parallel parsing is used on single-processor machines as well.
+    ClassicEngineBoot.getInstance().getEditableConfig().setConfigProperty(ParallelBundleLoader.THREAD_COUNT_KEY, "4");
+    assertEquals(parallel, ParallelBundleLoader.isParallelParsingEnabled());
+
+    // make sure that each file is parsed again and not taken from a previous load.
+    ReportPrototypeCache.getInstance().clear();
+    final ResourceManager mgr = new ResourceManager();
+    mgr.registerDefaults();
+    mgr.setDataCache(new NullResourceDataCache());
+    mgr.setFactoryCache(new NullResourceFactoryCache());
+    try
+    {
+      final MasterReport report = (MasterReport) mgr.createDirectly(data, MasterReport.class).getResource();
+      final StringBuilder b = new StringBuilder();
+      describe(report, b);
+      return b.toString();
+    }
+    catch (ResourceException e)
+    {
+      return "failed: " + e.getClass().getName();
+    }
+  }
+
+  private static void describe(final Element element, final StringBuilder b)
+  {
+    b.append(element.getClass().getSimpleName()).append(' ').append(element.getName()).append('\n');
+    if (element instanceof AbstractReportDefinition)
+    {
+      final AbstractReportDefinition report = (AbstractReportDefinition) element;
+      b.append("query=").append(report.getQuery());
+      b.append(" limit=").append(report.getQueryLimit());
+      b.append(" timeout=").append(report.getQueryTimeout()).append('\n');
+
+      final DataFactory dataFactory = report.getDataFactory();
+      if (dataFactory != null)
+      {
+        final String[] queryNames = dataFactory.getQueryNames().clone();
+        Arrays.sort(queryNames);
+        b.append("data-factory=").append(dataFactory.getClass().getName());
+        b.append(' ').append(Arrays.asList(queryNames)).append('\n');
+      }
+
+      final ExpressionCollection expressions = report.getExpressions();
+      for (int i = 0; i < expressions.size(); i++)
+      {
+        b.append("expression=").append(expressions.getExpression(i).getName()).append('\n');
+      }
+    }
+    if (element instanceof MasterReport)
+    {
+      b.append("parameters=").append(((MasterReport) element).getParameterDefinition().getParameterCount());
+      b.append('\n');
+    }
+    if (element instanceof SubReport)
+    {
+      final SubReport subReport = (SubReport) element;
+      b.append("input-mappings=").append(subReport.getInputMappings().length);
+      b.append(" export-mappings=").append(subReport.getExportMappings().length).append('\n');
+    }
+    if (element instanceof Section)
+    {
+      final Section section = (Section) element;
+      for (int i = 0; i < section.getElementCount(); i++)
+      {
+        describe(section.getElement(i), b);
+      }
+    }
+  }
+
+  /**
+   * Copies the bundle, replacing the content of the given entry. If the content is null, the entry is removed.
+   */
+  private static byte[] replaceEntry(final byte[] bundle, final String entryName, final String content)
+      throws Exception
+  {
+    final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    final ZipOutputStream zout = new ZipOutputStream(bout);
+    final ZipInputStream zin = new ZipInputStream(new ByteArrayInputStream(bundle));
+    boolean found = false;
+    ZipEntry entry;
+    while ((entry = zin.getNextEntry()) != null)
+    {
+      if (entryName.equals(entry.getName()) == false)
+      {
+        zout.putNextEntry(new ZipEntry(entry.getName()));
+        IOUtils.getInstance().copyStreams(zin, zout);
+        zout.closeEntry();
+        continue;
+      }
+
+      found = true;
+      if (content != null)
+      {
+        zout.putNextEntry(new ZipEntry(entry.getName()));
+        zout.write(content.getBytes("UTF-8"));
+        zout.closeEntry();
+      }
+    }
+    zout.close();
+    assertTrue(found);
+    return bout.toByteArray();
+  }
+}
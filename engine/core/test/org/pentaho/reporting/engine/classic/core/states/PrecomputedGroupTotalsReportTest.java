@@ -0,0 +1,173 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+package org.pentaho.reporting.engine.classic.core.states;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.text.DecimalFormat;
+import java.util.Arrays;
+import javax.swing.table.DefaultTableModel;
+import javax.swing.table.TableModel;
+
+import junit.framework.TestCase;
+import org.pentaho.reporting.engine.classic.core.Band;
+import org.pentaho.reporting.engine.classic.core.ClassicEngineBoot;
+import org.pentaho.reporting.engine.classic.core.ElementAlignment;
+import org.pentaho.reporting.engine.classic.core.MasterReport;
+import org.pentaho.reporting.engine.classic.core.RelationalGroup;
+import org.pentaho.reporting.engine.classic.core.SubReport;
+import org.pentaho.reporting.engine.classic.core.elementfactory.NumberFieldElementFactory;
+import org.pentaho.reporting.engine.classic.core.function.ItemSumFunction;
+import org.pentaho.reporting.engine.classic.core.function.TotalGroupCountFunction;
+import org.pentaho.reporting.engine.classic.core.function.TotalGroupSumFunction;
+import org.pentaho.reporting.engine.classic.core.function.TotalItemCountFunction;
+import org.pentaho.reporting.engine.classic.core.modules.misc.datafactory.StaticDataFactory;
+import org.pentaho.reporting.engine.classic.core.style.FontDefinition;
+import org.pentaho.reporting.engine.classic.core.testsupport.DebugReportRunner;
+
+/**
+ * Runs the same report with and without precomputed group totals and checks that both runs produce the same output.
+ */
+public class PrecomputedGroupTotalsReportTest extends TestCase
+{
+  public PrecomputedGroupTotalsReportTest()
+  {
+  }
+
+  public PrecomputedGroupTotalsReportTest(final String name)
+  {
+    super(name);
+  }
+
+  protected void setUp() throws Exception
+  {
+    ClassicEngineBoot.getInstance().start();
+  }
+
+  public void testOutputIsIndependentOfPrecomputation() throws Exception
+  {
+    final byte[] precomputed = DebugReportRunner.createXmlTablePageable(createReport(true));
+    final byte[] prepared = DebugReportRunner.createXmlTablePageable(createReport(false));
+    assertTrue(prepared.length > 0);
+    assertTrue(new String(prepared, "UTF-8"), Arrays.equals(prepared, precomputed));
+  }
+
+  private MasterReport createReport(final boolean precompute)
+  {
+    final MasterReport report = new MasterReport();
+    report.getReportConfiguration().setConfigProperty
+        (PrecomputedGroupTotals.ENABLE_CONFIG_KEY, String.valueOf(precompute));
+    report.setDataFactory(new StaticDataFactory());
+    report.setQuery(PrecomputedGroupTotalsReportTest.class.getName() + "#createMainTableModel()");
+
+    final RelationalGroup outer = new RelationalGroup();
+    outer.setName("outer");
+    outer.addField("region");
+
+    final RelationalGroup inner = new RelationalGroup();
+    inner.setName("inner");
+    inner.addField("region");
+    inner.addField("city");
+
+    report.setRootGroup(outer);
+    report.addGroup(inner);
+
+    final TotalGroupSumFunction outerSum = new TotalGroupSumFunction();
+    outerSum.setName("outer-sum");
+    outerSum.setField("amount");
+    outerSum.setGroup("outer");
+    report.addExpression(outerSum);
+
+    final TotalItemCountFunction innerCount = new TotalItemCountFunction();
+    innerCount.setName("inner-count");
+    innerCount.setGroup("inner");
+    report.addExpression(innerCount);
+
+    final TotalGroupCountFunction groupCount = new TotalGroupCountFunction();
+    groupCount.setName("group-count");
+    groupCount.setGroup("inner");
+    groupCount.setParentGroup("outer");
+    report.addExpression(groupCount);
+
+    final ItemSumFunction runningSum = new ItemSumFunction();
+    runningSum.setName("running-sum");
+    runningSum.setField("amount");
+    runningSum.setGroup("outer");
+    report.addExpression(runningSum);
+
+    // totals are printed in the headers, so they must be known before the group's rows are processed.
+    addNumberField(outer.getHeader(), "outer-sum", 0);
+    addNumberField(outer.getHeader(), "group-count", 100);
+    addNumberField(inner.getHeader(), "inner-count", 0);
+    addNumberField(report.getItemBand(), "amount", 0);
+    addNumberField(report.getItemBand(), "running-sum", 100);
+
+    final SubReport subReport = new SubReport();
+    subReport.addInputParameter("region", "region");
+    subReport.setQuery(PrecomputedGroupTotalsReportTest.class.getName() + "#createSubReportTableModel(region)");
+
+    final RelationalGroup subGroup = new RelationalGroup();
+    subGroup.setName("sub-group");
+    subGroup.addField("product");
+    subReport.setRootGroup(subGroup);
+
+    final TotalGroupSumFunction subSum = new TotalGroupSumFunction();
+    subSum.setName("sub-sum");
+    subSum.setField("quantity");
+    subSum.setGroup("sub-group");
+    subReport.addExpression(subSum);
+
+    final TotalItemCountFunction subCount = new TotalItemCountFunction();
+    subCount.setName("sub-count");
+    subReport.addExpression(subCount);
+
+    addNumberField(subGroup.getHeader(), "sub-sum", 0);
+    addNumberField(subReport.getReportHeader(), "sub-count", 0);
+    addNumberField(subReport.getItemBand(), "quantity", 0);
+
+    report.getItemBand().addSubReport(subReport);
+    return report;
+  }
+
+  private static void addNumberField(final Band band, final String field, final int x)
+  {
+    band.addElement(NumberFieldElementFactory.createNumberElement
+        (field + "-" + x, new Rectangle(x, 0, 100, 20), Color.BLACK, ElementAlignment.LEFT,
+            new FontDefinition("Arial", 10), "-", new DecimalFormat("0.00"), field));
+  }
+
+  public static TableModel createMainTableModel()
+  {
+    final DefaultTableModel model = new DefaultTableModel(new Object[]{"region", "city", "amount"}, 0);
+    model.addRow(new Object[]{"east", "a", Integer.valueOf(1)});
+    model.addRow(new Object[]{"east", "a", Integer.valueOf(2)});
+    model.addRow(new Object[]{"east", "b", Integer.valueOf(3)});
+    model.addRow(new Object[]{"west", "b", Integer.valueOf(4)});
+    model.addRow(new Object[]{"west", "c", null});
+    model.addRow(new Object[]{"west", "c", Integer.valueOf(6)});
+    return model;
+  }
+
+  public static TableModel createSubReportTableModel(final String region)
+  {
+    final DefaultTableModel model = new DefaultTableModel(new Object[]{"product", "quantity"}, 0);
+    model.addRow(new Object[]{region + "-x", Integer.valueOf(10)});
+    model.addRow(new Object[]{region + "-x", Integer.valueOf(20)});
+    model.addRow(new Object[]{region + "-y", Integer.valueOf(5)});
+    return model;
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+
+package org.pentaho.reporting.engine.classic.core.states;
+
+import java.math.BigDecimal;
+import javax.swing.table.DefaultTableModel;
+
+import junit.framework.TestCase;
+import org.pentaho.reporting.engine.classic.core.ClassicEngineBoot;
+import org.pentaho.reporting.engine.classic.core.MasterReport;
+import org.pentaho.reporting.engine.classic.core.RelationalGroup;
+import org.pentaho.reporting.engine.classic.core.function.Expression;
+import org.pentaho.reporting.engine.classic.core.function.TotalGroupCountFunction;
+import org.pentaho.reporting.engine.classic.core.function.TotalGroupSumFunction;
+import org.pentaho.reporting.engine.classic.core.function.TotalItemCountFunction;
+import org.pentaho.reporting.engine.classic.core.function.TotalItemMaxFunction;
+
+public class PrecomputedGroupTotalsTest extends TestCase
+{
+  public PrecomputedGroupTotalsTest()
+  {
+  }
+
+  public PrecomputedGroupTotalsTest(final String name)
+  {
+    super(name);
+  }
+
+  protected void setUp() throws Exception
+  {
+    ClassicEngineBoot.getInstance().start();
+  }
+
+  private MasterReport createReport()
+  {
+    final RelationalGroup outer = new RelationalGroup();
+    outer.setName("outer");
+    outer.addField("region");
+
+    final RelationalGroup inner = new RelationalGroup();
+    inner.setName("inner");
+    inner.addField("region");
+    inner.addField("city");
+
+    final MasterReport report = new MasterReport();
+    report.setRootGroup(outer);
+    report.addGroup(inner);
+    return report;
+  }
+
+  private DefaultTableModel createData()
+  {
+    final DefaultTableModel model = new DefaultTableModel(new Object[]{"region", "city", "amount"}, 0);
+    model.addRow(new Object[]{"east", "a", Integer.valueOf(1)});
+    model.addRow(new Object[]{"east", "a", Integer.valueOf(2)});
+    model.addRow(new Object[]{"east", "b", Integer.valueOf(3)});
+    model.addRow(new Object[]{"west", "b", Integer.valueOf(4)});
+    model.addRow(new Object[]{"west", "c", null});
+    return model;
+  }
+
+  public void testGroupTotals()
+  {
+    final TotalGroupSumFunction sum = new TotalGroupSumFunction();
+    sum.setName("sum");
+    sum.setField("amount");
+    sum.setGroup("outer");
+
+    final TotalItemCountFunction count = new TotalItemCountFunction();
+    count.setName("count");
+    count.setGroup("inner");
+
+    final TotalItemMaxFunction max = new TotalItemMaxFunction();
+    max.setName("max");
+    max.setField("amount");
+
+    final TotalGroupCountFunction groupCount = new TotalGroupCountFunction();
+    groupCount.setName("group-count");
+    groupCount.setGroup("inner");
+    groupCount.setParentGroup("outer");
+
+    final PrecomputedGroupTotals totals = PrecomputedGroupTotals.compute
+        (createReport(), createData(), null, new Expression[]{sum, count, max, groupCount});
+    assertNotNull(totals);
+
+    assertEquals(new BigDecimal(6), totals.getValue(sum.getPrecomputedAggregation(), 0));
+    assertEquals(new BigDecimal(6), totals.getValue(sum.getPrecomputedAggregation(), 2));
+    assertEquals(new BigDecimal(4), totals.getValue(sum.getPrecomputedAggregation(), 3));
+    // before the first group started, the last group's value is returned.
+    assertEquals(new BigDecimal(4), totals.getValue(sum.getPrecomputedAggregation(), -1));
+
+    assertEquals(Integer.valueOf(2), totals.getValue(count.getPrecomputedAggregation(), 1));
+    assertEquals(Integer.valueOf(1), totals.getValue(count.getPrecomputedAggregation(), 2));
+    assertEquals(Integer.valueOf(1), totals.getValue(count.getPrecomputedAggregation(), 3));
+
+    assertEquals(Integer.valueOf(4), totals.getValue(max.getPrecomputedAggregation(), 0));
+
+    assertEquals(Integer.valueOf(2), totals.getValue(groupCount.getPrecomputedAggregation(), 0));
+    assertEquals(Integer.valueOf(2), totals.getValue(groupCount.getPrecomputedAggregation(), 4));
+  }
+
+  public void testComputedFieldsAreNotPrecomputed()
+  {
+    final TotalGroupSumFunction sum = new TotalGroupSumFunction();
+    sum.setName("sum");
+    sum.setField("computed");
+
+    final PrecomputedGroupTotals totals = PrecomputedGroupTotals.compute
+        (createReport(), createData(), null, new Expression[]{sum});
+    assertNull(totals);
+  }
+}
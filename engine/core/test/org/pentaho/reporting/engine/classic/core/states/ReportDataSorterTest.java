@@ -0,0 +1,142 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+
+package org.pentaho.reporting.engine.classic.core.states;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.Random;
+import javax.swing.table.DefaultTableModel;
+import javax.swing.table.TableModel;
+
+import junit.framework.TestCase;
+
+public class ReportDataSorterTest extends TestCase
+{
+  public ReportDataSorterTest()
+  {
+  }
+
+  public ReportDataSorterTest(final String name)
+  {
+    super(name);
+  }
+
+  private DefaultTableModel createData(final int rows)
+  {
+    final Random random = new Random(42);
+    final DefaultTableModel model = new DefaultTableModel(new Object[]{"group", "value", "row"}, 0);
+    for (int i = 0; i < rows; i++)
+    {
+      final Object group = (i % 17 == 0) ? null : "g" + random.nextInt(10);
+      model.addRow(new Object[]{group, Integer.valueOf(random.nextInt(100)), Integer.valueOf(i)});
+    }
+    return model;
+  }
+
+  private void assertSortedAndStable(final TableModel sorted)
+  {
+    for (int row = 1; row < sorted.getRowCount(); row++)
+    {
+      final int groupOrder = ReportDataSorter.compareValues(sorted.getValueAt(row - 1, 0), sorted.getValueAt(row, 0));
+      assertTrue(groupOrder <= 0);
+      if (groupOrder == 0)
+      {
+        // rows with equal keys keep their original order.
+        final int previous = (Integer) sorted.getValueAt(row - 1, 2);
+        final int current = (Integer) sorted.getValueAt(row, 2);
+        assertTrue(previous < current);
+      }
+    }
+  }
+
+  public void testSortWithKeyCache()
+  {
+    final DefaultTableModel data = createData(1000);
+    final TableModel sorted = ReportDataSorter.sort(data, new String[]{"group"}, Integer.MAX_VALUE);
+    assertEquals(1000, sorted.getRowCount());
+    assertSortedAndStable(sorted);
+  }
+
+  public void testSortWithoutKeyCache()
+  {
+    final DefaultTableModel data = createData(1000);
+    final TableModel sorted = ReportDataSorter.sort(data, new String[]{"group"}, 0);
+    assertEquals(1000, sorted.getRowCount());
+    assertSortedAndStable(sorted);
+  }
+
+  public void testSortedDataIsNotWrapped()
+  {
+    final DefaultTableModel data = createData(100);
+    final TableModel sorted = ReportDataSorter.sort(data, new String[]{"row"}, Integer.MAX_VALUE);
+    assertSame(data, sorted);
+  }
+
+  public void testLargeNumbersAreComparedExactly()
+  {
+    final long large = (1L << 53) + 1;
+    assertTrue(ReportDataSorter.compareValues(Long.valueOf(large - 1), Long.valueOf(large)) < 0);
+    assertTrue(ReportDataSorter.compareValues(Long.valueOf(large), Double.valueOf(large - 1)) > 0);
+    assertTrue(ReportDataSorter.compareValues
+        (new BigDecimal("9007199254740993.1"), new BigDecimal("9007199254740993.2")) < 0);
+    assertTrue(ReportDataSorter.compareValues(new BigInteger("9007199254740993"), Long.valueOf(large)) == 0);
+    assertTrue(ReportDataSorter.compareValues(new BigDecimal("2.50"), Double.valueOf(2.5)) == 0);
+    assertTrue(ReportDataSorter.compareValues(Double.valueOf(-0.0), Integer.valueOf(0)) == 0);
+    assertTrue(ReportDataSorter.compareValues(Double.valueOf(-0.0), Double.valueOf(0.0)) == 0);
+    assertTrue(ReportDataSorter.compareValues(Double.valueOf(Double.POSITIVE_INFINITY), new BigDecimal("1E400")) > 0);
+    assertTrue(ReportDataSorter.compareValues(Double.valueOf(Double.NaN), Double.valueOf(Double.POSITIVE_INFINITY)) > 0);
+  }
+
+  public void testMixedTypesAreOrderedConsistently()
+  {
+    final Object[] values = new Object[]{
+        "b", Long.valueOf(Long.MAX_VALUE), new Date(1000), Double.valueOf(Double.NaN), Integer.valueOf(3),
+        new BigDecimal("3.0000000000000000001"), Boolean.TRUE, new Timestamp(500), "a", Double.valueOf(3),
+        Long.valueOf(Long.MAX_VALUE - 1), Double.valueOf(Double.NEGATIVE_INFINITY), Boolean.FALSE, null
+    };
+
+    for (int i = 0; i < values.length; i++)
+    {
+      for (int j = 0; j < values.length; j++)
+      {
+        final int ij = Integer.signum(ReportDataSorter.compareValues(values[i], values[j]));
+        assertEquals(-ij, Integer.signum(ReportDataSorter.compareValues(values[j], values[i])));
+        for (int k = 0; k < values.length; k++)
+        {
+          final int jk = Integer.signum(ReportDataSorter.compareValues(values[j], values[k]));
+          if (ij == jk && ij != 0)
+          {
+            assertEquals(ij, Integer.signum(ReportDataSorter.compareValues(values[i], values[k])));
+          }
+        }
+      }
+    }
+
+    // numbers sort before all other types, dates and timestamps are compared by their time.
+    assertTrue(ReportDataSorter.compareValues(Integer.valueOf(3), "a") < 0);
+    assertTrue(ReportDataSorter.compareValues(new Timestamp(500), new Date(1000)) < 0);
+  }
+
+  public void testUnknownFieldsAreIgnored()
+  {
+    final DefaultTableModel data = createData(100);
+    assertSame(data, ReportDataSorter.sort(data, new String[]{"unknown"}, Integer.MAX_VALUE));
+  }
+}
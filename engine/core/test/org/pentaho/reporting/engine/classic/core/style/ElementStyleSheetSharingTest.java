@@ -0,0 +1,93 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+
+package org.pentaho.reporting.engine.classic.core.style;
+
+import java.awt.Color;
+
+import junit.framework.TestCase;
+import org.pentaho.reporting.engine.classic.core.ClassicEngineBoot;
+
+public class ElementStyleSheetSharingTest extends TestCase
+{
+  public ElementStyleSheetSharingTest()
+  {
+  }
+
+  public ElementStyleSheetSharingTest(final String s)
+  {
+    super(s);
+  }
+
+  protected void setUp() throws Exception
+  {
+    ClassicEngineBoot.getInstance().start();
+  }
+
+  public void testCloneIsIndependent()
+  {
+    final ElementStyleSheet style = new ElementStyleSheet();
+    style.setStyleProperty(ElementStyleKeys.PAINT, Color.red);
+    style.setStyleProperty(ElementStyleKeys.MIN_WIDTH, new Float(100));
+
+    final ElementStyleSheet clone = style.clone();
+    assertEquals(Color.red, clone.getStyleProperty(ElementStyleKeys.PAINT));
+
+    clone.setStyleProperty(ElementStyleKeys.PAINT, Color.blue);
+    clone.setStyleProperty(ElementStyleKeys.MIN_WIDTH, null);
+    assertEquals(Color.red, style.getStyleProperty(ElementStyleKeys.PAINT));
+    assertEquals(new Float(100), style.getStyleProperty(ElementStyleKeys.MIN_WIDTH));
+    assertEquals(Color.blue, clone.getStyleProperty(ElementStyleKeys.PAINT));
+    assertNull(clone.getStyleProperty(ElementStyleKeys.MIN_WIDTH));
+
+    style.setStyleProperty(ElementStyleKeys.MIN_HEIGHT, new Float(10));
+    assertNull(clone.getStyleProperty(ElementStyleKeys.MIN_HEIGHT));
+  }
+
+  public void testInternedStylesShareValues()
+  {
+    final ElementStyleSheet first = new ElementStyleSheet();
+    first.setStyleProperty(ElementStyleKeys.MIN_WIDTH, new Float(100));
+    first.setStyleProperty(TextStyleKeys.FONT, new String("Serif"));
+    final ElementStyleSheet second = new ElementStyleSheet();
+    second.setStyleProperty(ElementStyleKeys.MIN_WIDTH, new Float(100));
+    second.setStyleProperty(TextStyleKeys.FONT, new String("Serif"));
+
+    first.internStyleData();
+    second.internStyleData();
+    assertSame(first.getStyleProperty(TextStyleKeys.FONT), second.getStyleProperty(TextStyleKeys.FONT));
+    assertSame(first.getStyleProperty(ElementStyleKeys.MIN_WIDTH), second.getStyleProperty(ElementStyleKeys.MIN_WIDTH));
+
+    second.setStyleProperty(TextStyleKeys.FONT, "SansSerif");
+    assertEquals("Serif", first.getStyleProperty(TextStyleKeys.FONT));
+    assertEquals("SansSerif", second.getStyleProperty(TextStyleKeys.FONT));
+    assertTrue(second.isLocalKey(TextStyleKeys.FONT));
+  }
+
+  public void testClearDoesNotAffectSharedCopies()
+  {
+    final ElementStyleSheet style = new ElementStyleSheet();
+    style.setStyleProperty(ElementStyleKeys.PAINT, Color.red);
+    style.internStyleData();
+
+    final ElementStyleSheet copy = new ElementStyleSheet();
+    copy.copyFrom(style);
+    copy.clear();
+    assertNull(copy.getStyleProperty(ElementStyleKeys.PAINT));
+    assertEquals(Color.red, style.getStyleProperty(ElementStyleKeys.PAINT));
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+
+
+package org.pentaho.reporting.engine.classic.core.util;
+
+import junit.framework.TestCase;
+
+public class HyperLogLogTest extends TestCase
+{
+  public HyperLogLogTest()
+  {
+  }
+
+  public void testSmallCardinalityIsExact()
+  {
+    final HyperLogLog hll = new HyperLogLog();
+    for (int i = 0; i < 100; i++)
+    {
+      hll.add(i);
+      hll.add(i);
+    }
+    assertEquals(100, hll.getCardinality());
+  }
+
+  public void testLargeCardinalityWithinError()
+  {
+    final HyperLogLog hll = new HyperLogLog(14);
+    for (int i = 0; i < 1000000; i++)
+    {
+      hll.add(Long.valueOf(i * 31L));
+    }
+    final long estimate = hll.getCardinality();
+    assertTrue(String.valueOf(estimate), Math.abs(estimate - 1000000) < 30000);
+  }
+
+  public void testStringValues()
+  {
+    final HyperLogLog hll = new HyperLogLog(12);
+    for (int i = 0; i < 10000; i++)
+    {
+      hll.add("customer-" + (i % 5000));
+    }
+    final long estimate = hll.getCardinality();
+    assertTrue(String.valueOf(estimate), Math.abs(estimate - 5000) < 300);
+  }
+
+  public void testStringsWithCollidingHashCodes()
+  {
+    // "Aa" and "BB" share the same String.hashCode()
+    final HyperLogLog hll = new HyperLogLog();
+    hll.add("Aa");
+    hll.add("BB");
+    assertEquals(2, hll.getCardinality());
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+
+
+package org.pentaho.reporting.engine.classic.core.util;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import junit.framework.TestCase;
+
+public class ImageContentKeyTest extends TestCase
+{
+  public ImageContentKeyTest()
+  {
+  }
+
+  public ImageContentKeyTest(final String name)
+  {
+    super(name);
+  }
+
+  private BufferedImage createImage(final Color color)
+  {
+    final BufferedImage image = new BufferedImage(20, 10, BufferedImage.TYPE_INT_ARGB);
+    final Graphics2D graphics = image.createGraphics();
+    graphics.setColor(color);
+    graphics.fillRect(2, 2, 10, 5);
+    graphics.dispose();
+    return image;
+  }
+
+  public void testEqualPixelsGiveEqualKeys()
+  {
+    final ImageContentKey key1 = ImageContentKey.createFromImage(createImage(Color.RED), "png");
+    final ImageContentKey key2 = ImageContentKey.createFromImage(createImage(Color.RED), "png");
+    assertNotNull(key1);
+    assertEquals(key1, key2);
+    assertEquals(key1.hashCode(), key2.hashCode());
+  }
+
+  public void testDifferentPixelsOrVariantsGiveDifferentKeys()
+  {
+    final ImageContentKey red = ImageContentKey.createFromImage(createImage(Color.RED), "png");
+    assertFalse(red.equals(ImageContentKey.createFromImage(createImage(Color.BLUE), "png")));
+    assertFalse(red.equals(ImageContentKey.createFromImage(createImage(Color.RED), "jpeg")));
+  }
+
+  public void testDataKeys()
+  {
+    final byte[] data = new byte[]{1, 2, 3, 4};
+    assertEquals(ImageContentKey.createFromData(data), ImageContentKey.createFromData(data.clone()));
+    assertFalse(ImageContentKey.createFromData(data).equals(ImageContentKey.createFromData(new byte[]{1, 2, 3})));
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2001 - 2013 Object Refinery Ltd, Pentaho Corporation and Contributors..  All rights reserved.
+ */
+
+package org.pentaho.reporting.engine.classic.core.util.beans;
+
+import java.awt.Point;
+import java.beans.IndexedPropertyDescriptor;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+
+import junit.framework.TestCase;
+import org.pentaho.reporting.engine.classic.core.util.TestBean;
+
+public class BeanPropertyIndexTest extends TestCase
+{
+  public BeanPropertyIndexTest()
+  {
+  }
+
+  public BeanPropertyIndexTest(final String name)
+  {
+    super(name);
+  }
+
+  private static BeanPropertyIndex createIndex(final Class[] classes) throws Exception
+  {
+    final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    BeanPropertyIndex.writeIndex(classes, bout);
+    return BeanPropertyIndex.createIndex(new ByteArrayInputStream(bout.toByteArray()));
+  }
+
+  private static void assertSameDescriptors(final Class beanClass,
+                                            final PropertyDescriptor[] descriptors) throws Exception
+  {
+    final PropertyDescriptor[] expected = Introspector.getBeanInfo(beanClass).getPropertyDescriptors();
+    assertEquals(expected.length, descriptors.length);
+
+    final HashMap<String, PropertyDescriptor> map = new HashMap<String, PropertyDescriptor>();
+    for (int i = 0; i < descriptors.length; i++)
+    {
+      map.put(descriptors[i].getName(), descriptors[i]);
+    }
+    for (int i = 0; i < expected.length; i++)
+    {
+      final PropertyDescriptor expectedDescriptor = expected[i];
+      final PropertyDescriptor descriptor = map.get(expectedDescriptor.getName());
+      assertNotNull(descriptor);
+      assertEquals(expectedDescriptor.getReadMethod(), descriptor.getReadMethod());
+      assertEquals(expectedDescriptor.getWriteMethod(), descriptor.getWriteMethod());
+      assertEquals(expectedDescriptor.getPropertyType(), descriptor.getPropertyType());
+      assertEquals(expectedDescriptor instanceof IndexedPropertyDescriptor,
+          descriptor instanceof IndexedPropertyDescriptor);
+      if (expectedDescriptor instanceof IndexedPropertyDescriptor)
+      {
+        final IndexedPropertyDescriptor expectedIndexed = (IndexedPropertyDescriptor) expectedDescriptor;
+        final IndexedPropertyDescriptor indexed = (IndexedPropertyDescriptor) descriptor;
+        assertEquals(expectedIndexed.getIndexedReadMethod(), indexed.getIndexedReadMethod());
+        assertEquals(expectedIndexed.getIndexedWriteMethod(), indexed.getIndexedWriteMethod());
+      }
+    }
+  }
+
+  public void testIndexedClass() throws Exception
+  {
+    final BeanPropertyIndex index = createIndex(new Class[]{TestBean.class});
+    final PropertyDescriptor[] descriptors = index.getPropertyDescriptors(TestBean.class);
+    assertSameDescriptors(TestBean.class, descriptors);
+    assertSame(descriptors, index.getPropertyDescriptors(TestBean.class));
+  }
+
+  public void testUnindexedClassIsIntrospected() throws Exception
+  {
+    final BeanPropertyIndex index = createIndex(new Class[]{TestBean.class});
+    assertSameDescriptors(Point.class, index.getPropertyDescriptors(Point.class));
+  }
+}
@@ -0,0 +1,1057 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2009 Pentaho Corporation.  All rights reserved.
+ */
+
+package org.pentaho.reporting.libraries.base.encoder;
+
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.ImageObserver;
+import java.awt.image.PixelGrabber;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import org.pentaho.reporting.libraries.base.util.MemoryByteArrayOutputStream;
+import org.pentaho.reporting.libraries.base.util.WaitingImageObserver;
+
+/**
+ * A PNG encoder that reads the pixels of buffered images directly from their raster. Unless a fixed filter is
+ * given, the scanline filter is chosen per image by compressing a sample with each candidate strategy. Large images
+ * are split into stripes that are compressed in parallel and joined into a single zlib stream.
+ * <p/>
+ * The encoder always writes 8-bit truecolor images, with or without an alpha channel.
+ *
+ * @author Thomas Morgner
+ */
+public class FastPngEncoder implements ImageEncoder
+{
+  /**
+   * Selects the filter strategy that compresses a sample of the image best.
+   */
+  public static final int FILTER_ADAPTIVE = -1;
+  public static final int FILTER_NONE = 0;
+  public static final int FILTER_SUB = 1;
+  public static final int FILTER_UP = 2;
+  public static final int FILTER_AVERAGE = 3;
+  public static final int FILTER_PAETH = 4;
+  /**
+   * Selects the filter with the smallest sum of absolute differences for each scanline.
+   */
+  private static final int FILTER_PER_SCANLINE = 5;
+
+  private static final byte[] SIGNATURE = {(byte) 137, 80, 78, 71, 13, 10, 26, 10};
+  private static final byte[] IHDR = {73, 72, 68, 82};
+  private static final byte[] IDAT = {73, 68, 65, 84};
+  private static final byte[] IEND = {73, 69, 78, 68};
+
+  private static final int CHUNK_SIZE = 65536;
+  private static final int MIN_STRIPE_SIZE = 256 * 1024;
+  private static final int SAMPLE_SIZE = 64 * 1024;
+  private static final int[] CANDIDATE_FILTERS =
+      {FILTER_NONE, FILTER_SUB, FILTER_UP, FILTER_PAETH, FILTER_PER_SCANLINE};
+
+  /**
+   * Reads scanlines of an image as RGB or RGBA bytes.
+   */
+  private abstract static class PixelSource
+  {
+    protected final int width;
+    protected final boolean alpha;
+
+    protected PixelSource(final int width, final boolean alpha)
+    {
+      this.width = width;
+      this.alpha = alpha;
+    }
+
+    /**
+     * Reads a scanline. The scratch array has the width of the image and can be used to hold ARGB values.
+     */
+    public abstract void readRow(final int y, final byte[] target, final int[] scratch) throws IOException;
+
+    public boolean isThreadSafe()
+    {
+      return true;
+    }
+
+    protected final void convertARGB(final int[] argb, final int offset, final byte[] target, final boolean hasAlpha)
+    {
+      int pos = 0;
+      final int end = offset + width;
+      if (alpha)
+      {
+        for (int i = offset; i < end; i++)
+        {
+          final int pixel = argb[i];
+          target[pos] = (byte) (pixel >> 16);
+          target[pos + 1] = (byte) (pixel >> 8);
+          target[pos + 2] = (byte) pixel;
+          target[pos + 3] = hasAlpha ? (byte) (pixel >>> 24) : (byte) 0xff;
+          pos += 4;
+        }
+      }
+      else
+      {
+        for (int i = offset; i < end; i++)
+        {
+          final int pixel = argb[i];
+          target[pos] = (byte) (pixel >> 16);
+          target[pos + 1] = (byte) (pixel >> 8);
+          target[pos + 2] = (byte) pixel;
+          pos += 3;
+        }
+      }
+    }
+  }
+
+  /**
+   * Reads the pixels of TYPE_INT_RGB and TYPE_INT_ARGB images from the raster's data array.
+   */
+  private static class IntRasterPixelSource extends PixelSource
+  {
+    private final int[] data;
+    private final int offset;
+    private final int scanlineStride;
+    private final boolean hasAlpha;
+
+    private IntRasterPixelSource(final int width,
+                                 final boolean alpha,
+                                 final int[] data,
+                                 final int offset,
+                                 final int scanlineStride,
+                                 final boolean hasAlpha)
+    {
+      super(width, alpha);
+      this.data = data;
+      this.offset = offset;
+      this.scanlineStride = scanlineStride;
+      this.hasAlpha = hasAlpha;
+    }
+
+    public void readRow(final int y, final byte[] target, final int[] scratch)
+    {
+      convertARGB(data, offset + y * scanlineStride, target, hasAlpha);
+    }
+  }
+
+  /**
+   * Reads the pixels of TYPE_3BYTE_BGR and TYPE_4BYTE_ABGR images from the raster's data array.
+   */
+  private static class ByteRasterPixelSource extends PixelSource
+  {
+    private final byte[] data;
+    private final int offset;
+    private final int scanlineStride;
+    private final int pixelStride;
+    private final int redOffset;
+    private final int greenOffset;
+    private final int blueOffset;
+    private final int alphaOffset;
+
+    private ByteRasterPixelSource(final int width,
+                                  final boolean alpha,
+                                  final byte[] data,
+                                  final int offset,
+                                  final int scanlineStride,
+                                  final int pixelStride,
+                                  final int[] bandOffsets)
+    {
+      super(width, alpha);
+      this.data = data;
+      this.offset = offset;
+      this.scanlineStride = scanlineStride;
+      this.pixelStride = pixelStride;
+      this.redOffset = bandOffsets[0];
+      this.greenOffset = bandOffsets[1];
+      this.blueOffset = bandOffsets[2];
+      this.alphaOffset = bandOffsets.length > 3 ? bandOffsets[3] : -1;
+    }
+
+    public void readRow(final int y, final byte[] target, final int[] scratch)
+    {
+      int src = offset + y * scanlineStride;
+      int pos = 0;
+      for (int x = 0; x < width; x++)
+      {
+        target[pos] = data[src + redOffset];
+        target[pos + 1] = data[src + greenOffset];
+        target[pos + 2] = data[src + blueOffset];
+        if (alpha)
+        {
+          target[pos + 3] = alphaOffset >= 0 ? data[src + alphaOffset] : (byte) 0xff;
+          pos += 4;
+        }
+        else
+        {
+          pos += 3;
+        }
+        src += pixelStride;
+      }
+    }
+  }
+
+  /**
+   * Reads the pixels of any other buffered image via getRGB.
+   */
+  private static class BufferedImagePixelSource extends PixelSource
+  {
+    private final BufferedImage image;
+
+    private BufferedImagePixelSource(final int width, final boolean alpha, final BufferedImage image)
+    {
+      super(width, alpha);
+      this.image = image;
+    }
+
+    public void readRow(final int y, final byte[] target, final int[] scratch)
+    {
+      image.getRGB(0, y, width, 1, scratch, 0, width);
+      convertARGB(scratch, 0, target, true);
+    }
+  }
+
+  /**
+   * Reads the pixels of arbitrary images in stripes via a PixelGrabber. Rows must be read in order.
+   */
+  private static class GrabbingPixelSource extends PixelSource
+  {
+    private final Image image;
+    private final int height;
+    private final int stripeHeight;
+    private int[] pixels;
+    private int stripeStart;
+    private int stripeRows;
+
+    private GrabbingPixelSource(final int width, final int height, final boolean alpha, final Image image)
+    {
+      super(width, alpha);
+      this.image = image;
+      this.height = height;
+      this.stripeHeight = Math.max(1, Math.min(height, 65536 / width));
+      this.pixels = new int[width * stripeHeight];
+      this.stripeStart = -1;
+    }
+
+    public boolean isThreadSafe()
+    {
+      return false;
+    }
+
+    public void readRow(final int y, final byte[] target, final int[] scratch) throws IOException
+    {
+      if (stripeStart < 0 || y < stripeStart || y >= stripeStart + stripeRows)
+      {
+        stripeStart = y;
+        stripeRows = Math.min(stripeHeight, height - y);
+        final PixelGrabber grabber = new PixelGrabber(image, 0, y, width, stripeRows, pixels, 0, width);
+        try
+        {
+          grabber.grabPixels();
+        }
+        catch (InterruptedException e)
+        {
+          throw new IOException("Interrupted while waiting for pixels");
+        }
+        if ((grabber.getStatus() & ImageObserver.ABORT) != 0)
+        {
+          throw new IOException("Image fetch aborted or errored");
+        }
+      }
+      convertARGB(pixels, (y - stripeStart) * width, target, true);
+    }
+  }
+
+  /**
+   * Filters scanlines and feeds them into a deflater.
+   */
+  private static class ScanlineCompressor
+  {
+    private final PixelSource source;
+    private final int bytesPerPixel;
+    private final int rowBytes;
+    private final int filter;
+    private final int[] scratch;
+    private byte[] previousRow;
+    private byte[] currentRow;
+    private final byte[][] candidates;
+    private final byte[] deflateBuffer;
+
+    private ScanlineCompressor(final PixelSource source,
+                               final int width,
+                               final int bytesPerPixel,
+                               final int filter)
+    {
+      this.source = source;
+      this.bytesPerPixel = bytesPerPixel;
+      this.rowBytes = width * bytesPerPixel;
+      this.filter = filter;
+      this.scratch = new int[width];
+      this.previousRow = new byte[rowBytes];
+      this.currentRow = new byte[rowBytes];
+      if (filter == FILTER_PER_SCANLINE)
+      {
+        this.candidates = new byte[5][rowBytes + 1];
+      }
+      else
+      {
+        this.candidates = new byte[1][rowBytes + 1];
+      }
+      this.deflateBuffer = new byte[CHUNK_SIZE];
+    }
+
+    /**
+     * Compresses the rows [startRow, endRow) and writes the deflated data to the given stream.
+     *
+     * @return the checksum of the uncompressed data.
+     */
+    public long compress(final int startRow,
+                         final int endRow,
+                         final Deflater deflater,
+                         final boolean lastStripe,
+                         final OutputStream out) throws IOException
+    {
+      final Adler32 adler = new Adler32();
+      if (startRow > 0)
+      {
+        source.readRow(startRow - 1, previousRow, scratch);
+      }
+
+      for (int y = startRow; y < endRow; y++)
+      {
+        source.readRow(y, currentRow, scratch);
+        final byte[] filtered = filterRow(y == 0);
+        adler.update(filtered, 0, rowBytes + 1);
+        deflater.setInput(filtered, 0, rowBytes + 1);
+        while (deflater.needsInput() == false)
+        {
+          final int length = deflater.deflate(deflateBuffer, 0, deflateBuffer.length);
+          out.write(deflateBuffer, 0, length);
+        }
+
+        final byte[] tmp = previousRow;
+        previousRow = currentRow;
+        currentRow = tmp;
+      }
+
+      if (lastStripe)
+      {
+        deflater.finish();
+        while (deflater.finished() == false)
+        {
+          final int length = deflater.deflate(deflateBuffer, 0, deflateBuffer.length);
+          out.write(deflateBuffer, 0, length);
+        }
+      }
+      else
+      {
+        // flush to a byte boundary, so that the next stripe's data can be appended.
+        int length;
+        do
+        {
+          length = deflater.deflate(deflateBuffer, 0, deflateBuffer.length, Deflater.SYNC_FLUSH);
+          out.write(deflateBuffer, 0, length);
+        }
+        while (length == deflateBuffer.length);
+      }
+      return adler.getValue();
+    }
+
+    private byte[] filterRow(final boolean firstRow)
+    {
+      if (filter != FILTER_PER_SCANLINE)
+      {
+        final byte[] target = candidates[0];
+        applyFilter(filter, target);
+        return target;
+      }
+
+      if (firstRow)
+      {
+        // the previous row is zero, so only 'none' and 'sub' differ.
+        applyFilter(FILTER_SUB, candidates[FILTER_SUB]);
+        applyFilter(FILTER_NONE, candidates[FILTER_NONE]);
+        if (sumOfAbsolutes(candidates[FILTER_SUB]) < sumOfAbsolutes(candidates[FILTER_NONE]))
+        {
+          return candidates[FILTER_SUB];
+        }
+        return candidates[FILTER_NONE];
+      }
+
+      int bestFilter = FILTER_NONE;
+      long bestSum = Long.MAX_VALUE;
+      for (int f = FILTER_NONE; f <= FILTER_PAETH; f++)
+      {
+        applyFilter(f, candidates[f]);
+        final long sum = sumOfAbsolutes(candidates[f]);
+        if (sum < bestSum)
+        {
+          bestSum = sum;
+          bestFilter = f;
+        }
+      }
+      return candidates[bestFilter];
+    }
+
+    private long sumOfAbsolutes(final byte[] filtered)
+    {
+      long sum = 0;
+      for (int i = 1; i <= rowBytes; i++)
+      {
+        final int value = filtered[i];
+        sum += value < 0 ? -value : value;
+      }
+      return sum;
+    }
+
+    private void applyFilter(final int filterType, final byte[] target)
+    {
+      final byte[] cur = currentRow;
+      final byte[] prev = previousRow;
+      final int bpp = bytesPerPixel;
+      target[0] = (byte) filterType;
+      switch (filterType)
+      {
+        case FILTER_SUB:
+        {
+          System.arraycopy(cur, 0, target, 1, bpp);
+          for (int i = bpp; i < rowBytes; i++)
+          {
+            target[i + 1] = (byte) (cur[i] - cur[i - bpp]);
+          }
+          break;
+        }
+        case FILTER_UP:
+        {
+          for (int i = 0; i < rowBytes; i++)
+          {
+            target[i + 1] = (byte) (cur[i] - prev[i]);
+          }
+          break;
+        }
+        case FILTER_AVERAGE:
+        {
+          for (int i = 0; i < bpp; i++)
+          {
+            target[i + 1] = (byte) (cur[i] - ((prev[i] & 0xff) >> 1));
+          }
+          for (int i = bpp; i < rowBytes; i++)
+          {
+            target[i + 1] = (byte) (cur[i] - (((cur[i - bpp] & 0xff) + (prev[i] & 0xff)) >> 1));
+          }
+          break;
+        }
+        case FILTER_PAETH:
+        {
+          for (int i = 0; i < bpp; i++)
+          {
+            target[i + 1] = (byte) (cur[i] - prev[i]);
+          }
+          for (int i = bpp; i < rowBytes; i++)
+          {
+            final int a = cur[i - bpp] & 0xff;
+            final int b = prev[i] & 0xff;
+            final int c = prev[i - bpp] & 0xff;
+            final int p = a + b - c;
+            final int pa = Math.abs(p - a);
+            final int pb = Math.abs(p - b);
+            final int pc = Math.abs(p - c);
+            final int predictor;
+            if (pa <= pb && pa <= pc)
+            {
+              predictor = a;
+            }
+            else if (pb <= pc)
+            {
+              predictor = b;
+            }
+            else
+            {
+              predictor = c;
+            }
+            target[i + 1] = (byte) (cur[i] - predictor);
+          }
+          break;
+        }
+        default:
+        {
+          System.arraycopy(cur, 0, target, 1, rowBytes);
+        }
+      }
+    }
+  }
+
+  private static class StripeResult
+  {
+    private final byte[] data;
+    private final long adler;
+    private final long length;
+
+    private StripeResult(final byte[] data, final long adler, final long length)
+    {
+      this.data = data;
+      this.adler = adler;
+      this.length = length;
+    }
+  }
+
+  private static class StripeTask implements Callable<StripeResult>
+  {
+    private final PixelSource source;
+    private final int compressionLevel;
+    private final int filter;
+    private final int width;
+    private final int bytesPerPixel;
+    private final int startRow;
+    private final int endRow;
+    private final boolean lastStripe;
+
+    private StripeTask(final PixelSource source,
+                       final int compressionLevel,
+                       final int filter,
+                       final int width,
+                       final int bytesPerPixel,
+                       final int startRow,
+                       final int endRow,
+                       final boolean lastStripe)
+    {
+      this.source = source;
+      this.compressionLevel = compressionLevel;
+      this.filter = filter;
+      this.width = width;
+      this.bytesPerPixel = bytesPerPixel;
+      this.startRow = startRow;
+      this.endRow = endRow;
+      this.lastStripe = lastStripe;
+    }
+
+    public StripeResult call() throws IOException
+    {
+      final Deflater deflater = new Deflater(compressionLevel, true);
+      try
+      {
+        final MemoryByteArrayOutputStream out = new MemoryByteArrayOutputStream();
+        final ScanlineCompressor compressor = new ScanlineCompressor(source, width, bytesPerPixel, filter);
+        final long adler = compressor.compress(startRow, endRow, deflater, lastStripe, out);
+        return new StripeResult(out.toByteArray(), adler, (long) (endRow - startRow) * (width * bytesPerPixel + 1));
+      }
+      finally
+      {
+        deflater.end();
+      }
+    }
+  }
+
+  /**
+   * Writes the data as a sequence of IDAT chunks.
+   */
+  private static class ChunkOutputStream extends OutputStream
+  {
+    private final OutputStream out;
+    private final CRC32 crc;
+    private final byte[] buffer;
+    private int fill;
+
+    private ChunkOutputStream(final OutputStream out)
+    {
+      this.out = out;
+      this.crc = new CRC32();
+      this.buffer = new byte[CHUNK_SIZE];
+    }
+
+    public void write(final int b) throws IOException
+    {
+      if (fill == buffer.length)
+      {
+        flushChunk();
+      }
+      buffer[fill] = (byte) b;
+      fill += 1;
+    }
+
+    public void write(final byte[] b, int off, int len) throws IOException
+    {
+      while (len > 0)
+      {
+        if (fill == buffer.length)
+        {
+          flushChunk();
+        }
+        final int count = Math.min(len, buffer.length - fill);
+        System.arraycopy(b, off, buffer, fill, count);
+        fill += count;
+        off += count;
+        len -= count;
+      }
+    }
+
+    public void flush() throws IOException
+    {
+      if (fill > 0)
+      {
+        flushChunk();
+      }
+    }
+
+    private void flushChunk() throws IOException
+    {
+      writeChunk(out, crc, IDAT, buffer, fill);
+      fill = 0;
+    }
+  }
+
+  /**
+   * Counts the bytes written, used to measure the compressed size of a sample.
+   */
+  private static class CountingOutputStream extends OutputStream
+  {
+    private long count;
+
+    private CountingOutputStream()
+    {
+    }
+
+    public void write(final int b)
+    {
+      count += 1;
+    }
+
+    public void write(final byte[] b, final int off, final int len)
+    {
+      count += len;
+    }
+  }
+
+  private static ExecutorService executor;
+
+  private int compressionLevel;
+  private int filter;
+  private boolean parallelCompression;
+
+  public FastPngEncoder()
+  {
+    this.compressionLevel = -1;
+    this.filter = FILTER_ADAPTIVE;
+    this.parallelCompression = Runtime.getRuntime().availableProcessors() > 1;
+  }
+
+  /**
+   * Returns the compression level or -1 if the level is derived from the quality given when encoding the image.
+   *
+   * @return the compression level.
+   */
+  public int getCompressionLevel()
+  {
+    return compressionLevel;
+  }
+
+  /**
+   * Defines a fixed compression level (0 = no compression, 1 = best speed, 9 = best compression). If set to -1,
+   * the level is derived from the quality given when encoding the image.
+   *
+   * @param compressionLevel the compression level.
+   */
+  public void setCompressionLevel(final int compressionLevel)
+  {
+    if (compressionLevel < -1 || compressionLevel > 9)
+    {
+      throw new IllegalArgumentException();
+    }
+    this.compressionLevel = compressionLevel;
+  }
+
+  public int getFilter()
+  {
+    return filter;
+  }
+
+  /**
+   * Defines the scanline filter. Use FILTER_ADAPTIVE to let the encoder choose the filter for each image.
+   *
+   * @param filter the filter.
+   */
+  public void setFilter(final int filter)
+  {
+    if (filter < FILTER_ADAPTIVE || filter > FILTER_PAETH)
+    {
+      throw new IllegalArgumentException();
+    }
+    this.filter = filter;
+  }
+
+  public boolean isParallelCompression()
+  {
+    return parallelCompression;
+  }
+
+  /**
+   * Defines whether large images are compressed on all available processors.
+   *
+   * @param parallelCompression true to compress large images in parallel.
+   */
+  public void setParallelCompression(final boolean parallelCompression)
+  {
+    this.parallelCompression = parallelCompression;
+  }
+
+  public void encodeImage(final Image image,
+                          final OutputStream outputStream,
+                          final float quality,
+                          final boolean encodeAlpha) throws IOException, UnsupportedEncoderException
+  {
+    if (image == null)
+    {
+      throw new NullPointerException();
+    }
+    if (outputStream == null)
+    {
+      throw new NullPointerException();
+    }
+
+    final WaitingImageObserver obs = new WaitingImageObserver(image);
+    obs.waitImageLoaded();
+    final int width = image.getWidth(obs);
+    final int height = image.getHeight(obs);
+    if (width < 1 || height < 1)
+    {
+      throw new IOException("Unable to encode an empty image.");
+    }
+
+    final int effectiveCompressionLevel;
+    if (compressionLevel == -1)
+    {
+      effectiveCompressionLevel = Math.min(9, Math.max(0, (int) (quality * 10)));
+    }
+    else
+    {
+      effectiveCompressionLevel = compressionLevel;
+    }
+
+    final int bytesPerPixel = encodeAlpha ? 4 : 3;
+    final PixelSource source = createPixelSource(image, width, height, encodeAlpha);
+
+    final int effectiveFilter;
+    if (filter == FILTER_ADAPTIVE)
+    {
+      effectiveFilter = selectFilterStrategy(source, width, height, bytesPerPixel);
+    }
+    else
+    {
+      effectiveFilter = filter;
+    }
+
+    final CRC32 crc = new CRC32();
+    outputStream.write(SIGNATURE);
+    final byte[] header = new byte[13];
+    writeInt(header, 0, width);
+    writeInt(header, 4, height);
+    header[8] = 8; // bit depth
+    header[9] = (byte) (encodeAlpha ? 6 : 2); // truecolor with or without alpha
+    header[10] = 0; // deflate
+    header[11] = 0; // adaptive filtering
+    header[12] = 0; // no interlace
+    writeChunk(outputStream, crc, IHDR, header, header.length);
+
+    final ChunkOutputStream chunkStream = new ChunkOutputStream(outputStream);
+    final long rawSize = (long) height * (width * bytesPerPixel + 1);
+    final int stripes = computeStripeCount(rawSize, height);
+    if (stripes > 1 && source.isThreadSafe())
+    {
+      compressParallel(source, width, height, bytesPerPixel, effectiveCompressionLevel, effectiveFilter, stripes,
+          chunkStream);
+    }
+    else
+    {
+      final Deflater deflater = new Deflater(effectiveCompressionLevel);
+      try
+      {
+        final ScanlineCompressor compressor = new ScanlineCompressor(source, width, bytesPerPixel, effectiveFilter);
+        compressor.compress(0, height, deflater, true, chunkStream);
+      }
+      finally
+      {
+        deflater.end();
+      }
+    }
+    chunkStream.flush();
+
+    writeChunk(outputStream, crc, IEND, new byte[0], 0);
+  }
+
+  /**
+   * Chooses the filter strategy for the image. No single strategy wins for all images: images with large flat areas,
+   * like charts or barcodes, usually compress best without filters, smooth images with the sub or paeth filter.
+   * Switching filters between scanlines breaks the row-to-row matches deflate relies on, so selecting the filter per
+   * scanline is just another candidate. Each candidate compresses a sample block from the middle of the image with
+   * the fastest compression level and the smallest result wins.
+   */
+  private static int selectFilterStrategy(final PixelSource source,
+                                          final int width,
+                                          final int height,
+                                          final int bytesPerPixel) throws IOException
+  {
+    final int rowBytes = width * bytesPerPixel + 1;
+    final int sampleRows = Math.min(height, Math.max(2, SAMPLE_SIZE / rowBytes));
+    final int startRow = (height - sampleRows) / 2;
+
+    int bestFilter = FILTER_NONE;
+    long bestSize = Long.MAX_VALUE;
+    for (int i = 0; i < CANDIDATE_FILTERS.length; i++)
+    {
+      final int candidate = CANDIDATE_FILTERS[i];
+      final long size = measureCompressedSize(source, width, bytesPerPixel, candidate, startRow, sampleRows);
+      if (size < bestSize)
+      {
+        bestSize = size;
+        bestFilter = candidate;
+      }
+    }
+    return bestFilter;
+  }
+
+  private static long measureCompressedSize(final PixelSource source,
+                                            final int width,
+                                            final int bytesPerPixel,
+                                            final int filter,
+                                            final int startRow,
+                                            final int rows) throws IOException
+  {
+    final Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+    try
+    {
+      final CountingOutputStream out = new CountingOutputStream();
+      final ScanlineCompressor compressor = new ScanlineCompressor(source, width, bytesPerPixel, filter);
+      compressor.compress(startRow, startRow + rows, deflater, true, out);
+      return out.count;
+    }
+    finally
+    {
+      deflater.end();
+    }
+  }
+
+  private int computeStripeCount(final long rawSize, final int height)
+  {
+    if (parallelCompression == false)
+    {
+      return 1;
+    }
+    if (rawSize < 2 * MIN_STRIPE_SIZE)
+    {
+      return 1;
+    }
+    final int processors = Runtime.getRuntime().availableProcessors();
+    final long stripes = Math.min(rawSize / MIN_STRIPE_SIZE, Math.max(2, processors * 2));
+    return (int) Math.min(stripes, height);
+  }
+
+  private void compressParallel(final PixelSource source,
+                                final int width,
+                                final int height,
+                                final int bytesPerPixel,
+                                final int compressionLevel,
+                                final int filter,
+                                final int stripes,
+                                final OutputStream out) throws IOException
+  {
+    final ExecutorService executorService = getExecutor();
+    final ArrayList<Future<StripeResult>> results = new ArrayList<Future<StripeResult>>(stripes);
+    final int rowsPerStripe = (height + stripes - 1) / stripes;
+    for (int startRow = 0; startRow < height; startRow += rowsPerStripe)
+    {
+      final int endRow = Math.min(height, startRow + rowsPerStripe);
+      results.add(executorService.submit(new StripeTask
+          (source, compressionLevel, filter, width, bytesPerPixel, startRow, endRow, endRow == height)));
+    }
+
+    // zlib header: deflate with a 32k window, no preset dictionary.
+    out.write(0x78);
+    out.write(0x9C);
+    long adler = 1;
+    for (int i = 0; i < results.size(); i++)
+    {
+      final StripeResult result = waitForResult(results.get(i));
+      out.write(result.data);
+      adler = combineAdler32(adler, result.adler, result.length);
+    }
+    out.write((int) (adler >>> 24));
+    out.write((int) (adler >>> 16));
+    out.write((int) (adler >>> 8));
+    out.write((int) adler);
+  }
+
+  private static StripeResult waitForResult(final Future<StripeResult> future) throws IOException
+  {
+    try
+    {
+      return future.get();
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while compressing the image.");
+    }
+    catch (ExecutionException e)
+    {
+      final Throwable cause = e.getCause();
+      if (cause instanceof IOException)
+      {
+        throw (IOException) cause;
+      }
+      final IOException ioe = new IOException("Failed to compress the image.");
+      ioe.initCause(cause);
+      throw ioe;
+    }
+  }
+
+  /**
+   * Computes the Adler-32 checksum of two concatenated blocks from the checksums of the blocks. This is the same
+   * algorithm as zlib's adler32_combine.
+   */
+  static long combineAdler32(final long adler1, final long adler2, final long length2)
+  {
+    final long base = 65521;
+    final long remainder = length2 % base;
+    long sum1 = adler1 & 0xffff;
+    long sum2 = (remainder * sum1) % base;
+    sum1 += (adler2 & 0xffff) + base - 1;
+    sum2 += ((adler1 >> 16) & 0xffff) + ((adler2 >> 16) & 0xffff) + base - remainder;
+    if (sum1 >= base)
+    {
+      sum1 -= base;
+    }
+    if (sum1 >= base)
+    {
+      sum1 -= base;
+    }
+    if (sum2 >= (base << 1))
+    {
+      sum2 -= (base << 1);
+    }
+    if (sum2 >= base)
+    {
+      sum2 -= base;
+    }
+    return sum1 | (sum2 << 16);
+  }
+
+  private static synchronized ExecutorService getExecutor()
+  {
+    if (executor == null)
+    {
+      executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory()
+      {
+        public Thread newThread(final Runnable r)
+        {
+          final Thread thread = new Thread(r, "PNG-Encoder");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return executor;
+  }
+
+  private static PixelSource createPixelSource(final Image image,
+                                               final int width,
+                                               final int height,
+                                               final boolean alpha)
+  {
+    if (image instanceof BufferedImage == false)
+    {
+      return new GrabbingPixelSource(width, height, alpha, image);
+    }
+
+    final BufferedImage bufferedImage = (BufferedImage) image;
+    final WritableRaster raster = bufferedImage.getRaster();
+    final SampleModel sampleModel = raster.getSampleModel();
+    final DataBuffer dataBuffer = raster.getDataBuffer();
+    final int translateX = raster.getSampleModelTranslateX();
+    final int translateY = raster.getSampleModelTranslateY();
+    final int type = bufferedImage.getType();
+
+    if ((type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB) &&
+        dataBuffer instanceof DataBufferInt && dataBuffer.getNumBanks() == 1 &&
+        sampleModel instanceof SinglePixelPackedSampleModel)
+    {
+      final SinglePixelPackedSampleModel packedModel = (SinglePixelPackedSampleModel) sampleModel;
+      final int offset = dataBuffer.getOffset() + packedModel.getOffset(-translateX, -translateY);
+      return new IntRasterPixelSource(width, alpha, ((DataBufferInt) dataBuffer).getData(), offset,
+          packedModel.getScanlineStride(), type == BufferedImage.TYPE_INT_ARGB);
+    }
+
+    if ((type == BufferedImage.TYPE_3BYTE_BGR || type == BufferedImage.TYPE_4BYTE_ABGR) &&
+        dataBuffer instanceof DataBufferByte && dataBuffer.getNumBanks() == 1 &&
+        sampleModel instanceof ComponentSampleModel)
+    {
+      final ComponentSampleModel componentModel = (ComponentSampleModel) sampleModel;
+      final int offset = dataBuffer.getOffset() - translateY * componentModel.getScanlineStride() -
+          translateX * componentModel.getPixelStride();
+      return new ByteRasterPixelSource(width, alpha, ((DataBufferByte) dataBuffer).getData(), offset,
+          componentModel.getScanlineStride(), componentModel.getPixelStride(), componentModel.getBandOffsets());
+    }
+
+    return new BufferedImagePixelSource(width, alpha, bufferedImage);
+  }
+
+  private static void writeInt(final byte[] target, final int offset, final int value)
+  {
+    target[offset] = (byte) (value >>> 24);
+    target[offset + 1] = (byte) (value >>> 16);
+    target[offset + 2] = (byte) (value >>> 8);
+    target[offset + 3] = (byte) value;
+  }
+
+  private static void writeChunk(final OutputStream out,
+                                 final CRC32 crc,
+                                 final byte[] type,
+                                 final byte[] data,
+                                 final int length) throws IOException
+  {
+    final byte[] buffer = new byte[4];
+    writeInt(buffer, 0, length);
+    out.write(buffer);
+    out.write(type);
+    out.write(data, 0, length);
+
+    crc.reset();
+    crc.update(type);
+    crc.update(data, 0, length);
+    writeInt(buffer, 0, (int) crc.getValue());
+    out.write(buffer);
+  }
+
+  public String getMimeType()
+  {
+    return "image/png";
+  }
+}
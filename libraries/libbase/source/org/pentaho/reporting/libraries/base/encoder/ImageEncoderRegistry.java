@@ -20,7 +20,6 @@ package org.pentaho.reporting.libraries.base.encoder;
 import java.util.HashMap;
 
 import org.pentaho.reporting.libraries.base.util.ObjectUtilities;
-import org.pentaho.reporting.libraries.base.util.PngEncoder;
 
 public class ImageEncoderRegistry
 {
@@ -46,7 +45,7 @@ public class ImageEncoderRegistry
 
   private void registerDefaults()
   {
-    encoders.put(IMAGE_PNG, PngEncoder.class.getName());
+    encoders.put(IMAGE_PNG, FastPngEncoder.class.getName());
     if (JpegImageEncoder.isJpegEncodingAvailable())
     {
       encoders.put(IMAGE_JPEG, JpegImageEncoder.class.getName());
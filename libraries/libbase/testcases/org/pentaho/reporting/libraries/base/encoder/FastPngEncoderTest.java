@@ -0,0 +1,129 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2009 Pentaho Corporation.  All rights reserved.
+ */
+
+package org.pentaho.reporting.libraries.base.encoder;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.Adler32;
+import javax.imageio.ImageIO;
+
+import junit.framework.TestCase;
+
+public class FastPngEncoderTest extends TestCase
+{
+  public FastPngEncoderTest()
+  {
+  }
+
+  public FastPngEncoderTest(final String s)
+  {
+    super(s);
+  }
+
+  private BufferedImage createImage(final int type, final int width, final int height)
+  {
+    final BufferedImage image = new BufferedImage(width, height, type);
+    final Graphics2D graphics = image.createGraphics();
+    graphics.setPaint(new GradientPaint(0, 0, Color.RED, width, height, new Color(0, 0, 255, 128)));
+    graphics.fillRect(0, 0, width, height / 2);
+    graphics.setColor(Color.GREEN);
+    graphics.drawLine(0, height - 1, width - 1, 0);
+    graphics.dispose();
+    return image;
+  }
+
+  private BufferedImage encodeAndDecode(final FastPngEncoder encoder,
+                                        final Image image,
+                                        final boolean alpha) throws IOException, UnsupportedEncoderException
+  {
+    final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    encoder.encodeImage(image, bout, 0.9f, alpha);
+    final BufferedImage result = ImageIO.read(new ByteArrayInputStream(bout.toByteArray()));
+    assertNotNull(result);
+    return result;
+  }
+
+  private void assertSamePixels(final BufferedImage expected, final BufferedImage actual, final boolean alpha)
+  {
+    assertEquals(expected.getWidth(), actual.getWidth());
+    assertEquals(expected.getHeight(), actual.getHeight());
+    for (int y = 0; y < expected.getHeight(); y++)
+    {
+      for (int x = 0; x < expected.getWidth(); x++)
+      {
+        final int expectedPixel = expected.getRGB(x, y);
+        final int actualPixel = actual.getRGB(x, y);
+        if (alpha)
+        {
+          assertEquals(expectedPixel, actualPixel);
+        }
+        else
+        {
+          assertEquals(expectedPixel & 0xffffff, actualPixel & 0xffffff);
+        }
+      }
+    }
+  }
+
+  public void testRoundTrip() throws Exception
+  {
+    final int[] types = {BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_4BYTE_ABGR,
+        BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_USHORT_565_RGB};
+    for (int t = 0; t < types.length; t++)
+    {
+      final BufferedImage image = createImage(types[t], 37, 23);
+      for (int filter = FastPngEncoder.FILTER_ADAPTIVE; filter <= FastPngEncoder.FILTER_PAETH; filter++)
+      {
+        final FastPngEncoder encoder = new FastPngEncoder();
+        encoder.setFilter(filter);
+        assertSamePixels(image, encodeAndDecode(encoder, image, true), true);
+        assertSamePixels(image, encodeAndDecode(encoder, image, false), false);
+      }
+    }
+  }
+
+  public void testParallelCompression() throws Exception
+  {
+    final BufferedImage image = createImage(BufferedImage.TYPE_INT_ARGB, 800, 700);
+    final FastPngEncoder encoder = new FastPngEncoder();
+    encoder.setParallelCompression(true);
+    assertSamePixels(image, encodeAndDecode(encoder, image, true), true);
+  }
+
+  public void testCombineAdler32()
+  {
+    final byte[] data = new byte[10000];
+    for (int i = 0; i < data.length; i++)
+    {
+      data[i] = (byte) (i * 31);
+    }
+    final Adler32 all = new Adler32();
+    all.update(data);
+    final Adler32 first = new Adler32();
+    first.update(data, 0, 3000);
+    final Adler32 second = new Adler32();
+    second.update(data, 3000, 7000);
+    assertEquals(all.getValue(), FastPngEncoder.combineAdler32(first.getValue(), second.getValue(), 7000));
+  }
+}
@@ -17,14 +17,21 @@
 
 package org.pentaho.reporting.libraries.docbundle.bundleloader;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.zip.ZipException;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.pentaho.reporting.libraries.docbundle.BundleUtilities;
 import org.pentaho.reporting.libraries.docbundle.LibDocBundleBoot;
+import org.pentaho.reporting.libraries.base.config.Configuration;
 import org.pentaho.reporting.libraries.repository.ContentIOException;
+import org.pentaho.reporting.libraries.repository.DefaultMimeRegistry;
 import org.pentaho.reporting.libraries.repository.RepositoryUtilities;
 import org.pentaho.reporting.libraries.repository.zipreader.ZipReadRepository;
 import org.pentaho.reporting.libraries.resourceloader.FactoryParameterKey;
@@ -39,9 +46,17 @@ import org.pentaho.reporting.libraries.resourceloader.ResourceLoadingException;
 import org.pentaho.reporting.libraries.resourceloader.ResourceManager;
 import org.pentaho.reporting.libraries.resourceloader.UnrecognizedLoaderException;
 import org.pentaho.reporting.libraries.resourceloader.loader.LoaderUtils;
+import org.pentaho.reporting.libraries.resourceloader.loader.file.FileResourceLoader;
 
 public class ZipResourceBundleLoader implements ResourceBundleLoader
 {
+  private static final Log logger = LogFactory.getLog(ZipResourceBundleLoader.class);
+
+  public static final String RANDOM_ACCESS_KEY =
+      "org.pentaho.reporting.libraries.docbundle.bundleloader.zip.RandomAccess";
+  public static final String MEMORY_MAP_FILES_KEY =
+      "org.pentaho.reporting.libraries.docbundle.bundleloader.zip.MemoryMapFiles";
+
   public ZipResourceBundleLoader()
   {
   }
@@ -80,24 +95,16 @@ public class ZipResourceBundleLoader implements ResourceBundleLoader
         return null;
       }
 
-      final InputStream stream = rawData.getResourceAsStream(resourceManager);
-      try
-      {
-        final ZipReadRepository zipReadRepository = new ZipReadRepository(stream);
-        final String bundleType = BundleUtilities.getBundleType(zipReadRepository);
-        final String bundleMapping = BundleUtilities.getBundleMapping(bundleType);
+      final ZipReadRepository zipReadRepository = createRepository(resourceManager, key, rawData);
+      final String bundleType = BundleUtilities.getBundleType(zipReadRepository);
+      final String bundleMapping = BundleUtilities.getBundleMapping(bundleType);
 
-        final HashMap<FactoryParameterKey,Object> map = new HashMap<FactoryParameterKey,Object>();
-        map.put(new FactoryParameterKey("repository"), zipReadRepository);
-        map.put(new FactoryParameterKey("repository-loader"), this);
+      final HashMap<FactoryParameterKey,Object> map = new HashMap<FactoryParameterKey,Object>();
+      map.put(new FactoryParameterKey("repository"), zipReadRepository);
+      map.put(new FactoryParameterKey("repository-loader"), this);
 
-        final ResourceKey mainKey = new ResourceKey(key, ZipResourceBundleLoader.class.getName(), bundleMapping, map);
-        return new RepositoryResourceBundleData(key, zipReadRepository, mainKey, false);
-      }
-      finally
-      {
-        stream.close();
-      }
+      final ResourceKey mainKey = new ResourceKey(key, ZipResourceBundleLoader.class.getName(), bundleMapping, map);
+      return new RepositoryResourceBundleData(key, zipReadRepository, mainKey, false);
     }
     catch (UnrecognizedLoaderException e)
     {
@@ -109,6 +116,59 @@ public class ZipResourceBundleLoader implements ResourceBundleLoader
     }
   }
 
+  /**
+   * Creates the repository for the bundle. By default only the zip-file's central directory is read and the entries
+   * are inflated when they are requested. Local files can optionally be memory-mapped; as the file then must not be
+   * modified or replaced while the bundle is in use, this is disabled by default. If the zip-file cannot be read
+   * randomly (for instance, because it uses ZIP64 extensions), the whole bundle is read sequentially.
+   *
+   * @param resourceManager the resource manager used to load the raw data.
+   * @param key             the bundle key.
+   * @param rawData         the raw data of the bundle.
+   * @return the repository.
+   * @throws IOException              if the bundle cannot be read.
+   * @throws ResourceLoadingException if the raw data cannot be loaded.
+   */
+  private ZipReadRepository createRepository(final ResourceManager resourceManager,
+                                             final ResourceKey key,
+                                             final ResourceData rawData)
+      throws IOException, ResourceLoadingException
+  {
+    final Configuration config = LibDocBundleBoot.getInstance().getGlobalConfig();
+    if ("true".equals(config.getConfigProperty(RANDOM_ACCESS_KEY, "true")))
+    {
+      try
+      {
+        final Object identifier = key.getIdentifier();
+        if (identifier instanceof File &&
+            FileResourceLoader.SCHEMA_NAME.equals(key.getSchema()) &&
+            "true".equals(config.getConfigProperty(MEMORY_MAP_FILES_KEY, "false")))
+        {
+          final File file = (File) identifier;
+          if (file.isFile())
+          {
+            return new ZipReadRepository(file, new DefaultMimeRegistry());
+          }
+        }
+        return new ZipReadRepository(ByteBuffer.wrap(rawData.getResource(resourceManager)), new DefaultMimeRegistry());
+      }
+      catch (ZipException ze)
+      {
+        logger.debug("Unable to read the bundle's central directory, falling back to sequential reading: " + key, ze);
+      }
+    }
+
+    final InputStream stream = rawData.getResourceAsStream(resourceManager);
+    try
+    {
+      return new ZipReadRepository(stream);
+    }
+    finally
+    {
+      stream.close();
+    }
+  }
+
   /**
    * Checks, whether this resource loader implementation was responsible for
    * creating this key.
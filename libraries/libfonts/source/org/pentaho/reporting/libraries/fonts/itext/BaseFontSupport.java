@@ -435,11 +435,11 @@ public class BaseFontSupport implements FontMapper
     {
       try
       {
-        f = BaseFont.createFont(filename, encoding, embedded, false, null, null);
+        f = BaseFont.createFont(filename, encoding, embedded, useGlobalCache, null, null);
       }
       catch (DocumentException e)
       {
-        f = BaseFont.createFont(filename, stringEncoding, embedded, false, null, null);
+        f = BaseFont.createFont(filename, stringEncoding, embedded, useGlobalCache, null, null);
       }
     }
     catch (IOException ioe)
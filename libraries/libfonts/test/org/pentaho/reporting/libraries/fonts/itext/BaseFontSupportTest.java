@@ -0,0 +1,86 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2006 - 2009 Pentaho Corporation and Contributors.  All rights reserved.
+ */
+
+package org.pentaho.reporting.libraries.fonts.itext;
+
+import com.lowagie.text.pdf.BaseFont;
+import junit.framework.TestCase;
+import org.pentaho.reporting.libraries.base.config.ModifiableConfiguration;
+import org.pentaho.reporting.libraries.fonts.LibFontBoot;
+
+public class BaseFontSupportTest extends TestCase
+{
+  private static final String USE_GLOBAL_CACHE_KEY = "org.pentaho.reporting.libraries.fonts.itext.UseGlobalFontCache";
+
+  public BaseFontSupportTest()
+  {
+    LibFontBoot.getInstance().start();
+  }
+
+  public BaseFontSupportTest(final String string)
+  {
+    super(string);
+    LibFontBoot.getInstance().start();
+  }
+
+  protected void tearDown() throws Exception
+  {
+    getEditableConfig().setConfigProperty(USE_GLOBAL_CACHE_KEY, null);
+  }
+
+  private static ModifiableConfiguration getEditableConfig()
+  {
+    return (ModifiableConfiguration) LibFontBoot.getInstance().getGlobalConfig();
+  }
+
+  public void testFontsAreNotSharedByDefault() throws Exception
+  {
+    final ITextFontRegistry registry = new ITextFontRegistry();
+    registry.initialize();
+
+    final BaseFontSupport first = new BaseFontSupport(registry);
+    final BaseFontSupport second = new BaseFontSupport(registry);
+    assertNotSame(createFont(registry, first), createFont(registry, second));
+
+    first.close();
+    second.close();
+  }
+
+  public void testFontsAreSharedBetweenExports() throws Exception
+  {
+    getEditableConfig().setConfigProperty(USE_GLOBAL_CACHE_KEY, "true");
+
+    final ITextFontRegistry registry = new ITextFontRegistry();
+    registry.initialize();
+
+    // each export uses its own font support, the parsed fonts come from iText's global cache.
+    final BaseFontSupport first = new BaseFontSupport(registry);
+    final BaseFontSupport second = new BaseFontSupport(registry);
+    assertSame(createFont(registry, first), createFont(registry, second));
+
+    first.close();
+    second.close();
+  }
+
+  private static BaseFont createFont(final ITextFontRegistry registry,
+                                     final BaseFontSupport fontSupport) throws Exception
+  {
+    final String[] families = registry.getRegisteredFamilies();
+    final String family = families.length > 0 ? families[0] : BaseFont.HELVETICA;
+    return fontSupport.createBaseFont(family, false, false, BaseFont.IDENTITY_H, true);
+  }
+}
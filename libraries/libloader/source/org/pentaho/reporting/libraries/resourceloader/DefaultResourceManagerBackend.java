@@ -18,9 +18,9 @@
 package org.pentaho.reporting.libraries.resourceloader;
 
 import java.net.URL;
-import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -31,18 +31,22 @@ public class DefaultResourceManagerBackend implements ResourceManagerBackend
 {
   private static final Log logger = LogFactory.getLog(DefaultResourceManagerBackend.class);
 
-  private ArrayList<ResourceLoader> resourceLoaders;
-  private ArrayList<ResourceBundleLoader> resourceBundleLoaders;
-  private ArrayList<ResourceFactory> resourceFactories;
+  /**
+   * The registries are only modified during the initialization, but read by all threads that load resources. Copy on
+   * write lists allow lock-free reads.
+   */
+  private CopyOnWriteArrayList<ResourceLoader> resourceLoaders;
+  private CopyOnWriteArrayList<ResourceBundleLoader> resourceBundleLoaders;
+  private CopyOnWriteArrayList<ResourceFactory> resourceFactories;
 
   public DefaultResourceManagerBackend()
   {
-    resourceLoaders = new ArrayList<ResourceLoader>();
-    resourceBundleLoaders = new ArrayList<ResourceBundleLoader>();
-    resourceFactories = new ArrayList<ResourceFactory>();
+    resourceLoaders = new CopyOnWriteArrayList<ResourceLoader>();
+    resourceBundleLoaders = new CopyOnWriteArrayList<ResourceBundleLoader>();
+    resourceFactories = new CopyOnWriteArrayList<ResourceFactory>();
   }
 
-  public synchronized ResourceKey createKey(final Object data, final Map<? extends ParameterKey, ? extends Object> parameters)
+  public ResourceKey createKey(final Object data, final Map<? extends ParameterKey, ? extends Object> parameters)
       throws ResourceKeyCreationException
   {
     if (data == null)
@@ -88,7 +92,7 @@ public class DefaultResourceManagerBackend implements ResourceManagerBackend
    * @return the derived key.
    * @throws ResourceKeyCreationException if deriving the key failed.
    */
-  public synchronized ResourceKey deriveKey(final ResourceKey parent,
+  public ResourceKey deriveKey(final ResourceKey parent,
                                             final String path,
                                             final Map<? extends ParameterKey, ? extends Object> parameters)
       throws ResourceKeyCreationException
@@ -217,7 +221,7 @@ public class DefaultResourceManagerBackend implements ResourceManagerBackend
     return null;
   }
 
-  public synchronized URL toURL(final ResourceKey key)
+  public URL toURL(final ResourceKey key)
   {
     if (key == null)
     {
@@ -231,7 +235,7 @@ public class DefaultResourceManagerBackend implements ResourceManagerBackend
     return loader.toURL(key);
   }
 
-  public synchronized Resource create(final ResourceManager frontEnd, final ResourceData data,
+  public Resource create(final ResourceManager frontEnd, final ResourceData data,
                                       final ResourceKey context,
                                       final Class[] target) throws ResourceLoadingException, ResourceCreationException
   {
@@ -371,7 +375,7 @@ public class DefaultResourceManagerBackend implements ResourceManagerBackend
    * @return the resourceloader for that key, or null, if no resource-loader is able to process the key.
    * @throws ResourceLoadingException if an error occured.
    */
-  public synchronized ResourceBundleData loadResourceBundle(final ResourceManager frontEnd, final ResourceKey key)
+  public ResourceBundleData loadResourceBundle(final ResourceManager frontEnd, final ResourceKey key)
       throws ResourceLoadingException
   {
     if (frontEnd == null)
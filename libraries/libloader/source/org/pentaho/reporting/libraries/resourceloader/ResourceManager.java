@@ -26,6 +26,8 @@ import java.sql.SQLException;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -33,6 +35,7 @@ import org.pentaho.reporting.libraries.base.boot.ObjectFactory;
 import org.pentaho.reporting.libraries.base.util.IOUtils;
 import org.pentaho.reporting.libraries.base.util.StringUtils;
 import org.pentaho.reporting.libraries.resourceloader.cache.BundleCacheResourceWrapper;
+import org.pentaho.reporting.libraries.resourceloader.cache.MemoryCacheProvider;
 import org.pentaho.reporting.libraries.resourceloader.cache.NullResourceBundleDataCache;
 import org.pentaho.reporting.libraries.resourceloader.cache.NullResourceDataCache;
 import org.pentaho.reporting.libraries.resourceloader.cache.NullResourceFactoryCache;
@@ -55,6 +58,11 @@ import org.pentaho.reporting.libraries.resourceloader.modules.cache.ehcache.EHCa
  * <p/>
  * Resources are identified by an Resource-Key and some optional loader parameters (which can be used to parametrize the
  * resource-factories).
+ * <p/>
+ * The resource manager can be used from multiple threads at the same time. There is no global lock; instead, loading
+ * and creating a resource is guarded by a lock per resource-key, so that concurrent requests for the same resource
+ * wait for the first request to finish and then use the cached result, while requests for other resources proceed in
+ * parallel. Derived resource managers share these locks with their parent.
  *
  * @author Thomas Morgner
  * @see ResourceData
@@ -70,9 +78,17 @@ public final class ResourceManager
   public static final String LOADER_PREFIX = "org.pentaho.reporting.libraries.resourceloader.loader.";
   public static final String FACTORY_TYPE_PREFIX = "org.pentaho.reporting.libraries.resourceloader.factory.type.";
 
-  private ResourceDataCache dataCache;
-  private ResourceBundleDataCache bundleCache;
-  private ResourceFactoryCache factoryCache;
+  private volatile ResourceDataCache dataCache;
+  private volatile ResourceBundleDataCache bundleCache;
+  private volatile ResourceFactoryCache factoryCache;
+
+  /**
+   * The per-key locks for loading bundles, raw data and for creating resources. Each map only contains entries while
+   * a load or create operation for the key is in progress.
+   */
+  private final ConcurrentMap<ResourceKey, Object> bundleLocks;
+  private final ConcurrentMap<ResourceKey, Object> dataLocks;
+  private final ConcurrentMap<ResourceKey, Object> factoryLocks;
 
   /**
    * A set that contains the class-names of all cache-modules, which could not be instantiated correctly.
@@ -98,6 +114,9 @@ public final class ResourceManager
     this.bundleCache = new NullResourceBundleDataCache();
     this.dataCache = new NullResourceDataCache();
     this.factoryCache = new NullResourceFactoryCache();
+    this.bundleLocks = new ConcurrentHashMap<ResourceKey, Object>();
+    this.dataLocks = new ConcurrentHashMap<ResourceKey, Object>();
+    this.factoryLocks = new ConcurrentHashMap<ResourceKey, Object>();
     registerDefaults();
   }
 
@@ -116,6 +135,9 @@ public final class ResourceManager
     this.bundleCache = parent.getBundleCache();
     this.dataCache = parent.getDataCache();
     this.factoryCache = parent.getFactoryCache();
+    this.bundleLocks = parent.bundleLocks;
+    this.dataLocks = parent.dataLocks;
+    this.factoryLocks = parent.factoryLocks;
   }
 
   public ResourceManagerBackend getBackend()
@@ -221,7 +243,67 @@ public final class ResourceManager
    * @return the resourceloader for that key, or null, if no resource-loader is able to process the key.
    * @throws ResourceLoadingException if an error occured.
    */
-  public synchronized ResourceBundleData loadResourceBundle(final ResourceKey key) throws ResourceLoadingException
+  public ResourceBundleData loadResourceBundle(final ResourceKey key) throws ResourceLoadingException
+  {
+    final ResourceBundleData cached = getCachedBundle(key);
+    if (cached != null)
+    {
+      return cached;
+    }
+
+    final Object lock = acquireLock(bundleLocks, key);
+    synchronized (lock)
+    {
+      try
+      {
+        // another thread may have loaded the bundle while we were waiting for the lock.
+        final ResourceBundleData cachedAfterLock = getCachedBundle(key);
+        if (cachedAfterLock != null)
+        {
+          return cachedAfterLock;
+        }
+
+        final ResourceBundleData data = backend.loadResourceBundle(this, key);
+        if (data != null && isResourceDataCacheable(data))
+        {
+          getBundleCache().put(this, data);
+        }
+        return data;
+      }
+      finally
+      {
+        bundleLocks.remove(key, lock);
+      }
+    }
+  }
+
+  /**
+   * Returns the lock object for the given key, registering a new lock if no other thread currently works on the key.
+   * Callers must synchronize on the returned object and remove it from the map once they are done.
+   *
+   * @param locks the lock map.
+   * @param key   the resource key.
+   * @return the lock object, never null.
+   */
+  private static Object acquireLock(final ConcurrentMap<ResourceKey, Object> locks, final ResourceKey key)
+  {
+    final Object lock = new Object();
+    final Object existingLock = locks.putIfAbsent(key, lock);
+    if (existingLock != null)
+    {
+      return existingLock;
+    }
+    return lock;
+  }
+
+  /**
+   * Returns the cached bundle for the given key, if it is still valid. Invalid entries are removed from the cache.
+   *
+   * @param key the resource key.
+   * @return the cached bundle or null.
+   * @throws ResourceLoadingException if an error occured.
+   */
+  private ResourceBundleData getCachedBundle(final ResourceKey key) throws ResourceLoadingException
   {
     final ResourceBundleDataCache bundleCache = getBundleCache();
     final ResourceBundleDataCacheEntry cached = bundleCache.get(key);
@@ -264,13 +346,7 @@ public final class ResourceManager
       }
       bundleCache.remove(data);
     }
-
-    final ResourceBundleData data = backend.loadResourceBundle(this, key);
-    if (data != null && isResourceDataCacheable(data))
-    {
-      bundleCache.put(this, data);
-    }
-    return data;
+    return null;
   }
 
   private boolean isResourceDataCacheable(final ResourceData data)
@@ -336,31 +412,61 @@ public final class ResourceManager
     }
   }
 
-  public synchronized ResourceData loadRawData(final ResourceKey key)
+  public ResourceData loadRawData(final ResourceKey key)
       throws UnrecognizedLoaderException, ResourceLoadingException
   {
-    final ResourceDataCache dataCache = getDataCache();
     // Alternative 3: This is a plain resource and not contained in a bundle. Load as binary data
-    final ResourceDataCacheEntry cached = dataCache.get(key);
+    final ResourceData cached = getCachedData(key);
     if (cached != null)
     {
-      final ResourceData data = cached.getData();
-      if (data != null)
+      return cached;
+    }
+
+    final Object lock = acquireLock(dataLocks, key);
+    synchronized (lock)
+    {
+      try
       {
-        if (isValidData(cached, data))
+        final ResourceData cachedAfterLock = getCachedData(key);
+        if (cachedAfterLock != null)
+        {
+          return cachedAfterLock;
+        }
+
+        final ResourceData data = backend.loadRawData(this, key);
+        if (data != null && isResourceDataCacheable(data))
         {
-          return data;
+          getDataCache().put(this, data);
         }
-        dataCache.remove(data);
+        return data;
+      }
+      finally
+      {
+        dataLocks.remove(key, lock);
       }
     }
+  }
+
+  private ResourceData getCachedData(final ResourceKey key) throws ResourceLoadingException
+  {
+    final ResourceDataCache dataCache = getDataCache();
+    final ResourceDataCacheEntry cached = dataCache.get(key);
+    if (cached == null)
+    {
+      return null;
+    }
 
-    final ResourceData data = backend.loadRawData(this, key);
-    if (data != null && isResourceDataCacheable(data))
+    final ResourceData data = cached.getData();
+    if (data == null)
+    {
+      return null;
+    }
+    if (isValidData(cached, data))
     {
-      dataCache.put(this, data);
+      return data;
     }
-    return data;
+    dataCache.remove(data);
+    return null;
   }
 
   public Resource create(final ResourceKey key, final ResourceKey context, final Class target)
@@ -391,24 +497,57 @@ public final class ResourceManager
       throw new NullPointerException();
     }
 
-    final ResourceFactoryCache factoryCache = getFactoryCache();
-    // ok, we have a handle to the data, and the data is current.
-    // Lets check whether we also have a cached result.
-    final Resource resource = factoryCache.get(key, target);
-    if (resource != null)
+    final Resource cached = getCachedResource(key, target);
+    if (cached != null)
     {
-      if (backend.isResourceUnchanged(this, resource))
+      return cached;
+    }
+
+    final Object lock = acquireLock(factoryLocks, key);
+    synchronized (lock)
+    {
+      try
       {
-        // mama, look i am a good cache manager ...
-        return resource;
+        // the resource may have been created by another thread while we were waiting for the lock.
+        final Resource cachedAfterLock = getCachedResource(key, target);
+        if (cachedAfterLock != null)
+        {
+          return cachedAfterLock;
+        }
+        return createResource(key, context, target);
       }
-      else
+      finally
       {
-        // someone evil changed one of the dependent resources ...
-        factoryCache.remove(resource);
+        factoryLocks.remove(key, lock);
       }
     }
+  }
 
+  private Resource getCachedResource(final ResourceKey key, final Class[] target) throws ResourceLoadingException
+  {
+    final ResourceFactoryCache factoryCache = getFactoryCache();
+    // ok, we have a handle to the data, and the data is current.
+    // Lets check whether we also have a cached result.
+    final Resource resource = factoryCache.get(key, target);
+    if (resource == null)
+    {
+      return null;
+    }
+    if (backend.isResourceUnchanged(this, resource))
+    {
+      // mama, look i am a good cache manager ...
+      return resource;
+    }
+
+    // someone evil changed one of the dependent resources ...
+    factoryCache.remove(resource);
+    return null;
+  }
+
+  private Resource createResource(final ResourceKey key, final ResourceKey context, final Class[] target)
+      throws ResourceLoadingException, ResourceCreationException
+  {
+    final ResourceFactoryCache factoryCache = getFactoryCache();
     final ResourceData loadedData = load(key);
     final Resource newResource;
     if (loadedData instanceof ResourceBundleData)
@@ -569,6 +708,7 @@ public final class ResourceManager
           failedModules.add(ResourceBundleDataCacheProvider.class);
         }
       }
+      setBundleCache(MemoryCacheProvider.getFallbackBundleDataCache());
     }
   }
 
@@ -600,6 +740,7 @@ public final class ResourceManager
           failedModules.add(ResourceDataCacheProvider.class);
         }
       }
+      setDataCache(MemoryCacheProvider.getFallbackDataCache());
     }
   }
 
@@ -630,6 +771,7 @@ public final class ResourceManager
           failedModules.add(ResourceFactoryCacheProvider.class);
         }
       }
+      setFactoryCache(MemoryCacheProvider.getFallbackFactoryCache());
     }
   }
 
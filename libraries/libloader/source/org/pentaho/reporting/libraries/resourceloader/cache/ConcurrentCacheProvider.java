@@ -0,0 +1,48 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2006 - 2009 Pentaho Corporation and Contributors.  All rights reserved.
+ */
+
+package org.pentaho.reporting.libraries.resourceloader.cache;
+
+/**
+ * Provides the lock-free in-memory caches. These caches share their implementation with the caches of the
+ * {@link MemoryCacheProvider}, but hold their entries via soft references instead of bounding them by size. Use this
+ * provider when many threads load resources at the same time.
+ *
+ * @author Thomas Morgner
+ */
+public class ConcurrentCacheProvider implements
+        ResourceDataCacheProvider, ResourceFactoryCacheProvider, ResourceBundleDataCacheProvider
+{
+  public ConcurrentCacheProvider()
+  {
+  }
+
+  public ResourceDataCache createDataCache()
+  {
+    return new ConcurrentResourceDataCache();
+  }
+
+  public ResourceFactoryCache createFactoryCache()
+  {
+    return new ConcurrentResourceFactoryCache();
+  }
+
+  public ResourceBundleDataCache createBundleDataCache()
+  {
+    return new ConcurrentResourceBundleDataCache();
+  }
+}
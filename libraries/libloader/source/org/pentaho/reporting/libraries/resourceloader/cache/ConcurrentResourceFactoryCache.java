@@ -0,0 +1,45 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2006 - 2009 Pentaho Corporation and Contributors.  All rights reserved.
+ */
+
+package org.pentaho.reporting.libraries.resourceloader.cache;
+
+import org.pentaho.reporting.libraries.resourceloader.Resource;
+
+/**
+ * An in-memory factory cache that can be used by many threads at the same time without locking. Resources are
+ * registered by their source key and target type and are held via soft references.
+ *
+ * @author Thomas Morgner
+ */
+public class ConcurrentResourceFactoryCache extends MemoryResourceFactoryCache
+{
+  public ConcurrentResourceFactoryCache()
+  {
+    super(new ConcurrentSoftCache<FactoryCacheKey, Resource>(), 0);
+  }
+
+  /**
+   * The entries of this cache are not bounded by their size, so there is no need to inspect the resource.
+   *
+   * @param resource the resource.
+   * @return always zero.
+   */
+  protected long computeWeight(final Resource resource)
+  {
+    return 0;
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2006 - 2009 Pentaho Corporation and Contributors.  All rights reserved.
+ */
+
+package org.pentaho.reporting.libraries.resourceloader.cache;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A thread-safe map that holds its values via soft references. Values that have been collected by the garbage
+ * collector are treated as missing and their keys are purged from the map during the next update. Reads never block.
+ * The store is unbounded, so the weight of an entry is ignored.
+ *
+ * @author Thomas Morgner
+ */
+final class ConcurrentSoftCache<K, V> implements MemoryCacheStore<K, V>
+{
+  private static class ValueReference<K, V> extends SoftReference<V>
+  {
+    private final K key;
+
+    private ValueReference(final K key, final V value, final ReferenceQueue<V> queue)
+    {
+      super(value, queue);
+      this.key = key;
+    }
+
+    public K getKey()
+    {
+      return key;
+    }
+  }
+
+  private final ConcurrentHashMap<K, ValueReference<K, V>> map;
+  private final ReferenceQueue<V> queue;
+
+  ConcurrentSoftCache()
+  {
+    map = new ConcurrentHashMap<K, ValueReference<K, V>>();
+    queue = new ReferenceQueue<V>();
+  }
+
+  public V get(final K key)
+  {
+    final ValueReference<K, V> reference = map.get(key);
+    if (reference == null)
+    {
+      return null;
+    }
+    final V value = reference.get();
+    if (value == null)
+    {
+      map.remove(key, reference);
+    }
+    return value;
+  }
+
+  public boolean put(final K key, final V value, final long weight)
+  {
+    if (key == null)
+    {
+      throw new NullPointerException();
+    }
+    if (value == null)
+    {
+      throw new NullPointerException();
+    }
+    expungeCollectedValues();
+    map.put(key, new ValueReference<K, V>(key, value, queue));
+    return true;
+  }
+
+  public void remove(final K key)
+  {
+    map.remove(key);
+  }
+
+  public void clear()
+  {
+    map.clear();
+    expungeCollectedValues();
+  }
+
+  public int size()
+  {
+    return map.size();
+  }
+
+  private void expungeCollectedValues()
+  {
+    while (true)
+    {
+      final ValueReference<K, V> reference = (ValueReference<K, V>) queue.poll();
+      if (reference == null)
+      {
+        return;
+      }
+      // only removes the entry if it has not been replaced in the meantime.
+      map.remove(reference.getKey(), reference);
+    }
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2006 - 2009 Pentaho Corporation and Contributors.  All rights reserved.
+ */
+
+package org.pentaho.reporting.libraries.resourceloader.cache;
+
+import org.pentaho.reporting.libraries.resourceloader.ResourceKey;
+
+/**
+ * The key of a factory cache entry. Resources are registered by their source key and their target type.
+ *
+ * @author Thomas Morgner
+ */
+final class FactoryCacheKey
+{
+  private ResourceKey key;
+  private Class target;
+  private int hashCode;
+
+  FactoryCacheKey(final ResourceKey key, final Class target)
+  {
+    if (key == null)
+    {
+      throw new NullPointerException();
+    }
+    if (target == null)
+    {
+      throw new NullPointerException();
+    }
+    this.key = key;
+    this.target = target;
+    this.hashCode = 31 * key.hashCode() + target.hashCode();
+  }
+
+  public boolean equals(final Object o)
+  {
+    if (this == o)
+    {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass())
+    {
+      return false;
+    }
+
+    final FactoryCacheKey that = (FactoryCacheKey) o;
+    if (!target.equals(that.target))
+    {
+      return false;
+    }
+    if (!key.equals(that.key))
+    {
+      return false;
+    }
+    return true;
+  }
+
+  public int hashCode()
+  {
+    return hashCode;
+  }
+}
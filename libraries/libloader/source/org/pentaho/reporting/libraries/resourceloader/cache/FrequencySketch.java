@@ -0,0 +1,113 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2006 - 2009 Pentaho Corporation and Contributors.  All rights reserved.
+ */
+
+package org.pentaho.reporting.libraries.resourceloader.cache;
+
+/**
+ * A count-min sketch that estimates how often a key has been seen recently. Each counter saturates at 15 and all
+ * counters are halved once the number of recorded events reaches ten times the table size, so that keys that were
+ * popular a long time ago lose their advantage over time.
+ *
+ * @author Thomas Morgner
+ */
+final class FrequencySketch
+{
+  private static final int MAXIMUM_COUNT = 15;
+  private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+  private final int[] table;
+  private final int mask;
+  private final int sampleSize;
+  private int events;
+
+  /**
+   * Creates a new sketch.
+   *
+   * @param expectedEntries the expected number of distinct keys held by the cache.
+   */
+  FrequencySketch(final int expectedEntries)
+  {
+    // all rows share one table, so we need several counters per entry to keep collisions rare.
+    final long minimumSize = Math.max(64L, 4L * expectedEntries);
+    int size = 64;
+    while (size < minimumSize && size < (1 << 20))
+    {
+      size <<= 1;
+    }
+    this.table = new int[size];
+    this.mask = size - 1;
+    this.sampleSize = size * 10;
+  }
+
+  public void increment(final Object key)
+  {
+    final int hash = spread(key.hashCode());
+    boolean added = false;
+    for (int i = 0; i < SEEDS.length; i++)
+    {
+      final int index = indexOf(hash, i);
+      if (table[index] < MAXIMUM_COUNT)
+      {
+        table[index] += 1;
+        added = true;
+      }
+    }
+
+    if (added)
+    {
+      events += 1;
+      if (events >= sampleSize)
+      {
+        reset();
+      }
+    }
+  }
+
+  public int frequency(final Object key)
+  {
+    final int hash = spread(key.hashCode());
+    int frequency = MAXIMUM_COUNT;
+    for (int i = 0; i < SEEDS.length; i++)
+    {
+      frequency = Math.min(frequency, table[indexOf(hash, i)]);
+    }
+    return frequency;
+  }
+
+  private void reset()
+  {
+    for (int i = 0; i < table.length; i++)
+    {
+      table[i] >>>= 1;
+    }
+    events /= 2;
+  }
+
+  private int indexOf(final int hash, final int row)
+  {
+    int h = (hash + SEEDS[row]) * SEEDS[row];
+    h ^= (h >>> 16);
+    return h & mask;
+  }
+
+  private static int spread(final int hashCode)
+  {
+    int h = hashCode * 0x45D9F3B;
+    h ^= (h >>> 16);
+    return h;
+  }
+}
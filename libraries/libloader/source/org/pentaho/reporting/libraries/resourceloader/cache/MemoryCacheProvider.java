@@ -0,0 +1,130 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2006 - 2009 Pentaho Corporation and Contributors.  All rights reserved.
+ */
+
+package org.pentaho.reporting.libraries.resourceloader.cache;
+
+import org.pentaho.reporting.libraries.base.config.ExtendedConfiguration;
+import org.pentaho.reporting.libraries.resourceloader.LibLoaderBoot;
+import org.pentaho.reporting.libraries.resourceloader.ResourceData;
+
+/**
+ * Provides the bounded in-memory caches. The size of each cache is configured in kilobytes. This provider also holds
+ * the fallback caches used when the configured cache provider (usually EHCache) cannot be created. Like the EHCache
+ * caches, the fallback caches are created once and shared by all resource managers.
+ *
+ * @author Thomas Morgner
+ */
+public class MemoryCacheProvider implements
+        ResourceDataCacheProvider, ResourceFactoryCacheProvider, ResourceBundleDataCacheProvider
+{
+  public static final String DATA_CACHE_SIZE_KEY =
+      "org.pentaho.reporting.libraries.resourceloader.cache.memory.DataCacheSize";
+  public static final String BUNDLE_CACHE_SIZE_KEY =
+      "org.pentaho.reporting.libraries.resourceloader.cache.memory.BundleCacheSize";
+  public static final String FACTORY_CACHE_SIZE_KEY =
+      "org.pentaho.reporting.libraries.resourceloader.cache.memory.FactoryCacheSize";
+  public static final String DEFAULT_RESOURCE_WEIGHT_KEY =
+      "org.pentaho.reporting.libraries.resourceloader.cache.memory.DefaultResourceWeight";
+
+  /**
+   * The estimated memory used by a cache entry itself, in bytes.
+   */
+  static final long ENTRY_OVERHEAD = 512;
+  /**
+   * The assumed average size of cached data, in bytes. Used to size the frequency tracking of the caches.
+   */
+  static final long EXPECTED_ENTRY_SIZE = 4096;
+
+  private static ResourceDataCache fallbackDataCache;
+  private static ResourceFactoryCache fallbackFactoryCache;
+  private static ResourceBundleDataCache fallbackBundleDataCache;
+
+  public MemoryCacheProvider()
+  {
+  }
+
+  public ResourceDataCache createDataCache()
+  {
+    return new MemoryResourceDataCache(getSizeInBytes(DATA_CACHE_SIZE_KEY, 32768));
+  }
+
+  public ResourceFactoryCache createFactoryCache()
+  {
+    return new MemoryResourceFactoryCache
+        (getSizeInBytes(FACTORY_CACHE_SIZE_KEY, 65536), getSizeInBytes(DEFAULT_RESOURCE_WEIGHT_KEY, 64));
+  }
+
+  public ResourceBundleDataCache createBundleDataCache()
+  {
+    return new MemoryResourceBundleDataCache(getSizeInBytes(BUNDLE_CACHE_SIZE_KEY, 32768));
+  }
+
+  public static synchronized ResourceDataCache getFallbackDataCache()
+  {
+    if (fallbackDataCache == null)
+    {
+      fallbackDataCache = new MemoryCacheProvider().createDataCache();
+    }
+    return fallbackDataCache;
+  }
+
+  public static synchronized ResourceFactoryCache getFallbackFactoryCache()
+  {
+    if (fallbackFactoryCache == null)
+    {
+      fallbackFactoryCache = new MemoryCacheProvider().createFactoryCache();
+    }
+    return fallbackFactoryCache;
+  }
+
+  public static synchronized ResourceBundleDataCache getFallbackBundleDataCache()
+  {
+    if (fallbackBundleDataCache == null)
+    {
+      fallbackBundleDataCache = new MemoryCacheProvider().createBundleDataCache();
+    }
+    return fallbackBundleDataCache;
+  }
+
+  private static long getSizeInBytes(final String key, final int defaultSizeInKb)
+  {
+    final ExtendedConfiguration config = LibLoaderBoot.getInstance().getExtendedConfig();
+    return Math.max(0, config.getIntProperty(key, defaultSizeInKb)) * 1024L;
+  }
+
+  /**
+   * Estimates the memory held by a cached data object. Data is only held in memory if the caching wrapper buffers
+   * it, which depends on the content length.
+   *
+   * @param data     the data.
+   * @param buffered true, if the data will be buffered in memory.
+   * @return the estimated weight in bytes.
+   */
+  static long computeWeight(final ResourceData data, final boolean buffered)
+  {
+    if (buffered == false)
+    {
+      return ENTRY_OVERHEAD;
+    }
+    final Object contentLength = data.getAttribute(ResourceData.CONTENT_LENGTH);
+    if (contentLength instanceof Number)
+    {
+      return ENTRY_OVERHEAD + Math.max(0, ((Number) contentLength).longValue());
+    }
+    return ENTRY_OVERHEAD;
+  }
+}
@@ -0,0 +1,43 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2006 - 2009 Pentaho Corporation and Contributors.  All rights reserved.
+ */
+
+package org.pentaho.reporting.libraries.resourceloader.cache;
+
+/**
+ * The storage behind the in-memory caches. Implementations must be thread-safe, as a cache can be shared by several
+ * resource managers.
+ *
+ * @author Thomas Morgner
+ */
+interface MemoryCacheStore<K, V>
+{
+  public V get(final K key);
+
+  /**
+   * Stores the value. Stores that are not bounded by weight ignore the weight.
+   *
+   * @param key    the key.
+   * @param value  the value.
+   * @param weight the estimated size of the value in bytes.
+   * @return true, if the value has been stored, false if it has been rejected.
+   */
+  public boolean put(final K key, final V value, final long weight);
+
+  public void remove(final K key);
+
+  public void clear();
+}
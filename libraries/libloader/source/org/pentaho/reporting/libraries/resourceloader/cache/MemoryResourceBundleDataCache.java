@@ -0,0 +1,100 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2006 - 2009 Pentaho Corporation and Contributors.  All rights reserved.
+ */
+
+package org.pentaho.reporting.libraries.resourceloader.cache;
+
+import org.pentaho.reporting.libraries.resourceloader.ResourceBundleData;
+import org.pentaho.reporting.libraries.resourceloader.ResourceKey;
+import org.pentaho.reporting.libraries.resourceloader.ResourceLoadingException;
+import org.pentaho.reporting.libraries.resourceloader.ResourceManager;
+
+/**
+ * A bundle cache that holds the loaded bundles in memory. The cache is bounded by the number of bytes held by the
+ * cached bundles and evicts rarely used entries first.
+ *
+ * @author Thomas Morgner
+ */
+public class MemoryResourceBundleDataCache implements ResourceBundleDataCache
+{
+  private MemoryCacheStore<ResourceKey, ResourceBundleDataCacheEntry> cache;
+
+  /**
+   * Creates a new cache.
+   *
+   * @param maximumSize the maximum number of bytes held by the cache.
+   */
+  public MemoryResourceBundleDataCache(final long maximumSize)
+  {
+    this(new WeightedFrequencyCache<ResourceKey, ResourceBundleDataCacheEntry>
+        (maximumSize, (int) Math.min(Integer.MAX_VALUE, maximumSize / MemoryCacheProvider.EXPECTED_ENTRY_SIZE)));
+  }
+
+  MemoryResourceBundleDataCache(final MemoryCacheStore<ResourceKey, ResourceBundleDataCacheEntry> cache)
+  {
+    if (cache == null)
+    {
+      throw new NullPointerException();
+    }
+    this.cache = cache;
+  }
+
+  public ResourceBundleDataCacheEntry get(final ResourceKey key)
+  {
+    if (key == null)
+    {
+      throw new NullPointerException();
+    }
+    return cache.get(key);
+  }
+
+  public ResourceBundleData put(final ResourceManager caller, final ResourceBundleData data)
+      throws ResourceLoadingException
+  {
+    if (caller == null)
+    {
+      throw new NullPointerException();
+    }
+    if (data == null)
+    {
+      throw new NullPointerException();
+    }
+
+    final ResourceBundleData cdata = CachingResourceBundleData.createCached(data);
+    final long weight = MemoryCacheProvider.computeWeight(data, cdata != data);
+    cache.put(data.getBundleKey(), new DefaultResourceBundleDataCacheEntry(cdata, caller), weight);
+    return cdata;
+  }
+
+  public void remove(final ResourceBundleData data)
+  {
+    if (data == null)
+    {
+      throw new NullPointerException();
+    }
+    cache.remove(data.getBundleKey());
+  }
+
+  public void clear()
+  {
+    cache.clear();
+  }
+
+  public void shutdown()
+  {
+    cache.clear();
+  }
+}
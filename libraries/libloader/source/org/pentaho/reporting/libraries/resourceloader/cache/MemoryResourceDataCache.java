@@ -0,0 +1,116 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2006 - 2009 Pentaho Corporation and Contributors.  All rights reserved.
+ */
+
+package org.pentaho.reporting.libraries.resourceloader.cache;
+
+import org.pentaho.reporting.libraries.resourceloader.ResourceData;
+import org.pentaho.reporting.libraries.resourceloader.ResourceKey;
+import org.pentaho.reporting.libraries.resourceloader.ResourceLoadingException;
+import org.pentaho.reporting.libraries.resourceloader.ResourceManager;
+
+/**
+ * A data cache that holds the loaded raw data in memory. The cache is bounded by the number of bytes held by the
+ * cached data and evicts rarely used entries first. Each entry records the version of the data at the time it was
+ * stored; the resource manager compares this against the current version of the data before using an entry.
+ *
+ * @author Thomas Morgner
+ */
+public class MemoryResourceDataCache implements ResourceDataCache
+{
+  private MemoryCacheStore<ResourceKey, ResourceDataCacheEntry> cache;
+
+  /**
+   * Creates a new cache.
+   *
+   * @param maximumSize the maximum number of bytes held by the cache.
+   */
+  public MemoryResourceDataCache(final long maximumSize)
+  {
+    this(new WeightedFrequencyCache<ResourceKey, ResourceDataCacheEntry>
+        (maximumSize, (int) Math.min(Integer.MAX_VALUE, maximumSize / MemoryCacheProvider.EXPECTED_ENTRY_SIZE)));
+  }
+
+  MemoryResourceDataCache(final MemoryCacheStore<ResourceKey, ResourceDataCacheEntry> cache)
+  {
+    if (cache == null)
+    {
+      throw new NullPointerException();
+    }
+    this.cache = cache;
+  }
+
+  /**
+   * Retrieves the given data from the cache.
+   *
+   * @param key the resource key for the data.
+   */
+  public ResourceDataCacheEntry get(final ResourceKey key)
+  {
+    if (key == null)
+    {
+      throw new NullPointerException();
+    }
+    return cache.get(key);
+  }
+
+  /**
+   * Stores the given data on the cache. The data is registered by its primary key. The cache has to store the current
+   * version of the data.
+   *
+   * @param data the data to be stored in the cache
+   * @return the resource data object, possibly wrapped by a cache-specific implementation.
+   */
+  public ResourceData put(final ResourceManager caller, final ResourceData data) throws ResourceLoadingException
+  {
+    if (caller == null)
+    {
+      throw new NullPointerException();
+    }
+    if (data == null)
+    {
+      throw new NullPointerException();
+    }
+
+    final ResourceData cdata = CachingResourceData.createCached(data);
+    final long weight = MemoryCacheProvider.computeWeight(data, cdata != data);
+    cache.put(data.getKey(), new DefaultResourceDataCacheEntry(cdata, caller), weight);
+    return cdata;
+  }
+
+  public void remove(final ResourceData data)
+  {
+    if (data == null)
+    {
+      throw new NullPointerException();
+    }
+    cache.remove(data.getKey());
+  }
+
+  /**
+   * Remove all cached entries. This should be called after the cache has become invalid or after it has been removed
+   * from a resource manager.
+   */
+  public void clear()
+  {
+    cache.clear();
+  }
+
+  public void shutdown()
+  {
+    cache.clear();
+  }
+}
@@ -0,0 +1,180 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2006 - 2009 Pentaho Corporation and Contributors.  All rights reserved.
+ */
+
+package org.pentaho.reporting.libraries.resourceloader.cache;
+
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+
+import org.pentaho.reporting.libraries.resourceloader.CompoundResource;
+import org.pentaho.reporting.libraries.resourceloader.Resource;
+import org.pentaho.reporting.libraries.resourceloader.ResourceException;
+import org.pentaho.reporting.libraries.resourceloader.ResourceKey;
+import org.pentaho.reporting.libraries.resourceloader.SimpleResource;
+
+/**
+ * A factory cache that holds the created resources in memory. The cache is bounded by the estimated number of bytes
+ * held by the resources and evicts rarely used entries first. Images are weighted by their pixel data; all other
+ * resources use a fixed default weight. Subclasses can provide better estimates by overriding
+ * {@link #computeWeight(Resource)}.
+ *
+ * @author Thomas Morgner
+ */
+public class MemoryResourceFactoryCache implements ResourceFactoryCache
+{
+  private MemoryCacheStore<FactoryCacheKey, Resource> cache;
+  private long defaultWeight;
+
+  /**
+   * Creates a new cache.
+   *
+   * @param maximumSize   the maximum number of bytes held by the cache.
+   * @param defaultWeight the weight of resources whose size cannot be estimated.
+   */
+  public MemoryResourceFactoryCache(final long maximumSize, final long defaultWeight)
+  {
+    this(new WeightedFrequencyCache<FactoryCacheKey, Resource>
+        (maximumSize, (int) Math.min(Integer.MAX_VALUE, maximumSize / Math.max(1, defaultWeight))), defaultWeight);
+  }
+
+  MemoryResourceFactoryCache(final MemoryCacheStore<FactoryCacheKey, Resource> cache, final long defaultWeight)
+  {
+    if (cache == null)
+    {
+      throw new NullPointerException();
+    }
+    if (defaultWeight < 0)
+    {
+      throw new IllegalArgumentException();
+    }
+    this.cache = cache;
+    this.defaultWeight = defaultWeight;
+  }
+
+  public Resource get(final ResourceKey key, final Class[] target)
+  {
+    if (key == null)
+    {
+      throw new NullPointerException();
+    }
+    if (target == null)
+    {
+      return null;
+    }
+    for (int i = 0; i < target.length; i++)
+    {
+      final Resource resource = cache.get(new FactoryCacheKey(key, target[i]));
+      if (resource != null)
+      {
+        return resource;
+      }
+    }
+    return null;
+  }
+
+  public void put(final Resource resource)
+  {
+    if (resource == null)
+    {
+      throw new NullPointerException();
+    }
+    cache.put(new FactoryCacheKey(resource.getSource(), resource.getTargetType()), resource, computeWeight(resource));
+  }
+
+  public void remove(final Resource resource)
+  {
+    if (resource == null)
+    {
+      throw new NullPointerException();
+    }
+    cache.remove(new FactoryCacheKey(resource.getSource(), resource.getTargetType()));
+  }
+
+  public void clear()
+  {
+    cache.clear();
+  }
+
+  public void shutdown()
+  {
+    cache.clear();
+  }
+
+  public long getDefaultWeight()
+  {
+    return defaultWeight;
+  }
+
+  /**
+   * Estimates the number of bytes held by the resource. Only the products of the plain libloader resource
+   * implementations are inspected, as other implementations may create a copy of their product on each call to
+   * <code>getResource()</code>.
+   *
+   * @param resource the resource.
+   * @return the estimated weight, never negative.
+   */
+  protected long computeWeight(final Resource resource)
+  {
+    if (resource instanceof BundleCacheResourceWrapper)
+    {
+      // shares the product with the wrapped resource, which is stored separately.
+      return MemoryCacheProvider.ENTRY_OVERHEAD;
+    }
+
+    final Class resourceType = resource.getClass();
+    if (resourceType != SimpleResource.class && resourceType != CompoundResource.class)
+    {
+      return defaultWeight;
+    }
+
+    try
+    {
+      final Object product = resource.getResource();
+      if (product instanceof BufferedImage)
+      {
+        final DataBuffer dataBuffer = ((BufferedImage) product).getRaster().getDataBuffer();
+        final long bytes = (long) dataBuffer.getSize() * dataBuffer.getNumBanks() *
+            DataBuffer.getDataTypeSize(dataBuffer.getDataType()) / 8;
+        return MemoryCacheProvider.ENTRY_OVERHEAD + bytes;
+      }
+      if (product instanceof Image)
+      {
+        final Image image = (Image) product;
+        final int width = image.getWidth(null);
+        final int height = image.getHeight(null);
+        if (width > 0 && height > 0)
+        {
+          return MemoryCacheProvider.ENTRY_OVERHEAD + 4L * width * height;
+        }
+      }
+      else if (product instanceof byte[])
+      {
+        return MemoryCacheProvider.ENTRY_OVERHEAD + ((byte[]) product).length;
+      }
+      else if (product instanceof String)
+      {
+        return MemoryCacheProvider.ENTRY_OVERHEAD + 2L * ((String) product).length();
+      }
+    }
+    catch (ResourceException e)
+    {
+      // ignore, use the default weight.
+    }
+    return defaultWeight;
+  }
+}
@@ -30,7 +30,7 @@ import org.pentaho.reporting.libraries.resourceloader.ResourceManager;
  */
 public class NullResourceBundleDataCache implements ResourceBundleDataCache
 {
-  private Object lastEntry;
+  private volatile ResourceBundleDataCacheEntry lastEntry;
 
   public NullResourceBundleDataCache()
   {
@@ -45,9 +45,10 @@ public class NullResourceBundleDataCache implements ResourceBundleDataCache
 
   public ResourceBundleDataCacheEntry get(final ResourceKey key)
   {
-    if (lastEntry != null)
+    // read the field only once, as other threads may replace it at any time.
+    final ResourceBundleDataCacheEntry entry = lastEntry;
+    if (entry != null)
     {
-      final ResourceBundleDataCacheEntry entry = (ResourceBundleDataCacheEntry) lastEntry;
       if (key.equals(entry.getData().getBundleKey()))
       {
         return entry;
@@ -0,0 +1,226 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2006 - 2009 Pentaho Corporation and Contributors.  All rights reserved.
+ */
+
+package org.pentaho.reporting.libraries.resourceloader.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A thread-safe cache that is bounded by the total weight (usually the estimated size in bytes) of its entries.
+ * <p/>
+ * Entries enter a probation segment and are promoted to a protected segment when they are accessed again. When space
+ * is needed, the least recently used entry of the probation segment is evicted first. A new entry is only admitted if
+ * it has been requested at least as often as the entry it would replace; the access frequencies are tracked by a
+ * {@link FrequencySketch} that also remembers keys that are no longer in the cache. This keeps a single large report
+ * run from flushing resources that are used by every report.
+ *
+ * @author Thomas Morgner
+ */
+final class WeightedFrequencyCache<K, V> implements MemoryCacheStore<K, V>
+{
+  private static class Entry<V>
+  {
+    private final V value;
+    private final long weight;
+
+    private Entry(final V value, final long weight)
+    {
+      this.value = value;
+      this.weight = weight;
+    }
+  }
+
+  private final long maximumWeight;
+  private final long maximumProtectedWeight;
+  private final LinkedHashMap<K, Entry<V>> probation;
+  private final LinkedHashMap<K, Entry<V>> protectedEntries;
+  private final FrequencySketch sketch;
+  private long probationWeight;
+  private long protectedWeight;
+
+  /**
+   * Creates a new cache.
+   *
+   * @param maximumWeight   the maximum total weight of all entries.
+   * @param expectedEntries the expected number of entries, used to size the frequency sketch.
+   */
+  WeightedFrequencyCache(final long maximumWeight, final int expectedEntries)
+  {
+    if (maximumWeight < 0)
+    {
+      throw new IllegalArgumentException();
+    }
+    this.maximumWeight = maximumWeight;
+    this.maximumProtectedWeight = maximumWeight * 4 / 5;
+    this.probation = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true);
+    this.protectedEntries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true);
+    this.sketch = new FrequencySketch(expectedEntries);
+  }
+
+  public synchronized V get(final K key)
+  {
+    sketch.increment(key);
+
+    final Entry<V> protectedEntry = protectedEntries.get(key);
+    if (protectedEntry != null)
+    {
+      return protectedEntry.value;
+    }
+
+    final Entry<V> entry = probation.remove(key);
+    if (entry == null)
+    {
+      return null;
+    }
+    probationWeight -= entry.weight;
+    protectedEntries.put(key, entry);
+    protectedWeight += entry.weight;
+    demoteProtectedEntries();
+    return entry.value;
+  }
+
+  /**
+   * Adds the value to the cache. Values that are heavier than the whole cache, or that are requested less often than
+   * the entries they would replace, are not stored.
+   *
+   * @param key    the key.
+   * @param value  the value.
+   * @param weight the weight of the value, must not be negative.
+   * @return true, if the value has been stored, false otherwise.
+   */
+  public synchronized boolean put(final K key, final V value, final long weight)
+  {
+    if (key == null)
+    {
+      throw new NullPointerException();
+    }
+    if (value == null)
+    {
+      throw new NullPointerException();
+    }
+    if (weight < 0)
+    {
+      throw new IllegalArgumentException();
+    }
+
+    removeEntry(key);
+    if (weight > maximumWeight)
+    {
+      return false;
+    }
+
+    sketch.increment(key);
+    if (probationWeight + protectedWeight + weight > maximumWeight)
+    {
+      final K victim = findVictim();
+      if (victim != null && sketch.frequency(key) < sketch.frequency(victim))
+      {
+        // the new entry is less popular than the entries we would have to give up.
+        return false;
+      }
+      while (probationWeight + protectedWeight + weight > maximumWeight)
+      {
+        final K nextVictim = findVictim();
+        if (nextVictim == null)
+        {
+          break;
+        }
+        removeEntry(nextVictim);
+      }
+    }
+
+    probation.put(key, new Entry<V>(value, weight));
+    probationWeight += weight;
+    return true;
+  }
+
+  public synchronized void remove(final K key)
+  {
+    removeEntry(key);
+  }
+
+  public synchronized void clear()
+  {
+    probation.clear();
+    protectedEntries.clear();
+    probationWeight = 0;
+    protectedWeight = 0;
+  }
+
+  public synchronized long getWeight()
+  {
+    return probationWeight + protectedWeight;
+  }
+
+  public synchronized int size()
+  {
+    return probation.size() + protectedEntries.size();
+  }
+
+  public long getMaximumWeight()
+  {
+    return maximumWeight;
+  }
+
+  private void removeEntry(final K key)
+  {
+    final Entry<V> entry = probation.remove(key);
+    if (entry != null)
+    {
+      probationWeight -= entry.weight;
+      return;
+    }
+    final Entry<V> protectedEntry = protectedEntries.remove(key);
+    if (protectedEntry != null)
+    {
+      protectedWeight -= protectedEntry.weight;
+    }
+  }
+
+  private K findVictim()
+  {
+    if (probation.isEmpty() == false)
+    {
+      return probation.keySet().iterator().next();
+    }
+    if (protectedEntries.isEmpty() == false)
+    {
+      return protectedEntries.keySet().iterator().next();
+    }
+    return null;
+  }
+
+  /**
+   * Moves the least recently used entries of the protected segment back into the probation segment until the
+   * protected segment fits into its share of the cache.
+   */
+  private void demoteProtectedEntries()
+  {
+    final Iterator<Map.Entry<K, Entry<V>>> it = protectedEntries.entrySet().iterator();
+    while (protectedWeight > maximumProtectedWeight && it.hasNext())
+    {
+      final Map.Entry<K, Entry<V>> eldest = it.next();
+      it.remove();
+      final Entry<V> entry = eldest.getValue();
+      protectedWeight -= entry.weight;
+      probation.put(eldest.getKey(), entry);
+      probationWeight += entry.weight;
+    }
+  }
+}
@@ -17,9 +17,9 @@
 
 package org.pentaho.reporting.libraries.resourceloader.factory;
 
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArraySet;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -129,8 +129,8 @@ public abstract class AbstractResourceFactory implements ResourceFactory
     }
   }
 
-  /** The available factory methods. */
-  private HashSet<FactoryModule> factoryModules;
+  /** The available factory methods. Modules are registered once, but read concurrently by all creating threads. */
+  private CopyOnWriteArraySet<FactoryModule> factoryModules;
   /** Which type of objects do we create here? */
   private Class factoryType;
 
@@ -141,7 +141,7 @@ public abstract class AbstractResourceFactory implements ResourceFactory
       throw new NullPointerException();
     }
     this.factoryType = factoryType;
-    this.factoryModules = new HashSet<FactoryModule>();
+    this.factoryModules = new CopyOnWriteArraySet<FactoryModule>();
   }
 
   public Class getFactoryType()
@@ -184,12 +184,8 @@ public abstract class AbstractResourceFactory implements ResourceFactory
     }
   }
 
-  public synchronized void registerModule(final FactoryModule module)
+  public void registerModule(final FactoryModule module)
   {
-    if (factoryModules.contains(module))
-    {
-      return;
-    }
     factoryModules.add(module);
   }
 
@@ -201,9 +197,9 @@ public abstract class AbstractResourceFactory implements ResourceFactory
    * @throws ResourceCreationException
    * @throws ResourceLoadingException
    */
-  public synchronized Resource create(final ResourceManager manager,
-                                      final ResourceData data,
-                                      final ResourceKey context)
+  public Resource create(final ResourceManager manager,
+                         final ResourceData data,
+                         final ResourceKey context)
           throws ResourceCreationException, ResourceLoadingException
   {
     final TreeSet<ResourceFactoryEntry> sortedEntries = new TreeSet<ResourceFactoryEntry>();
@@ -0,0 +1,134 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2006 - 2009 Pentaho Corporation and Contributors.  All rights reserved.
+ */
+
+package org.pentaho.reporting.libraries.resourceloader;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+import org.pentaho.reporting.libraries.resourceloader.cache.ConcurrentResourceDataCache;
+
+public class ConcurrentResourceLoadingTest extends TestCase
+{
+  private static class CountingBackend extends DefaultResourceManagerBackend
+  {
+    private AtomicInteger rawDataLoads;
+
+    private CountingBackend()
+    {
+      rawDataLoads = new AtomicInteger();
+    }
+
+    public ResourceData loadRawData(final ResourceManager frontEnd, final ResourceKey key)
+        throws ResourceLoadingException
+    {
+      rawDataLoads.incrementAndGet();
+      try
+      {
+        // make sure that the other threads arrive while we are still loading.
+        Thread.sleep(50);
+      }
+      catch (InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+      }
+      return super.loadRawData(frontEnd, key);
+    }
+  }
+
+  public ConcurrentResourceLoadingTest()
+  {
+  }
+
+  public ConcurrentResourceLoadingTest(final String name)
+  {
+    super(name);
+  }
+
+  protected void setUp() throws Exception
+  {
+    LibLoaderBoot.getInstance().start();
+  }
+
+  public void testConcurrentLoadsAreMerged() throws Exception
+  {
+    final File file = File.createTempFile("concurrent-loading", ".txt");
+    try
+    {
+      final FileOutputStream out = new FileOutputStream(file);
+      try
+      {
+        out.write("Hello World".getBytes("UTF-8"));
+      }
+      finally
+      {
+        out.close();
+      }
+
+      final CountingBackend backend = new CountingBackend();
+      final ResourceManager manager = new ResourceManager(backend);
+      manager.setDataCache(new ConcurrentResourceDataCache());
+      final ResourceKey key = manager.createKey(file);
+
+      final CountDownLatch startSignal = new CountDownLatch(1);
+      final ArrayList<Throwable> errors = new ArrayList<Throwable>();
+      final Thread[] threads = new Thread[8];
+      for (int i = 0; i < threads.length; i++)
+      {
+        threads[i] = new Thread()
+        {
+          public void run()
+          {
+            try
+            {
+              startSignal.await();
+              final ResourceData data = manager.loadRawData(key);
+              assertEquals("Hello World", new String(data.getResource(manager), "UTF-8"));
+            }
+            catch (Throwable e)
+            {
+              synchronized (errors)
+              {
+                errors.add(e);
+              }
+            }
+          }
+        };
+        threads[i].start();
+      }
+      startSignal.countDown();
+      for (int i = 0; i < threads.length; i++)
+      {
+        threads[i].join();
+      }
+
+      assertTrue(errors.toString(), errors.isEmpty());
+      assertEquals(1, backend.rawDataLoads.get());
+    }
+    finally
+    {
+      if (file.delete() == false)
+      {
+        file.deleteOnExit();
+      }
+    }
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2006 - 2009 Pentaho Corporation and Contributors.  All rights reserved.
+ */
+
+package org.pentaho.reporting.libraries.resourceloader.cache;
+
+import junit.framework.TestCase;
+import org.pentaho.reporting.libraries.resourceloader.LibLoaderBoot;
+import org.pentaho.reporting.libraries.resourceloader.ResourceKey;
+import org.pentaho.reporting.libraries.resourceloader.ResourceManager;
+import org.pentaho.reporting.libraries.resourceloader.SimpleResource;
+
+public class MemoryCacheProviderTest extends TestCase
+{
+  public MemoryCacheProviderTest()
+  {
+  }
+
+  public MemoryCacheProviderTest(final String name)
+  {
+    super(name);
+  }
+
+  protected void setUp() throws Exception
+  {
+    LibLoaderBoot.getInstance().start();
+  }
+
+  public void testFallbackCachesAreShared()
+  {
+    assertSame(MemoryCacheProvider.getFallbackDataCache(), MemoryCacheProvider.getFallbackDataCache());
+    assertSame(MemoryCacheProvider.getFallbackFactoryCache(), MemoryCacheProvider.getFallbackFactoryCache());
+    assertSame(MemoryCacheProvider.getFallbackBundleDataCache(), MemoryCacheProvider.getFallbackBundleDataCache());
+  }
+
+  public void testFactoryCachesFindResourcesByTargetType() throws Exception
+  {
+    final ResourceFactoryCache[] caches = new ResourceFactoryCache[]{
+        new MemoryResourceFactoryCache(65536, 64), new ConcurrentResourceFactoryCache()};
+
+    final ResourceManager manager = new ResourceManager();
+    final ResourceKey key = manager.createKey("res://org/pentaho/reporting/libraries/resourceloader/loader.properties");
+    final SimpleResource resource = new SimpleResource(key, "Hello World", String.class, 0);
+    for (int i = 0; i < caches.length; i++)
+    {
+      final ResourceFactoryCache cache = caches[i];
+      cache.put(resource);
+      assertSame(resource, cache.get(key, new Class[]{Integer.class, String.class}));
+      assertNull(cache.get(key, new Class[]{Integer.class}));
+      cache.remove(resource);
+      assertNull(cache.get(key, new Class[]{String.class}));
+    }
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2006 - 2009 Pentaho Corporation and Contributors.  All rights reserved.
+ */
+
+package org.pentaho.reporting.libraries.resourceloader.cache;
+
+import junit.framework.TestCase;
+
+public class WeightedFrequencyCacheTest extends TestCase
+{
+  public WeightedFrequencyCacheTest()
+  {
+  }
+
+  public WeightedFrequencyCacheTest(final String name)
+  {
+    super(name);
+  }
+
+  public void testWeightIsBounded()
+  {
+    final WeightedFrequencyCache<String, String> cache = new WeightedFrequencyCache<String, String>(1000, 100);
+    for (int i = 0; i < 100; i++)
+    {
+      cache.put("key" + i, "value" + i, 100);
+      assertTrue(cache.getWeight() <= 1000);
+    }
+    assertEquals(10, cache.size());
+  }
+
+  public void testOversizedEntriesAreRejected()
+  {
+    final WeightedFrequencyCache<String, String> cache = new WeightedFrequencyCache<String, String>(1000, 100);
+    cache.put("small", "small", 10);
+    assertFalse(cache.put("large", "large", 1001));
+    assertNull(cache.get("large"));
+    assertEquals("small", cache.get("small"));
+  }
+
+  public void testFrequentEntriesSurviveScans()
+  {
+    final WeightedFrequencyCache<String, String> cache = new WeightedFrequencyCache<String, String>(1000, 100);
+    cache.put("logo", "logo", 300);
+    for (int i = 0; i < 5; i++)
+    {
+      assertEquals("logo", cache.get("logo"));
+    }
+
+    // a single pass over many resources that are used only once must not flush the popular entry.
+    for (int i = 0; i < 200; i++)
+    {
+      cache.put("scan" + i, "scan", 100);
+    }
+    assertEquals("logo", cache.get("logo"));
+    assertTrue(cache.getWeight() <= 1000);
+  }
+
+  public void testReplaceUpdatesWeight()
+  {
+    final WeightedFrequencyCache<String, String> cache = new WeightedFrequencyCache<String, String>(1000, 100);
+    cache.put("key", "first", 600);
+    cache.put("key", "second", 200);
+    assertEquals(200, cache.getWeight());
+    assertEquals("second", cache.get("key"));
+    cache.remove("key");
+    assertEquals(0, cache.getWeight());
+    assertNull(cache.get("key"));
+  }
+}
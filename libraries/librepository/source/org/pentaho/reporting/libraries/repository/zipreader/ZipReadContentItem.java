@@ -46,6 +46,7 @@ public class ZipReadContentItem implements ContentItem
   private long time;
   private ZipReadRepository repository;
   private byte[] rawData;
+  private ZipReadEntryData entryData;
   private ZipReadContentLocation parent;
   private String entryName;
 
@@ -77,6 +78,42 @@ public class ZipReadContentItem implements ContentItem
     this.rawData = bytes;
   }
 
+  /**
+   * Creates a content item whose data is inflated from the zip-file's buffer each time the stream is requested.
+   *
+   * @param repository the repository.
+   * @param parent     the parent location.
+   * @param zipEntry   the entry as read from the central directory.
+   * @param entryData  the pointer to the entry's data.
+   */
+  ZipReadContentItem(final ZipReadRepository repository,
+                     final ZipReadContentLocation parent,
+                     final ZipEntry zipEntry,
+                     final ZipReadEntryData entryData)
+  {
+    if (repository == null)
+    {
+      throw new NullPointerException();
+    }
+    if (zipEntry == null)
+    {
+      throw new NullPointerException();
+    }
+    if (entryData == null)
+    {
+      throw new NullPointerException();
+    }
+
+    this.parent = parent;
+    this.repository = repository;
+    this.comment = zipEntry.getComment();
+    this.name = zipEntry.getName();
+    this.entryName = IOUtils.getInstance().getFileName(name);
+    this.size = zipEntry.getSize();
+    this.time = zipEntry.getTime();
+    this.entryData = entryData;
+  }
+
   public String getMimeType() throws ContentIOException
   {
     return repository.getMimeRegistry().getMimeType(this);
@@ -89,6 +126,10 @@ public class ZipReadContentItem implements ContentItem
 
   public InputStream getInputStream() throws ContentIOException, IOException
   {
+    if (entryData != null)
+    {
+      return entryData.openStream();
+    }
     return new InflaterInputStream(new ByteArrayInputStream(rawData));
   }
 
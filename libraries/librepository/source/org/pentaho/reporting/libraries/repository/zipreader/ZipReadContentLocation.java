@@ -155,7 +155,32 @@ public class ZipReadContentLocation implements ContentLocation
     {
       throw new NullPointerException();
     }
-    
+    addEntry(name, index, zipEntry, data, null);
+  }
+
+  void updateEntry(final String[] name, final int index, final ZipEntry zipEntry, final ZipReadEntryData entryData)
+  {
+    if (name == null)
+    {
+      throw new NullPointerException();
+    }
+    if (zipEntry == null)
+    {
+      throw new NullPointerException();
+    }
+    if (entryData == null)
+    {
+      throw new NullPointerException();
+    }
+    addEntry(name, index, zipEntry, null, entryData);
+  }
+
+  private void addEntry(final String[] name,
+                        final int index,
+                        final ZipEntry zipEntry,
+                        final byte[] data,
+                        final ZipReadEntryData entryData)
+  {
     final String path = name[index];
     final Object entry = entries.get(path);
     final int nextNameIdx = index + 1;
@@ -181,7 +206,7 @@ public class ZipReadContentLocation implements ContentLocation
       }
       if (nextNameIdx < name.length)
       {
-        location.updateEntry(name, nextNameIdx, zipEntry, data);
+        location.addEntry(name, nextNameIdx, zipEntry, data, entryData);
       }
     }
     else if (nextNameIdx == name.length)
@@ -195,7 +220,15 @@ public class ZipReadContentLocation implements ContentLocation
       {
         logger.warn("Replacing Directory-Entry with the same name as a Content-Entry: " + path);
       }
-      final ZipReadContentItem contentItem = new ZipReadContentItem(repository, this, zipEntry, data);
+      final ZipReadContentItem contentItem;
+      if (entryData != null)
+      {
+        contentItem = new ZipReadContentItem(repository, this, zipEntry, entryData);
+      }
+      else
+      {
+        contentItem = new ZipReadContentItem(repository, this, zipEntry, data);
+      }
       entries.put(path, contentItem);
     }
   }
@@ -0,0 +1,210 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2006 - 2009 Pentaho Corporation and Contributors.  All rights reserved.
+ */
+
+package org.pentaho.reporting.libraries.repository.zipreader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Points to the data of a single entry inside a zip-file that is held in a (possibly memory-mapped) buffer. The data
+ * is only located and inflated when the entry's stream is requested.
+ *
+ * @author Thomas Morgner
+ */
+final class ZipReadEntryData
+{
+  private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+  private static final int LOCAL_HEADER_SIZE = 30;
+
+  /**
+   * Reads the compressed data of an entry. For deflated entries a single dummy byte is appended, which the inflater
+   * needs in "nowrap" mode to detect the end of the data.
+   */
+  private static class ByteBufferInputStream extends InputStream
+  {
+    private ByteBuffer buffer;
+    private boolean padding;
+
+    private ByteBufferInputStream(final ByteBuffer buffer, final boolean padding)
+    {
+      this.buffer = buffer;
+      this.padding = padding;
+    }
+
+    public int read() throws IOException
+    {
+      if (buffer.hasRemaining())
+      {
+        return buffer.get() & 0xff;
+      }
+      if (padding)
+      {
+        padding = false;
+        return 0;
+      }
+      return -1;
+    }
+
+    public int read(final byte[] b, final int off, final int len) throws IOException
+    {
+      if (len == 0)
+      {
+        return 0;
+      }
+      final int remaining = buffer.remaining();
+      if (remaining == 0)
+      {
+        if (padding)
+        {
+          padding = false;
+          b[off] = 0;
+          return 1;
+        }
+        return -1;
+      }
+      final int length = Math.min(len, remaining);
+      buffer.get(b, off, length);
+      return length;
+    }
+
+    public long skip(final long n) throws IOException
+    {
+      if (n <= 0)
+      {
+        return 0;
+      }
+      final int length = (int) Math.min(n, buffer.remaining());
+      buffer.position(buffer.position() + length);
+      return length;
+    }
+
+    public int available() throws IOException
+    {
+      return buffer.remaining();
+    }
+  }
+
+  /**
+   * Releases the native inflater memory as soon as the stream is closed instead of waiting for the finalizer.
+   */
+  private static class EntryInflaterInputStream extends InflaterInputStream
+  {
+    private boolean closed;
+
+    private EntryInflaterInputStream(final InputStream in, final Inflater inflater, final int size)
+    {
+      super(in, inflater, size);
+    }
+
+    public void close() throws IOException
+    {
+      if (closed)
+      {
+        return;
+      }
+      closed = true;
+      try
+      {
+        super.close();
+      }
+      finally
+      {
+        inf.end();
+      }
+    }
+  }
+
+  private final ByteBuffer zipData;
+  private final int localHeaderOffset;
+  private final int method;
+  private final int compressedSize;
+
+  /**
+   * Creates a new entry data object.
+   *
+   * @param zipData           the buffer holding the complete zip-file. The buffer is never modified.
+   * @param localHeaderOffset the offset of the entry's local file header.
+   * @param zipEntry          the entry as read from the central directory.
+   * @throws ZipException if the entry uses an unsupported compression method.
+   */
+  ZipReadEntryData(final ByteBuffer zipData,
+                   final int localHeaderOffset,
+                   final ZipEntry zipEntry) throws ZipException
+  {
+    if (zipData == null)
+    {
+      throw new NullPointerException();
+    }
+    if (zipEntry == null)
+    {
+      throw new NullPointerException();
+    }
+    this.method = zipEntry.getMethod();
+    if (method != ZipEntry.STORED && method != ZipEntry.DEFLATED)
+    {
+      throw new ZipException("Unsupported compression method " + method + " for entry " + zipEntry.getName());
+    }
+    this.zipData = zipData;
+    this.localHeaderOffset = localHeaderOffset;
+    this.compressedSize = (int) zipEntry.getCompressedSize();
+  }
+
+  /**
+   * Opens a new stream returning the uncompressed data of the entry.
+   *
+   * @return the stream.
+   * @throws IOException if the entry's local header is invalid.
+   */
+  public InputStream openStream() throws IOException
+  {
+    final ByteBuffer buffer = zipData.duplicate();
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    if (localHeaderOffset + LOCAL_HEADER_SIZE > buffer.limit() ||
+        buffer.getInt(localHeaderOffset) != LOCAL_HEADER_SIGNATURE)
+    {
+      throw new ZipException("Invalid local file header");
+    }
+
+    // the local header's name and extra-field can differ from the central directory, so we have to read the
+    // lengths here.
+    final int nameLength = buffer.getShort(localHeaderOffset + 26) & 0xffff;
+    final int extraLength = buffer.getShort(localHeaderOffset + 28) & 0xffff;
+    final int dataOffset = localHeaderOffset + LOCAL_HEADER_SIZE + nameLength + extraLength;
+    if (dataOffset + compressedSize > buffer.limit())
+    {
+      throw new ZipException("Truncated zip entry");
+    }
+
+    buffer.limit(dataOffset + compressedSize);
+    buffer.position(dataOffset);
+    if (method == ZipEntry.STORED)
+    {
+      return new ByteBufferInputStream(buffer.slice(), false);
+    }
+
+    final int bufferSize = Math.max(512, Math.min(compressedSize + 1, 8192));
+    return new EntryInflaterInputStream
+        (new ByteBufferInputStream(buffer.slice(), true), new Inflater(true), bufferSize);
+  }
+}
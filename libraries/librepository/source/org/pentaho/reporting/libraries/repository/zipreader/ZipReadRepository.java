@@ -18,11 +18,19 @@
 package org.pentaho.reporting.libraries.repository.zipreader;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Calendar;
 import java.util.zip.Deflater;
 import java.util.zip.DeflaterOutputStream;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
 import java.util.zip.ZipInputStream;
 
 import org.pentaho.reporting.libraries.base.util.IOUtils;
@@ -34,13 +42,22 @@ import org.pentaho.reporting.libraries.repository.Repository;
 import org.pentaho.reporting.libraries.repository.RepositoryUtilities;
 
 /**
- * Provides read-only access to ZIP files. The whole zip-file is cached in memory so this input
- * method will fail badly on huge zuip-files.
+ * Provides read-only access to ZIP files. When created from a stream, the whole zip-file is cached in memory so this
+ * input method will fail badly on huge zuip-files.
+ * <p/>
+ * When created from a file or a buffer, only the zip-file's central directory is read. Local files are memory-mapped.
+ * The entries are inflated each time their content is requested, so loading a bundle that only uses a few of its
+ * entries does not pay for the others.
  *
  * @author Thomas Morgner
  */
 public class ZipReadRepository implements Repository
 {
+  private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+  private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+  private static final int CENTRAL_DIRECTORY_SIGNATURE = 0x02014b50;
+  private static final int CENTRAL_DIRECTORY_HEADER_SIZE = 46;
+
   private ZipReadContentLocation root;
   private MimeRegistry mimeRegistry;
 
@@ -104,6 +121,187 @@ public class ZipReadRepository implements Repository
     }
   }
 
+  /**
+   * Creates a random-access repository for the given local zip-file. The file is memory-mapped and only its central
+   * directory is read.
+   *
+   * @param file the zip-file.
+   * @throws IOException if the file cannot be read or is not a valid zip-file.
+   */
+  public ZipReadRepository(final File file) throws IOException
+  {
+    this(file, new DefaultMimeRegistry());
+  }
+
+  public ZipReadRepository(final File file, final MimeRegistry mimeRegistry) throws IOException
+  {
+    this(mapFile(file), mimeRegistry);
+  }
+
+  /**
+   * Creates a random-access repository for the zip-file contained in the given buffer. The buffer's content must not
+   * be modified while the repository is in use.
+   *
+   * @param data         the buffer holding the complete zip-file from its position up to its limit.
+   * @param mimeRegistry the mime registry.
+   * @throws IOException if the buffer does not contain a valid zip-file.
+   */
+  public ZipReadRepository(final ByteBuffer data, final MimeRegistry mimeRegistry) throws IOException
+  {
+    if (data == null)
+    {
+      throw new NullPointerException();
+    }
+    this.mimeRegistry = mimeRegistry;
+    this.root = new ZipReadContentLocation(this, null, "");
+
+    final ByteBuffer buffer = data.slice();
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    readCentralDirectory(buffer);
+  }
+
+  private static ByteBuffer mapFile(final File file) throws IOException
+  {
+    final FileInputStream in = new FileInputStream(file);
+    try
+    {
+      final FileChannel channel = in.getChannel();
+      final long size = channel.size();
+      if (size > Integer.MAX_VALUE)
+      {
+        throw new ZipException("Zip-file is too large: " + file);
+      }
+      // the mapping stays valid after the channel has been closed.
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    }
+    finally
+    {
+      in.close();
+    }
+  }
+
+  private void readCentralDirectory(final ByteBuffer buffer) throws IOException
+  {
+    final int endOfDirectory = findEndOfCentralDirectory(buffer);
+    final int entryCount = buffer.getShort(endOfDirectory + 10) & 0xffff;
+    final long directorySize = buffer.getInt(endOfDirectory + 12) & 0xffffffffL;
+    final long directoryOffset = buffer.getInt(endOfDirectory + 16) & 0xffffffffL;
+    if (entryCount == 0xffff || directoryOffset == 0xffffffffL)
+    {
+      throw new ZipException("ZIP64 files are not supported");
+    }
+    if (entryCount == 0)
+    {
+      throw new IOException("This repository is empty or does not point to a ZIP file");
+    }
+    if (directoryOffset + directorySize > endOfDirectory)
+    {
+      throw new ZipException("Invalid central directory");
+    }
+
+    int offset = (int) directoryOffset;
+    for (int i = 0; i < entryCount; i++)
+    {
+      if (offset + CENTRAL_DIRECTORY_HEADER_SIZE > endOfDirectory ||
+          buffer.getInt(offset) != CENTRAL_DIRECTORY_SIGNATURE)
+      {
+        throw new ZipException("Invalid central directory entry");
+      }
+
+      final int flags = buffer.getShort(offset + 8) & 0xffff;
+      final int method = buffer.getShort(offset + 10) & 0xffff;
+      final long dosTime = buffer.getInt(offset + 12) & 0xffffffffL;
+      final long crc = buffer.getInt(offset + 16) & 0xffffffffL;
+      final long compressedSize = buffer.getInt(offset + 20) & 0xffffffffL;
+      final long size = buffer.getInt(offset + 24) & 0xffffffffL;
+      final int nameLength = buffer.getShort(offset + 28) & 0xffff;
+      final int extraLength = buffer.getShort(offset + 30) & 0xffff;
+      final int commentLength = buffer.getShort(offset + 32) & 0xffff;
+      final long localHeaderOffset = buffer.getInt(offset + 42) & 0xffffffffL;
+      if ((flags & 1) == 1)
+      {
+        throw new ZipException("Encrypted zip entries are not supported");
+      }
+      if (compressedSize == 0xffffffffL || size == 0xffffffffL || localHeaderOffset == 0xffffffffL)
+      {
+        throw new ZipException("ZIP64 files are not supported");
+      }
+
+      final int nameOffset = offset + CENTRAL_DIRECTORY_HEADER_SIZE;
+      final String entryName = readString(buffer, nameOffset, nameLength);
+      final ZipEntry zipEntry = new ZipEntry(entryName);
+      zipEntry.setMethod(method);
+      zipEntry.setTime(dosToJavaTime(dosTime));
+      zipEntry.setCrc(crc);
+      zipEntry.setSize(size);
+      zipEntry.setCompressedSize(compressedSize);
+      if (commentLength > 0)
+      {
+        zipEntry.setComment(readString(buffer, nameOffset + nameLength + extraLength, commentLength));
+      }
+
+      final String[] buildName = RepositoryUtilities.splitPath(entryName, "/");
+      if (zipEntry.isDirectory())
+      {
+        root.updateDirectoryEntry(buildName, 0, zipEntry);
+      }
+      else
+      {
+        root.updateEntry(buildName, 0, zipEntry, new ZipReadEntryData(buffer, (int) localHeaderOffset, zipEntry));
+      }
+
+      offset = nameOffset + nameLength + extraLength + commentLength;
+    }
+  }
+
+  private static int findEndOfCentralDirectory(final ByteBuffer buffer) throws ZipException
+  {
+    // the end-of-central-directory record is followed by a comment of at most 64k.
+    final int limit = buffer.limit();
+    final int minOffset = Math.max(0, limit - END_OF_CENTRAL_DIRECTORY_SIZE - 0xffff);
+    for (int offset = limit - END_OF_CENTRAL_DIRECTORY_SIZE; offset >= minOffset; offset--)
+    {
+      if (buffer.getInt(offset) == END_OF_CENTRAL_DIRECTORY_SIGNATURE)
+      {
+        final int commentLength = buffer.getShort(offset + 20) & 0xffff;
+        if (offset + END_OF_CENTRAL_DIRECTORY_SIZE + commentLength == limit)
+        {
+          return offset;
+        }
+      }
+    }
+    throw new ZipException("This repository does not point to a ZIP file");
+  }
+
+  private static String readString(final ByteBuffer buffer, final int offset, final int length)
+  {
+    final byte[] data = new byte[length];
+    final ByteBuffer duplicate = buffer.duplicate();
+    duplicate.position(offset);
+    duplicate.get(data);
+    // ZipInputStream uses UTF-8 as well.
+    try
+    {
+      return new String(data, "UTF-8");
+    }
+    catch (UnsupportedEncodingException e)
+    {
+      throw new IllegalStateException("UTF-8 is not supported");
+    }
+  }
+
+  private static long dosToJavaTime(final long dosTime)
+  {
+    final Calendar calendar = Calendar.getInstance();
+    calendar.clear();
+    calendar.set((int) (((dosTime >> 25) & 0x7f) + 1980),
+        (int) (((dosTime >> 21) & 0x0f) - 1),
+        (int) ((dosTime >> 16) & 0x1f),
+        (int) ((dosTime >> 11) & 0x1f),
+        (int) ((dosTime >> 5) & 0x3f),
+        (int) ((dosTime << 1) & 0x3e));
+    return calendar.getTimeInMillis();
+  }
 
   public ContentLocation getRoot() throws ContentIOException
   {
@@ -0,0 +1,206 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2006 - 2009 Pentaho Corporation and Contributors.  All rights reserved.
+ */
+
+package org.pentaho.reporting.libraries.repository.zipreader;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+import junit.framework.TestCase;
+import org.pentaho.reporting.libraries.repository.ContentItem;
+import org.pentaho.reporting.libraries.repository.ContentLocation;
+import org.pentaho.reporting.libraries.repository.DefaultMimeRegistry;
+import org.pentaho.reporting.libraries.repository.LibRepositoryBoot;
+import org.pentaho.reporting.libraries.repository.Repository;
+import org.pentaho.reporting.libraries.repository.RepositoryUtilities;
+
+@SuppressWarnings("HardCodedStringLiteral")
+public class ZipReadRepositoryTest extends TestCase
+{
+  private byte[] text;
+  private byte[] binary;
+  private byte[] zipData;
+
+  public ZipReadRepositoryTest()
+  {
+  }
+
+  public ZipReadRepositoryTest(final String name)
+  {
+    super(name);
+  }
+
+  protected void setUp() throws Exception
+  {
+    final StringBuilder b = new StringBuilder();
+    for (int i = 0; i < 2000; i++)
+    {
+      b.append("<element id=\"").append(i).append("\"/>\n");
+    }
+    text = b.toString().getBytes("UTF-8");
+    binary = new byte[10000];
+    new Random(42).nextBytes(binary);
+
+    final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    final ZipOutputStream zipOut = new ZipOutputStream(bout);
+    final ZipEntry mimeType = new ZipEntry("mimetype");
+    mimeType.setMethod(ZipEntry.STORED);
+    final byte[] mimeTypeData = "application/vnd.pentaho.reporting.classic".getBytes("UTF-8");
+    final CRC32 crc = new CRC32();
+    crc.update(mimeTypeData);
+    mimeType.setCrc(crc.getValue());
+    mimeType.setSize(mimeTypeData.length);
+    zipOut.putNextEntry(mimeType);
+    zipOut.write(mimeTypeData);
+    zipOut.closeEntry();
+
+    zipOut.putNextEntry(new ZipEntry("data/"));
+    zipOut.closeEntry();
+
+    final ZipEntry content = new ZipEntry("data/content.xml");
+    content.setComment("the content");
+    zipOut.putNextEntry(content);
+    zipOut.write(text);
+    zipOut.closeEntry();
+
+    zipOut.putNextEntry(new ZipEntry("resources/image.bin"));
+    zipOut.write(binary);
+    zipOut.closeEntry();
+
+    zipOut.putNextEntry(new ZipEntry("empty.txt"));
+    zipOut.closeEntry();
+    zipOut.setComment("bundle comment");
+    zipOut.close();
+    zipData = bout.toByteArray();
+  }
+
+  private static byte[] readItem(final Repository repository, final String path) throws Exception
+  {
+    final ContentItem item = (ContentItem) RepositoryUtilities.getEntity(repository, RepositoryUtilities.split(path, "/"));
+    final InputStream in = item.getInputStream();
+    try
+    {
+      final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+      final byte[] buffer = new byte[777];
+      int length;
+      while ((length = in.read(buffer)) != -1)
+      {
+        bout.write(buffer, 0, length);
+      }
+      return bout.toByteArray();
+    }
+    finally
+    {
+      in.close();
+    }
+  }
+
+  private void assertRepositoryContent(final Repository repository,
+                                       final boolean centralDirectory) throws Exception
+  {
+    assertEquals("application/vnd.pentaho.reporting.classic", new String(readItem(repository, "mimetype"), "UTF-8"));
+    assertTrue(Arrays.equals(text, readItem(repository, "data/content.xml")));
+    assertTrue(Arrays.equals(binary, readItem(repository, "resources/image.bin")));
+    assertEquals(0, readItem(repository, "empty.txt").length);
+    // entries can be read more than once.
+    assertTrue(Arrays.equals(text, readItem(repository, "data/content.xml")));
+
+    final ContentItem item = (ContentItem) RepositoryUtilities.getEntity
+        (repository, RepositoryUtilities.split("data/content.xml", "/"));
+    if (centralDirectory)
+    {
+      // entry comments are only stored in the central directory.
+      assertEquals("the content", item.getAttribute(LibRepositoryBoot.ZIP_DOMAIN, LibRepositoryBoot.ZIP_COMMENT_ATTRIBUTE));
+    }
+    assertEquals(new Long(text.length), item.getAttribute(LibRepositoryBoot.REPOSITORY_DOMAIN, LibRepositoryBoot.SIZE_ATTRIBUTE));
+
+    final ContentLocation root = repository.getRoot();
+    assertTrue(root.exists("data"));
+    assertTrue(root.getEntry("data") instanceof ContentLocation);
+    assertEquals(4, root.listContents().length);
+  }
+
+  public void testStreamRepository() throws Exception
+  {
+    assertRepositoryContent(new ZipReadRepository(new ByteArrayInputStream(zipData)), false);
+  }
+
+  public void testBufferRepository() throws Exception
+  {
+    assertRepositoryContent(new ZipReadRepository(ByteBuffer.wrap(zipData), new DefaultMimeRegistry()), true);
+  }
+
+  public void testFileRepository() throws Exception
+  {
+    final File file = File.createTempFile("zip-read-repository", ".zip");
+    try
+    {
+      final FileOutputStream out = new FileOutputStream(file);
+      try
+      {
+        out.write(zipData);
+      }
+      finally
+      {
+        out.close();
+      }
+      assertRepositoryContent(new ZipReadRepository(file), true);
+    }
+    finally
+    {
+      if (file.delete() == false)
+      {
+        file.deleteOnExit();
+      }
+    }
+  }
+
+  public void testEntryTimeIsPreserved() throws Exception
+  {
+    final Repository streamRepository = new ZipReadRepository(new ByteArrayInputStream(zipData));
+    final Repository bufferRepository = new ZipReadRepository(ByteBuffer.wrap(zipData), new DefaultMimeRegistry());
+    final String[] path = RepositoryUtilities.split("resources/image.bin", "/");
+    final ContentItem streamItem = (ContentItem) RepositoryUtilities.getEntity(streamRepository, path);
+    final ContentItem bufferItem = (ContentItem) RepositoryUtilities.getEntity(bufferRepository, path);
+    assertEquals(streamItem.getAttribute(LibRepositoryBoot.REPOSITORY_DOMAIN, LibRepositoryBoot.VERSION_ATTRIBUTE),
+        bufferItem.getAttribute(LibRepositoryBoot.REPOSITORY_DOMAIN, LibRepositoryBoot.VERSION_ATTRIBUTE));
+  }
+
+  public void testInvalidData() throws IOException
+  {
+    try
+    {
+      new ZipReadRepository(ByteBuffer.wrap(text), new DefaultMimeRegistry());
+      fail();
+    }
+    catch (ZipException ze)
+    {
+      // expected
+    }
+  }
+}
@@ -17,13 +17,21 @@
 
 package org.pentaho.reporting.libraries.serializer;
 
+import java.awt.BasicStroke;
+import java.awt.GradientPaint;
 import java.io.IOException;
 import java.io.NotSerializableException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -36,6 +44,13 @@ import org.pentaho.reporting.libraries.base.util.DebugLog;
  * The SerializeHelper is used to make implementing custom serialization
  * handlers easier. Handlers for certain object types need to be added to this
  * helper before this implementation is usable.
+ * <p/>
+ * The serializer method found for a class is cached, so that the registered methods are only searched once per class.
+ * When the same instance of an immutable, non-serializable class (see {@link #isImmutable(Object)}) is written more
+ * than once to the same stream, only a back-reference to the first copy is written. All other objects are written in
+ * full each time, so that objects that were distinct copies when written are never aliased when read, and objects
+ * modified between two writes (for instance after <code>ObjectOutputStream.reset()</code>) are read back with their
+ * new content. Streams written by older versions, which contain no back-references, can still be read.
  *
  * @author Thomas Morgner
  */
@@ -47,6 +62,33 @@ public class SerializerHelper
    */
   private static SerializerHelper singleton;
 
+  /**
+   * Marks classes for which no serialize method exists in the resolved-methods cache.
+   */
+  private static final SerializeMethod NO_METHOD = new SerializeMethod()
+  {
+    public void writeObject(final Object o, final ObjectOutputStream out) throws IOException
+    {
+      throw new NotSerializableException(o.getClass().getName());
+    }
+
+    public Object readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException
+    {
+      throw new NotSerializableException();
+    }
+
+    public Class getObjectClass()
+    {
+      return Object.class;
+    }
+  };
+
+  private static final int TYPE_NULL = 0;
+  private static final int TYPE_SERIALIZABLE = 1;
+  private static final int TYPE_METHOD = 2;
+  private static final int TYPE_BACK_REFERENCE = 3;
+  private static final int TYPE_SHARED_METHOD = 4;
+
   /**
    * Returns or creates a new SerializerHelper. When a new instance is created
    * by this method, all known SerializeMethods are registered.
@@ -77,6 +119,22 @@ public class SerializerHelper
    */
   private final ClassComparator comparator;
 
+  /**
+   * The serialize methods found for the classes written or read so far. Classes without a method map to NO_METHOD.
+   * The classes are held weakly, so that the cache does not keep the class loaders of serialized objects alive.
+   */
+  private final Map<Class,SerializeMethod> resolvedMethods;
+
+  /**
+   * The immutable non-serializable objects written to each stream, mapped to their back-reference index.
+   */
+  private final Map<ObjectOutputStream,IdentityHashMap<Object,Integer>> writtenObjects;
+
+  /**
+   * The immutable non-serializable objects read from each stream, in the order of their back-reference index.
+   */
+  private final Map<ObjectInputStream,ArrayList<Object>> readObjects;
+
   /**
    * Creates a new SerializerHelper.
    */
@@ -84,6 +142,9 @@ public class SerializerHelper
   {
     this.comparator = new ClassComparator();
     this.methods = new HashMap<Class,SerializeMethod>();
+    this.resolvedMethods = Collections.synchronizedMap(new WeakHashMap<Class,SerializeMethod>());
+    this.writtenObjects = Collections.synchronizedMap(new WeakHashMap<ObjectOutputStream,IdentityHashMap<Object,Integer>>());
+    this.readObjects = Collections.synchronizedMap(new WeakHashMap<ObjectInputStream,ArrayList<Object>>());
   }
 
   /**
@@ -94,6 +155,7 @@ public class SerializerHelper
   public synchronized void registerMethod(final SerializeMethod method)
   {
     this.methods.put(method.getObjectClass(), method);
+    this.resolvedMethods.clear();
   }
 
   /**
@@ -129,6 +191,7 @@ public class SerializerHelper
   public synchronized void unregisterMethod(final SerializeMethod method)
   {
     this.methods.remove(method.getObjectClass());
+    this.resolvedMethods.clear();
   }
 
   /**
@@ -161,12 +224,33 @@ public class SerializerHelper
    */
   protected SerializeMethod getSerializer(final Class c)
   {
-    final SerializeMethod sm = methods.get(c);
-    if (sm != null)
+    final SerializeMethod resolved = resolvedMethods.get(c);
+    if (resolved != null)
+    {
+      if (resolved == NO_METHOD)
+      {
+        return null;
+      }
+      return resolved;
+    }
+
+    synchronized (this)
     {
+      SerializeMethod sm = methods.get(c);
+      if (sm == null)
+      {
+        sm = getSuperClassObjectDescription(c);
+      }
+      if (sm == null)
+      {
+        resolvedMethods.put(c, NO_METHOD);
+      }
+      else
+      {
+        resolvedMethods.put(c, sm);
+      }
       return sm;
     }
-    return getSuperClassObjectDescription(c);
   }
 
   /**
@@ -221,20 +305,20 @@ public class SerializerHelper
    * @param out the outputstream that should receive the object.
    * @throws IOException if an I/O error occured.
    */
-  public synchronized void writeObject(final Object o,
-                                       final ObjectOutputStream out)
+  public void writeObject(final Object o,
+                          final ObjectOutputStream out)
       throws IOException
   {
     try
     {
       if (o == null)
       {
-        out.writeByte(0);
+        out.writeByte(TYPE_NULL);
         return;
       }
       if (o instanceof Serializable)
       {
-        out.writeByte(1);
+        out.writeByte(TYPE_SERIALIZABLE);
         out.writeObject(o);
         return;
       }
@@ -244,9 +328,39 @@ public class SerializerHelper
       {
         throw new NotSerializableException(o.getClass().getName());
       }
-      out.writeByte(2);
+
+      if (isImmutable(o) == false)
+      {
+        out.writeByte(TYPE_METHOD);
+        out.writeObject(m.getObjectClass());
+        m.writeObject(o, out);
+        return;
+      }
+
+      IdentityHashMap<Object,Integer> written = writtenObjects.get(out);
+      if (written != null)
+      {
+        final Integer reference = written.get(o);
+        if (reference != null)
+        {
+          out.writeByte(TYPE_BACK_REFERENCE);
+          out.writeInt(reference.intValue());
+          return;
+        }
+      }
+
+      out.writeByte(TYPE_SHARED_METHOD);
       out.writeObject(m.getObjectClass());
       m.writeObject(o, out);
+
+      // the object is numbered after its content has been written, as the reader cannot number it before its
+      // content has been read.
+      if (written == null)
+      {
+        written = new IdentityHashMap<Object,Integer>();
+        writtenObjects.put(out, written);
+      }
+      written.put(o, Integer.valueOf(written.size()));
     }
     catch (NotSerializableException nse)
     {
@@ -255,7 +369,22 @@ public class SerializerHelper
     }
   }
 
-  public synchronized boolean isSerializable(final Object o)
+  /**
+   * Checks whether the given object can never change its state. Only immutable objects are written as back-references
+   * when they are written to the same stream more than once. Subclasses that register serialize methods for other
+   * immutable classes can override this method.
+   *
+   * @param o the object, never null.
+   * @return true, if the object is immutable.
+   */
+  protected boolean isImmutable(final Object o)
+  {
+    // exact class checks, as subclasses may add mutable state.
+    final Class c = o.getClass();
+    return c == BasicStroke.class || c == GradientPaint.class;
+  }
+
+  public boolean isSerializable(final Object o)
   {
     if (o == null)
     {
@@ -283,24 +412,52 @@ public class SerializerHelper
    * @throws IOException            if reading the stream failed.
    * @throws ClassNotFoundException if serialized object class cannot be found.
    */
-  public synchronized Object readObject(final ObjectInputStream in)
+  public Object readObject(final ObjectInputStream in)
       throws IOException, ClassNotFoundException
   {
     final int type = in.readByte();
-    if (type == 0)
+    if (type == TYPE_NULL)
     {
       return null;
     }
-    if (type == 1)
+    if (type == TYPE_SERIALIZABLE)
     {
       return in.readObject();
     }
+
+    ArrayList<Object> read = readObjects.get(in);
+    if (type == TYPE_BACK_REFERENCE)
+    {
+      final int reference = in.readInt();
+      if (read == null || reference < 0 || reference >= read.size())
+      {
+        throw new StreamCorruptedException("Invalid back-reference " + reference);
+      }
+      return read.get(reference);
+    }
+    if (type != TYPE_METHOD && type != TYPE_SHARED_METHOD)
+    {
+      throw new StreamCorruptedException("Invalid object type " + type);
+    }
+
     final Class c = (Class) in.readObject();
     final SerializeMethod m = getSerializer(c);
     if (m == null)
     {
       throw new NotSerializableException(c.getName());
     }
-    return m.readObject(in);
+    final Object o = m.readObject(in);
+    if (type == TYPE_METHOD)
+    {
+      return o;
+    }
+
+    if (read == null)
+    {
+      read = new ArrayList<Object>();
+      readObjects.put(in, read);
+    }
+    read.add(o);
+    return o;
   }
 }
@@ -0,0 +1,250 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2006 - 2009 Pentaho Corporation and Contributors.  All rights reserved.
+ */
+
+package org.pentaho.reporting.libraries.serializer;
+
+import java.awt.BasicStroke;
+import java.awt.print.PageFormat;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+import junit.framework.TestCase;
+import org.pentaho.reporting.libraries.serializer.methods.BasicStrokeSerializer;
+
+public class SerializerHelperTest extends TestCase
+{
+  /**
+   * A serializable object that writes its non-serializable content via the serializer helper, like the report
+   * elements and style-sheets do.
+   */
+  private static class StrokeHolder implements Serializable
+  {
+    private transient BasicStroke stroke;
+    private transient BasicStroke secondStroke;
+
+    private StrokeHolder(final BasicStroke stroke, final BasicStroke secondStroke)
+    {
+      this.stroke = stroke;
+      this.secondStroke = secondStroke;
+    }
+
+    private void writeObject(final ObjectOutputStream out) throws IOException
+    {
+      out.defaultWriteObject();
+      final SerializerHelper helper = SerializerHelper.getInstance();
+      helper.writeObject(stroke, out);
+      helper.writeObject(secondStroke, out);
+    }
+
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException
+    {
+      in.defaultReadObject();
+      final SerializerHelper helper = SerializerHelper.getInstance();
+      stroke = (BasicStroke) helper.readObject(in);
+      secondStroke = (BasicStroke) helper.readObject(in);
+    }
+  }
+
+  public SerializerHelperTest()
+  {
+  }
+
+  public SerializerHelperTest(final String name)
+  {
+    super(name);
+  }
+
+  protected void setUp() throws Exception
+  {
+    LibSerializerBoot.getInstance().start();
+  }
+
+  public void testRepeatedImmutableValuesAreWrittenOnce() throws Exception
+  {
+    final SerializerHelper helper = SerializerHelper.getInstance();
+    final BasicStroke stroke = new BasicStroke(2.5f);
+
+    final ByteArrayOutputStream repeated = new ByteArrayOutputStream();
+    final ObjectOutputStream repeatedOut = new ObjectOutputStream(repeated);
+    helper.writeObject(stroke, repeatedOut);
+    helper.writeObject(stroke, repeatedOut);
+    helper.writeObject(stroke, repeatedOut);
+    repeatedOut.close();
+
+    final ByteArrayOutputStream copies = new ByteArrayOutputStream();
+    final ObjectOutputStream copiesOut = new ObjectOutputStream(copies);
+    helper.writeObject(new BasicStroke(2.5f), copiesOut);
+    helper.writeObject(new BasicStroke(2.5f), copiesOut);
+    helper.writeObject(new BasicStroke(2.5f), copiesOut);
+    copiesOut.close();
+
+    assertTrue(repeated.size() < copies.size());
+
+    final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(repeated.toByteArray()));
+    final Object first = helper.readObject(in);
+    assertEquals(stroke, first);
+    assertSame(first, helper.readObject(in));
+    assertSame(first, helper.readObject(in));
+    in.close();
+
+    final ObjectInputStream copiesIn = new ObjectInputStream(new ByteArrayInputStream(copies.toByteArray()));
+    final Object firstCopy = helper.readObject(copiesIn);
+    final Object secondCopy = helper.readObject(copiesIn);
+    assertEquals(stroke, firstCopy);
+    assertEquals(stroke, secondCopy);
+    assertNotSame(firstCopy, secondCopy);
+    copiesIn.close();
+  }
+
+  public void testMutableValuesAreNotAliased() throws Exception
+  {
+    final SerializerHelper helper = SerializerHelper.getInstance();
+    final PageFormat pageFormat = new PageFormat();
+
+    final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    final ObjectOutputStream out = new ObjectOutputStream(bout);
+    helper.writeObject(pageFormat, out);
+    helper.writeObject(pageFormat, out);
+    out.close();
+
+    final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bout.toByteArray()));
+    final PageFormat first = (PageFormat) helper.readObject(in);
+    final PageFormat second = (PageFormat) helper.readObject(in);
+    assertNotSame(first, second);
+    assertEquals(pageFormat.getOrientation(), first.getOrientation());
+    assertEquals(pageFormat.getOrientation(), second.getOrientation());
+    in.close();
+  }
+
+  public void testNullValues() throws Exception
+  {
+    final SerializerHelper helper = SerializerHelper.getInstance();
+    final BasicStroke stroke = new BasicStroke(1.5f);
+
+    final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    final ObjectOutputStream out = new ObjectOutputStream(bout);
+    helper.writeObject(null, out);
+    helper.writeObject(stroke, out);
+    helper.writeObject(null, out);
+    helper.writeObject(stroke, out);
+    out.close();
+
+    final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bout.toByteArray()));
+    assertNull(helper.readObject(in));
+    final Object first = helper.readObject(in);
+    assertEquals(stroke, first);
+    assertNull(helper.readObject(in));
+    assertSame(first, helper.readObject(in));
+    in.close();
+  }
+
+  public void testNestedValues() throws Exception
+  {
+    final SerializerHelper helper = SerializerHelper.getInstance();
+    final BasicStroke stroke = new BasicStroke(3);
+    final BasicStroke otherStroke = new BasicStroke(4);
+
+    final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    final ObjectOutputStream out = new ObjectOutputStream(bout);
+    helper.writeObject(stroke, out);
+    out.writeObject(new StrokeHolder(stroke, otherStroke));
+    out.writeObject(new StrokeHolder(otherStroke, null));
+    helper.writeObject(otherStroke, out);
+    out.close();
+
+    final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bout.toByteArray()));
+    final Object first = helper.readObject(in);
+    final StrokeHolder firstHolder = (StrokeHolder) in.readObject();
+    final StrokeHolder secondHolder = (StrokeHolder) in.readObject();
+    final Object last = helper.readObject(in);
+    in.close();
+
+    assertEquals(stroke, first);
+    assertSame(first, firstHolder.stroke);
+    assertEquals(otherStroke, firstHolder.secondStroke);
+    assertSame(firstHolder.secondStroke, secondHolder.stroke);
+    assertNull(secondHolder.secondStroke);
+    assertSame(firstHolder.secondStroke, last);
+  }
+
+  /**
+   * Streams written before back-references were introduced contain a full copy of each value.
+   */
+  public void testReadOldFormat() throws Exception
+  {
+    final SerializerHelper helper = SerializerHelper.getInstance();
+    final BasicStroke stroke = new BasicStroke(2);
+    final BasicStrokeSerializer strokeSerializer = new BasicStrokeSerializer();
+
+    final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    final ObjectOutputStream out = new ObjectOutputStream(bout);
+    out.writeByte(0);
+    out.writeByte(2);
+    out.writeObject(BasicStroke.class);
+    strokeSerializer.writeObject(stroke, out);
+    out.writeByte(1);
+    out.writeObject("text");
+    out.writeByte(2);
+    out.writeObject(BasicStroke.class);
+    strokeSerializer.writeObject(stroke, out);
+    out.close();
+
+    final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bout.toByteArray()));
+    assertNull(helper.readObject(in));
+    final Object first = helper.readObject(in);
+    assertEquals(stroke, first);
+    assertEquals("text", helper.readObject(in));
+    final Object second = helper.readObject(in);
+    assertEquals(stroke, second);
+    assertNotSame(first, second);
+    in.close();
+  }
+
+  public void testValuesWrittenAcrossReset() throws Exception
+  {
+    final SerializerHelper helper = SerializerHelper.getInstance();
+    final BasicStroke stroke = new BasicStroke(5);
+    final PageFormat pageFormat = new PageFormat();
+    pageFormat.setOrientation(PageFormat.PORTRAIT);
+
+    final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    final ObjectOutputStream out = new ObjectOutputStream(bout);
+    helper.writeObject(stroke, out);
+    helper.writeObject(pageFormat, out);
+    out.reset();
+    pageFormat.setOrientation(PageFormat.LANDSCAPE);
+    helper.writeObject(stroke, out);
+    helper.writeObject(pageFormat, out);
+    out.close();
+
+    final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bout.toByteArray()));
+    final Object firstStroke = helper.readObject(in);
+    final PageFormat firstPageFormat = (PageFormat) helper.readObject(in);
+    final Object secondStroke = helper.readObject(in);
+    final PageFormat secondPageFormat = (PageFormat) helper.readObject(in);
+    in.close();
+
+    assertEquals(stroke, firstStroke);
+    assertEquals(stroke, secondStroke);
+    assertEquals(PageFormat.PORTRAIT, firstPageFormat.getOrientation());
+    assertEquals(PageFormat.LANDSCAPE, secondPageFormat.getOrientation());
+  }
+}
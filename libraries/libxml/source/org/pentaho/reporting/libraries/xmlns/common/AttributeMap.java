@@ -24,6 +24,9 @@ import java.util.Map;
 
 /**
  * A attribute map holding &lt;namspace;name&gt;-value pairs.
+ * <p/>
+ * Clones share the internal maps with their original until either of them gets modified. The first modification
+ * copies the maps, so cloning a large, mostly unmodified tree of attribute maps is cheap.
  *
  * @author Thomas Morgner
  */
@@ -35,6 +38,12 @@ public class AttributeMap<T> implements Serializable, Cloneable
   private LinkedHashMap<String, LinkedHashMap<String, T>> namespaces;
   private String singletonNamespace;
   private LinkedHashMap<String, T> singletonContent;
+  /**
+   * Whether the internal maps are shared with a clone or the original of this map. A map that is never modified
+   * itself (like a cached prototype) may be cloned by several threads at once, so the flag is volatile and only
+   * ever written when it changes.
+   */
+  private transient volatile boolean shared;
 
   /**
    * Default constructor.
@@ -86,18 +95,14 @@ public class AttributeMap<T> implements Serializable, Cloneable
     try
     {
       final AttributeMap<T> map = (AttributeMap<T>) super.clone();
-      if (singletonNamespace != null)
-      {
-        map.singletonContent = (LinkedHashMap<String, T>) singletonContent.clone();
-      }
-      if (namespaces != null)
+      if (singletonNamespace != null || namespaces != null)
       {
-        map.namespaces = (LinkedHashMap<String, LinkedHashMap<String, T>>) namespaces.clone();
-        for (final Map.Entry<String, LinkedHashMap<String, T>> entry : map.namespaces.entrySet())
+        // the maps are copied lazily on the first modification of either this map or the clone.
+        if (shared == false)
         {
-          final LinkedHashMap value = entry.getValue();
-          entry.setValue((LinkedHashMap<String, T>) value.clone());
+          shared = true;
         }
+        map.shared = true;
       }
       return map;
     }
@@ -108,6 +113,35 @@ public class AttributeMap<T> implements Serializable, Cloneable
     }
   }
 
+  /**
+   * Copies the internal maps if they are shared with a clone or the original of this map. This must be called before
+   * any of the internal maps get modified.
+   *
+   * @noinspection unchecked
+   */
+  private void ensureWritable()
+  {
+    if (shared == false)
+    {
+      return;
+    }
+
+    if (singletonContent != null)
+    {
+      singletonContent = (LinkedHashMap<String, T>) singletonContent.clone();
+    }
+    if (namespaces != null)
+    {
+      namespaces = (LinkedHashMap<String, LinkedHashMap<String, T>>) namespaces.clone();
+      for (final Map.Entry<String, LinkedHashMap<String, T>> entry : namespaces.entrySet())
+      {
+        final LinkedHashMap<String, T> value = entry.getValue();
+        entry.setValue((LinkedHashMap<String, T>) value.clone());
+      }
+    }
+    shared = false;
+  }
+
   /**
    * Defines the attribute for the given namespace and attribute name.
    *
@@ -129,6 +163,7 @@ public class AttributeMap<T> implements Serializable, Cloneable
       throw new NullPointerException("Attribute name must not be null");
     }
 
+    ensureWritable();
     if (singletonNamespace == null)
     {
       if (value != null)
@@ -374,6 +409,7 @@ public class AttributeMap<T> implements Serializable, Cloneable
       return;
     }
 
+    ensureWritable();
     final boolean dontCopySingleton;
     if (this.singletonNamespace == null)
     {
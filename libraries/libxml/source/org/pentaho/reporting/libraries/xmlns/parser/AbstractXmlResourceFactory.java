@@ -80,7 +80,8 @@ public abstract class AbstractXmlResourceFactory implements ResourceFactory
 
 
   /**
-   * Returns a SAX parser.
+   * Returns a SAX parser. The parser factory is shared by all threads and is not thread-safe, so only the creation of
+   * the parser is synchronized. The returned parser is used by the calling thread only.
    *
    * @return a SAXParser.
    * @throws ParserConfigurationException if there is a problem configuring the
@@ -88,7 +89,7 @@ public abstract class AbstractXmlResourceFactory implements ResourceFactory
    * @throws SAXException                 if there is a problem with the parser
    *                                      initialisation
    */
-  protected SAXParser getParser()
+  protected synchronized SAXParser getParser()
       throws ParserConfigurationException, SAXException
   {
     if (this.factory == null)
@@ -22,6 +22,7 @@ import java.io.Writer;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetEncoder;
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.Properties;
 
 import org.pentaho.reporting.libraries.base.util.FastStack;
@@ -189,6 +190,7 @@ public class XmlWriterSupport
   private StringBuffer normalizeBuffer;
   private String encoding;
   private boolean encodingvalid;
+  private boolean unicodeEncoding;
   private CharsetEncoder charsetEncoder;
 
   /**
@@ -369,6 +371,8 @@ public class XmlWriterSupport
     
     final Charset charset = Charset.forName(encoding);
     this.charsetEncoder = charset.newEncoder();
+    // the unicode encodings can encode every character, so there is no need to ask the encoder.
+    this.unicodeEncoding = charset.name().toUpperCase(Locale.ENGLISH).startsWith("UTF-");
   }
 
   /**
@@ -927,6 +931,13 @@ public class XmlWriterSupport
       return;
     }
 
+    if (isPlainText(s))
+    {
+      // nothing to escape, so write the string as it is without copying it into a temporary array.
+      writer.write(s);
+      return;
+    }
+
     final char[] data = s.toCharArray();
     final int len = data.length;
     int startIdx = 0;
@@ -1017,7 +1028,7 @@ public class XmlWriterSupport
         }
         default:
         {
-          if (this.encodingvalid && this.encoding != null)
+          if (this.encodingvalid && this.encoding != null && this.unicodeEncoding == false)
           {
             try
             {
@@ -1075,6 +1086,40 @@ public class XmlWriterSupport
     }
   }
 
+  /**
+   * Checks whether the given text can be written without any escaping. This is the case if the text contains
+   * neither markup characters nor control characters and if all characters can be represented in the declared
+   * encoding.
+   *
+   * @param s the text to be checked.
+   * @return true, if the text can be written as it is, false otherwise.
+   */
+  private boolean isPlainText(final String s)
+  {
+    final boolean checkEncoding = this.encodingvalid && this.encoding != null && this.unicodeEncoding == false;
+    final int len = s.length();
+    for (int i = 0; i < len; i++)
+    {
+      final char ch = s.charAt(i);
+      if (ch < 0x20)
+      {
+        if (ch != 0x09)
+        {
+          return false;
+        }
+      }
+      else if (ch == '<' || ch == '>' || ch == '&' || ch == '"')
+      {
+        return false;
+      }
+      else if (checkEncoding && ch >= 0x80)
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
   /**
    * Normalises a string, replacing certain characters with their escape sequences so that the XML text is not
    * corrupted.
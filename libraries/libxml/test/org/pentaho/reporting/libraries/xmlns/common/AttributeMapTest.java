@@ -104,4 +104,30 @@ public class AttributeMapTest extends TestCase
     return (AttributeMap<T>) oin.readObject();
   }
 
+  public void testCloneIsIndependent()
+  {
+    final AttributeMap<String> e = new AttributeMap<String>();
+    e.setAttribute("Namespace1", "Attr1", "value1");
+    e.setAttribute("Namespace2", "Attr1", "value1");
+
+    final AttributeMap<String> e2 = e.clone();
+    e2.setAttribute("Namespace1", "Attr1", "value2");
+    e2.setAttribute("Namespace2", "Attr2", "value2");
+    assertEquals("value1", e.getAttribute("Namespace1", "Attr1"));
+    assertNull(e.getAttribute("Namespace2", "Attr2"));
+    assertEquals("value2", e2.getAttribute("Namespace1", "Attr1"));
+    assertEquals("value2", e2.getAttribute("Namespace2", "Attr2"));
+
+    final AttributeMap<String> e3 = e.clone();
+    e.setAttribute("Namespace2", "Attr1", null);
+    assertNull(e.getAttribute("Namespace2", "Attr1"));
+    assertEquals("value1", e3.getAttribute("Namespace2", "Attr1"));
+    assertEquals("value1", e2.getAttribute("Namespace2", "Attr1"));
+
+    final AttributeMap<String> e4 = e3.clone();
+    e4.putAll(e2);
+    assertEquals("value1", e3.getAttribute("Namespace1", "Attr1"));
+    assertNull(e3.getAttribute("Namespace2", "Attr2"));
+    assertEquals("value2", e4.getAttribute("Namespace2", "Attr2"));
+  }
 }